@@ -16,6 +16,11 @@ public class AIClient extends AbstractClient {
      */
     private final long thinkingTime;
 
+    /**
+     * Statistics of all moves this client has determined.
+     */
+    private final SearchStats stats = new SearchStats();
+
     /**
      * Constructs an AI client without any thinking time.
      *
@@ -52,6 +57,41 @@ public class AIClient extends AbstractClient {
         this.thinkingTime = thinkingTime;
     }
 
+    /**
+     * Constructs an AI client that searches with {@link SearchStrategy}.
+     * The search itself takes the time per move, so no thinking time is added.
+     *
+     * @param name the name of the AI client
+     * @param searchThreads number of threads per search; more than one enables Lazy SMP
+     * @param moveMillis time per move in milliseconds
+     */
+    /*@
+      requires name != null;
+      requires searchThreads > 0 && moveMillis > 0;
+      ensures getName() == name;
+    @*/
+    public AIClient(String name, int searchThreads, long moveMillis) {
+        this(name, searchThreads, SearchLimits.ofTime(moveMillis));
+    }
+
+    /**
+     * Constructs an AI client that searches with {@link SearchStrategy}
+     * within a time limit, a node limit or both. A node limit with a single
+     * thread makes the client play the same moves on every machine.
+     *
+     * @param name the name of the AI client
+     * @param searchThreads number of threads per search; more than one enables Lazy SMP
+     * @param limits time and node limits per move
+     */
+    /*@
+      requires name != null;
+      requires searchThreads > 0 && limits != null && limits.isBounded();
+      ensures getName() == name;
+    @*/
+    public AIClient(String name, int searchThreads, SearchLimits limits) {
+        this(name, new SearchStrategy(searchThreads, limits));
+    }
+
     /**
      * Determines the next move for the AI client.
      * If a thinking time is configured, the client will wait for the specified
@@ -65,13 +105,53 @@ public class AIClient extends AbstractClient {
     @*/
     @Override
     public Move determineMove(Game game) {
-        if (thinkingTime > 0) {
+        pause(thinkingTime);
+        return strategy.determineMove(game, SearchLimits.NONE, stats);
+    }
+
+    /**
+     * Determines the next move within the time the server's clock allows.
+     * Like {@link BotPlayer}, the client uses half of that time and leaves the
+     * rest for the network; the thinking time takes at most half of its share,
+     * and the strategy searches for the remainder.
+     * @param game the current game state
+     * @param moveMillis time the server allows for this move, or 0 if it enforces no clock
+     * @return a move chosen by the configured strategy
+     */
+    /*@
+      requires game != null && moveMillis >= 0;
+      ensures \result != null;
+    @*/
+    public Move determineMove(Game game, long moveMillis) {
+        if (moveMillis <= 0) {
+            return determineMove(game);
+        }
+        long budget = Math.max(1, moveMillis / 2);
+        long thinking = Math.min(thinkingTime, budget / 2);
+        pause(thinking);
+        return strategy.determineMove(game, SearchLimits.ofTime(Math.max(1, budget - thinking)), stats);
+    }
+
+    private static void pause(long millis) {
+        if (millis > 0) {
             try {
-                Thread.sleep(thinkingTime);
+                Thread.sleep(millis);
             } catch (InterruptedException e) {
                 Thread.currentThread().interrupt();
             }
         }
-        return strategy.determineMove(game);
+    }
+
+    /**
+     * Returns the statistics of all moves this client has determined,
+     * not counting the thinking time.
+     *
+     * @return the live statistics; use {@link SearchStats#copy()} for a snapshot
+     */
+    /*@
+      ensures \result != null;
+    @*/
+    public SearchStats getStats() {
+        return stats;
     }
 }
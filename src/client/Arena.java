@@ -0,0 +1,562 @@
+package client;
+
+import gameLogic.Game;
+import gameLogic.Move;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+/**
+ * In-process self-play arena for comparing two {@link BotStrategy} implementations.
+ * <p>
+ * Games are played directly on {@link Game}, without a server, on a fixed
+ * pool of threads. Every game gets fresh strategy instances and its own
+ * {@link Random}, seeded from the arena seed and the game number, so a run
+ * is reproducible regardless of the number of threads. The strategies swap
+ * colours every game: strategy A moves first in even games, B in odd games.
+ * <p>
+ * Moves are judged like the server judges them: a Quarto claim (16) or draw
+ * claim (17) is replaced by a real piece while pieces remain, and wins are
+ * detected on the board. A strategy that throws, returns nothing or returns
+ * any other illegal move forfeits the game.
+ * <p>
+ * Usage: {@code Arena [naive|smart|search] [naive|smart|search] [games] [threads] [seed] [stats.csv]},
+ * where the optional CSV file collects the {@link SearchStats} of both strategies.
+ */
+public class Arena {
+
+    /** Quantile of the standard normal distribution for 95% intervals. */
+    private static final double Z = 1.96;
+
+    /** Nodes per move of the "search" strategy; a node limit keeps arena runs reproducible. */
+    private static final SearchLimits SEARCH_LIMITS = SearchLimits.ofNodes(20_000);
+
+    private final Function<Random, BotStrategy> strategyA;
+    private final Function<Random, BotStrategy> strategyB;
+    private final int threads;
+    private final long seed;
+
+    /*@
+      private invariant strategyA != null && strategyB != null;
+      private invariant threads > 0;
+    @*/
+
+    /**
+     * Outcome of one game, seen from strategy A.
+     */
+    private static final class Outcome {
+        /** Points of strategy A: 2 for a win, 1 for a draw, 0 for a loss. */
+        private int points;
+        private boolean aMovedFirst;
+        private boolean forfeitA;
+        private boolean forfeitB;
+        private int movesA;
+        private int movesB;
+        private long nanosA;
+        private long nanosB;
+        private final SearchStats statsA = new SearchStats();
+        private final SearchStats statsB = new SearchStats();
+    }
+
+    /**
+     * Aggregated results of an arena run, seen from strategy A.
+     */
+    public static final class Result {
+
+        private final String nameA;
+        private final String nameB;
+        private int wins;
+        private int draws;
+        private int losses;
+        private int forfeitsA;
+        private int forfeitsB;
+        private int firstGames;
+        private int firstPoints;
+        private long movesA;
+        private long movesB;
+        private long nanosA;
+        private long nanosB;
+        private double seconds;
+        private final SearchStats statsA = new SearchStats();
+        private final SearchStats statsB = new SearchStats();
+
+        private Result(String nameA, String nameB) {
+            this.nameA = nameA;
+            this.nameB = nameB;
+        }
+
+        private void add(Outcome outcome) {
+            switch (outcome.points) {
+                case 2 -> wins++;
+                case 1 -> draws++;
+                default -> losses++;
+            }
+            if (outcome.forfeitA) {
+                forfeitsA++;
+            }
+            if (outcome.forfeitB) {
+                forfeitsB++;
+            }
+            if (outcome.aMovedFirst) {
+                firstGames++;
+                firstPoints += outcome.points;
+            }
+            movesA += outcome.movesA;
+            movesB += outcome.movesB;
+            nanosA += outcome.nanosA;
+            nanosB += outcome.nanosB;
+            statsA.merge(outcome.statsA);
+            statsB.merge(outcome.statsB);
+        }
+
+        /**
+         * Returns the name of strategy A.
+         *
+         * @return strategy name
+         */
+        public String getNameA() {
+            return nameA;
+        }
+
+        /**
+         * Returns the name of strategy B.
+         *
+         * @return strategy name
+         */
+        public String getNameB() {
+            return nameB;
+        }
+
+        /**
+         * Returns the number of games played.
+         *
+         * @return game count
+         */
+        public int getGames() {
+            return wins + draws + losses;
+        }
+
+        /**
+         * Returns the number of games won by strategy A.
+         *
+         * @return win count
+         */
+        public int getWins() {
+            return wins;
+        }
+
+        /**
+         * Returns the number of drawn games.
+         *
+         * @return draw count
+         */
+        public int getDraws() {
+            return draws;
+        }
+
+        /**
+         * Returns the number of games lost by strategy A.
+         *
+         * @return loss count
+         */
+        public int getLosses() {
+            return losses;
+        }
+
+        /**
+         * Returns the number of games strategy A lost by an illegal move.
+         *
+         * @return forfeit count
+         */
+        public int getForfeitsA() {
+            return forfeitsA;
+        }
+
+        /**
+         * Returns the number of games strategy B lost by an illegal move.
+         *
+         * @return forfeit count
+         */
+        public int getForfeitsB() {
+            return forfeitsB;
+        }
+
+        /**
+         * Returns the average score of strategy A, counting a draw as half a win.
+         *
+         * @return score between 0 and 1
+         */
+        public double getScore() {
+            int games = getGames();
+            return games == 0 ? 0 : (wins + 0.5 * draws) / games;
+        }
+
+        /**
+         * Returns the half-width of the 95% confidence interval of {@link #getScore()},
+         * using the normal approximation of the per-game score.
+         *
+         * @return half-width of the interval
+         */
+        public double getScoreMargin() {
+            int games = getGames();
+            if (games == 0) {
+                return 0;
+            }
+            double s = getScore();
+            double variance = (wins * (1 - s) * (1 - s) + draws * (0.5 - s) * (0.5 - s)
+                    + losses * s * s) / games;
+            return Z * Math.sqrt(variance / games);
+        }
+
+        /**
+         * Returns the Elo difference of A over B implied by the score.
+         *
+         * @return rating difference, infinite if one side scored everything
+         */
+        public double getEloDifference() {
+            double s = getScore();
+            return -400 * Math.log10(1 / s - 1);
+        }
+
+        /**
+         * Returns the average time strategy A took per move.
+         *
+         * @return nanoseconds per move
+         */
+        public double getAverageMoveNanosA() {
+            return movesA == 0 ? 0 : (double) nanosA / movesA;
+        }
+
+        /**
+         * Returns the average time strategy B took per move.
+         *
+         * @return nanoseconds per move
+         */
+        public double getAverageMoveNanosB() {
+            return movesB == 0 ? 0 : (double) nanosB / movesB;
+        }
+
+        /**
+         * Returns the wall-clock duration of the run.
+         *
+         * @return seconds
+         */
+        public double getSeconds() {
+            return seconds;
+        }
+
+        /**
+         * Returns the statistics of strategy A's moves.
+         *
+         * @return search statistics
+         */
+        public SearchStats getStatsA() {
+            return statsA;
+        }
+
+        /**
+         * Returns the statistics of strategy B's moves.
+         *
+         * @return search statistics
+         */
+        public SearchStats getStatsB() {
+            return statsB;
+        }
+
+        /**
+         * Appends the statistics of both strategies to a CSV file.
+         *
+         * @param file the CSV file, created with a header if it does not exist
+         */
+        /*@
+          requires file != null;
+        @*/
+        public void appendCsv(Path file) {
+            statsA.appendCsv(file, nameA + " (A)");
+            statsB.appendCsv(file, nameB + " (B)");
+        }
+
+        /**
+         * Prints a summary of the run.
+         */
+        public void print() {
+            int games = getGames();
+            System.out.printf("%s vs %s: %d games in %.2f s%n", nameA, nameB, games, seconds);
+            System.out.println("  " + nameA + " wins:   " + proportion(wins, games));
+            System.out.println("  Draws:        " + proportion(draws, games));
+            System.out.println("  " + nameA + " losses: " + proportion(losses, games));
+            System.out.printf("  Score: %.1f%% +/- %.1f%%  (Elo %+.0f)%n",
+                              100 * getScore(), 100 * getScoreMargin(), getEloDifference());
+            if (firstGames > 0 && firstGames < games) {
+                System.out.printf("  Score of %s moving first: %.1f%%, moving second: %.1f%%%n",
+                                  nameA, 50.0 * firstPoints / firstGames,
+                                  50.0 * (2 * wins + draws - firstPoints) / (games - firstGames));
+            }
+            System.out.println("  Forfeits: " + nameA + " " + forfeitsA + ", " + nameB + " " + forfeitsB);
+            System.out.printf("  Avg move time: %s %.3f ms (%d moves), %s %.3f ms (%d moves)%n",
+                              nameA, getAverageMoveNanosA() / 1e6, movesA,
+                              nameB, getAverageMoveNanosB() / 1e6, movesB);
+            if (statsA.getNodes() > 0) {
+                statsA.print(nameA + " (A)");
+            }
+            if (statsB.getNodes() > 0) {
+                statsB.print(nameB + " (B)");
+            }
+        }
+
+        /**
+         * Formats a count with its share and the 95% Wilson score interval.
+         */
+        private static String proportion(int count, int games) {
+            double[] interval = wilson(count, games);
+            return String.format("%d (%.1f%%, 95%% CI %.1f%%-%.1f%%)", count,
+                                 games == 0 ? 0 : 100.0 * count / games,
+                                 100 * interval[0], 100 * interval[1]);
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        String a = args.length > 0 ? args[0] : "smart";
+        String b = args.length > 1 ? args[1] : "naive";
+        int games = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+        int threads = args.length > 3 ? Integer.parseInt(args[3])
+                : Runtime.getRuntime().availableProcessors();
+        long seed = args.length > 4 ? Long.parseLong(args[4]) : System.nanoTime();
+        Path csv = args.length > 5 ? Path.of(args[5]) : null;
+
+        System.out.println("Playing " + games + " games on " + threads + " threads, seed " + seed + "...");
+        Result result = new Arena(random -> createStrategy(a, random), random -> createStrategy(b, random),
+                                  threads, seed).run(games);
+        result.print();
+        if (csv != null) {
+            result.appendCsv(csv);
+            System.out.println("Statistics appended to " + csv);
+        }
+    }
+
+    /**
+     * Creates an arena.
+     *
+     * @param strategyA creates strategy A for one game from the game's generator
+     * @param strategyB creates strategy B for one game from the game's generator
+     * @param threads   number of games played in parallel
+     * @param seed      seed from which every game's generator is derived
+     */
+    /*@
+      requires strategyA != null && strategyB != null && threads > 0;
+    @*/
+    public Arena(Function<Random, BotStrategy> strategyA, Function<Random, BotStrategy> strategyB,
+                 int threads, long seed) {
+        this.strategyA = strategyA;
+        this.strategyB = strategyB;
+        this.threads = threads;
+        this.seed = seed;
+    }
+
+    /**
+     * Creates a strategy by name.
+     *
+     * @param name   "naive", "smart" or "search", case-insensitive
+     * @param random generator for strategies that make random choices,
+     *               or null to let them use {@link java.util.concurrent.ThreadLocalRandom}
+     * @return a new strategy
+     * @throws IllegalArgumentException if the name is unknown
+     */
+    /*@
+      requires name != null;
+      ensures \result != null;
+    @*/
+    public static BotStrategy createStrategy(String name, Random random) {
+        switch (name.toLowerCase()) {
+            case "naive" -> {
+                return new NaiveStrategy(random);
+            }
+            case "smart" -> {
+                return new SmartStrategy();
+            }
+            case "search" -> {
+                // single-threaded, so that parallel games do not compete for cores
+                return new SearchStrategy(1, SEARCH_LIMITS);
+            }
+            default -> throw new IllegalArgumentException("Unknown strategy: " + name);
+        }
+    }
+
+    /**
+     * Plays the given number of games and collects the results.
+     *
+     * @param games number of games to play
+     * @return the results, seen from strategy A
+     * @throws InterruptedException if interrupted while waiting for the games
+     */
+    /*@
+      requires games > 0;
+      ensures \result.getGames() == games;
+    @*/
+    public Result run(int games) throws InterruptedException {
+        Result result = new Result(strategyA.apply(new Random(seed)).getName(),
+                                   strategyB.apply(new Random(seed)).getName());
+        ExecutorService pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "Arena-Worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long start = System.nanoTime();
+        try {
+            List<Future<Outcome>> outcomes = new ArrayList<>(games);
+            for (int i = 0; i < games; i++) {
+                int index = i;
+                outcomes.add(pool.submit(() -> play(index)));
+            }
+            for (Future<Outcome> outcome : outcomes) {
+                result.add(outcome.get());
+            }
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Arena game failed", e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+        result.seconds = (System.nanoTime() - start) / 1e9;
+        return result;
+    }
+
+    /**
+     * Plays one game. Strategy A moves first in even games.
+     *
+     * @param index number of the game
+     * @return the outcome, seen from strategy A
+     */
+    private Outcome play(int index) {
+        Random random = new Random(seed + index * 0x9E3779B97F4A7C15L);
+        BotStrategy a = strategyA.apply(random);
+        BotStrategy b = strategyB.apply(random);
+        Outcome outcome = new Outcome();
+        outcome.aMovedFirst = index % 2 == 0;
+        int playerA = outcome.aMovedFirst ? 1 : 2;
+
+        Game game = new Game(1);
+        int winner = 0;
+        while (!game.isGameOver()) {
+            int player = game.getCurrentPlayer();
+            boolean isA = player == playerA;
+            Game copy = game.deepCopy();
+            Move move;
+            long started = System.nanoTime();
+            try {
+                move = (isA ? a : b).determineMove(copy, SearchLimits.NONE,
+                                                   isA ? outcome.statsA : outcome.statsB);
+            } catch (RuntimeException e) {
+                move = null;
+            }
+            long nanos = System.nanoTime() - started;
+            if (isA) {
+                outcome.movesA++;
+                outcome.nanosA += nanos;
+            } else {
+                outcome.movesB++;
+                outcome.nanosB += nanos;
+            }
+
+            move = judge(game, move);
+            if (move == null) {
+                outcome.forfeitA = isA;
+                outcome.forfeitB = !isA;
+                winner = player == 1 ? 2 : 1;
+                break;
+            }
+            game.doMove(move);
+            winner = game.getWinner();
+        }
+
+        outcome.points = winner == 0 ? 1 : (winner == playerA ? 2 : 0);
+        return outcome;
+    }
+
+    /**
+     * Plays random legal moves from the start, to create positions for tests and benchmarks.
+     * Stops early once the game is over or no piece is left to hand over.
+     *
+     * @param random generator of the moves
+     * @param plies  number of moves to play
+     * @return the position reached
+     */
+    /*@
+      requires random != null && plies >= 0;
+      ensures \result != null;
+    @*/
+    static Game randomPosition(Random random, int plies) {
+        Game game = new Game(1);
+        NaiveStrategy naive = new NaiveStrategy(random);
+        for (int i = 0; i < plies && !game.isGameOver() && !game.getAvailablePieces().isEmpty(); i++) {
+            Move move = judge(game, naive.determineMove(game.deepCopy()));
+            if (move == null) {
+                break;
+            }
+            game.doMove(move);
+        }
+        return game;
+    }
+
+    /**
+     * Checks a strategy's move and turns claims into moves the game can execute.
+     *
+     * @param game the current game
+     * @param move the move returned by the strategy, possibly null
+     * @return the move to execute, or null if the move is illegal
+     */
+    /*@
+      requires game != null && !game.isGameOver();
+    @*/
+    static Move judge(Game game, Move move) {
+        if (move == null) {
+            return null;
+        }
+        if (game.getCurrentPieceID() == -1) {
+            return move.isFirstMove() && game.isValidMove(move) ? move : null;
+        }
+        int location = move.getLocation();
+        if (location < 0 || location > 15 || !game.getBoard().isEmptyField(location)) {
+            return null;
+        }
+        if (game.getAvailablePieces().isEmpty()) {
+            // the last placement hands nothing over
+            return new Move(17, location);
+        }
+        int piece = move.getNextPiece();
+        if (piece == 16 || piece == 17) {
+            piece = game.getAvailablePieces().keySet().iterator().next();
+        }
+        Move judged = new Move(piece, location);
+        return game.isValidMove(judged) ? judged : null;
+    }
+
+    /**
+     * Returns the 95% Wilson score interval of a proportion.
+     *
+     * @param successes number of successes
+     * @param trials    number of trials
+     * @return lower and upper bound
+     */
+    /*@
+      requires successes >= 0 && trials >= successes;
+      ensures \result.length == 2;
+    @*/
+    static double[] wilson(int successes, int trials) {
+        if (trials == 0) {
+            return new double[] {0, 1};
+        }
+        double p = (double) successes / trials;
+        double z2 = Z * Z;
+        double denominator = 1 + z2 / trials;
+        double center = (p + z2 / (2.0 * trials)) / denominator;
+        double margin = Z * Math.sqrt(p * (1 - p) / trials + z2 / (4.0 * trials * trials)) / denominator;
+        return new double[] {Math.max(0, center - margin), Math.min(1, center + margin)};
+    }
+}
@@ -0,0 +1,194 @@
+package client;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Headless launcher that hosts many AI players in one JVM.
+ * <p>
+ * Every bot is a {@link BotPlayer} whose connection is served by a
+ * {@link QuartoClient} listener on a virtual thread, so idle bots cost
+ * little more than their socket. All bots share one strategy instance and
+ * one bounded pool of platform threads for their searches; a bot has at
+ * most one search outstanding, so the pool's queue never holds more than
+ * one task per bot. The farm runs until the JVM is stopped and prints a
+ * status line every few seconds, including the {@link SearchStats} of all
+ * bots; if a CSV file is given, the final statistics are appended to it on
+ * shutdown.
+ * <p>
+ * Usage: {@code BotFarm [host] [port] [bots] [naive|smart|search] [searchThreads] [namePrefix] [stats.csv]}
+ */
+public class BotFarm implements BotPlayer.Observer {
+
+    /** Interval in milliseconds between two status lines. */
+    private static final long REPORT_INTERVAL = 30000;
+
+    private final LongAdder gamesFinished = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final List<BotPlayer> bots = new ArrayList<>();
+    private final ThreadPoolExecutor searches;
+    private final ThreadFactory listeners = Thread.ofVirtual().name("farm-listener-", 0).factory();
+    private final BotStrategy strategy;
+    private final SearchStats stats = new SearchStats();
+
+    /*@
+      private invariant searches != null && strategy != null;
+    @*/
+
+    public static void main(String[] args) throws InterruptedException {
+        String host = args.length > 0 ? args[0] : "localhost";
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : 5432;
+        int count = args.length > 2 ? Integer.parseInt(args[2]) : 100;
+        String strategy = args.length > 3 ? args[3] : "smart";
+        int threads = args.length > 4 ? Integer.parseInt(args[4])
+                : Runtime.getRuntime().availableProcessors();
+        String prefix = args.length > 5 ? args[5] : "farm";
+        Path csv = args.length > 6 ? Path.of(args[6]) : null;
+
+        BotFarm farm = new BotFarm(Arena.createStrategy(strategy, null), count, threads);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            farm.stop();
+            if (csv != null) {
+                farm.getStats().appendCsv(csv, farm.strategy.getName() + " x" + count);
+            }
+        }, "BotFarm-Shutdown"));
+        farm.start(host, port, count, prefix);
+        farm.report();
+    }
+
+    /**
+     * Creates a farm.
+     *
+     * @param strategy strategy shared by all bots; must be safe for concurrent use
+     * @param capacity maximum number of bots, which bounds the search queue
+     * @param threads  number of search threads
+     */
+    /*@
+      requires strategy != null && capacity > 0 && threads > 0;
+    @*/
+    public BotFarm(BotStrategy strategy, int capacity, int threads) {
+        this.strategy = strategy;
+        AtomicInteger number = new AtomicInteger();
+        this.searches = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(capacity),
+                task -> {
+                    Thread thread = new Thread(task, "farm-search-" + number.getAndIncrement());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                // never expected, since each bot queues at most one search
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    /**
+     * Connects the bots, named {@code prefix0} to {@code prefix(count-1)}.
+     * Bots that cannot connect are counted as failures and skipped.
+     *
+     * @param host   server hostname
+     * @param port   server port
+     * @param count  number of bots
+     * @param prefix prefix of the usernames
+     */
+    /*@
+      requires host != null && port > 0 && count > 0 && prefix != null;
+    @*/
+    public void start(String host, int port, int count, String prefix) {
+        System.out.println("Starting " + count + " " + strategy.getName() + " bots with "
+                                   + searches.getMaximumPoolSize() + " search threads...");
+        for (int i = 0; i < count; i++) {
+            BotPlayer bot = new BotPlayer(prefix + i, strategy, searches, listeners, this, stats);
+            try {
+                bot.start(host, port);
+                synchronized (bots) {
+                    bots.add(bot);
+                }
+            } catch (IOException e) {
+                failures.increment();
+            }
+        }
+        System.out.println("Connected " + getBotCount() + "/" + count + " bots to " + host + ":" + port);
+    }
+
+    /**
+     * Prints a status line every {@value #REPORT_INTERVAL} ms until interrupted.
+     *
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void report() throws InterruptedException {
+        while (!searches.isShutdown()) {
+            Thread.sleep(REPORT_INTERVAL);
+            SearchStats snapshot = stats.copy();
+            System.out.printf("bots=%d games=%d failures=%d searching=%d queued=%d"
+                                      + " moves=%d ms/move=%.1f nodes/s=%.0f depth=%.1f tt=%.1f%% cutoffs=%.1f%%%n",
+                              getBotCount(), gamesFinished.sum(), failures.sum(),
+                              searches.getActiveCount(), searches.getQueue().size(),
+                              snapshot.getMoves(), snapshot.getMillisPerMove(), snapshot.getNodesPerSecond(),
+                              snapshot.getAverageDepth(), 100 * snapshot.getTableHitRate(),
+                              100 * snapshot.getCutoffRate());
+        }
+    }
+
+    /**
+     * Disconnects all bots and stops the search threads.
+     */
+    public void stop() {
+        synchronized (bots) {
+            for (BotPlayer bot : bots) {
+                bot.stop();
+            }
+            bots.clear();
+        }
+        searches.shutdownNow();
+    }
+
+    /**
+     * Returns the statistics of all moves of the farm's bots.
+     *
+     * @return search statistics shared by the bots
+     */
+    public SearchStats getStats() {
+        return stats;
+    }
+
+    /**
+     * Returns the number of connected bots.
+     *
+     * @return bot count
+     */
+    public int getBotCount() {
+        synchronized (bots) {
+            return bots.size();
+        }
+    }
+
+    /**
+     * Returns the number of games the bots have finished; a game between two farm bots counts twice.
+     *
+     * @return finished games
+     */
+    public long getGamesFinished() {
+        return gamesFinished.sum();
+    }
+
+    @Override
+    public void onMoveAcknowledged(long nanos) {
+    }
+
+    @Override
+    public void onGameFinished(String result) {
+        gamesFinished.increment();
+    }
+
+    @Override
+    public void onFailure(String reason) {
+        failures.increment();
+    }
+}
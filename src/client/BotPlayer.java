@@ -0,0 +1,333 @@
+package client;
+
+import gameLogic.Game;
+import gameLogic.Move;
+import protocol.Protocol;
+
+import java.io.IOException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Headless bot that plays games on a Quarto server without any UI.
+ * <p>
+ * A BotPlayer owns one {@link QuartoClient}, performs the
+ * HELLO / LOGIN / QUEUE handshake and keeps re-queueing after every
+ * game. Moves are computed by a {@link BotStrategy} on the given executor,
+ * so the listener thread is never blocked by a search, and many bots can
+ * share one bounded pool of search threads. Protocol errors and
+ * lost connections end the current connection; the bot then reconnects
+ * and queues again until it is stopped.
+ */
+public class BotPlayer implements QuartoClient.GameListener {
+
+    /**
+     * Receives measurements from a running bot.
+     * All methods are called from the bot's listener thread.
+     */
+    public interface Observer {
+
+        /**
+         * Called when the server confirms one of the bot's moves.
+         *
+         * @param nanos time from sending the move until the echo arrived
+         */
+        void onMoveAcknowledged(long nanos);
+
+        /**
+         * Called when a game of this bot has ended.
+         *
+         * @param result game result (VICTORY / DRAW)
+         */
+        void onGameFinished(String result);
+
+        /**
+         * Called when the connection failed and the bot is about to reconnect.
+         *
+         * @param reason error description
+         */
+        void onFailure(String reason);
+    }
+
+    /** Pause in milliseconds before a failed bot reconnects. */
+    private static final long RECONNECT_DELAY = 200;
+
+    private final String name;
+    private final BotStrategy strategy;
+    private final Executor executor;
+    private final ThreadFactory threadFactory;
+    private final Observer observer;
+    private final SearchStats stats;
+
+    private String host;
+    private int port;
+    private QuartoClient client;
+    private Game game;
+    private long moveSentAt = 0;
+    private boolean waitingForEcho = false;
+    private volatile boolean stopped = false;
+
+    /** Time the server allows for the next move, or 0 if the server sent no clock. */
+    private volatile long moveBudget = 0;
+
+    /*@
+      private invariant name != null;
+      private invariant strategy != null;
+      private invariant executor != null;
+      private invariant threadFactory != null;
+      private invariant observer != null;
+      private invariant stats != null;
+    @*/
+
+    /**
+     * Creates a bot.
+     *
+     * @param name          username to log in with
+     * @param strategy      strategy used to determine moves
+     * @param executor      executor on which moves are computed
+     * @param threadFactory factory for the client's listener thread
+     * @param observer      receiver of latency and game measurements
+     */
+    /*@
+      requires name != null && strategy != null && executor != null;
+      requires threadFactory != null && observer != null;
+    @*/
+    public BotPlayer(String name, BotStrategy strategy, Executor executor,
+                     ThreadFactory threadFactory, Observer observer) {
+        this(name, strategy, executor, threadFactory, observer, new SearchStats());
+    }
+
+    /**
+     * Creates a bot that adds the statistics of its moves to the given ones,
+     * which several bots may share.
+     *
+     * @param name          username to log in with
+     * @param strategy      strategy used to determine moves
+     * @param executor      executor on which moves are computed
+     * @param threadFactory factory for the client's listener thread
+     * @param observer      receiver of latency and game measurements
+     * @param stats         statistics the bot's moves are added to
+     */
+    /*@
+      requires name != null && strategy != null && executor != null;
+      requires threadFactory != null && observer != null && stats != null;
+    @*/
+    public BotPlayer(String name, BotStrategy strategy, Executor executor,
+                     ThreadFactory threadFactory, Observer observer, SearchStats stats) {
+        this.name = name;
+        this.strategy = strategy;
+        this.executor = executor;
+        this.threadFactory = threadFactory;
+        this.observer = observer;
+        this.stats = stats;
+    }
+
+    /**
+     * Returns the username of this bot.
+     *
+     * @return the username
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the statistics the bot's moves are added to.
+     *
+     * @return search statistics, possibly shared with other bots
+     */
+    public SearchStats getStats() {
+        return stats;
+    }
+
+    /**
+     * Returns the time the server allows the player to move, as announced with
+     * the last NEWGAME or MOVE. Read while it is the bot's turn, this is the
+     * budget for the bot's own move.
+     *
+     * @return milliseconds, or 0 if the server does not enforce a time control
+     */
+    public long getMoveBudget() {
+        return moveBudget;
+    }
+
+    /**
+     * Connects to the server, logs in and joins the queue.
+     *
+     * @param host server hostname
+     * @param port server port
+     * @throws IOException if the connection fails
+     */
+    /*@
+      requires host != null && port > 0;
+    @*/
+    public void start(String host, int port) throws IOException {
+        this.host = host;
+        this.port = port;
+        connect();
+    }
+
+    /**
+     * Stops the bot and closes its connection.
+     */
+    public void stop() {
+        stopped = true;
+        QuartoClient current;
+        synchronized (this) {
+            current = client;
+        }
+        if (current != null) {
+            current.close();
+        }
+    }
+
+    private void connect() throws IOException {
+        QuartoClient fresh = new QuartoClient(threadFactory);
+        synchronized (this) {
+            client = fresh;
+            game = null;
+            waitingForEcho = false;
+        }
+        fresh.connect(host, port, this);
+        fresh.send(Protocol.HELLO + Protocol.SEPARATOR + "bot" + Protocol.SEPARATOR + Protocol.CLOCK);
+        fresh.login(name);
+        fresh.queue();
+    }
+
+    @Override
+    public void onConnected() {
+    }
+
+    @Override
+    public synchronized void onNewGame(String p1, String p2) {
+        game = new Game(1);
+        waitingForEcho = false;
+        if (p1.equals(name)) {
+            play();
+        }
+    }
+
+    @Override
+    public synchronized void onOpponentMove(int location, int piece) {
+        if (game == null) {
+            return;
+        }
+        game.doMove(location == -1 ? new Move(piece) : new Move(piece, location));
+        if (waitingForEcho) {
+            waitingForEcho = false;
+            observer.onMoveAcknowledged(System.nanoTime() - moveSentAt);
+        } else {
+            play();
+        }
+    }
+
+    @Override
+    public synchronized void onGameOver(String result, String winner) {
+        if (waitingForEcho) {
+            // the last move is answered with GAMEOVER instead of an echo
+            waitingForEcho = false;
+            observer.onMoveAcknowledged(System.nanoTime() - moveSentAt);
+        }
+        game = null;
+        observer.onGameFinished(result);
+        if (!stopped) {
+            client.queue();
+        }
+    }
+
+    @Override
+    public void onError(String msg) {
+        if (stopped) {
+            return;
+        }
+        observer.onFailure(msg);
+        // wait on a thread of our own, so the reconnect delay never occupies a search worker
+        threadFactory.newThread(() -> {
+            try {
+                Thread.sleep(RECONNECT_DELAY);
+                if (!stopped) {
+                    connect();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (IOException e) {
+                onError("Reconnect failed: " + e.getMessage());
+            }
+        }).start();
+    }
+
+    @Override
+    public void onChat(String sender, String text) {
+    }
+
+    @Override
+    public void onClock(long moveMillis, long gameMillis) {
+        moveBudget = moveMillis;
+    }
+
+    /**
+     * Computes the next move on the executor and sends it,
+     * unless the game has ended or been replaced in the meantime.
+     * Must be called while holding this bot's monitor.
+     */
+    private void play() {
+        Game current = game;
+        Game copy = current.deepCopy();
+        executor.execute(() -> {
+            Move move = toProtocolMove(copy, strategy.determineMove(copy, clockLimits(), stats));
+            synchronized (this) {
+                if (game != current || stopped) {
+                    return;
+                }
+                waitingForEcho = true;
+                moveSentAt = System.nanoTime();
+                client.sendMove(move.getLocation(), move.getNextPiece());
+            }
+        });
+    }
+
+    /**
+     * Returns the limits the server's clock puts on the bot's own move:
+     * half the time the server allows, leaving the rest for the network.
+     *
+     * @return a time limit, or no limit if the server enforces no clock
+     */
+    SearchLimits clockLimits() {
+        long budget = moveBudget;
+        return budget > 0 ? SearchLimits.ofTime(Math.max(1, budget / 2)) : SearchLimits.NONE;
+    }
+
+    /**
+     * Converts a strategy result into a move the server accepts.
+     * The server detects wins itself, so a Quarto claim (16) or draw claim (17)
+     * is replaced by a real piece while pieces remain. A missing result is
+     * replaced by the first legal move.
+     *
+     * @param game the game the move was computed for
+     * @param move the move returned by the strategy, possibly null
+     * @return a move in protocol form
+     */
+    /*@
+      requires game != null;
+      ensures \result != null;
+    @*/
+    static Move toProtocolMove(Game game, Move move) {
+        int location = move != null ? move.getLocation() : -1;
+        int piece = move != null ? move.getNextPiece() : 16;
+
+        if (game.getCurrentPieceID() != -1 && (location < 0 || !game.getBoard().isEmptyField(location))) {
+            location = 0;
+            while (!game.getBoard().isEmptyField(location)) {
+                location++;
+            }
+        }
+        if (piece < 0 || piece > 15 || !game.getAvailablePieces().containsKey(piece)) {
+            if (game.getAvailablePieces().isEmpty()) {
+                piece = 17;
+            } else {
+                piece = game.getAvailablePieces().keySet().iterator().next();
+            }
+        }
+        return game.getCurrentPieceID() == -1 ? new Move(piece) : new Move(piece, location);
+    }
+}
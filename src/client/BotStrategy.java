@@ -28,4 +28,43 @@ public interface BotStrategy {
       ensures \result != null;
     @*/
     Move determineMove(Game game);
+
+    /**
+     * Returns a next legal move, spending no more than the given limits
+     * allow on top of the strategy's own limits.
+     * Strategies that do not search ignore the limits.
+     * @param game the current game.
+     * @param limits limits for this move, e.g. from the server's clock.
+     * @return the next legal move, given the current state of the game.
+     */
+
+    /*@
+      requires game != null && limits != null;
+      ensures \result != null;
+    @*/
+    default Move determineMove(Game game, SearchLimits limits) {
+        return determineMove(game);
+    }
+
+    /**
+     * Returns a next legal move like {@link #determineMove(Game, SearchLimits)}
+     * and records how it was found. Every strategy records the time it took;
+     * searching strategies also record nodes, depth, table hits, cutoffs and
+     * the time of each iteration.
+     * @param game the current game.
+     * @param limits limits for this move, e.g. from the server's clock.
+     * @param stats the statistics to add this move to.
+     * @return the next legal move, given the current state of the game.
+     */
+
+    /*@
+      requires game != null && limits != null && stats != null;
+      ensures \result != null;
+    @*/
+    default Move determineMove(Game game, SearchLimits limits, SearchStats stats) {
+        long start = System.nanoTime();
+        Move move = determineMove(game, limits);
+        stats.recordMove(System.nanoTime() - start);
+        return move;
+    }
 }
@@ -0,0 +1,390 @@
+package client;
+
+import gameLogic.Board;
+import gameLogic.Game;
+import gameLogic.Move;
+import gameLogic.Piece;
+
+/**
+ * Bitboard evaluation of all pieces against all lines of a position.
+ * <p>
+ * A piece id holds the four attributes as bits (size, shape, colour,
+ * fill), and a set of pieces is a 16-bit mask with one bit per piece id.
+ * For every line the kernel ANDs the ids of the placed pieces and of their
+ * complements, which yields the attribute values all of them share, and
+ * turns those into the mask of every piece that shares one of them. One
+ * pass over the ten lines therefore tells for every line which pieces
+ * complete or extend it. Questions such as "which pieces win on this
+ * square" or "is this square a fork" then cost a few mask operations
+ * instead of copying the game and trying each piece.
+ * <p>
+ * A kernel is immutable; {@link #after(Move)} derives the kernel of the
+ * next position without going through {@link Game}.
+ */
+public final class LineKernel {
+
+    /** Squares of the ten lines: rows, columns, main diagonal, anti-diagonal. */
+    static final int[][] LINES = {
+            {0, 1, 2, 3}, {4, 5, 6, 7}, {8, 9, 10, 11}, {12, 13, 14, 15},
+            {0, 4, 8, 12}, {1, 5, 9, 13}, {2, 6, 10, 14}, {3, 7, 11, 15},
+            {0, 5, 10, 15}, {3, 6, 9, 12}
+    };
+
+    /** Mask of all 16 pieces. */
+    private static final int ALL_PIECES = 0xFFFF;
+
+    /** Lines through each square, as a mask of line indices. */
+    private static final int[] LINES_THROUGH = new int[16];
+
+    /** Pieces whose attribute {@code bit} has {@code value}, indexed by {@code 2 * bit + value}. */
+    private static final int[] PIECES_WITH = new int[8];
+
+    /** Pieces having one of the attribute values given as {@code ones << 4 | zeros}. */
+    private static final int[] SHARING = new int[256];
+
+    static {
+        for (int line = 0; line < LINES.length; line++) {
+            for (int square : LINES[line]) {
+                LINES_THROUGH[square] |= 1 << line;
+            }
+        }
+        for (int piece = 0; piece < 16; piece++) {
+            for (int bit = 0; bit < 4; bit++) {
+                PIECES_WITH[2 * bit + ((piece >> bit) & 1)] |= 1 << piece;
+            }
+        }
+        for (int values = 0; values < SHARING.length; values++) {
+            int ones = values >> 4;
+            int zeros = values & 0xF;
+            for (int bit = 0; bit < 4; bit++) {
+                if ((ones >> bit & 1) != 0) {
+                    SHARING[values] |= PIECES_WITH[2 * bit + 1];
+                }
+                if ((zeros >> bit & 1) != 0) {
+                    SHARING[values] |= PIECES_WITH[2 * bit];
+                }
+            }
+        }
+    }
+
+    /** Piece id per square, -1 if empty. */
+    private final int[] squares;
+
+    /** Pieces that may still be handed over. */
+    private final int available;
+
+    /** Piece that must be placed next, or -1. */
+    private final int toPlace;
+
+    /** Number of placed pieces per line. */
+    private final int[] placed = new int[LINES.length];
+
+    /** Per line, all pieces sharing an attribute with every placed piece; 0 for an empty line. */
+    private final int[] common = new int[LINES.length];
+
+    /** Per line, the attribute bits that are 1 and that are 0 in every placed piece. */
+    private final int[] ones = new int[LINES.length];
+    private final int[] zeros = new int[LINES.length];
+
+    /*@
+      private invariant squares != null && squares.length == 16;
+      private invariant (available & ~ALL_PIECES) == 0;
+    @*/
+
+    private LineKernel(int[] squares, int available, int toPlace) {
+        this.squares = squares;
+        this.available = available;
+        this.toPlace = toPlace;
+        for (int line = 0; line < LINES.length; line++) {
+            int lineOnes = 0xF;
+            int lineZeros = 0xF;
+            int count = 0;
+            for (int square : LINES[line]) {
+                int piece = squares[square];
+                if (piece >= 0) {
+                    lineOnes &= piece;
+                    lineZeros &= ~piece;
+                    count++;
+                }
+            }
+            placed[line] = count;
+            ones[line] = lineOnes;
+            zeros[line] = lineZeros;
+            if (count > 0) {
+                common[line] = sharing(lineOnes, lineZeros);
+            }
+        }
+    }
+
+    /**
+     * Returns all pieces that have one of the given attribute values.
+     */
+    private static int sharing(int ones, int zeros) {
+        return SHARING[(ones & 0xF) << 4 | zeros & 0xF];
+    }
+
+    /**
+     * Builds the kernel of a game position.
+     *
+     * @param game the position
+     * @return the kernel
+     */
+    /*@
+      requires game != null;
+    @*/
+    public static LineKernel of(Game game) {
+        int[] squares = new int[16];
+        Board board = game.getBoard();
+        for (int square = 0; square < 16; square++) {
+            Piece piece = board.getField(square);
+            squares[square] = piece == null ? -1 : Zobrist.pieceId(piece);
+        }
+        int available = 0;
+        for (int piece : game.getAvailablePieces().keySet()) {
+            available |= 1 << piece;
+        }
+        return new LineKernel(squares, available, game.getCurrentPieceID());
+    }
+
+    /**
+     * Returns the kernel of the position after a move.
+     * A placement hands over {@link Move#getNextPiece()} only if it is available.
+     *
+     * @param move a legal move in this position
+     * @return the kernel of the next position
+     */
+    /*@
+      requires move != null;
+    @*/
+    public LineKernel after(Move move) {
+        int next = move.getNextPiece();
+        int handed = next >= 0 && next < 16 ? 1 << next : 0;
+        if (move.isFirstMove()) {
+            return new LineKernel(squares, available & ~handed, next);
+        }
+        int[] board = squares.clone();
+        board[move.getLocation()] = toPlace;
+        return new LineKernel(board, available & ~handed, (available & handed) != 0 ? next : -1);
+    }
+
+    /**
+     * Returns the pieces that may still be handed over.
+     *
+     * @return mask with one bit per piece id
+     */
+    public int getAvailable() {
+        return available;
+    }
+
+    /**
+     * Returns the piece that must be placed next.
+     *
+     * @return piece id, or -1 before the opening move and after the last piece
+     */
+    public int getToPlace() {
+        return toPlace;
+    }
+
+    /**
+     * Checks whether a square is empty.
+     *
+     * @param square board index
+     * @return true if no piece stands on it
+     */
+    public boolean isEmpty(int square) {
+        return squares[square] < 0;
+    }
+
+    /**
+     * Counts the empty squares.
+     *
+     * @return number of squares without a piece
+     */
+    public int emptySquares() {
+        int empty = 0;
+        for (int square : squares) {
+            if (square < 0) {
+                empty++;
+            }
+        }
+        return empty;
+    }
+
+    /**
+     * Computes the {@link Zobrist} key of the position, equal to
+     * {@link Zobrist#hash(Game)} of the game it stands for.
+     *
+     * @return the Zobrist key
+     */
+    public long key() {
+        long key = Zobrist.toPlace(toPlace);
+        for (int square = 0; square < 16; square++) {
+            if (squares[square] >= 0) {
+                key ^= Zobrist.placed(square, squares[square]);
+            }
+        }
+        return key;
+    }
+
+    /**
+     * Checks whether some line is complete with a shared attribute.
+     *
+     * @return true if the position is won
+     */
+    public boolean hasWinner() {
+        for (int line = 0; line < LINES.length; line++) {
+            if (placed[line] == 4 && common[line] != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the available pieces that share an attribute with every piece of a line.
+     *
+     * @param line line index
+     * @return mask of pieces; meaningless for an empty line
+     */
+    public int completers(int line) {
+        return common[line] & available;
+    }
+
+    /**
+     * Returns all pieces, available or not, that win when placed on an empty square.
+     *
+     * @param square an empty square
+     * @return mask of winning pieces
+     */
+    /*@
+      requires isEmpty(square);
+    @*/
+    public int winningPieces(int square) {
+        int wins = 0;
+        for (int lines = LINES_THROUGH[square]; lines != 0; lines &= lines - 1) {
+            int line = Integer.numberOfTrailingZeros(lines);
+            if (placed[line] == 3) {
+                wins |= common[line];
+            }
+        }
+        return wins;
+    }
+
+    /**
+     * Returns the available pieces that win on some empty square.
+     *
+     * @return mask of pieces that must not be handed over
+     */
+    public int threats() {
+        int threats = 0;
+        for (int square = 0; square < 16; square++) {
+            if (squares[square] < 0) {
+                threats |= winningPieces(square);
+            }
+        }
+        return threats & available;
+    }
+
+    /**
+     * Returns the available pieces that would win on some empty square after
+     * the piece to place is put on the given square. Equals
+     * {@code after(new Move(17, square)).threats()} without building the next kernel.
+     *
+     * @param square an empty square
+     * @return mask of pieces that must not be handed over after the placement
+     */
+    /*@
+      requires isEmpty(square) && getToPlace() >= 0;
+    @*/
+    public int threatsAfter(int square) {
+        int through = LINES_THROUGH[square];
+        int threats = 0;
+        for (int line = 0; line < LINES.length; line++) {
+            if ((through >> line & 1) == 0) {
+                if (placed[line] == 3) {
+                    threats |= common[line];
+                }
+            } else if (placed[line] == 2) {
+                threats |= sharing(ones[line] & toPlace, zeros[line] & ~toPlace);
+            }
+        }
+        return threats & available;
+    }
+
+    /**
+     * Checks whether a piece wins on some empty square.
+     *
+     * @param piece piece id
+     * @return true if placing the piece somewhere completes a line
+     */
+    public boolean hasWinningSquare(int piece) {
+        if (piece < 0 || piece > 15) {
+            return false;
+        }
+        for (int square = 0; square < 16; square++) {
+            if (squares[square] < 0 && (winningPieces(square) & 1 << piece) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Counts the lines with exactly {@code k} placed pieces that share an
+     * attribute and that an available piece could extend.
+     *
+     * @param k number of placed pieces
+     * @return number of such lines
+     */
+    public int dangerousLines(int k) {
+        int count = 0;
+        for (int line = 0; line < LINES.length; line++) {
+            if (placed[line] == k && completers(line) != 0) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Checks whether an empty square is a fork: at least two lines through it
+     * hold two pieces that available pieces could extend, and no single
+     * available piece extends all of them.
+     *
+     * @param square board index
+     * @return true if the square is a fork
+     */
+    public boolean isFork(int square) {
+        if (squares[square] >= 0) {
+            return false;
+        }
+        int threats = 0;
+        int shared = ALL_PIECES;
+        for (int lines = LINES_THROUGH[square]; lines != 0; lines &= lines - 1) {
+            int line = Integer.numberOfTrailingZeros(lines);
+            int extenders = completers(line);
+            if (placed[line] == 2 && extenders != 0) {
+                threats++;
+                shared &= extenders;
+            }
+        }
+        return threats >= 2 && shared == 0;
+    }
+
+    /**
+     * Checks whether any empty square is a fork, provided a piece can still be handed over.
+     *
+     * @return true if a fork exists
+     */
+    public boolean hasFork() {
+        if (available == 0) {
+            return false;
+        }
+        for (int square = 0; square < 16; square++) {
+            if (isFork(square)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,200 @@
+package client;
+
+import gameLogic.Game;
+import gameLogic.Move;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Headless load generator for capacity planning of the game server.
+ * <p>
+ * Opens many concurrent bot connections, each served by a
+ * {@link QuartoClient} listener on a virtual thread, and lets them play
+ * HELLO / LOGIN / QUEUE / MOVE in a loop. While running it prints the
+ * throughput every few seconds and finally reports the connect rate,
+ * games per second and move round-trip latency percentiles. The round
+ * trip is measured from sending a MOVE until the server's echo arrives.
+ * <p>
+ * Usage: {@code LoadGenerator [host] [port] [clients] [seconds] [naive|scripted]}
+ */
+public class LoadGenerator implements BotPlayer.Observer {
+
+    /** Interval in milliseconds between two progress reports. */
+    private static final long REPORT_INTERVAL = 5000;
+
+    private final AtomicLong playerGames = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final Map<String, LongAdder> failureReasons = new ConcurrentHashMap<>();
+    private final LatencySamples latencies = new LatencySamples();
+
+    /**
+     * Set once all bots are connected and cleared before they are stopped, so
+     * neither the connect phase nor forfeits caused by the shutdown are counted.
+     */
+    private volatile boolean measuring = false;
+
+    /**
+     * Deterministic policy: places on the lowest empty square and gives the
+     * lowest available piece. Costs almost nothing, so the measurement
+     * reflects the server rather than the bots.
+     */
+    private static final class ScriptedStrategy implements BotStrategy {
+
+        @Override
+        public String getName() {
+            return "Scripted";
+        }
+
+        @Override
+        public Move determineMove(Game game) {
+            return BotPlayer.toProtocolMove(game, null);
+        }
+    }
+
+    /**
+     * Growable array of latency samples in nanoseconds.
+     * Samples are sorted only when a report is created.
+     */
+    private static final class LatencySamples {
+        private long[] values = new long[1 << 16];
+        private int size = 0;
+
+        synchronized void add(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        synchronized long[] sorted() {
+            long[] copy = Arrays.copyOf(values, size);
+            Arrays.sort(copy);
+            return copy;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        String host = args.length > 0 ? args[0] : "localhost";
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : 5432;
+        int clients = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+        int seconds = args.length > 3 ? Integer.parseInt(args[3]) : 30;
+        boolean scripted = args.length > 4 && args[4].equalsIgnoreCase("scripted");
+
+        new LoadGenerator().run(host, port, clients, seconds, scripted);
+        System.exit(0);
+    }
+
+    /**
+     * Runs one load test and prints the results.
+     *
+     * @param host     server hostname
+     * @param port     server port
+     * @param clients  number of concurrent bot connections
+     * @param seconds  duration of the measurement after all bots connected
+     * @param scripted true for the scripted policy, false for {@link NaiveStrategy}
+     * @throws InterruptedException if interrupted while waiting
+     */
+    /*@
+      requires host != null && port > 0 && clients > 0 && seconds > 0;
+    @*/
+    public void run(String host, int port, int clients, int seconds, boolean scripted)
+            throws InterruptedException {
+        ThreadFactory listeners = Thread.ofVirtual().name("bot-listener-", 0).factory();
+        ExecutorService moves = Executors.newVirtualThreadPerTaskExecutor();
+        BotStrategy strategy = scripted ? new ScriptedStrategy() : new NaiveStrategy();
+        List<BotPlayer> bots = new ArrayList<>(clients);
+
+        System.out.println("Connecting " + clients + " " + strategy.getName()
+                                   + " bots to " + host + ":" + port + "...");
+        long connectStart = System.nanoTime();
+        for (int i = 0; i < clients; i++) {
+            BotPlayer bot = new BotPlayer("bot" + i, strategy, moves, listeners, this);
+            try {
+                bot.start(host, port);
+                bots.add(bot);
+            } catch (IOException e) {
+                failures.incrementAndGet();
+            }
+        }
+        double connectSeconds = (System.nanoTime() - connectStart) / 1e9;
+        System.out.printf("Connected %d/%d bots in %.2f s (%.0f connections/s)%n",
+                          bots.size(), clients, connectSeconds, bots.size() / connectSeconds);
+
+        long start = System.nanoTime();
+        measuring = true;
+        long end = start + seconds * 1_000_000_000L;
+        long lastGames = 0;
+        long remaining;
+        while ((remaining = (end - System.nanoTime()) / 1_000_000) > 0) {
+            Thread.sleep(Math.min(REPORT_INTERVAL, remaining));
+            long games = playerGames.get() / 2;
+            System.out.printf("  games=%d (+%d)  failures=%d%n", games, games - lastGames, failures.get());
+            lastGames = games;
+        }
+        measuring = false;
+        double elapsed = (System.nanoTime() - start) / 1e9;
+
+        for (BotPlayer bot : bots) {
+            bot.stop();
+        }
+        moves.shutdownNow();
+        report(playerGames.get() / 2, elapsed);
+    }
+
+    /**
+     * Prints the final summary.
+     */
+    private void report(long games, double elapsed) {
+        long[] rtt = latencies.sorted();
+        System.out.println("--- RESULTS ---");
+        System.out.printf("Games finished: %d (%.1f games/s)%n", games, games / elapsed);
+        System.out.printf("Moves acknowledged: %d (%.0f moves/s)%n", rtt.length, rtt.length / elapsed);
+        System.out.println("Failures: " + failures.get());
+        failureReasons.forEach((reason, count) -> System.out.println("  " + count + "x " + reason));
+        if (rtt.length > 0) {
+            System.out.printf("Move RTT ms: p50=%.2f p90=%.2f p99=%.2f p99.9=%.2f max=%.2f%n",
+                              percentile(rtt, 50), percentile(rtt, 90), percentile(rtt, 99),
+                              percentile(rtt, 99.9), rtt[rtt.length - 1] / 1e6);
+        }
+    }
+
+    /**
+     * Returns a percentile of sorted nanosecond samples in milliseconds (nearest rank).
+     */
+    private static double percentile(long[] sorted, double p) {
+        int rank = (int) Math.ceil(p / 100.0 * sorted.length);
+        return sorted[Math.max(0, Math.min(sorted.length - 1, rank - 1))] / 1e6;
+    }
+
+    @Override
+    public void onMoveAcknowledged(long nanos) {
+        if (measuring) {
+            latencies.add(nanos);
+        }
+    }
+
+    @Override
+    public void onGameFinished(String result) {
+        if (measuring) {
+            playerGames.incrementAndGet();
+        }
+    }
+
+    @Override
+    public void onFailure(String reason) {
+        if (measuring) {
+            failures.incrementAndGet();
+            failureReasons.computeIfAbsent(reason, r -> new LongAdder()).increment();
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package client;
+
+import java.util.Arrays;
+
+/**
+ * Move ordering for alpha-beta searches over encoded moves.
+ * <p>
+ * Alpha-beta prunes most when the best move is tried first. Moves are
+ * ordered in tiers:
+ * <ol>
+ *     <li>the best move stored in the transposition table,</li>
+ *     <li>moves that hand over a piece the opponent cannot win with,</li>
+ *     <li>within those, the killer moves of the ply: moves that caused a
+ *     cutoff in a sibling position,</li>
+ *     <li>then by the history score of the (square, piece) pair, which grows
+ *     every time the pair causes a cutoff anywhere in the tree.</li>
+ * </ol>
+ * Moves that hand over a winning piece lose at once and come last.
+ * <p>
+ * Killers and history are learned during a search and carried over
+ * between its iterations. An instance belongs to one search thread and is
+ * not thread-safe. Moves are encoded with {@link TranspositionTable#encodeMove(int, int)}.
+ */
+public final class MoveOrdering {
+
+    /** Killer moves remembered per ply. */
+    private static final int KILLERS = 2;
+
+    /** History scores are halved once one of them exceeds this value. */
+    private static final int HISTORY_LIMIT = 1 << 20;
+
+    private static final int TT_SCORE = Integer.MAX_VALUE;
+    private static final int SAFE_BONUS = 1 << 28;
+    private static final int KILLER_BONUS = 1 << 24;
+
+    /** Killer moves per ply, most recent first. */
+    private final int[][] killers;
+
+    /** Cutoff score per (square + 1, piece); square -1 is the opening move. */
+    private final int[] history = new int[17 * 16];
+
+    // Buffers reused by every sort; a sort completes before the search descends.
+    private final int[] unsafe = new int[16];
+    private final long[] keyed = new long[16 * 16];
+    private final int[] copy = new int[16 * 16];
+
+    /*@
+      private invariant killers != null;
+    @*/
+
+    /**
+     * Creates an empty move ordering.
+     *
+     * @param maxPly deepest ply the search can reach
+     */
+    /*@
+      requires maxPly >= 0;
+    @*/
+    public MoveOrdering(int maxPly) {
+        this.killers = new int[maxPly + 1][KILLERS];
+    }
+
+    /**
+     * Sorts moves, best candidates first.
+     * Moves of equal score keep their relative order.
+     *
+     * @param kernel the position the moves are played in
+     * @param moves  the encoded moves; sorted in place
+     * @param ttMove move from the transposition table, or {@link TranspositionTable#NO_MOVE}
+     * @param ply    distance from the root
+     */
+    /*@
+      requires kernel != null && moves != null && ply >= 0 && ply < killers.length;
+    @*/
+    public void order(LineKernel kernel, int[] moves, int ttMove, int ply) {
+        sort(kernel, moves, 0, ttMove, ply);
+    }
+
+    /**
+     * Sorts the moves from an index on, leaving the moves before it in place.
+     * A search that tries the table move before generating the order uses
+     * this to sort only when the table move did not cut off.
+     *
+     * @param kernel the position the moves are played in
+     * @param moves  the encoded moves; sorted in place from {@code from} on
+     * @param from   index of the first move to sort
+     * @param ply    distance from the root
+     */
+    /*@
+      requires kernel != null && moves != null && 0 <= from && from <= moves.length;
+      requires ply >= 0 && ply < killers.length;
+    @*/
+    public void orderFrom(LineKernel kernel, int[] moves, int from, int ply) {
+        sort(kernel, moves, from, TranspositionTable.NO_MOVE, ply);
+    }
+
+    private void sort(LineKernel kernel, int[] moves, int from, int ttMove, int ply) {
+        int count = moves.length - from;
+        if (count < 2) {
+            return;
+        }
+        findUnsafePieces(kernel);
+        for (int i = 0; i < count; i++) {
+            int score = score(moves[from + i], ttMove, ply);
+            // higher scores sort first, equal scores by their index
+            keyed[i] = (long) (Integer.MAX_VALUE - score) << 32 | i;
+        }
+        Arrays.sort(keyed, 0, count);
+        System.arraycopy(moves, from, copy, 0, count);
+        for (int i = 0; i < count; i++) {
+            moves[from + i] = copy[(int) keyed[i]];
+        }
+    }
+
+    private int score(int move, int ttMove, int ply) {
+        if (move == ttMove) {
+            return TT_SCORE;
+        }
+        int location = TranspositionTable.location(move);
+        int piece = TranspositionTable.piece(move);
+        int score = history[(location + 1) * 16 + piece];
+        if (location >= 0 && (unsafe[location] & 1 << piece) != 0) {
+            return score;
+        }
+        score += SAFE_BONUS;
+        for (int k = 0; k < KILLERS; k++) {
+            if (killers[ply][k] == move) {
+                score += KILLER_BONUS * (KILLERS - k);
+            }
+        }
+        return score;
+    }
+
+    /**
+     * Finds per empty square the pieces that win after the piece to place is put there.
+     */
+    private void findUnsafePieces(LineKernel kernel) {
+        boolean placing = kernel.getToPlace() >= 0;
+        for (int square = 0; square < 16; square++) {
+            unsafe[square] = placing && kernel.isEmpty(square) ? kernel.threatsAfter(square) : 0;
+        }
+    }
+
+    /**
+     * Records a move that caused a beta cutoff.
+     *
+     * @param move  the encoded move
+     * @param ply   distance from the root
+     * @param depth remaining depth of the position; deeper cutoffs weigh more
+     */
+    /*@
+      requires ply >= 0 && ply < killers.length && depth >= 0;
+    @*/
+    public void cutoff(int move, int ply, int depth) {
+        int[] slots = killers[ply];
+        if (slots[0] != move) {
+            System.arraycopy(slots, 0, slots, 1, KILLERS - 1);
+            slots[0] = move;
+        }
+        int index = (TranspositionTable.location(move) + 1) * 16 + TranspositionTable.piece(move);
+        history[index] += depth * depth;
+        if (history[index] > HISTORY_LIMIT) {
+            for (int i = 0; i < history.length; i++) {
+                history[i] /= 2;
+            }
+        }
+    }
+
+    /**
+     * Returns the history score of a (square, piece) pair.
+     *
+     * @param location board location, or -1 for the opening move
+     * @param piece    piece handed over
+     * @return the accumulated score
+     */
+    public int getHistory(int location, int piece) {
+        return history[(location + 1) * 16 + piece];
+    }
+
+    /**
+     * Forgets all killers and history.
+     */
+    public void clear() {
+        for (int[] slots : killers) {
+            Arrays.fill(slots, TranspositionTable.NO_MOVE);
+        }
+        Arrays.fill(history, 0);
+    }
+}
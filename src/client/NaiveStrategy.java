@@ -7,6 +7,8 @@ import gameLogic.Piece;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * A simple bot strategy that selects a random valid move.
@@ -14,6 +16,27 @@ import java.util.Map;
  */
 public class NaiveStrategy implements BotStrategy {
 
+    /** Source of the random choices, or null to use the thread's own generator. */
+    private final Random random;
+
+    /**
+     * Creates a strategy that draws its moves from {@link ThreadLocalRandom}.
+     */
+    public NaiveStrategy() {
+        this(null);
+    }
+
+    /**
+     * Creates a strategy with its own random generator, so a seeded
+     * generator makes its games reproducible. The generator must not be
+     * shared with other threads.
+     *
+     * @param random generator for the random choices, or null for {@link ThreadLocalRandom}
+     */
+    public NaiveStrategy(Random random) {
+        this.random = random;
+    }
+
     @Override
     public String getName() {
         return "Naive";
@@ -62,7 +85,7 @@ public class NaiveStrategy implements BotStrategy {
         }
 
         // Otherwise: random move
-        int idx = (int) (Math.random() * moves.size());
+        int idx = (random != null ? random : ThreadLocalRandom.current()).nextInt(moves.size());
         return moves.get(idx);
     }
 
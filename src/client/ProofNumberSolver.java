@@ -0,0 +1,340 @@
+package client;
+
+import gameLogic.Game;
+import gameLogic.Move;
+
+import java.util.Arrays;
+
+/**
+ * Depth-first proof-number (df-pn) solver for forced wins.
+ * <p>
+ * The solver tries to prove that the player to move can force a win, or to
+ * disprove it, meaning the opponent can force a win or a draw. Every node
+ * carries a proof number and a disproof number: the least number of
+ * unsolved positions that must be proven, or disproven, to settle it.
+ * The search always expands the most proving child and only leaves a
+ * subtree once its numbers exceed thresholds derived from the siblings, so
+ * it follows narrow forcing lines deep into the game while a fixed-depth
+ * search would spread its effort over all moves.
+ * <p>
+ * Being depth-first, the solver needs memory only for the path being
+ * searched and a fixed-size table of proof and disproof numbers. Entries
+ * of that table are simply overwritten when their slot is needed, so
+ * memory stays bounded no matter how long the solver runs. Each call
+ * is also limited by {@link SearchLimits}; when they run out the result
+ * is {@link Outcome#UNKNOWN}.
+ * <p>
+ * An instance keeps its table between calls, so positions proven while
+ * solving one move are reused for the next. It is not thread-safe.
+ */
+public class ProofNumberSolver {
+
+    /** Result of a solver call. */
+    public enum Outcome {
+        /** The player to move can force a win. */
+        WIN,
+        /** The player to move cannot force a win: the opponent wins or draws. */
+        NO_WIN,
+        /** The budget ran out before the position was settled. */
+        UNKNOWN
+    }
+
+    /**
+     * Outcome of a solver call together with the winning move, if any.
+     */
+    public static final class Result {
+        private final Outcome outcome;
+        private final Move move;
+        private final long nodes;
+
+        private Result(Outcome outcome, Move move, long nodes) {
+            this.outcome = outcome;
+            this.move = move;
+            this.nodes = nodes;
+        }
+
+        /**
+         * Returns whether the position was proven, disproven or left open.
+         *
+         * @return the outcome
+         */
+        public Outcome getOutcome() {
+            return outcome;
+        }
+
+        /**
+         * Returns the first move of the forced win, with a Quarto claim (16)
+         * for a winning placement, like the strategies return it.
+         *
+         * @return the winning move, or null unless the outcome is {@link Outcome#WIN}
+         */
+        public Move getMove() {
+            return move;
+        }
+
+        /**
+         * Returns the number of expanded nodes.
+         *
+         * @return node count
+         */
+        public long getNodes() {
+            return nodes;
+        }
+    }
+
+    /** Proof or disproof number of a settled position. */
+    private static final int INFINITY = Integer.MAX_VALUE / 2;
+
+    /** Distinguishes the player the proof is for, since draws count against that player only. */
+    private static final long ATTACKER_KEY = 0x2545F4914F6CDD1DL;
+
+    /** Number of nodes between two checks of the clock. */
+    private static final int CHECK_INTERVAL = 1024;
+
+    private final long[] keys;
+    private final int[] phis;
+    private final int[] deltas;
+    private final int mask;
+
+    private long nodes;
+    private long maxNodes;
+    private long deadline;
+    private boolean aborted;
+
+    /*@
+      private invariant keys.length == phis.length && keys.length == deltas.length;
+      private invariant keys.length == mask + 1;
+    @*/
+
+    /**
+     * Creates a solver with a table of the given size.
+     *
+     * @param entries number of table entries; rounded down to a power of two
+     */
+    /*@
+      requires entries > 0;
+    @*/
+    public ProofNumberSolver(int entries) {
+        int size = Integer.highestOneBit(entries);
+        this.keys = new long[size];
+        this.phis = new int[size];
+        this.deltas = new int[size];
+        this.mask = size - 1;
+    }
+
+    /**
+     * Tries to settle whether the player to move can force a win.
+     *
+     * @param game     the position; not modified
+     * @param maxNodes most nodes to expand
+     * @param millis   most time to use in milliseconds
+     * @return the outcome and, for a win, the move that starts it
+     */
+    /*@
+      requires game != null && !game.isGameOver() && maxNodes > 0 && millis > 0;
+      ensures \result.getOutcome() == Outcome.WIN <==> \result.getMove() != null;
+    @*/
+    public Result solve(Game game, long maxNodes, long millis) {
+        return solve(game, new SearchLimits(millis, maxNodes));
+    }
+
+    /**
+     * Tries to settle whether the player to move can force a win within the given limits.
+     * Under a pure node limit, the result does not depend on the machine.
+     *
+     * @param game   the position; not modified
+     * @param limits most nodes and time to use
+     * @return the outcome and, for a win, the move that starts it
+     */
+    /*@
+      requires game != null && !game.isGameOver() && limits != null && limits.isBounded();
+      ensures \result.getOutcome() == Outcome.WIN <==> \result.getMove() != null;
+    @*/
+    public Result solve(Game game, SearchLimits limits) {
+        LineKernel root = LineKernel.of(game);
+        int toPlace = root.getToPlace();
+        if (toPlace >= 0) {
+            for (int square = 0; square < 16; square++) {
+                if (root.isEmpty(square) && (root.winningPieces(square) & 1 << toPlace) != 0) {
+                    return new Result(Outcome.WIN, new Move(16, square), 0);
+                }
+            }
+            if (root.getAvailable() == 0) {
+                return new Result(Outcome.NO_WIN, null, 0);
+            }
+        }
+
+        this.nodes = 0;
+        this.maxNodes = limits.getNodes() > 0 ? limits.getNodes() : Long.MAX_VALUE;
+        this.deadline = limits.getMillis() > 0
+                ? System.nanoTime() + limits.getMillis() * 1_000_000L : Long.MAX_VALUE;
+        this.aborted = false;
+
+        long key = Zobrist.hash(game);
+        search(root, key, true, INFINITY - 1, INFINITY - 1);
+
+        int phi = phi(key, true);
+        int delta = delta(key, true);
+        if (phi == 0) {
+            return new Result(Outcome.WIN, winningMove(root, key), nodes);
+        }
+        if (delta == 0) {
+            return new Result(Outcome.NO_WIN, null, nodes);
+        }
+        return new Result(Outcome.UNKNOWN, null, nodes);
+    }
+
+    /**
+     * Removes all entries from the table.
+     */
+    public void clear() {
+        Arrays.fill(keys, 0);
+    }
+
+    /**
+     * Expands a position until its numbers reach the thresholds. The numbers
+     * are seen from the player to move: phi is the proof number of a win for
+     * that player, delta its disproof number.
+     */
+    private void search(LineKernel kernel, long key, boolean attacker, int thresholdPhi, int thresholdDelta) {
+        if (++nodes >= maxNodes
+                || (nodes % CHECK_INTERVAL == 0 && System.nanoTime() >= deadline)) {
+            aborted = true;
+        }
+        if (aborted) {
+            return;
+        }
+
+        int[] moves = SearchStrategy.generate(kernel);
+        LineKernel[] children = new LineKernel[moves.length];
+        long[] childKeys = new long[moves.length];
+        int[] childPhis = new int[moves.length];
+        int[] childDeltas = new int[moves.length];
+        for (int i = 0; i < moves.length; i++) {
+            children[i] = child(kernel, moves[i]);
+            childKeys[i] = childKey(kernel, key, moves[i]);
+            int terminal = terminal(children[i], !attacker);
+            if (terminal >= 0) {
+                // settled children are never searched, so their numbers stay final
+                childPhis[i] = terminal == 1 ? 0 : INFINITY;
+                childDeltas[i] = terminal == 1 ? INFINITY : 0;
+            } else {
+                childPhis[i] = phi(childKeys[i], !attacker);
+                childDeltas[i] = delta(childKeys[i], !attacker);
+            }
+        }
+
+        while (true) {
+            // phi is the smallest child delta, delta the sum of the child phis
+            int phi = INFINITY;
+            int delta = 0;
+            int best = 0;
+            int secondDelta = INFINITY;
+            for (int i = 0; i < moves.length; i++) {
+                if (childDeltas[i] < phi) {
+                    secondDelta = phi;
+                    phi = childDeltas[i];
+                    best = i;
+                } else if (childDeltas[i] < secondDelta) {
+                    secondDelta = childDeltas[i];
+                }
+                delta = Math.min(INFINITY, delta + childPhis[i]);
+            }
+
+            if (phi >= thresholdPhi || delta >= thresholdDelta || aborted) {
+                store(key, attacker, phi, delta);
+                return;
+            }
+
+            int childThresholdPhi = Math.min(INFINITY - 1, thresholdDelta - delta + childPhis[best]);
+            int childThresholdDelta = Math.min(thresholdPhi, secondDelta + 1);
+            search(children[best], childKeys[best], !attacker, childThresholdPhi, childThresholdDelta);
+            childPhis[best] = phi(childKeys[best], !attacker);
+            childDeltas[best] = delta(childKeys[best], !attacker);
+        }
+    }
+
+    /**
+     * Returns the move of a proven root whose child is disproven for the opponent.
+     */
+    private Move winningMove(LineKernel root, long key) {
+        for (int move : SearchStrategy.generate(root)) {
+            LineKernel child = child(root, move);
+            int terminal = terminal(child, false);
+            // the defender loses at once, or its proof failed
+            if (terminal == 0 || (terminal < 0 && delta(childKey(root, key, move), false) == 0)) {
+                return SearchStrategy.toMove(root, move);
+            }
+        }
+        return null;
+    }
+
+    private static LineKernel child(LineKernel kernel, int move) {
+        int location = TranspositionTable.location(move);
+        int piece = TranspositionTable.piece(move);
+        return location == -1 ? kernel.after(new Move(piece)) : kernel.after(new Move(piece, location));
+    }
+
+    private static long childKey(LineKernel kernel, long key, int move) {
+        int location = TranspositionTable.location(move);
+        int piece = TranspositionTable.piece(move);
+        if (location == -1) {
+            return key ^ Zobrist.toPlace(piece);
+        }
+        int toPlace = kernel.getToPlace();
+        return key ^ Zobrist.toPlace(toPlace) ^ Zobrist.placed(location, toPlace) ^ Zobrist.toPlace(piece);
+    }
+
+    /**
+     * Returns the stored proof number of an open position, 1 if it is not stored.
+     */
+    private int phi(long key, boolean attacker) {
+        int slot = slot(key, attacker);
+        return keys[slot] == tableKey(key, attacker) ? phis[slot] : 1;
+    }
+
+    /**
+     * Returns the stored disproof number of an open position, 1 if it is not stored.
+     */
+    private int delta(long key, boolean attacker) {
+        int slot = slot(key, attacker);
+        return keys[slot] == tableKey(key, attacker) ? deltas[slot] : 1;
+    }
+
+    /**
+     * Settles a position without search if possible.
+     *
+     * @return 1 if the player to move wins, 0 if not, -1 if the position is open
+     */
+    private static int terminal(LineKernel kernel, boolean attacker) {
+        int toPlace = kernel.getToPlace();
+        if (toPlace < 0) {
+            return -1;
+        }
+        if (kernel.hasWinningSquare(toPlace)) {
+            return 1;
+        }
+        if (kernel.getAvailable() == 0) {
+            // a draw denies the attacker the win, so it counts for the defender
+            return attacker ? 0 : 1;
+        }
+        return -1;
+    }
+
+    private void store(long key, boolean attacker, int phi, int delta) {
+        int slot = slot(key, attacker);
+        keys[slot] = tableKey(key, attacker);
+        phis[slot] = phi;
+        deltas[slot] = delta;
+    }
+
+    private static long tableKey(long key, boolean attacker) {
+        // 0 marks an empty slot, so a key of 0 is stored as 1
+        long tableKey = attacker ? key ^ ATTACKER_KEY : key;
+        return tableKey == 0 ? 1 : tableKey;
+    }
+
+    private int slot(long key, boolean attacker) {
+        return (int) (tableKey(key, attacker) & mask);
+    }
+}
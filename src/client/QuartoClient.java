@@ -3,6 +3,7 @@ package client;
 import protocol.Protocol;
 import java.io.*;
 import java.net.Socket;
+import java.util.concurrent.ThreadFactory;
 
 /**
  * Network client for communicating with the Quarto server.
@@ -16,11 +17,34 @@ public class QuartoClient {
     private BufferedWriter out;
     private GameListener listener;
     private volatile boolean running = false;
+    private final ThreadFactory threadFactory;
 
     /*@
       private invariant running ==> socket != null;
+      private invariant threadFactory != null;
     @*/
 
+    /**
+     * Creates a client whose listener runs on a dedicated platform thread.
+     */
+    public QuartoClient() {
+        this(task -> new Thread(task, "QuartoClient-Listener"));
+    }
+
+    /**
+     * Creates a client whose listener thread is created by the given factory.
+     * Headless bots pass a virtual-thread factory so that thousands of
+     * connections can be served by a handful of carrier threads.
+     *
+     * @param threadFactory factory for the listener thread
+     */
+    /*@
+      requires threadFactory != null;
+    @*/
+    public QuartoClient(ThreadFactory threadFactory) {
+        this.threadFactory = threadFactory;
+    }
+
     /**
      * Callback interface implemented by the TUI.
      * Used to notify the UI about server events.
@@ -68,6 +92,17 @@ public class QuartoClient {
          * @param text message text
          */
         void onChat(String sender, String text);
+
+        /**
+         * Called before {@link #onNewGame} and {@link #onOpponentMove} when the
+         * server enforces a time control (CLOCK extension). The values refer to
+         * the player who has to move next.
+         *
+         * @param moveMillis time available for the next move in milliseconds
+         * @param gameMillis remaining game budget in milliseconds, 0 if only moves are limited
+         */
+        default void onClock(long moveMillis, long gameMillis) {
+        }
     }
 
     /**
@@ -90,7 +125,7 @@ public class QuartoClient {
         this.listener = listener;
         this.running = true;
 
-        new Thread(this::listen, "QuartoClient-Listener").start();
+        threadFactory.newThread(this::listen).start();
 
         if (listener != null) {
             listener.onConnected();
@@ -116,15 +151,30 @@ public class QuartoClient {
                     case Protocol.NEWGAME -> {
                         String p1 = parts.length > 1 ? parts[1] : "";
                         String p2 = parts.length > 2 ? parts[2] : "";
+                        if (parts.length == 5) {
+                            try {
+                                long perMove = Long.parseLong(parts[3]);
+                                long perGame = Long.parseLong(parts[4]);
+                                long first = perMove == 0 ? perGame : (perGame == 0 ? perMove : Math.min(perMove, perGame));
+                                listener.onClock(first, perGame);
+                            } catch (NumberFormatException ignored) {
+                                // time control is optional, the game itself is still valid
+                            }
+                        }
                         listener.onNewGame(p1, p2);
                     }
 
                     case Protocol.MOVE -> {
                         try {
-                            if (parts.length == 2) {
+                            // with the CLOCK extension, two time fields follow the move
+                            int fields = parts.length >= 4 ? parts.length - 2 : parts.length;
+                            if (fields != parts.length) {
+                                listener.onClock(Long.parseLong(parts[fields]), Long.parseLong(parts[fields + 1]));
+                            }
+                            if (fields == 2) {
                                 int piece = Integer.parseInt(parts[1]);
                                 listener.onOpponentMove(-1, piece);
-                            } else if (parts.length == 3) {
+                            } else if (fields == 3) {
                                 int loc = Integer.parseInt(parts[1]);
                                 int piece = Integer.parseInt(parts[2]);
                                 listener.onOpponentMove(loc, piece);
@@ -139,7 +189,9 @@ public class QuartoClient {
                         sb.append("\n SERVER RANKINGS \n");
                         sb.append("---------------------\n");
 
-                        if (parts.length > 1) {
+                        if (parts.length == 4 && parts[1].equals(Protocol.ME)) {
+                            sb.append(String.format("Your position: %s (MMR %s)\n", parts[2], parts[3]));
+                        } else if (parts.length > 1) {
                             for (int i = 1; i < parts.length; i += 2) {
                                 String name = parts[i];
                                 String score = (i + 1 < parts.length) ? parts[i + 1] : "0";
@@ -166,6 +218,19 @@ public class QuartoClient {
                         }
                     }
 
+                    case Protocol.WHISPER -> {
+                        if (parts.length > 2) {
+                            listener.onChat(parts[1] + " (whisper)", parts[2]);
+                        }
+                    }
+
+                    case Protocol.CANNOTWHISPER -> {
+                        String recipient = parts.length > 1 ? parts[1] : "";
+                        listener.onChat("SYSTEM", "Cannot whisper to " + recipient);
+                    }
+
+                    case Protocol.PING -> send(Protocol.PONG);
+
                     case Protocol.ERROR -> {
                         String errorMsg = parts.length > 1 ? parts[1] : "Unknown error";
                         listener.onError(errorMsg);
@@ -183,10 +248,60 @@ public class QuartoClient {
         }
     }
 
+    /**
+     * Requests the top of the server rankings.
+     */
     public void rankList(){
         send(Protocol.RANK);
     }
 
+    /**
+     * Requests one page of the server rankings.
+     *
+     * @param offset number of players to skip from the top
+     * @param count number of players to show
+     */
+    /*@
+      requires offset >= 0 && count >= 0;
+    @*/
+    public void rankList(int offset, int count){
+        send(Protocol.RANK + Protocol.SEPARATOR + offset + Protocol.SEPARATOR + count);
+    }
+
+    /**
+     * Requests this player's own position in the server rankings.
+     */
+    public void myRank(){
+        send(Protocol.RANK + Protocol.SEPARATOR + Protocol.ME);
+    }
+
+    /**
+     * Sends a chat message to all other logged-in players.
+     *
+     * @param text the message
+     */
+    /*@
+      requires text != null;
+      requires running;
+    @*/
+    public void chat(String text) {
+        send(Protocol.CHAT + Protocol.SEPARATOR + text);
+    }
+
+    /**
+     * Sends a private message to a single player.
+     *
+     * @param recipient the username of the recipient
+     * @param text the message
+     */
+    /*@
+      requires recipient != null && text != null;
+      requires running;
+    @*/
+    public void whisper(String recipient, String text) {
+        send(Protocol.WHISPER + Protocol.SEPARATOR + recipient + Protocol.SEPARATOR + text);
+    }
+
     /**
      * Sends a LOGIN command to the server.
      *
@@ -208,8 +323,6 @@ public class QuartoClient {
       requires running;
     @*/
     public void queue() {
-
-        System.out.println("You are added to queue");
         send(Protocol.QUEUE);
     }
 
@@ -15,7 +15,7 @@ import java.util.TreeSet;
 public class QuartoTUI implements QuartoClient.GameListener {
 
     private QuartoClient client;
-    private AbstractClient aiClient;
+    private AIClient aiClient;
     private Game localGame;
     private String username;
     private Scanner scanner;
@@ -38,6 +38,9 @@ public class QuartoTUI implements QuartoClient.GameListener {
     private volatile boolean isMyTurn = false;
     private volatile boolean waitingForServerEcho = false;
 
+    /** Time for the next move announced by the server, or 0 without time control. */
+    private volatile long moveClock = 0;
+
     public static void main(String[] args) {
         new QuartoTUI().start();
     }
@@ -86,7 +89,7 @@ public class QuartoTUI implements QuartoClient.GameListener {
 
         try {
             client.connect(host, port, this);
-            client.send("HELLO~reference");
+            client.send("HELLO~reference~" + Protocol.CLOCK);
             client.login(username);
 
             if (isAiMode) {
@@ -114,9 +117,29 @@ public class QuartoTUI implements QuartoClient.GameListener {
         System.out.println("Select AI Strategy:");
         System.out.println("1. Naive (Random)");
         System.out.println("2. Smart (Minimax/Heuristic)");
+        System.out.println("3. Search (Alpha-Beta, Lazy SMP)");
         System.out.print("> ");
         String choice = scanner.nextLine();
 
+        if (choice.equals("3")) {
+            int threads = Runtime.getRuntime().availableProcessors();
+            System.out.print("Search threads (Enter for " + threads + "): ");
+            try {
+                String input = scanner.nextLine();
+                if (!input.isBlank()) threads = Math.max(1, Integer.parseInt(input.trim()));
+            } catch (Exception ignored) {}
+            // Nodes give the same moves on every machine, time adapts to it
+            SearchLimits limits = SearchLimits.ofTime(1000);
+            System.out.print("Node budget per move (Enter for 1 second per move): ");
+            try {
+                String input = scanner.nextLine();
+                if (!input.isBlank()) limits = SearchLimits.ofNodes(Math.max(1, Long.parseLong(input.trim())));
+            } catch (Exception ignored) {}
+            aiClient = new AIClient(username, threads, limits);
+            System.out.println("✅ AI Configured: Search on " + threads + " thread(s), " + limits + " per move");
+            return;
+        }
+
         BotStrategy strategy;
         if (choice.equals("2")) strategy = new SmartStrategy();
         else strategy = new NaiveStrategy();
@@ -132,7 +155,7 @@ public class QuartoTUI implements QuartoClient.GameListener {
      */
     private void mainInputLoop() {
         System.out.println("\n--- MAIN MENU ---");
-        System.out.println("Commands: queue | rank | quit ");
+        System.out.println("Commands: queue | rank [me | <offset> <count>] | chat <text> | whisper <user> <text> | quit ");
 
         while (scanner.hasNextLine()) {
             String line = scanner.nextLine().trim();
@@ -146,9 +169,14 @@ public class QuartoTUI implements QuartoClient.GameListener {
 
             String cmd = line.split(" ")[0].toLowerCase();
             switch (cmd) {
-                case "queue": client.queue(); break;
+                case "queue":
+                    client.queue();
+                    System.out.println("You are added to queue");
+                    break;
                 case "list": client.listPlayers(); break;
-                case "rank": client.rankList(); break;
+                case "rank": handleRankCommand(line); break;
+                case "chat":
+                case "whisper": handleChatCommand(line); break;
                 case "quit":
                     client.close();
                     System.exit(0);
@@ -166,6 +194,47 @@ public class QuartoTUI implements QuartoClient.GameListener {
         }
     }
 
+    /**
+     * Handles the rank command: {@code rank}, {@code rank me} or {@code rank <offset> <count>}.
+     *
+     * @param line raw input line
+     */
+    private void handleRankCommand(String line) {
+        String[] parts = line.split("\\s+");
+        if (parts.length == 2 && parts[1].equalsIgnoreCase("me")) {
+            client.myRank();
+            return;
+        }
+        if (parts.length == 3) {
+            try {
+                client.rankList(Integer.parseInt(parts[1]), Integer.parseInt(parts[2]));
+                return;
+            } catch (NumberFormatException e) {
+                System.out.println("❌ Format: rank | rank me | rank <offset> <count>");
+                return;
+            }
+        }
+        client.rankList();
+    }
+
+    /**
+     * Handles the chat commands: {@code chat <text>} and {@code whisper <user> <text>}.
+     * The protocol separator cannot be part of a message and is replaced.
+     *
+     * @param line raw input line
+     */
+    private void handleChatCommand(String line) {
+        String clean = line.replace(Protocol.SEPARATOR, "-");
+        String[] parts = clean.split("\\s+", 3);
+        if (parts[0].equalsIgnoreCase("chat") && parts.length >= 2) {
+            client.chat(clean.substring(parts[0].length()).trim());
+        } else if (parts[0].equalsIgnoreCase("whisper") && parts.length == 3) {
+            client.whisper(parts[1], parts[2]);
+        } else {
+            System.out.println("❌ Format: chat <text> | whisper <user> <text>");
+        }
+    }
+
     /**
      * Parses and validates move input from a human player.
      *
@@ -263,6 +332,7 @@ public class QuartoTUI implements QuartoClient.GameListener {
                 makeAiMove();
             } else {
                 System.out.println("👉 YOU START! Pick a piece to give.");
+                printClock();
                 System.out.println("✍️  Enter: <PIECE_TO_GIVE>");
             }
         } else {
@@ -314,6 +384,7 @@ public class QuartoTUI implements QuartoClient.GameListener {
 
                     if (!localGame.isGameOver()) {
                         System.out.println("✋ YOU HAVE: [" + pieceInHand + "]");
+                        printClock();
                         System.out.println("✍️  Enter: <LOCATION> <PIECE_TO_GIVE>");
                     }
                 }
@@ -328,6 +399,20 @@ public class QuartoTUI implements QuartoClient.GameListener {
         }
     }
 
+    @Override
+    public void onClock(long moveMillis, long gameMillis) {
+        moveClock = moveMillis;
+    }
+
+    /**
+     * Prints the time left for the current move if the server enforces a time control.
+     */
+    private void printClock() {
+        if (moveClock > 0) {
+            System.out.printf("⏱  You have %.1f s for this move.%n", moveClock / 1000.0);
+        }
+    }
+
     /**
      * Triggers AI move calculation and submission.
      */
@@ -341,6 +426,7 @@ public class QuartoTUI implements QuartoClient.GameListener {
 
         new Thread(() -> {
             try {
+                long turnStart = System.nanoTime();
                 // Small thinking delay
                 Thread.sleep(100);
 
@@ -350,7 +436,11 @@ public class QuartoTUI implements QuartoClient.GameListener {
                 if (waitingForServerEcho) return;
                 if (localGame == null) return;
 
-                Move move = aiClient.determineMove(localGame);
+                // budget against what is left of the server's clock for this move
+                long clock = moveClock;
+                long left = clock > 0
+                        ? Math.max(1, clock - (System.nanoTime() - turnStart) / 1_000_000) : 0;
+                Move move = aiClient.determineMove(localGame, left);
                 if (move == null) return;
 
                 client.sendMove(move.getLocation(), move.getNextPiece());
@@ -384,6 +474,7 @@ public class QuartoTUI implements QuartoClient.GameListener {
         localGame = null;
 
         if (isAiMode) {
+            aiClient.getStats().print("📊 " + username);
             try { Thread.sleep(1000); } catch (Exception ignored) {}
             System.out.println("🤖 Bot re-queueing...");
             client.queue();
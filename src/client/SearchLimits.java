@@ -0,0 +1,133 @@
+package client;
+
+/**
+ * Limits on the effort a strategy spends on one move.
+ * <p>
+ * A search can be limited by wall-clock time, by the number of positions
+ * it visits, or by both, whichever runs out first. A time limit adapts to
+ * the machine but makes the result depend on its speed and load. A node
+ * limit costs the same work on every machine, so a search limited only by
+ * nodes returns the same move for the same position, wherever it runs.
+ * <p>
+ * Limits are immutable; a limit of 0 means unlimited.
+ */
+public final class SearchLimits {
+
+    /** No limits at all. */
+    public static final SearchLimits NONE = new SearchLimits(0, 0);
+
+    private final long millis;
+    private final long nodes;
+
+    /*@
+      private invariant millis >= 0 && nodes >= 0;
+    @*/
+
+    /**
+     * Creates limits on time and nodes.
+     *
+     * @param millis most time per move in milliseconds, 0 for no time limit
+     * @param nodes  most positions visited per move, 0 for no node limit
+     */
+    /*@
+      requires millis >= 0 && nodes >= 0;
+    @*/
+    public SearchLimits(long millis, long nodes) {
+        this.millis = millis;
+        this.nodes = nodes;
+    }
+
+    /**
+     * Creates a time limit.
+     *
+     * @param millis most time per move in milliseconds
+     * @return the limits
+     */
+    /*@
+      requires millis > 0;
+    @*/
+    public static SearchLimits ofTime(long millis) {
+        return new SearchLimits(millis, 0);
+    }
+
+    /**
+     * Creates a node limit.
+     *
+     * @param nodes most positions visited per move
+     * @return the limits
+     */
+    /*@
+      requires nodes > 0;
+    @*/
+    public static SearchLimits ofNodes(long nodes) {
+        return new SearchLimits(0, nodes);
+    }
+
+    /**
+     * Returns the time limit.
+     *
+     * @return milliseconds per move, 0 if unlimited
+     */
+    public long getMillis() {
+        return millis;
+    }
+
+    /**
+     * Returns the node limit.
+     *
+     * @return positions per move, 0 if unlimited
+     */
+    public long getNodes() {
+        return nodes;
+    }
+
+    /**
+     * Checks whether a search under these limits ends on its own.
+     *
+     * @return true if time or nodes are limited
+     */
+    public boolean isBounded() {
+        return millis > 0 || nodes > 0;
+    }
+
+    /**
+     * Checks whether the limits leave the result independent of the machine:
+     * nodes are limited and time is not.
+     *
+     * @return true for a pure node limit
+     */
+    public boolean isDeterministic() {
+        return millis == 0 && nodes > 0;
+    }
+
+    /**
+     * Combines two limits; the result ends the search when either would.
+     *
+     * @param other further limits
+     * @return the tighter of both limits for time and for nodes
+     */
+    /*@
+      requires other != null;
+    @*/
+    public SearchLimits and(SearchLimits other) {
+        return new SearchLimits(tighter(millis, other.millis), tighter(nodes, other.nodes));
+    }
+
+    private static long tighter(long a, long b) {
+        if (a == 0) {
+            return b;
+        }
+        return b == 0 ? a : Math.min(a, b);
+    }
+
+    @Override
+    public String toString() {
+        if (!isBounded()) {
+            return "unlimited";
+        }
+        if (nodes == 0) {
+            return millis + " ms";
+        }
+        return millis == 0 ? nodes + " nodes" : millis + " ms or " + nodes + " nodes";
+    }
+}
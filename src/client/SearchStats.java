@@ -0,0 +1,345 @@
+package client;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+
+/**
+ * Statistics about the moves of a strategy, for tuning and watching engines.
+ * <p>
+ * A strategy records every move it is asked for through
+ * {@link BotStrategy#determineMove(gameLogic.Game, SearchLimits, SearchStats)}.
+ * Every strategy records the time it took; a searching strategy also records
+ * the nodes it visited, the depth it completed, how often its transposition
+ * table knew the position, how often a node was cut off, and how long each
+ * iteration of its deepening took.
+ * <p>
+ * One instance collects the moves of one bot, or of many bots sharing it.
+ * All methods are thread-safe; a strategy records each move in a few calls
+ * once it has chosen the move, so collecting costs nothing during the search.
+ */
+public class SearchStats {
+
+    /** Deepest iteration whose time is recorded; a game has at most 17 plies. */
+    public static final int MAX_DEPTH = 17;
+
+    /** First line of the files written by {@link #appendCsv(Path, String)}. */
+    public static final String CSV_HEADER = csvHeader();
+
+    private long moves;
+    private long nanos;
+    private long nodes;
+    private long searches;
+    private long depths;
+    private int maxDepth;
+    private long tableProbes;
+    private long tableHits;
+    private long cutoffs;
+    private long expanded;
+    private final long[] iterationNanos = new long[MAX_DEPTH + 1];
+    private final long[] iterations = new long[MAX_DEPTH + 1];
+
+    /*@
+      private invariant moves >= 0 && nanos >= 0 && nodes >= 0;
+      private invariant tableHits <= tableProbes && cutoffs <= expanded;
+    @*/
+
+    /**
+     * Records a move and the time it took.
+     *
+     * @param nanos time in nanoseconds
+     */
+    /*@
+      requires nanos >= 0;
+    @*/
+    public synchronized void recordMove(long nanos) {
+        this.moves++;
+        this.nanos += nanos;
+    }
+
+    /**
+     * Records the search of a move: visited nodes and the deepest completed iteration.
+     *
+     * @param nodes nodes visited by all threads
+     * @param depth depth of the last completed iteration, 0 if none completed
+     */
+    /*@
+      requires nodes >= 0 && depth >= 0;
+    @*/
+    public synchronized void recordSearch(long nodes, int depth) {
+        this.nodes += nodes;
+        this.searches++;
+        this.depths += depth;
+        this.maxDepth = Math.max(maxDepth, depth);
+    }
+
+    /**
+     * Records the transposition table lookups of a search.
+     *
+     * @param probes number of lookups
+     * @param hits   number of lookups that found the position
+     */
+    /*@
+      requires 0 <= hits && hits <= probes;
+    @*/
+    public synchronized void recordTable(long probes, long hits) {
+        this.tableProbes += probes;
+        this.tableHits += hits;
+    }
+
+    /**
+     * Records the beta cutoffs of a search.
+     *
+     * @param cutoffs  number of nodes whose moves were cut off
+     * @param expanded number of nodes whose moves were searched
+     */
+    /*@
+      requires 0 <= cutoffs && cutoffs <= expanded;
+    @*/
+    public synchronized void recordCutoffs(long cutoffs, long expanded) {
+        this.cutoffs += cutoffs;
+        this.expanded += expanded;
+    }
+
+    /**
+     * Records the time of one completed iteration of iterative deepening.
+     *
+     * @param depth depth of the iteration
+     * @param nanos time in nanoseconds
+     */
+    /*@
+      requires 0 < depth && depth <= MAX_DEPTH && nanos >= 0;
+    @*/
+    public synchronized void recordIteration(int depth, long nanos) {
+        this.iterations[depth]++;
+        this.iterationNanos[depth] += nanos;
+    }
+
+    /**
+     * Adds everything recorded by another instance to this one.
+     *
+     * @param other the statistics to add
+     */
+    /*@
+      requires other != null && other != this;
+    @*/
+    public void merge(SearchStats other) {
+        SearchStats copy = other.copy();
+        synchronized (this) {
+            moves += copy.moves;
+            nanos += copy.nanos;
+            nodes += copy.nodes;
+            searches += copy.searches;
+            depths += copy.depths;
+            maxDepth = Math.max(maxDepth, copy.maxDepth);
+            tableProbes += copy.tableProbes;
+            tableHits += copy.tableHits;
+            cutoffs += copy.cutoffs;
+            expanded += copy.expanded;
+            for (int depth = 1; depth <= MAX_DEPTH; depth++) {
+                iterations[depth] += copy.iterations[depth];
+                iterationNanos[depth] += copy.iterationNanos[depth];
+            }
+        }
+    }
+
+    /**
+     * Returns a consistent snapshot of this instance.
+     *
+     * @return an independent copy
+     */
+    public synchronized SearchStats copy() {
+        SearchStats copy = new SearchStats();
+        copy.moves = moves;
+        copy.nanos = nanos;
+        copy.nodes = nodes;
+        copy.searches = searches;
+        copy.depths = depths;
+        copy.maxDepth = maxDepth;
+        copy.tableProbes = tableProbes;
+        copy.tableHits = tableHits;
+        copy.cutoffs = cutoffs;
+        copy.expanded = expanded;
+        System.arraycopy(iterations, 0, copy.iterations, 0, iterations.length);
+        System.arraycopy(iterationNanos, 0, copy.iterationNanos, 0, iterationNanos.length);
+        return copy;
+    }
+
+    /**
+     * Returns the number of recorded moves.
+     *
+     * @return move count
+     */
+    public synchronized long getMoves() {
+        return moves;
+    }
+
+    /**
+     * Returns the time spent on all moves.
+     *
+     * @return seconds
+     */
+    public synchronized double getSeconds() {
+        return nanos / 1e9;
+    }
+
+    /**
+     * Returns the average time per move.
+     *
+     * @return milliseconds, 0 without moves
+     */
+    public synchronized double getMillisPerMove() {
+        return moves == 0 ? 0 : nanos / 1e6 / moves;
+    }
+
+    /**
+     * Returns the number of nodes visited by all searches.
+     *
+     * @return node count
+     */
+    public synchronized long getNodes() {
+        return nodes;
+    }
+
+    /**
+     * Returns the search speed over the time of all moves.
+     *
+     * @return nodes per second, 0 without time
+     */
+    public synchronized double getNodesPerSecond() {
+        return nanos == 0 ? 0 : nodes * 1e9 / nanos;
+    }
+
+    /**
+     * Returns the average depth of the last completed iteration of each search.
+     *
+     * @return plies, 0 without searches
+     */
+    public synchronized double getAverageDepth() {
+        return searches == 0 ? 0 : (double) depths / searches;
+    }
+
+    /**
+     * Returns the deepest iteration any search completed.
+     *
+     * @return plies
+     */
+    public synchronized int getMaxDepth() {
+        return maxDepth;
+    }
+
+    /**
+     * Returns the share of transposition table lookups that found the position.
+     *
+     * @return hit rate between 0 and 1
+     */
+    public synchronized double getTableHitRate() {
+        return tableProbes == 0 ? 0 : (double) tableHits / tableProbes;
+    }
+
+    /**
+     * Returns the share of searched nodes that ended in a beta cutoff.
+     *
+     * @return cutoff rate between 0 and 1
+     */
+    public synchronized double getCutoffRate() {
+        return expanded == 0 ? 0 : (double) cutoffs / expanded;
+    }
+
+    /**
+     * Returns the average time of the completed iterations of the given depth.
+     *
+     * @param depth depth of the iteration
+     * @return milliseconds, 0 if no iteration of that depth completed
+     */
+    /*@
+      requires 0 < depth && depth <= MAX_DEPTH;
+    @*/
+    public synchronized double getIterationMillis(int depth) {
+        return iterations[depth] == 0 ? 0 : iterationNanos[depth] / 1e6 / iterations[depth];
+    }
+
+    /**
+     * Prints a summary under the given name.
+     *
+     * @param name name of the bot or strategy
+     */
+    public void print(String name) {
+        SearchStats s = copy();
+        System.out.printf("  %s: %d moves, %.1f ms/move%n", name, s.moves, s.getMillisPerMove());
+        if (s.searches == 0) {
+            return;
+        }
+        System.out.printf("    %,d nodes, %,.0f nodes/s, depth %.1f avg / %d max, TT hits %.1f%%, cutoffs %.1f%%%n",
+                          s.nodes, s.getNodesPerSecond(), s.getAverageDepth(), s.maxDepth,
+                          100 * s.getTableHitRate(), 100 * s.getCutoffRate());
+        StringBuilder line = new StringBuilder("    ms per iteration:");
+        for (int depth = 1; depth <= MAX_DEPTH; depth++) {
+            if (s.iterations[depth] > 0) {
+                line.append(String.format(Locale.ROOT, " %d:%.2f", depth, s.getIterationMillis(depth)));
+            }
+        }
+        System.out.println(line);
+    }
+
+    /**
+     * Returns one CSV line with the given name in front, matching {@link #CSV_HEADER}.
+     *
+     * @param name name of the bot or strategy; must not contain commas
+     * @return the line, without line separator
+     */
+    public String toCsv(String name) {
+        SearchStats s = copy();
+        StringBuilder line = new StringBuilder(name);
+        line.append(',').append(s.moves)
+            .append(',').append(String.format(Locale.ROOT, "%.3f", s.getSeconds()))
+            .append(',').append(s.nodes)
+            .append(',').append(String.format(Locale.ROOT, "%.0f", s.getNodesPerSecond()))
+            .append(',').append(String.format(Locale.ROOT, "%.2f", s.getAverageDepth()))
+            .append(',').append(s.maxDepth)
+            .append(',').append(String.format(Locale.ROOT, "%.4f", s.getTableHitRate()))
+            .append(',').append(String.format(Locale.ROOT, "%.4f", s.getCutoffRate()));
+        for (int depth = 1; depth <= MAX_DEPTH; depth++) {
+            line.append(',').append(String.format(Locale.ROOT, "%.3f", s.getIterationMillis(depth)));
+        }
+        return line.toString();
+    }
+
+    /**
+     * Appends a CSV line to a file, writing {@link #CSV_HEADER} first if the file is new,
+     * so repeated runs collect their results in one file.
+     *
+     * @param file the CSV file
+     * @param name name of the bot or strategy; must not contain commas
+     * @throws UncheckedIOException if the file cannot be written
+     */
+    /*@
+      requires file != null && name != null;
+    @*/
+    public void appendCsv(Path file, String name) {
+        boolean isNew = !Files.exists(file);
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND))) {
+            if (isNew) {
+                out.println(CSV_HEADER);
+            }
+            out.println(toCsv(name));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static String csvHeader() {
+        StringBuilder header = new StringBuilder(
+                "name,moves,seconds,nodes,nodes_per_second,avg_depth,max_depth,tt_hit_rate,cutoff_rate");
+        for (int depth = 1; depth <= MAX_DEPTH; depth++) {
+            header.append(",iteration_ms_").append(depth);
+        }
+        return header.toString();
+    }
+}
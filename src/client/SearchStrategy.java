@@ -0,0 +1,700 @@
+package client;
+
+import gameLogic.Game;
+import gameLogic.Move;
+
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Iterative-deepening alpha-beta search with an optional Lazy SMP mode.
+ * <p>
+ * A ply places the piece the player was given and hands over the next
+ * one; the opening ply only hands over a piece. Positions are evaluated
+ * with {@link LineKernel} and remembered in a {@link TranspositionTable}
+ * under their {@link Zobrist} key.
+ * <p>
+ * With more than one thread, helper threads run the same iterative
+ * deepening as the calling thread, each with a slightly perturbed move
+ * order and every other helper one ply deeper. They share nothing but the
+ * transposition table, through which their results speed up the main
+ * search. When the deadline passes, or the main search has solved the
+ * position, the helpers are stopped and the move of the main search's last
+ * completed iteration is returned. No split points or locks are needed, so
+ * the mode is robust and scales with the number of cores as far as the
+ * shared table allows.
+ * <p>
+ * A search ends when its {@link SearchLimits} run out; nodes are counted
+ * over all threads. A single-threaded search limited only by nodes is
+ * reproducible: it starts from an empty table of its own thread instead of
+ * the shared one, so its move depends on nothing but the position and the
+ * node limit, whatever the machine, its load or earlier searches.
+ * <p>
+ * One instance may be used by several bots at the same time; every call of
+ * {@link #determineMove(Game)} runs its own search.
+ */
+public class SearchStrategy implements BotStrategy {
+
+    /** Score of a won position, minus the number of plies until the win. */
+    static final int WIN = 1000;
+
+    /** Scores above this value are wins found by the search. */
+    private static final int WIN_BOUND = WIN - 100;
+
+    /** Default size of the table shared by strategies that do not bring their own. */
+    private static final long DEFAULT_TABLE_BYTES = 64L * 1024 * 1024;
+
+    /** Number of nodes between two checks of the clock. */
+    private static final int CHECK_INTERVAL = 1024;
+
+    /** Size of the private table of a reproducible search. */
+    private static final long PRIVATE_TABLE_BYTES = 4L * 1024 * 1024;
+
+    /** Table shared by all instances created without an explicit table. */
+    private static TranspositionTable sharedTable;
+
+    /** Private table per thread for reproducible searches; freed with the thread. */
+    private static final ThreadLocal<TranspositionTable> PRIVATE_TABLE =
+            ThreadLocal.withInitial(() -> TranspositionTable.automatic(PRIVATE_TABLE_BYTES));
+
+    private final int threads;
+    private final SearchLimits limits;
+    private final TranspositionTable table;
+
+    /** Whether moves are ordered with {@link MoveOrdering}; otherwise only the table move comes first. */
+    private final boolean ordered;
+
+    /** Runs the helper searches; null with a single thread. */
+    private final ExecutorService helpers;
+
+    /*@
+      private invariant threads > 0 && limits.isBounded() && table != null;
+    @*/
+
+    /**
+     * Creates a search that uses the process-wide shared transposition table.
+     *
+     * @param threads    number of threads per search, including the calling thread
+     * @param moveMillis time per move in milliseconds
+     */
+    /*@
+      requires threads > 0 && moveMillis > 0;
+    @*/
+    public SearchStrategy(int threads, long moveMillis) {
+        this(threads, SearchLimits.ofTime(moveMillis));
+    }
+
+    /**
+     * Creates a search with the given limits that uses the process-wide
+     * shared transposition table.
+     *
+     * @param threads number of threads per search, including the calling thread
+     * @param limits  time and node limits per move
+     */
+    /*@
+      requires threads > 0 && limits != null && limits.isBounded();
+    @*/
+    public SearchStrategy(int threads, SearchLimits limits) {
+        this(threads, limits, sharedTable());
+    }
+
+    /**
+     * Creates a search that uses the given transposition table.
+     *
+     * @param threads    number of threads per search, including the calling thread
+     * @param moveMillis time per move in milliseconds
+     * @param table      table shared by all threads of the search
+     */
+    /*@
+      requires threads > 0 && moveMillis > 0 && table != null;
+    @*/
+    public SearchStrategy(int threads, long moveMillis, TranspositionTable table) {
+        this(threads, SearchLimits.ofTime(moveMillis), table);
+    }
+
+    /**
+     * Creates a search with the given limits that uses the given transposition table.
+     * Reproducible searches use a private table instead.
+     *
+     * @param threads number of threads per search, including the calling thread
+     * @param limits  time and node limits per move
+     * @param table   table shared by all threads of the search
+     */
+    /*@
+      requires threads > 0 && limits != null && limits.isBounded() && table != null;
+    @*/
+    public SearchStrategy(int threads, SearchLimits limits, TranspositionTable table) {
+        this(threads, limits, table, true);
+    }
+
+    /**
+     * Creates a search that may leave moves unordered, to measure what the ordering saves.
+     */
+    /*@
+      requires threads > 0 && limits != null && limits.isBounded() && table != null;
+    @*/
+    SearchStrategy(int threads, SearchLimits limits, TranspositionTable table, boolean ordered) {
+        this.threads = threads;
+        this.limits = limits;
+        this.table = table;
+        this.ordered = ordered;
+        if (threads > 1) {
+            AtomicInteger number = new AtomicInteger();
+            this.helpers = Executors.newFixedThreadPool(threads - 1, task -> {
+                Thread thread = new Thread(task, "Search-Helper-" + number.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            });
+        } else {
+            this.helpers = null;
+        }
+    }
+
+    /**
+     * Returns the transposition table shared by all instances created
+     * without their own table, creating it on first use.
+     *
+     * @return the shared table
+     */
+    public static synchronized TranspositionTable sharedTable() {
+        if (sharedTable == null) {
+            sharedTable = new TranspositionTable(DEFAULT_TABLE_BYTES);
+        }
+        return sharedTable;
+    }
+
+    @Override
+    public String getName() {
+        return threads > 1 ? "Search-" + threads : "Search";
+    }
+
+    /**
+     * Returns the number of threads per search.
+     *
+     * @return thread count, including the calling thread
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Returns the limits of every search.
+     *
+     * @return time and node limits per move
+     */
+    public SearchLimits getLimits() {
+        return limits;
+    }
+
+    /**
+     * Searches the position until the time per move is used up or the
+     * position is solved.
+     * A winning placement is returned as a Quarto claim (16) and the last
+     * placement as a claim of 16 or 17, like the other strategies do.
+     *
+     * @param game the current game
+     * @return the best move found
+     */
+    /*@
+      requires game != null && !game.isGameOver();
+      ensures \result != null;
+    @*/
+    @Override
+    public Move determineMove(Game game) {
+        return determineMove(game, SearchLimits.NONE);
+    }
+
+    /**
+     * Searches the position until this strategy's limits or the given ones
+     * run out, or the position is solved.
+     *
+     * @param game   the current game
+     * @param limits further limits for this move
+     * @return the best move found
+     */
+    /*@
+      requires game != null && !game.isGameOver() && limits != null;
+      ensures \result != null;
+    @*/
+    @Override
+    public Move determineMove(Game game, SearchLimits limits) {
+        return search(game, limits, null);
+    }
+
+    /**
+     * Searches the position like {@link #determineMove(Game, SearchLimits)}
+     * and records the time, the nodes of all threads, the depth of the main
+     * search, its table hits and cutoffs, and the time of its iterations.
+     *
+     * @param game   the current game
+     * @param limits further limits for this move
+     * @param stats  the statistics to add this move to
+     * @return the best move found
+     */
+    /*@
+      requires game != null && !game.isGameOver() && limits != null && stats != null;
+      ensures \result != null;
+    @*/
+    @Override
+    public Move determineMove(Game game, SearchLimits limits, SearchStats stats) {
+        return search(game, limits, stats);
+    }
+
+    /**
+     * Runs the search of one move.
+     *
+     * @param stats the statistics to add the move to, or null
+     */
+    private Move search(Game game, SearchLimits limits, SearchStats stats) {
+        long start = System.nanoTime();
+        LineKernel root = LineKernel.of(game);
+        int forced = forcedMove(root);
+        if (forced != TranspositionTable.NO_MOVE) {
+            if (stats != null) {
+                stats.recordMove(System.nanoTime() - start);
+            }
+            return toMove(root, forced);
+        }
+        SearchLimits effective = this.limits.and(limits);
+        TranspositionTable searchTable = table;
+        if (threads == 1 && effective.isDeterministic()) {
+            searchTable = PRIVATE_TABLE.get();
+            searchTable.clear();
+        }
+        long key = Zobrist.hash(game);
+        Control control = new Control(effective, searchTable);
+        searchTable.newSearch();
+
+        CountDownLatch helpersDone = new CountDownLatch(threads - 1);
+        Worker[] workers = new Worker[threads];
+        for (int i = 1; i < threads; i++) {
+            Worker helper = new Worker(i, control);
+            workers[i] = helper;
+            helpers.execute(() -> {
+                try {
+                    helper.iterate(root, key);
+                } finally {
+                    helpersDone.countDown();
+                }
+            });
+        }
+
+        Worker main = new Worker(0, control);
+        workers[0] = main;
+        int best = main.iterate(root, key);
+        control.stopped = true;
+        try {
+            helpersDone.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (stats != null) {
+            record(stats, workers, System.nanoTime() - start);
+        }
+        return toMove(root, best);
+    }
+
+    /**
+     * Adds a finished search to the statistics. Nodes, table lookups and
+     * cutoffs are summed over all threads; depth and iteration times are
+     * those of the main search.
+     */
+    private static void record(SearchStats stats, Worker[] workers, long nanos) {
+        long nodes = 0;
+        long probes = 0;
+        long hits = 0;
+        long cutoffs = 0;
+        long expanded = 0;
+        for (Worker worker : workers) {
+            nodes += worker.nodes;
+            probes += worker.probes;
+            hits += worker.hits;
+            cutoffs += worker.cutoffs;
+            expanded += worker.expanded;
+        }
+        Worker main = workers[0];
+        stats.recordMove(nanos);
+        stats.recordSearch(nodes, main.completedDepth);
+        stats.recordTable(probes, hits);
+        stats.recordCutoffs(cutoffs, expanded);
+        for (int depth = 1; depth <= main.completedDepth; depth++) {
+            if (main.iterationNanos[depth] > 0) {
+                stats.recordIteration(depth, main.iterationNanos[depth]);
+            }
+        }
+    }
+
+    /**
+     * Searches a position on the calling thread to a fixed depth without a
+     * time limit and counts the visited nodes. The table is cleared first,
+     * so the count does not depend on earlier searches.
+     *
+     * @param game  the position
+     * @param depth search depth in plies
+     * @return number of nodes visited
+     */
+    /*@
+      requires game != null && !game.isGameOver() && depth > 0;
+    @*/
+    long countNodes(Game game, int depth) {
+        LineKernel root = LineKernel.of(game);
+        table.clear();
+        table.newSearch();
+        Worker worker = new Worker(0, new Control(SearchLimits.NONE, table));
+        for (int d = 1; d <= Math.min(depth, remainingPlies(root)); d++) {
+            worker.negamax(root, Zobrist.hash(game), d, -WIN - 1, WIN + 1, 0);
+        }
+        return worker.nodes;
+    }
+
+    /**
+     * Returns the move that needs no search: a winning placement or the last placement.
+     *
+     * @return encoded move, or NO_MOVE if the position must be searched
+     */
+    private static int forcedMove(LineKernel root) {
+        int toPlace = root.getToPlace();
+        if (toPlace < 0) {
+            return TranspositionTable.NO_MOVE;
+        }
+        for (int square = 0; square < 16; square++) {
+            if (root.isEmpty(square)
+                    && ((root.winningPieces(square) & 1 << toPlace) != 0 || root.getAvailable() == 0)) {
+                return TranspositionTable.encodeMove(square, 0);
+            }
+        }
+        return TranspositionTable.NO_MOVE;
+    }
+
+    /**
+     * Converts an encoded root move into the move returned to the caller.
+     *
+     * @param root the position the move is played in
+     * @param move the encoded move
+     * @return the move, with a claim for a winning or the last placement
+     */
+    static Move toMove(LineKernel root, int move) {
+        int location = TranspositionTable.location(move);
+        int piece = TranspositionTable.piece(move);
+        if (location == -1) {
+            return new Move(piece);
+        }
+        boolean wins = (root.winningPieces(location) & 1 << root.getToPlace()) != 0;
+        if (wins) {
+            return new Move(16, location);
+        }
+        if (root.getAvailable() == 0) {
+            return new Move(17, location);
+        }
+        return new Move(piece, location);
+    }
+
+    /**
+     * State shared by the threads of one search.
+     */
+    private static final class Control {
+        private final long deadline;
+        private final long maxNodes;
+        private final TranspositionTable table;
+
+        /** Nodes of all threads, added up every {@link #CHECK_INTERVAL} nodes. */
+        private final AtomicLong nodes = new AtomicLong();
+        private volatile boolean stopped = false;
+
+        private Control(SearchLimits limits, TranspositionTable table) {
+            this.deadline = limits.getMillis() > 0
+                    ? System.nanoTime() + limits.getMillis() * 1_000_000L : Long.MAX_VALUE;
+            this.maxNodes = limits.getNodes() > 0 ? limits.getNodes() : Long.MAX_VALUE;
+            this.table = table;
+        }
+    }
+
+    /**
+     * One thread's iterative-deepening search. Worker 0 is the main search.
+     */
+    private final class Worker {
+        private final int id;
+        private final Control control;
+        private final Random random;
+        private final MoveOrdering ordering;
+        private long nodes = 0;
+
+        /** Table lookups, and those that found the position. */
+        private long probes = 0;
+        private long hits = 0;
+
+        /** Nodes whose moves were searched, and those that ended in a beta cutoff. */
+        private long expanded = 0;
+        private long cutoffs = 0;
+
+        /** Deepest completed iteration and the time of each completed iteration. */
+        private int completedDepth = 0;
+        private final long[] iterationNanos = new long[SearchStats.MAX_DEPTH + 1];
+
+        /** Best move of the root found by this worker's last search. */
+        private int rootMove = TranspositionTable.NO_MOVE;
+
+        private Worker(int id, Control control) {
+            this.id = id;
+            this.control = control;
+            this.random = new Random(id);
+            this.ordering = ordered ? new MoveOrdering(16) : null;
+        }
+
+        /**
+         * Deepens the search until it is stopped or the position is solved.
+         *
+         * @return the best move of the last completed iteration (main search only)
+         */
+        private int iterate(LineKernel root, long key) {
+            int plies = remainingPlies(root);
+            int best = firstMove(root);
+            // half of the helpers search one ply ahead of the main search
+            for (int depth = 1 + (id % 2); depth <= plies; depth++) {
+                long start = System.nanoTime();
+                int score = negamax(root, key, depth, -WIN - 1, WIN + 1, 0);
+                if (control.stopped) {
+                    break;
+                }
+                best = rootMove;
+                completedDepth = depth;
+                iterationNanos[depth] = System.nanoTime() - start;
+                if (Math.abs(score) > WIN_BOUND || (id == 0 && System.nanoTime() >= control.deadline)) {
+                    // a proven result does not change with more depth
+                    break;
+                }
+            }
+            return best;
+        }
+
+        /**
+         * Alpha-beta search of the position where the player to move holds {@code kernel.getToPlace()}.
+         *
+         * @return score from the point of view of the player to move
+         */
+        private int negamax(LineKernel kernel, long key, int depth, int alpha, int beta, int ply) {
+            if (++nodes % CHECK_INTERVAL == 0 && !control.stopped
+                    && (control.nodes.addAndGet(CHECK_INTERVAL) >= control.maxNodes
+                        || (id == 0 && System.nanoTime() >= control.deadline))) {
+                control.stopped = true;
+            }
+            if (control.stopped) {
+                return 0;
+            }
+
+            int toPlace = kernel.getToPlace();
+            if (toPlace >= 0) {
+                if (kernel.hasWinningSquare(toPlace)) {
+                    return WIN - ply;
+                }
+                if (kernel.getAvailable() == 0) {
+                    // the last piece does not win, so the full board is a draw
+                    return 0;
+                }
+            }
+            if (depth == 0) {
+                return evaluate(kernel);
+            }
+
+            int alphaStart = alpha;
+            int ttMove = TranspositionTable.NO_MOVE;
+            long data = control.table.probe(key);
+            probes++;
+            if (data != TranspositionTable.MISS) {
+                hits++;
+                ttMove = TranspositionTable.move(data);
+                // the root is always searched, so this worker knows its own best move
+                if (ply > 0 && TranspositionTable.depth(data) >= depth) {
+                    int score = fromTable(TranspositionTable.score(data), ply);
+                    int bound = TranspositionTable.bound(data);
+                    if (bound == TranspositionTable.EXACT
+                            || (bound == TranspositionTable.LOWER && score >= beta)
+                            || (bound == TranspositionTable.UPPER && score <= alpha)) {
+                        return score;
+                    }
+                }
+            }
+
+            int[] moves = generate(kernel);
+            expanded++;
+            int unordered = tableMoveFirst(moves, ttMove);
+            int bestScore = -WIN - 1;
+            int bestMove = moves[0];
+            for (int i = 0; i < moves.length; i++) {
+                if (i == unordered && ordering != null) {
+                    // the table move did not cut off, so the remaining moves are worth sorting
+                    ordering.orderFrom(kernel, moves, i, ply);
+                }
+                int move = moves[i];
+                int location = TranspositionTable.location(move);
+                int piece = TranspositionTable.piece(move);
+                LineKernel child;
+                long childKey;
+                if (location == -1) {
+                    child = kernel.after(new Move(piece));
+                    childKey = key ^ Zobrist.toPlace(piece);
+                } else {
+                    child = kernel.after(new Move(piece, location));
+                    childKey = key ^ Zobrist.toPlace(toPlace) ^ Zobrist.placed(location, toPlace)
+                            ^ Zobrist.toPlace(piece);
+                }
+                int score = -negamax(child, childKey, depth - 1, -beta, -alpha, ply + 1);
+                if (control.stopped) {
+                    return 0;
+                }
+                if (score > bestScore) {
+                    bestScore = score;
+                    bestMove = move;
+                }
+                if (score > alpha) {
+                    alpha = score;
+                }
+                if (alpha >= beta) {
+                    cutoffs++;
+                    if (ordering != null) {
+                        ordering.cutoff(move, ply, depth);
+                    }
+                    break;
+                }
+            }
+
+            int bound = bestScore <= alphaStart ? TranspositionTable.UPPER
+                    : bestScore >= beta ? TranspositionTable.LOWER : TranspositionTable.EXACT;
+            control.table.store(key, bestMove, toTable(bestScore, ply), depth, bound);
+            if (ply == 0) {
+                rootMove = bestMove;
+            }
+            return bestScore;
+        }
+
+        /**
+         * Puts the table move first. Helpers first rotate the moves by a
+         * random offset, so moves of equal rank are searched in a different
+         * order by each thread.
+         *
+         * @return index of the first move after the table move
+         */
+        private int tableMoveFirst(int[] moves, int ttMove) {
+            if (id > 0 && moves.length > 2) {
+                rotate(moves, random.nextInt(moves.length));
+            }
+            if (ttMove == TranspositionTable.NO_MOVE) {
+                return 0;
+            }
+            for (int i = 0; i < moves.length; i++) {
+                if (moves[i] == ttMove) {
+                    System.arraycopy(moves, 0, moves, 1, i);
+                    moves[0] = ttMove;
+                    return 1;
+                }
+            }
+            return 0;
+        }
+
+        /**
+         * Static evaluation of a quiet position for the player to move:
+         * pieces that can be handed over without allowing an immediate win
+         * count for the player, pieces that would lose count against.
+         */
+        private int evaluate(LineKernel kernel) {
+            int threats = kernel.threats();
+            return Integer.bitCount(kernel.getAvailable() & ~threats) - Integer.bitCount(threats);
+        }
+    }
+
+    /**
+     * Generates all moves as encoded moves: placements of the held piece
+     * combined with every piece to hand over, or only the piece at the opening.
+     *
+     * @param kernel the position
+     * @return the encoded moves, in the order of squares and pieces
+     */
+    static int[] generate(LineKernel kernel) {
+        int available = kernel.getAvailable();
+        int pieces = Integer.bitCount(available);
+        if (kernel.getToPlace() < 0) {
+            int[] moves = new int[pieces];
+            int n = 0;
+            for (int rest = available; rest != 0; rest &= rest - 1) {
+                moves[n++] = TranspositionTable.encodeMove(-1, Integer.numberOfTrailingZeros(rest));
+            }
+            return moves;
+        }
+        int empty = 0;
+        for (int square = 0; square < 16; square++) {
+            if (kernel.isEmpty(square)) {
+                empty++;
+            }
+        }
+        int[] moves = new int[empty * pieces];
+        int n = 0;
+        for (int square = 0; square < 16; square++) {
+            if (!kernel.isEmpty(square)) {
+                continue;
+            }
+            for (int rest = available; rest != 0; rest &= rest - 1) {
+                moves[n++] = TranspositionTable.encodeMove(square, Integer.numberOfTrailingZeros(rest));
+            }
+        }
+        return moves;
+    }
+
+    /**
+     * Returns the number of plies until the board is full.
+     */
+    private static int remainingPlies(LineKernel kernel) {
+        return kernel.emptySquares() + (kernel.getToPlace() < 0 ? 1 : 0);
+    }
+
+    /**
+     * Returns a legal move to fall back on before the first iteration completes.
+     */
+    private static int firstMove(LineKernel kernel) {
+        int piece = kernel.getAvailable() == 0 ? 0 : Integer.numberOfTrailingZeros(kernel.getAvailable());
+        if (kernel.getToPlace() < 0) {
+            return TranspositionTable.encodeMove(-1, piece);
+        }
+        int square = 0;
+        while (!kernel.isEmpty(square)) {
+            square++;
+        }
+        return TranspositionTable.encodeMove(square, piece);
+    }
+
+    private static void rotate(int[] moves, int offset) {
+        int[] copy = moves.clone();
+        for (int i = 0; i < moves.length; i++) {
+            moves[i] = copy[(i + offset) % moves.length];
+        }
+    }
+
+    /**
+     * Converts a score to the form stored in the table: wins count from the stored node.
+     */
+    private static int toTable(int score, int ply) {
+        if (score > WIN_BOUND) {
+            return score + ply;
+        }
+        if (score < -WIN_BOUND) {
+            return score - ply;
+        }
+        return score;
+    }
+
+    /**
+     * Converts a stored score back to a score relative to the root.
+     */
+    private static int fromTable(int score, int ply) {
+        if (score > WIN_BOUND) {
+            return score - ply;
+        }
+        if (score < -WIN_BOUND) {
+            return score + ply;
+        }
+        return score;
+    }
+}
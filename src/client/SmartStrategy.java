@@ -2,15 +2,83 @@ package client;
 
 import gameLogic.*;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
 
 public class SmartStrategy implements BotStrategy{
+
+    /** Effort of the proof-number solver per move; nodes only, so moves do not depend on the host. */
+    private static final SearchLimits SOLVER_LIMITS = SearchLimits.ofNodes(20_000);
+
+    /** The solver runs only from this many empty squares on; earlier it rarely settles anything. */
+    private static final int SOLVER_MAX_EMPTY = 10;
+
+    /** Table entries of each thread's solver. */
+    private static final int SOLVER_ENTRIES = 1 << 16;
+
+    /**
+     * One solver per thread, since strategies may be shared between bots.
+     * Its table is cleared before every move, so moves do not depend on earlier games.
+     */
+    private static final ThreadLocal<ProofNumberSolver> SOLVER =
+            ThreadLocal.withInitial(() -> new ProofNumberSolver(SOLVER_ENTRIES));
+
+    /** Positions whose safe moves each thread's cache remembers. */
+    private static final int CACHE_ENTRIES = 1 << 16;
+
+    /**
+     * Safe move counts by {@link Zobrist} key, least recently used first.
+     * One cache per thread, kept across moves and games and shared by all
+     * instances on that thread, since the count depends on the position only.
+     */
+    private static final ThreadLocal<EvaluationCache> CACHE =
+            ThreadLocal.withInitial(() -> new EvaluationCache(CACHE_ENTRIES));
+
+    private final LongAdder cacheHits = new LongAdder();
+    private final LongAdder cacheMisses = new LongAdder();
+
+    /**
+     * A bounded map that drops its least recently used entry when full.
+     */
+    private static final class EvaluationCache extends LinkedHashMap<Long, Integer> {
+        private static final long serialVersionUID = 1L;
+
+        private final int capacity;
+
+        private EvaluationCache(int capacity) {
+            super(capacity * 4 / 3 + 1, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Integer> eldest) {
+            return size() > capacity;
+        }
+    }
+
     @Override
     public String getName() {
         return "Smart";
     }
 
+    /**
+     * Returns how often this strategy found a position's safe moves in the cache.
+     * @return number of cache hits.
+     */
+    public long getCacheHits() {
+        return cacheHits.sum();
+    }
+
+    /**
+     * Returns how often this strategy had to count a position's safe moves.
+     * @return number of cache misses.
+     */
+    public long getCacheMisses() {
+        return cacheMisses.sum();
+    }
+
     /**
      * Determines the next move for the AI using a layered decision strategy.
      * @param game the current game state
@@ -59,12 +127,24 @@ public class SmartStrategy implements BotStrategy{
             }
         }
 
-        List<int[]> lines = getAllLines();
+        // one kernel for this node; the filters derive the children from it
+        LineKernel kernel = LineKernel.of(game);
+
+        // Forced win a few moves deep, before falling back on heuristics
+        if (kernel.emptySquares() <= SOLVER_MAX_EMPTY) {
+            ProofNumberSolver solver = SOLVER.get();
+            // a table left by earlier games would make the outcome depend on them
+            solver.clear();
+            ProofNumberSolver.Result proof = solver.solve(game, SOLVER_LIMITS);
+            if (proof.getOutcome() == ProofNumberSolver.Outcome.WIN) {
+                return proof.getMove();
+            }
+        }
 
         //  Defensive filters
-        moves = filterImmediateLoss(game, moves);
-        moves = filterUnavoidableLoss(game, moves);
-        moves = filterAntiFork(game, moves, lines);
+        moves = filterImmediateLoss(kernel, moves);
+        moves = filterUnavoidableLoss(kernel, moves);
+        moves = filterAntiFork(kernel, moves);
 
         // Safety fallback
         if (moves.size() == 1) {
@@ -77,10 +157,7 @@ public class SmartStrategy implements BotStrategy{
         int bestScore = Integer.MIN_VALUE;
 
         for (Move move : moves) {
-            Game copy = game.deepCopy();
-            copy.doMove(move);
-
-            int score = evaluatePosition(copy, lines, move);
+            int score = evaluatePosition(kernel.after(move), move);
 
             if (score > bestScore) {
                 bestScore = score;
@@ -123,93 +200,77 @@ public class SmartStrategy implements BotStrategy{
 
 
     /**
-     * Filters moves in terms of getting rid of moves that immediately lead to loss.
-     * @param game the current game.
-     * @param moves the list of moves
-     * @return the list of moves without moves that lead to loss.
+     * Generates all valid moves of a kernel position, in the same order as
+     * {@link #getValidMoves(Game)}.
+     * @param kernel the position.
+     * @return the list of valid moves.
      */
+    private List<Move> getValidMoves(LineKernel kernel) {
+        List<Move> result = new ArrayList<>();
+        int pieces = kernel.getAvailable();
+
+        // FIRST MOVE: only give a piece
+        if (kernel.getToPlace() == -1) {
+            for (int rest = pieces; rest != 0; rest &= rest - 1) {
+                result.add(new Move(Integer.numberOfTrailingZeros(rest)));
+            }
+            return result;
+        }
+
+        // NORMAL MOVE (placement + give next piece)
+        for (int i = 0; i < 16; i++) {
+            if (!kernel.isEmpty(i)) continue;
+
+            for (int rest = pieces; rest != 0; rest &= rest - 1) {
+                result.add(new Move(Integer.numberOfTrailingZeros(rest), i));
+            }
+        }
+
+        return result;
+    }
+
     /**
      * Removes moves that allow the opponent to win immediately.
+     * @param kernel the current position.
+     * @param moves the list of moves
+     * @return the list of moves without moves that lead to loss.
      */
-    private List<Move> filterImmediateLoss(Game game, List<Move> moves) {
+    private List<Move> filterImmediateLoss(LineKernel kernel, List<Move> moves) {
         List<Move> safe = new ArrayList<>();
 
         for (Move move : moves) {
-            Game copy = game.deepCopy();
-            copy.doMove(move);
+            LineKernel after = kernel.after(move);
 
             // ENDGAME: opponent has no reply → cannot lose
-            if (!hasNextTurn(copy)) {
+            if (!hasNextTurn(after)) {
                 safe.add(move);
                 continue;
             }
 
-            boolean opponentCanWin = false;
-
-            for (int field : getEmptyFields(copy)) {
-                Game sim = copy.deepCopy();
-                int nextPiece = getAnyAvailablePiece(sim);
-                sim.doMove(new Move(nextPiece, field));
-
-                if (sim.getWinner() != 0) {
-                    opponentCanWin = true;
-                    break;
-                }
-            }
-
-            if (!opponentCanWin) {
+            if (!opponentCanWin(after)) {
                 safe.add(move);
             }
         }
         return safe;
     }
 
-    /**
-     * Filters moves in terms of analyzing,
-     * if there is a situation in which there will be a loss no matter what piece is given away.
-     * @param game the current game.
-     * @param moves moves to analyze.
-     * @return the filtered list of moves.
-     */
     /**
      * Removes moves that lead to an unavoidable loss,
      * regardless of which piece is given next.
+     * The piece given next does not change whether the placement wins,
+     * so this is the case exactly when the opponent can win right away.
+     * @param kernel the current position.
+     * @param moves moves to analyze.
+     * @return the filtered list of moves.
      */
-    private List<Move> filterUnavoidableLoss(Game game, List<Move> moves) {
+    private List<Move> filterUnavoidableLoss(LineKernel kernel, List<Move> moves) {
         List<Move> result = new ArrayList<>();
 
         for (Move move : moves) {
-            Game copy = game.deepCopy();
-            copy.doMove(move);
+            LineKernel after = kernel.after(move);
 
             // ENDGAME: no next piece → unavoidable loss impossible
-            if (!hasNextTurn(copy)) {
-                result.add(move);
-                continue;
-            }
-
-            boolean unavoidable = false;
-
-            for (int field : getEmptyFields(copy)) {
-                boolean losingForAll = true;
-
-                for (int piece : copy.getAvailablePieces().keySet()) {
-                    Game sim = copy.deepCopy();
-                    sim.doMove(new Move(piece, field));
-
-                    if (sim.getWinner() == 0) {
-                        losingForAll = false;
-                        break;
-                    }
-                }
-
-                if (losingForAll) {
-                    unavoidable = true;
-                    break;
-                }
-            }
-
-            if (!unavoidable) {
+            if (!hasNextTurn(after) || !opponentCanWin(after)) {
                 result.add(move);
             }
         }
@@ -217,38 +278,47 @@ public class SmartStrategy implements BotStrategy{
     }
 
     /**
-     * Evaluates the given game position after a move.
+     * Checks whether the player to move wins by placing the piece they were given.
+     * A line that is already complete counts as a win as well.
+     * @param kernel the position, with a piece left to hand over.
+     * @return true if some placement wins
+     */
+    private boolean opponentCanWin(LineKernel kernel) {
+        return kernel.hasWinner() || kernel.hasWinningSquare(kernel.getToPlace());
+    }
+
+    /**
+     * Evaluates the given position after a move.
      *
-     * @param game the game state AFTER the move
-     * @param lines all board lines
+     * @param kernel the position AFTER the move
      * @param move the move that led to this position
      * @return evaluation score (higher is better)
      */
     /*@
-      requires game != null;
-      requires lines != null;
+      requires kernel != null;
       requires move != null;
     @*/
-    private int evaluatePosition(Game game, List<int[]> lines, Move move) {
+    private int evaluatePosition(LineKernel kernel, Move move) {
 
         int score = 0;
 
         // If this move results in a winning board, treat it as a
         // very large positive score. After doMove we are always
         // evaluating from the perspective of the player who just moved.
-        if (game.getWinner() != 0) {
+        if (kernel.hasWinner()) {
             return 100000;
         }
 
-        // Dangerous lines
-        int dangerous3 = countDangerousLines(game, lines, 3);
-        int dangerous2 = countDangerousLines(game, lines, 2);
+        // Dangerous lines: lines with 3 or 2 pieces sharing an attribute
+        // that an available piece could continue
+        int dangerous3 = kernel.dangerousLines(3);
+        int dangerous2 = kernel.dangerousLines(2);
 
         score += dangerous3 * 200;
         score += dangerous2 * 80;
 
         // Mobility
-        int mobility = countSafeMoves(game, lines);
+        int mobility = countSafeMoves(kernel);
         score += mobility * 5;
 
         // Geometry (only if move placed a piece)
@@ -260,516 +330,25 @@ public class SmartStrategy implements BotStrategy{
     }
 
     /**
-     * Counts the number of dangerous lines that contain exactly
-     * placed pieces sharing at least one common attribute, and for which
-     * a continuation piece exists among the available pieces.
-     * @param game the current game state
-     * @param lines all board lines (rows, columns, diagonals)
-     * @param k the number of placed pieces to consider (must be 2 or 3)
-     * @return the number of dangerous lines of size
-     */
-    /*@
-      requires game != null;
-      requires lines != null;
-      requires k == 2 || k == 3;
-      ensures \result >= 0;
-    @*/
-    private int countDangerousLines(Game game, List<int[]> lines, int k) {
-        int dangerousCount = 0;
-
-        for (int[] line : lines) {
-
-            // Defensive: ignore malformed lines
-            if (line == null || line.length != 4) {
-                continue;
-            }
-
-            // Collect placed pieces in this line
-            Piece[] placed = new Piece[k];
-            int placedCount = 0;
-
-            for (int field : line) {
-                Piece p = game.getBoard().getField(field);
-                if (p != null) {
-                    if (placedCount < k) {
-                        placed[placedCount] = p;
-                    }
-                    placedCount++;
-                }
-            }
-
-            // We only care about lines with exactly k pieces
-            if (placedCount != k) {
-                continue;
-            }
-
-            // Check if the placed pieces share at least one common attribute
-            if (!game.getBoard().hasCommonAttribute(placed)) {
-                continue;
-            }
-
-            // Check if there exists an available piece that can extend this line
-            if (existsContinuationPiece(game, placed)) {
-                dangerousCount++;
-            }
-        }
-
-        return dangerousCount;
-    }
-
-    /**
-     * Getter for all empty fields on a board.
-     * @param game the current game.
-     * @return the list with all empty fields.
-     */
-    private List<Integer> getEmptyFields(Game game) {
-        List<Integer> empty = new ArrayList<>();
-        for (int i = 0; i < 16; i++) {
-            if (game.getBoard().isEmptyField(i)) {
-                empty.add(i);
-            }
-        }
-        return empty;
-    }
-
-    /**
-     * Getter for any random piece chosen as nextpiece.
-     * @param game is the current game.
-     * @return the first available id of a piece.
-     */
-    private int getAnyAvailablePiece(Game game) {
-        for (int pieceId : game.getAvailablePieces().keySet()) {
-            return pieceId;
-        }
-        throw new IllegalStateException("No available pieces");
-    }
-
-    /**
-     * Returns all lines of a 4x4 Quarto board.
-     * A line consists of 4 field indices and represents
-     * a row, column, or diagonal.
-     * @return a list of all board lines
-     */
-    /*@
-      ensures \result != null;
-      ensures \result.size() == 10;
-    @*/
-    private List<int[]> getAllLines() {
-        List<int[]> lines = new ArrayList<>();
-
-        // Rows
-        for (int row = 0; row < 4; row++) {
-            int[] line = new int[4];
-            for (int col = 0; col < 4; col++) {
-                line[col] = row * 4 + col;
-            }
-            lines.add(line);
-        }
-
-        // Columns
-        for (int col = 0; col < 4; col++) {
-            int[] line = new int[4];
-            for (int row = 0; row < 4; row++) {
-                line[row] = row * 4 + col;
-            }
-            lines.add(line);
-        }
-
-        // Main diagonal
-        lines.add(new int[] {0, 5, 10, 15});
-
-        // Anti-diagonal
-        lines.add(new int[] {3, 6, 9, 12});
-
-        return lines;
-    }
-
-    /**
-     * Checks whether there exists an available piece that can extend
-     * the given line based on a shared attribute.
-     *
-     * @param game the current game state
-     * @param linePieces the pieces already placed in the line
-     * @return true if a continuation piece exists
-     */
-    /*@
-      requires game != null;
-      requires linePieces != null;
-      requires linePieces.length >= 2;
-    @*/
-    private boolean existsContinuationPiece(Game game, Piece[] linePieces) {
-
-        // Check SIZE
-        if (allSameSize(linePieces)
-                && existsAvailablePieceWithSameSize(game, linePieces[0].getSize())) {
-            return true;
-        }
-
-        // Check SHAPE
-        if (allSameShape(linePieces)
-                && existsAvailablePieceWithSameShape(game, linePieces[0].getShape())) {
-            return true;
-        }
-
-        // Check COLOUR
-        if (allSameColour(linePieces)
-                && existsAvailablePieceWithSameColour(game, linePieces[0].getColour())) {
-            return true;
-        }
-
-        // Check FILL
-        if (allSameFill(linePieces)
-                && existsAvailablePieceWithSameFill(game, linePieces[0].getFill())) {
-            return true;
-        }
-
-        return false;
-    }
-
-    /**
-     * Checks whether all pieces have the same size.
-     * @param pieces array of pieces
-     * @return true if all pieces share the same size
-     */
-    /*@
-      requires pieces != null;
-      requires pieces.length > 0;
-    @*/
-    private boolean allSameSize(Piece[] pieces) {
-        Size s = pieces[0].getSize();
-        for (Piece p : pieces) {
-            if (p.getSize() != s) {
-                return false;
-            }
-        }
-        return true;
-    }
-
-    /**
-     * Checks whether all pieces have the same fill.
-     * @param pieces array of pieces
-     * @return true if all pieces share the same fill
-     */
-    /*@
-      requires pieces != null;
-      requires pieces.length > 0;
-    @*/
-    private boolean allSameFill(Piece[] pieces) {
-        Fill f = pieces[0].getFill();
-        for (Piece p : pieces) {
-            if (p.getFill() != f) {
-                return false;
-            }
-        }
-        return true;
-    }
-
-    /**
-     * Checks whether all pieces have the same shape.
-     * @param pieces array of pieces
-     * @return true if all pieces share the same shape
-     */
-
-    /*@
-     requires pieces != null;
-     requires pieces.length > 0;
-    @*/
-    private boolean allSameShape(Piece[] pieces) {
-        Shape s = pieces[0].getShape();
-        for (Piece p : pieces) {
-            if (p.getShape() != s) {
-                return false;
-            }
-        }
-        return true;
-    }
-
-    /**
-     * Checks whether all pieces have the same colour.
-     * @param pieces array of pieces
-     * @return true if all pieces share the same colour
-     */
-    /*@
-      requires pieces != null;
-      requires pieces.length > 0;
-    @*/
-    private boolean allSameColour(Piece[] pieces) {
-        Colour c = pieces[0].getColour();
-        for (Piece p : pieces) {
-            if (p.getColour() != c) {
-                return false;
-            }
-        }
-        return true;
-    }
-
-    /**
-     * Checks whether an available piece with the given shape exists.
-     *
-     * @param game the current game
-     * @param shape the shape to check
-     * @return true if such a piece exists
-     */
-    /*@
-      requires game != null;
-      requires shape != null;
-    @*/
-    private boolean existsAvailablePieceWithSameShape(Game game, Shape shape) {
-        for (Piece p : game.getAvailablePieces().values()) {
-            if (p.getShape() == shape) {
-                return true;
-            }
-        }
-        return false;
-    }
-
-    /**
-     * Checks whether an available piece with the given size exists.
-     *
-     * @param game the current game
-     * @param size the size to check
-     * @return true if such a piece exists
-     */
-    /*@
-      requires game != null;
-      requires size != null;
-    @*/
-    private boolean existsAvailablePieceWithSameSize(Game game, Size size) {
-        for (Piece p : game.getAvailablePieces().values()) {
-            if (p.getSize() == size) {
-                return true;
-            }
-        }
-        return false;
-    }
-
-    /**
-     * Checks whether an available piece with the given colour exists.
-     *
-     * @param game the current game
-     * @param colour the colour to check
-     * @return true if such a piece exists
-     */
-    /*@
-      requires game != null;
-      requires colour != null;
-    @*/
-    private boolean existsAvailablePieceWithSameColour(Game game, Colour colour) {
-        for (Piece p : game.getAvailablePieces().values()) {
-            if (p.getColour() == colour) {
-                return true;
-            }
-        }
-        return false;
-    }
-
-    /**
-     * Checks whether an available piece with the given fill exists.
-     *
-     * @param game the current game
-     * @param fill the fill to check
-     * @return true if such a piece exists
-     */
-    /*@
-      requires game != null;
-      requires fill != null;
-    @*/
-    private boolean existsAvailablePieceWithSameFill(Game game, Fill fill) {
-        for (Piece p : game.getAvailablePieces().values()) {
-            if (p.getFill() == fill) {
-                return true;
-            }
-        }
-        return false;
-    }
-
-    /**
-     * Returns all dangerous lines that pass through a given empty field.
-     * @param game the current game
-     * @param field the field index
-     * @param lines all board lines
-     * @return list of dangerous lines through the field
-     */
-    /*@
-      requires game != null;
-      requires lines != null;
-    @*/
-    private List<int[]> getDangerousLinesThroughField(
-            Game game, int field, List<int[]> lines, int k) {
-
-        List<int[]> result = new ArrayList<>();
-
-        for (int[] line : lines) {
-
-            boolean containsField = false;
-            for (int f : line) {
-                if (f == field) {
-                    containsField = true;
-                    break;
-                }
-            }
-            if (!containsField) {
-                continue;
-            }
-
-            // collect pieces in the line
-            Piece[] pieces = new Piece[k];
-            int count = 0;
-
-            for (int f : line) {
-                Piece p = game.getBoard().getField(f);
-                if (p != null) {
-                    if (count < k) {
-                        pieces[count] = p;
-                    }
-                    count++;
-                }
-            }
-
-            if (count == k
-                    && game.getBoard().hasCommonAttribute(pieces)
-                    && existsContinuationPiece(game, pieces)) {
-                result.add(line);
-            }
-        }
-
-        return result;
-    }
-
-    /**
-     * Checks whether there exists one available piece that blocks
-     * all given dangerous lines.
-     * @param game the current game
-     * @param dangerousLines list of dangerous lines
-     * @return true if a single piece blocks all lines
-     */
-    /*@
-      requires game != null;
-      requires dangerousLines != null;
-    @*/
-    private boolean existsUniversalBlockingPiece(
-            Game game, List<int[]> dangerousLines) {
-
-        for (Piece candidate : game.getAvailablePieces().values()) {
-
-            boolean blocksAll = true;
-
-            for (int[] line : dangerousLines) {
-
-                List<Piece> placed = new ArrayList<>();
-                for (int f : line) {
-                    Piece p = game.getBoard().getField(f);
-                    if (p != null) {
-                        placed.add(p);
-                    }
-                }
-
-                Piece[] pieces = placed.toArray(new Piece[0]);
-
-                boolean blocksLine =
-                        (allSameSize(pieces)   && candidate.getSize()   == pieces[0].getSize()) ||
-                                (allSameShape(pieces)  && candidate.getShape()  == pieces[0].getShape()) ||
-                                (allSameColour(pieces) && candidate.getColour() == pieces[0].getColour()) ||
-                                (allSameFill(pieces)   && candidate.getFill()   == pieces[0].getFill());
-
-                if (!blocksLine) {
-                    blocksAll = false;
-                    break;
-                }
-            }
-
-            if (blocksAll) {
-                return true;
-            }
-        }
-        return false;
-    }
-
-    /**
-     * Determines whether a given empty field is a fork position.
-     * @param game the current game
-     * @param field the field index
-     * @param lines all board lines
-     * @return true if the field is a fork
-     */
-    /*@
-      requires game != null;
-      requires lines != null;
-    @*/
-    private boolean isForkField(Game game, int field, List<int[]> lines) {
-
-        if (!game.getBoard().isEmptyField(field)) {
-            return false;
-        }
-
-        List<int[]> dangerousLines =
-                getDangerousLinesThroughField(game, field, lines, 2);
-
-        if (dangerousLines.size() < 2) {
-            return false;
-        }
-
-        // if one piece can block everything → not a fork
-        return !existsUniversalBlockingPiece(game, dangerousLines);
-    }
-
-    /**
-     * Checks whether the opponent has any fork opportunity
-     * in the given game state.
-     *
-     * @param game the game state after a simulated move
-     * @param lines all board lines
-     * @return true if the opponent can create a fork
-     */
-    /*@
-      requires game != null;
-      requires lines != null;
-    @*/
-    private boolean opponentHasFork(Game game, List<int[]> lines) {
-        if (!hasNextTurn(game)) {
-            return false;
-        }
-
-        for (int field = 0; field < 16; field++) {
-            if (game.getBoard().isEmptyField(field)
-                    && isForkField(game, field, lines)) {
-                return true;
-            }
-        }
-        return false;
-    }
-
-
-    /**
-     * Filters out moves that allow the opponent to create a fork
-     * in the next turn.
-     * @param game the current game
+     * Removes moves that allow the opponent to create a fork.
+     * A fork is an empty field where two lines with two pieces meet that
+     * can both be extended, and no single piece extends both.
+     * @param kernel the current position
      * @param moves all candidate moves
-     * @param lines all board lines
      * @return list of moves that do NOT allow opponent forks
      */
     /*@
-      requires game != null;
+      requires kernel != null;
       requires moves != null;
-      requires lines != null;
     @*/
-    /**
-     * Removes moves that allow the opponent to create a fork.
-     */
-    private List<Move> filterAntiFork(Game game, List<Move> moves, List<int[]> lines) {
+    private List<Move> filterAntiFork(LineKernel kernel, List<Move> moves) {
         List<Move> safe = new ArrayList<>();
 
         for (Move move : moves) {
-            Game copy = game.deepCopy();
-            copy.doMove(move);
-
-            // ENDGAME → fork impossible
-            if (!hasNextTurn(copy)) {
-                safe.add(move);
-                continue;
-            }
+            LineKernel after = kernel.after(move);
 
-            if (!opponentHasFork(copy, lines)) {
+            // ENDGAME → fork impossible, hasFork() checks for a piece to hand over
+            if (!after.hasFork()) {
                 safe.add(move);
             }
         }
@@ -777,28 +356,47 @@ public class SmartStrategy implements BotStrategy{
     }
 
     /**
-     * Counts the number of safe moves in the given game state.
+     * Counts the number of safe moves in the given position.
      * A move is considered safe if it does not lead to immediate loss,
      * unavoidable loss, or allow the opponent to create a fork.
+     * Counts are looked up in this thread's cache before they are computed.
      *
-     * @param game the game state to evaluate
-     * @param lines all board lines
+     * @param kernel the position to evaluate
      * @return number of safe moves
      */
     /*@
-      requires game != null;
-      requires lines != null;
+      requires kernel != null;
       ensures \result >= 0;
     @*/
-    private int countSafeMoves(Game game, List<int[]> lines) {
-        if (!hasNextTurn(game)) {
+    private int countSafeMoves(LineKernel kernel) {
+        if (!hasNextTurn(kernel)) {
             return 0;
         }
 
-        List<Move> moves = getValidMoves(game);
-        moves = filterImmediateLoss(game, moves);
-        moves = filterUnavoidableLoss(game, moves);
-        moves = filterAntiFork(game, moves, lines);
+        EvaluationCache cache = CACHE.get();
+        long key = kernel.key();
+        Integer cached = cache.get(key);
+        if (cached != null) {
+            cacheHits.increment();
+            return cached;
+        }
+        cacheMisses.increment();
+        int count = computeSafeMoves(kernel);
+        cache.put(key, count);
+        return count;
+    }
+
+    /**
+     * Counts the safe moves of a position with a piece left to hand over.
+     *
+     * @param kernel the position to evaluate
+     * @return number of safe moves
+     */
+    private int computeSafeMoves(LineKernel kernel) {
+        List<Move> moves = getValidMoves(kernel);
+        moves = filterImmediateLoss(kernel, moves);
+        moves = filterUnavoidableLoss(kernel, moves);
+        moves = filterAntiFork(kernel, moves);
         return moves.size();
     }
 
@@ -809,56 +407,49 @@ public class SmartStrategy implements BotStrategy{
      * safe moves available to the current player and the opponent
      * after the move is applied.
      *
-     * @param game the current game state
+     * @param kernel the current position
      * @param move the move to evaluate
-     * @param lines all board lines
      * @return mobility score
      */
     /*@
-      requires game != null;
+      requires kernel != null;
       requires move != null;
-      requires lines != null;
     @*/
-    private int mobilityScore(Game game, Move move, List<int[]> lines) {
-        Game after = game.deepCopy();
-        after.doMove(move);
+    private int mobilityScore(LineKernel kernel, Move move) {
+        LineKernel after = kernel.after(move);
 
         if (!hasNextTurn(after)) {
             return 0;
         }
 
-        int opponent = countSafeMoves(after, lines);
+        int opponent = countSafeMoves(after);
         int mine = 0;
 
-        for (int piece : after.getAvailablePieces().keySet()) {
-            Game sim = after.deepCopy();
-            sim.doMove(new Move(piece));
-            mine += countSafeMoves(sim, lines);
+        for (int rest = after.getAvailable(); rest != 0; rest &= rest - 1) {
+            mine += countSafeMoves(after.after(new Move(Integer.numberOfTrailingZeros(rest))));
         }
 
-        mine /= Math.max(1, after.getAvailablePieces().size());
+        mine /= Math.max(1, Integer.bitCount(after.getAvailable()));
         return mine - opponent;
     }
 
 
     /**
      * Selects the move with the best mobility score.
-     * @param game the current game state
+     * @param kernel the current position
      * @param moves candidate moves
-     * @param lines all board lines
      * @return the move with highest mobility score
      */
     /*@
-      requires game != null;
+      requires kernel != null;
       requires moves != null;
-      requires lines != null;
       ensures \result != null;
     @*/
-    private Move chooseByMobility(Game game, List<Move> moves, List<int[]> lines) {
+    private Move chooseByMobility(LineKernel kernel, List<Move> moves) {
         Move bestMove = moves.get(0);
         int bestScore = Integer.MIN_VALUE;
         for (Move move : moves) {
-            int score = mobilityScore(game, move, lines);
+            int score = mobilityScore(kernel, move);
             if (score > bestScore) {
                 bestScore = score;
                 bestMove = move;
@@ -923,18 +514,18 @@ public class SmartStrategy implements BotStrategy{
     }
 
     /**
-     * Checks whether the game has a possible next turn
+     * Checks whether the position has a possible next turn
      * (i.e. there are still pieces to give).
-     * @param game current game state
+     * @param kernel current position
      * @return true if at least one piece is still available
      */
 
     /*@
-       requires game != null;
-       ensures \result == (!game.getAvailablePieces().isEmpty());
+       requires kernel != null;
+       ensures \result == (kernel.getAvailable() != 0);
      @*/
-    private boolean hasNextTurn(Game game) {
-        return !game.getAvailablePieces().isEmpty();
+    private boolean hasNextTurn(LineKernel kernel) {
+        return kernel.getAvailable() != 0;
     }
 
 }
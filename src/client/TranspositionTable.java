@@ -0,0 +1,381 @@
+package client;
+
+import gameLogic.Move;
+
+import java.io.IOException;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Off-heap transposition table that many searches can share.
+ * <p>
+ * Entries live in a {@link MemorySegment} outside the Java heap, either
+ * allocated in memory or mapped from a file, so even a table of several
+ * gigabytes adds nothing to garbage collection. The table is organised in
+ * buckets of four 16-byte entries, one bucket per 64-byte cache line.
+ * <p>
+ * The table takes no locks. Every entry stores its data word and the
+ * Zobrist key XORed with that data word; a reader accepts an entry only if
+ * XORing the two words gives back the key it is looking for. When two
+ * threads write the same entry at the same time, a reader may see the
+ * first word of one write and the second word of the other, but such a
+ * torn entry fails the check and counts as a miss. Searches on any number
+ * of threads and games can therefore share one table safely.
+ * <p>
+ * A data word packs the best move, the score, the search depth, the kind of
+ * bound and the generation of the search that stored it. Use the static
+ * accessors to unpack the value returned by {@link #probe(long)}.
+ */
+public class TranspositionTable implements AutoCloseable {
+
+    /** Result of {@link #probe(long)} when the position is not stored. */
+    public static final long MISS = 0;
+
+    /** The stored score is exact. */
+    public static final int EXACT = 0;
+
+    /** The stored score is a lower bound (the search failed high). */
+    public static final int LOWER = 1;
+
+    /** The stored score is an upper bound (the search failed low). */
+    public static final int UPPER = 2;
+
+    /** Encoded move meaning "no best move known". */
+    public static final int NO_MOVE = 0;
+
+    private static final int ENTRY_BYTES = 16;
+    private static final int BUCKET_ENTRIES = 4;
+    private static final int BUCKET_BYTES = ENTRY_BYTES * BUCKET_ENTRIES;
+
+    /** Set in every stored data word, so a stored word is never {@link #MISS}. */
+    private static final long VALID = 1L << 63;
+
+    private static final int GENERATION_SHIFT = 48;
+    private static final int DEPTH_SHIFT = 40;
+    private static final int BOUND_SHIFT = 38;
+    private static final int SCORE_SHIFT = 16;
+    private static final int MOVE_BITS = 11;
+
+    private static final ValueLayout.OfLong WORD = ValueLayout.JAVA_LONG;
+
+    // fully qualified, because client.Arena is the self-play arena
+    private final java.lang.foreign.Arena memory;
+    private final MemorySegment table;
+    private final long bucketMask;
+    private final boolean mapped;
+
+    /** Whether the garbage collector frees the memory; such a table cannot be closed. */
+    private final boolean automatic;
+
+    /** Generation of the current search; entries of older generations are replaced first. */
+    private volatile int generation = 0;
+
+    /*@
+      private invariant memory != null && table != null;
+      private invariant table.byteSize() == (bucketMask + 1) * BUCKET_BYTES;
+    @*/
+
+    /**
+     * Creates a table in off-heap memory.
+     *
+     * @param bytes size of the table; rounded down to a power of two of at least one bucket
+     */
+    /*@
+      requires bytes > 0;
+    @*/
+    public TranspositionTable(long bytes) {
+        this(bytes, false);
+    }
+
+    private TranspositionTable(long bytes, boolean automatic) {
+        long buckets = bucketCount(bytes);
+        this.memory = automatic ? java.lang.foreign.Arena.ofAuto() : java.lang.foreign.Arena.ofShared();
+        this.table = memory.allocate(buckets * BUCKET_BYTES, BUCKET_BYTES);
+        this.bucketMask = buckets - 1;
+        this.mapped = false;
+        this.automatic = automatic;
+    }
+
+    /**
+     * Creates a table in off-heap memory that the garbage collector frees
+     * once the table is no longer reachable. Suits tables whose owner has
+     * no point at which to close them, such as one table per thread;
+     * {@link #close()} does nothing for such a table.
+     *
+     * @param bytes size of the table; rounded down to a power of two of at least one bucket
+     * @return the table
+     */
+    /*@
+      requires bytes > 0;
+    @*/
+    public static TranspositionTable automatic(long bytes) {
+        return new TranspositionTable(bytes, true);
+    }
+
+    /**
+     * Creates a table backed by a memory-mapped file.
+     * An existing file of the same size is reused with its entries, so a
+     * table can be kept between runs; a file of another size is resized.
+     *
+     * @param file  the backing file, created if necessary
+     * @param bytes size of the table; rounded down to a power of two of at least one bucket
+     * @throws IOException if the file cannot be opened or mapped
+     */
+    /*@
+      requires file != null && bytes > 0;
+    @*/
+    public TranspositionTable(Path file, long bytes) throws IOException {
+        long buckets = bucketCount(bytes);
+        this.memory = java.lang.foreign.Arena.ofShared();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                                                    StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            if (channel.size() != buckets * BUCKET_BYTES) {
+                channel.truncate(0);
+            }
+            this.table = channel.map(FileChannel.MapMode.READ_WRITE, 0, buckets * BUCKET_BYTES, memory);
+        } catch (IOException | RuntimeException e) {
+            memory.close();
+            throw e;
+        }
+        this.bucketMask = buckets - 1;
+        this.mapped = true;
+        this.automatic = false;
+    }
+
+    private static long bucketCount(long bytes) {
+        return Math.max(1, Long.highestOneBit(bytes / BUCKET_BYTES));
+    }
+
+    /**
+     * Returns the number of entries the table can hold.
+     *
+     * @return entry count
+     */
+    public long capacity() {
+        return (bucketMask + 1) * BUCKET_ENTRIES;
+    }
+
+    /**
+     * Starts a new search generation. Entries stored by earlier searches stay
+     * usable but are the first to be replaced. Call once per move, not per thread.
+     */
+    public void newSearch() {
+        generation = (generation + 1) & 0xFF;
+    }
+
+    /**
+     * Looks up a position.
+     *
+     * @param key Zobrist key of the position
+     * @return the stored data word, or {@link #MISS}
+     */
+    public long probe(long key) {
+        long bucket = bucketOffset(key);
+        for (int i = 0; i < BUCKET_ENTRIES; i++) {
+            long offset = bucket + (long) i * ENTRY_BYTES;
+            long data = table.get(WORD, offset + 8);
+            if (data != MISS && (table.get(WORD, offset) ^ data) == key) {
+                return data;
+            }
+        }
+        return MISS;
+    }
+
+    /**
+     * Stores the result of a search.
+     * An entry for the same position is overwritten. Otherwise the entry of
+     * the bucket with the lowest depth, counting older generations as
+     * shallower, makes room.
+     *
+     * @param key   Zobrist key of the position
+     * @param move  best move, see {@link #encodeMove(Move)}
+     * @param score score of the position; clamped to 16 bits
+     * @param depth remaining search depth; clamped to 0..255
+     * @param bound {@link #EXACT}, {@link #LOWER} or {@link #UPPER}
+     */
+    /*@
+      requires bound == EXACT || bound == LOWER || bound == UPPER;
+    @*/
+    public void store(long key, int move, int score, int depth, int bound) {
+        int current = generation;
+        long data = VALID
+                | ((long) current << GENERATION_SHIFT)
+                | ((long) Math.max(0, Math.min(255, depth)) << DEPTH_SHIFT)
+                | ((long) bound << BOUND_SHIFT)
+                | ((long) (Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, score)) & 0xFFFF) << SCORE_SHIFT)
+                | (move & ((1 << MOVE_BITS) - 1));
+
+        long bucket = bucketOffset(key);
+        long victim = bucket;
+        int victimValue = Integer.MAX_VALUE;
+        for (int i = 0; i < BUCKET_ENTRIES; i++) {
+            long offset = bucket + (long) i * ENTRY_BYTES;
+            long old = table.get(WORD, offset + 8);
+            if (old == MISS || (table.get(WORD, offset) ^ old) == key) {
+                victim = offset;
+                break;
+            }
+            int age = (current - generation(old)) & 0xFF;
+            int value = depth(old) - 8 * age;
+            if (value < victimValue) {
+                victimValue = value;
+                victim = offset;
+            }
+        }
+        table.set(WORD, victim, key ^ data);
+        table.set(WORD, victim + 8, data);
+    }
+
+    /**
+     * Estimates how full the table is with entries of the current generation.
+     *
+     * @return entries per thousand
+     */
+    public int hashfull() {
+        long sample = Math.min(1000, capacity());
+        int current = generation;
+        int used = 0;
+        for (long i = 0; i < sample; i++) {
+            long data = table.get(WORD, i * ENTRY_BYTES + 8);
+            if (data != MISS && generation(data) == current) {
+                used++;
+            }
+        }
+        return (int) (used * 1000 / sample);
+    }
+
+    /**
+     * Removes all entries. Must not run concurrently with searches.
+     */
+    public void clear() {
+        table.fill((byte) 0);
+    }
+
+    /**
+     * Writes a file-backed table to disk and releases the memory.
+     * No search may use the table afterwards.
+     */
+    @Override
+    public void close() {
+        if (mapped) {
+            table.force();
+        }
+        if (!automatic) {
+            memory.close();
+        }
+    }
+
+    private long bucketOffset(long key) {
+        // the low bits choose the bucket; the full key is verified per entry
+        return (key & bucketMask) * BUCKET_BYTES;
+    }
+
+    /**
+     * Encodes a move into the 11 bits stored per entry.
+     *
+     * @param move the move, or null
+     * @return encoded move, {@link #NO_MOVE} for null
+     */
+    public static int encodeMove(Move move) {
+        if (move == null) {
+            return NO_MOVE;
+        }
+        return encodeMove(move.getLocation(), move.getNextPiece());
+    }
+
+    /**
+     * Encodes a move given by its parts, without creating a {@link Move}.
+     *
+     * @param location board location, or -1 for the opening move
+     * @param piece    piece handed over
+     * @return encoded move
+     */
+    /*@
+      requires location >= -1 && location < 16 && piece >= 0 && piece < 32;
+    @*/
+    public static int encodeMove(int location, int piece) {
+        return 1 << 10 | (location + 1) << 5 | (piece & 0x1F);
+    }
+
+    /**
+     * Returns the location of an encoded move.
+     *
+     * @param move encoded move, not {@link #NO_MOVE}
+     * @return board location, or -1 for the opening move
+     */
+    public static int location(int move) {
+        return ((move >> 5) & 0x1F) - 1;
+    }
+
+    /**
+     * Returns the piece of an encoded move.
+     *
+     * @param move encoded move, not {@link #NO_MOVE}
+     * @return piece handed over
+     */
+    public static int piece(int move) {
+        return move & 0x1F;
+    }
+
+    /**
+     * Decodes a move stored with {@link #encodeMove(Move)}.
+     *
+     * @param move encoded move
+     * @return the move, or null for {@link #NO_MOVE}
+     */
+    public static Move decodeMove(int move) {
+        if ((move & 1 << 10) == 0) {
+            return null;
+        }
+        int location = location(move);
+        int piece = piece(move);
+        return location == -1 ? new Move(piece) : new Move(piece, location);
+    }
+
+    /**
+     * Returns the encoded best move of a data word.
+     *
+     * @param data value returned by {@link #probe(long)}
+     * @return encoded move
+     */
+    public static int move(long data) {
+        return (int) (data & ((1 << MOVE_BITS) - 1));
+    }
+
+    /**
+     * Returns the score of a data word.
+     *
+     * @param data value returned by {@link #probe(long)}
+     * @return the score
+     */
+    public static int score(long data) {
+        return (short) (data >>> SCORE_SHIFT);
+    }
+
+    /**
+     * Returns the search depth of a data word.
+     *
+     * @param data value returned by {@link #probe(long)}
+     * @return depth between 0 and 255
+     */
+    public static int depth(long data) {
+        return (int) (data >>> DEPTH_SHIFT) & 0xFF;
+    }
+
+    /**
+     * Returns the kind of bound of a data word.
+     *
+     * @param data value returned by {@link #probe(long)}
+     * @return {@link #EXACT}, {@link #LOWER} or {@link #UPPER}
+     */
+    public static int bound(long data) {
+        return (int) (data >>> BOUND_SHIFT) & 0x3;
+    }
+
+    private static int generation(long data) {
+        return (int) (data >>> GENERATION_SHIFT) & 0xFF;
+    }
+}
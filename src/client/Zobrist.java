@@ -0,0 +1,111 @@
+package client;
+
+import gameLogic.Board;
+import gameLogic.Game;
+import gameLogic.Piece;
+
+import java.util.SplittableRandom;
+
+/**
+ * Zobrist hashing of Quarto positions.
+ * <p>
+ * A position is the set of placed pieces plus the piece that must be
+ * placed next. Its key is the XOR of one random number per (square, piece)
+ * pair and one per piece to place, so a move updates the key with two or
+ * three XORs instead of a rehash. The pieces still available follow from
+ * the placed pieces and the piece to place, so they need no keys of their
+ * own. Quarto is symmetric between the players, so the side to move is not
+ * part of the key either.
+ * <p>
+ * The random numbers come from a fixed seed, so keys are identical in every
+ * JVM and a file-backed {@link TranspositionTable} stays valid across runs.
+ */
+public final class Zobrist {
+
+    /** Seed of the key tables; changing it invalidates stored tables. */
+    private static final long SEED = 0x51A27D0C0FFEEL;
+
+    /** Key of a piece on a square, indexed by {@code square * 16 + piece}. */
+    private static final long[] PLACED = new long[16 * 16];
+
+    /** Key of the piece that must be placed next. */
+    private static final long[] TO_PLACE = new long[16];
+
+    static {
+        SplittableRandom random = new SplittableRandom(SEED);
+        for (int i = 0; i < PLACED.length; i++) {
+            PLACED[i] = random.nextLong();
+        }
+        for (int i = 0; i < TO_PLACE.length; i++) {
+            TO_PLACE[i] = random.nextLong();
+        }
+    }
+
+    private Zobrist() {
+        // Private constructor to prevent instantiation
+    }
+
+    /**
+     * Returns the key of a piece on a square.
+     *
+     * @param square board index
+     * @param piece  piece id
+     * @return the key to XOR in or out
+     */
+    /*@
+      requires square >= 0 && square < 16 && piece >= 0 && piece < 16;
+    @*/
+    public static long placed(int square, int piece) {
+        return PLACED[square * 16 + piece];
+    }
+
+    /**
+     * Returns the key of the piece that must be placed next.
+     *
+     * @param piece piece id, or -1 if no piece is to be placed
+     * @return the key to XOR in or out, 0 for no piece
+     */
+    /*@
+      requires piece >= -1;
+    @*/
+    public static long toPlace(int piece) {
+        return piece >= 0 && piece < 16 ? TO_PLACE[piece] : 0;
+    }
+
+    /**
+     * Computes the key of a position from scratch.
+     *
+     * @param game the position
+     * @return the Zobrist key
+     */
+    /*@
+      requires game != null;
+    @*/
+    public static long hash(Game game) {
+        long key = toPlace(game.getCurrentPieceID());
+        Board board = game.getBoard();
+        for (int square = 0; square < 16; square++) {
+            Piece piece = board.getField(square);
+            if (piece != null) {
+                key ^= placed(square, pieceId(piece));
+            }
+        }
+        return key;
+    }
+
+    /**
+     * Returns the id {@link Game} assigns to a piece.
+     * Ids enumerate size, shape, colour and fill in that order.
+     *
+     * @param piece the piece
+     * @return id between 0 and 15
+     */
+    /*@
+      requires piece != null;
+      ensures \result >= 0 && \result < 16;
+    @*/
+    public static int pieceId(Piece piece) {
+        return piece.getSize().ordinal() * 8 + piece.getShape().ordinal() * 4
+                + piece.getColour().ordinal() * 2 + piece.getFill().ordinal();
+    }
+}
@@ -0,0 +1,57 @@
+package networking;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A protocol message encoded once into its wire format (UTF-8 plus line terminator).
+ * <p>
+ * Instances are immutable, so the same packet can be handed to any number
+ * of connections without copying or re-encoding it.
+ */
+public final class EncodedPacket {
+
+    private final byte[] bytes;
+
+    /*@
+      private invariant bytes != null;
+    @*/
+
+    private EncodedPacket(byte[] bytes) {
+        this.bytes = bytes;
+    }
+
+    /**
+     * Encodes a single-line message.
+     *
+     * @param message the message to encode (must not contain newlines)
+     * @return the encoded packet
+     */
+    /*@
+      requires message != null;
+      ensures \result != null;
+    @*/
+    public static EncodedPacket of(String message) {
+        return new EncodedPacket((message + System.lineSeparator()).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Returns the encoded size in bytes.
+     *
+     * @return the number of bytes written by {@link #writeTo(OutputStream)}
+     */
+    public int length() {
+        return bytes.length;
+    }
+
+    /**
+     * Writes the encoded packet to a stream without flushing it.
+     *
+     * @param out the stream to write to
+     * @throws IOException if writing fails
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        out.write(bytes);
+    }
+}
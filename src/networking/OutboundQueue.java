@@ -0,0 +1,114 @@
+package networking;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded queue of packets waiting to be written to one connection.
+ * <p>
+ * Producers never block: {@link #offer(EncodedPacket)} drops the packet
+ * when the queue is full, so a slow reader can never stall the thread that
+ * publishes a message. A virtual writer thread, started on the first
+ * offer, drains everything that is queued and writes it as one batch with
+ * a single flush.
+ */
+public class OutboundQueue {
+
+    /** Packets dropped by all queues because they were full. */
+    private static final LongAdder DROPPED = new LongAdder();
+
+    private final SocketConnection connection;
+    private final BlockingQueue<EncodedPacket> queue;
+    private Thread writer;
+    private volatile boolean closed = false;
+
+    /*@
+      private invariant connection != null;
+      private invariant queue != null;
+    @*/
+
+    /**
+     * Creates an outbound queue for a connection.
+     *
+     * @param connection the connection to write to
+     * @param capacity   the maximum number of queued packets
+     */
+    /*@
+      requires connection != null;
+      requires capacity > 0;
+    @*/
+    public OutboundQueue(SocketConnection connection, int capacity) {
+        this.connection = connection;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+    }
+
+    /**
+     * Queues a packet for asynchronous delivery.
+     *
+     * @param packet the packet to send
+     * @return false if the queue is closed or full and the packet was dropped
+     */
+    /*@
+      requires packet != null;
+    @*/
+    public boolean offer(EncodedPacket packet) {
+        if (closed) {
+            return false;
+        }
+        if (!queue.offer(packet)) {
+            DROPPED.increment();
+            return false;
+        }
+        ensureWriter();
+        return true;
+    }
+
+    /**
+     * Returns the number of packets dropped by all queues because they were full.
+     *
+     * @return the number of dropped packets
+     */
+    public static long getDropped() {
+        return DROPPED.sum();
+    }
+
+    /**
+     * Stops the writer thread and discards queued packets.
+     */
+    public synchronized void close() {
+        closed = true;
+        queue.clear();
+        if (writer != null) {
+            writer.interrupt();
+        }
+    }
+
+    private synchronized void ensureWriter() {
+        if (writer == null && !closed) {
+            writer = Thread.ofVirtual().name("Outbound-Writer").start(this::drain);
+        }
+    }
+
+    /**
+     * Writer loop: waits for a packet, then writes everything queued so far in one batch.
+     */
+    private void drain() {
+        List<EncodedPacket> batch = new ArrayList<>();
+        try {
+            while (!closed) {
+                batch.add(queue.take());
+                queue.drainTo(batch);
+                if (!connection.sendEncoded(batch)) {
+                    close();
+                    return;
+                }
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            // queue closed
+        }
+    }
+}
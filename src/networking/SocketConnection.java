@@ -3,19 +3,32 @@ package networking;
 import java.io.*;
 import java.net.InetAddress;
 import java.net.Socket;
+import java.util.List;
 
 /**
  * Wrapper for a TCP socket connection.
  * Handles sending and receiving single-line messages over the network.
- * This class is not thread-safe.
+ * Receiving is not thread-safe; sending may happen from any thread.
  */
 public abstract class SocketConnection {
 
     private final Socket socket;
     private final BufferedReader in;
+    private final OutputStream rawOut;
     private final BufferedWriter out;
+    private final Object writeLock = new Object();
     private boolean started = false;
 
+    /** {@link System#nanoTime()} at which the last line was received. */
+    private volatile long lastReceived = System.nanoTime();
+
+    /** Maximum number of packets waiting in the outbound queue. */
+    private static final int OUTBOUND_CAPACITY = 256;
+
+    /** Created on first use, so the queue never sees a partly constructed connection. */
+    private volatile OutboundQueue outbound;
+    private final Object outboundLock = new Object();
+
     /*@
       private invariant socket != null;
       private invariant in != null;
@@ -35,7 +48,8 @@ public abstract class SocketConnection {
     protected SocketConnection(Socket socket) throws IOException {
         this.socket = socket;
         in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-        out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream()));
+        rawOut = new BufferedOutputStream(socket.getOutputStream());
+        out = new BufferedWriter(new OutputStreamWriter(rawOut));
     }
 
     /**
@@ -102,6 +116,7 @@ public abstract class SocketConnection {
         try {
             String inputLine;
             while ((inputLine = in.readLine()) != null) {
+                lastReceived = System.nanoTime();
                 handlePackets(inputLine);
             }
         } catch (IOException e) {
@@ -124,9 +139,11 @@ public abstract class SocketConnection {
     @*/
     public boolean sendPacket(String message) {
         try {
-            out.write(message);
-            out.newLine();
-            out.flush();
+            synchronized (writeLock) {
+                out.write(message);
+                out.newLine();
+                out.flush();
+            }
             return true;
         } catch (IOException e) {
             close();
@@ -134,6 +151,63 @@ public abstract class SocketConnection {
         }
     }
 
+    /**
+     * Writes a batch of pre-encoded packets and flushes once.
+     *
+     * @param packets the packets to write, in order
+     * @return true if the packets were sent successfully, false otherwise
+     */
+    /*@
+      requires packets != null;
+    @*/
+    public boolean sendEncoded(List<EncodedPacket> packets) {
+        try {
+            synchronized (writeLock) {
+                for (EncodedPacket packet : packets) {
+                    packet.writeTo(rawOut);
+                }
+                rawOut.flush();
+            }
+            return true;
+        } catch (IOException e) {
+            close();
+            return false;
+        }
+    }
+
+    /**
+     * Queues a pre-encoded packet for asynchronous delivery.
+     * The calling thread never blocks; if the outbound queue is full the packet is dropped.
+     *
+     * @param packet the packet to send
+     * @return true if the packet was queued, false if it was dropped
+     */
+    /*@
+      requires packet != null;
+    @*/
+    public boolean enqueuePacket(EncodedPacket packet) {
+        return outbound().offer(packet);
+    }
+
+    /**
+     * Returns the outbound queue, creating it on first use.
+     *
+     * @return the outbound queue of this connection
+     */
+    private OutboundQueue outbound() {
+        OutboundQueue queue = outbound;
+        if (queue == null) {
+            synchronized (outboundLock) {
+                queue = outbound;
+                if (queue == null) {
+                    queue = new OutboundQueue(this, OUTBOUND_CAPACITY);
+                    outbound = queue;
+                }
+            }
+        }
+        return queue;
+    }
+
     /**
      * Closes the socket connection.
      * This will also stop the receiving thread.
@@ -142,12 +216,46 @@ public abstract class SocketConnection {
       ensures true;
     @*/
     public void close() {
+        // also creates the queue if needed, so packets enqueued after closing are dropped
+        outbound().close();
         try {
             socket.close();
         } catch (IOException ignored) {
         }
     }
 
+    /**
+     * Checks whether this connection has been closed.
+     *
+     * @return true if the socket is closed
+     */
+    public boolean isClosed() {
+        return socket.isClosed();
+    }
+
+    /**
+     * Returns the time since the last line was received from the remote endpoint.
+     * Before the first line, the time since the connection was created is returned.
+     *
+     * @return idle time in nanoseconds
+     */
+    /*@
+      ensures \result >= 0;
+    @*/
+    public long getIdleNanos() {
+        return Math.max(0, System.nanoTime() - lastReceived);
+    }
+
+    /**
+     * Checks whether the remote end of this connection is on the local machine.
+     *
+     * @return true if the peer connected through a loopback address
+     */
+    public boolean isLocal() {
+        InetAddress address = socket.getInetAddress();
+        return address != null && address.isLoopbackAddress();
+    }
+
     /**
      * Called once when the receiving thread starts.
      * Subclasses may override this method.
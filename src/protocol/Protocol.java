@@ -27,10 +27,23 @@ public final class Protocol {
 
     // extentions
     public static final String RANK = "RANK";
+    public static final String ME = "ME";
     public static final String CHAT = "CHAT";
     public static final String WHISPER = "WHISPER"; // [cite: 348]
+    public static final String CANNOTWHISPER = "CANNOTWHISPER";
     public static final String NOISE = "NOISE";
     public static final String NAMEDQUEUES = "NAMEDQUEUES";
+    public static final String PING = "PING";
+    public static final String PONG = "PONG";
+    public static final String CLOCK = "CLOCK";
+    public static final String SPECTATE = "SPECTATE";
+    public static final String CANNOTSPECTATE = "CANNOTSPECTATE";
+    public static final String HISTORY = "HISTORY";
+    public static final String REPLAY = "REPLAY";
+    public static final String CANNOTREPLAY = "CANNOTREPLAY";
+
+    // administration
+    public static final String STATS = "STATS";
 
 
     private Protocol() {
@@ -0,0 +1,327 @@
+package server;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Asynchronous structured logger writing to a size-rolled file.
+ * <p>
+ * Logging threads only claim a slot in a bounded ring buffer with a single
+ * compare-and-set and store the record there; they never format text, take
+ * a lock or touch the file. One background thread drains the ring, formats
+ * each record as {@code time LEVEL [thread] message key=value ...} and
+ * writes it to the log file, which is rolled over to {@code file.1},
+ * {@code file.2}, ... once it exceeds its size limit. When the ring is
+ * full, new records are dropped and counted rather than blocking the caller.
+ */
+public final class AsyncLogger {
+
+    /**
+     * Severity of a log record.
+     */
+    public enum Level {
+        DEBUG, INFO, WARN, ERROR, OFF
+    }
+
+    /** Pause in nanoseconds of the drain thread when the ring is empty. */
+    private static final long IDLE_PARK = 5_000_000L;
+
+    /**
+     * A single log record. Formatting is deferred to the drain thread.
+     */
+    private static final class Record {
+        private final long time;
+        private final Level level;
+        private final String thread;
+        private final String message;
+        private final Object[] fields;
+
+        private Record(Level level, String message, Object[] fields) {
+            this.time = System.currentTimeMillis();
+            this.level = level;
+            this.thread = Thread.currentThread().getName();
+            this.message = message;
+            this.fields = fields;
+        }
+    }
+
+    private final AtomicReferenceArray<Record> ring;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private volatile long head = 0;
+    private volatile long written = 0;
+    private final LongAdder dropped = new LongAdder();
+
+    private final Path path;
+    private final long maxBytes;
+    private final int maxFiles;
+    private volatile Level level;
+
+    private BufferedWriter out;
+    private long bytes;
+    private final Thread drainer;
+    private volatile boolean closed = false;
+
+    /*@
+      private invariant ring != null;
+      private invariant head <= tail.get();
+      private invariant maxBytes > 0 && maxFiles >= 0;
+    @*/
+
+    /**
+     * Creates a logger and starts its drain thread.
+     *
+     * @param path     the log file
+     * @param capacity ring buffer size, rounded up to a power of two
+     * @param maxBytes size after which the file is rolled over
+     * @param maxFiles number of rolled files kept next to the current one
+     * @param level    minimum level that is recorded
+     */
+    /*@
+      requires path != null && level != null;
+      requires capacity > 0 && maxBytes > 0 && maxFiles >= 0;
+    @*/
+    public AsyncLogger(Path path, int capacity, long maxBytes, int maxFiles, Level level) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.ring = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+        this.path = path;
+        this.maxBytes = maxBytes;
+        this.maxFiles = maxFiles;
+        this.level = level;
+
+        drainer = new Thread(this::drainLoop, "Log-Writer");
+        drainer.setDaemon(true);
+        drainer.start();
+    }
+
+    /**
+     * Checks whether records of the given level are recorded.
+     *
+     * @param candidate the level to check
+     * @return true if the level is at or above the threshold
+     */
+    public boolean isEnabled(Level candidate) {
+        return candidate.ordinal() >= level.ordinal() && candidate != Level.OFF;
+    }
+
+    /**
+     * Changes the minimum recorded level.
+     *
+     * @param level the new threshold
+     */
+    public void setLevel(Level level) {
+        this.level = level;
+    }
+
+    /**
+     * Queues a record without blocking.
+     * Fields alternate between key and value; values are converted with
+     * {@code toString()} on the drain thread, so they should be immutable.
+     *
+     * @param level   record level
+     * @param message short event description
+     * @param fields  alternating keys and values, may be null
+     */
+    public void log(Level level, String message, Object... fields) {
+        if (!isEnabled(level) || closed) {
+            return;
+        }
+        long slot;
+        do {
+            slot = tail.get();
+            if (slot - head >= ring.length()) {
+                dropped.increment();
+                return;
+            }
+        } while (!tail.compareAndSet(slot, slot + 1));
+        ring.lazySet((int) slot & mask, new Record(level, message, fields));
+    }
+
+    /**
+     * Returns the number of records dropped because the ring was full.
+     *
+     * @return dropped record count
+     */
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    /**
+     * Waits until every record queued before this call has been written and flushed.
+     *
+     * @param timeoutMillis maximum time to wait
+     * @return true if all records were written in time
+     */
+    public boolean flush(long timeoutMillis) {
+        long target = tail.get();
+        long deadline = System.nanoTime() + timeoutMillis * 1_000_000L;
+        while (written < target) {
+            if (System.nanoTime() > deadline || !drainer.isAlive()) {
+                return false;
+            }
+            LockSupport.unpark(drainer);
+            LockSupport.parkNanos(1_000_000L);
+        }
+        return true;
+    }
+
+    /**
+     * Writes all queued records and stops the drain thread.
+     */
+    public void close() {
+        flush(1000);
+        closed = true;
+        LockSupport.unpark(drainer);
+        try {
+            drainer.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Main loop of the drain thread: writes everything published so far,
+     * flushes the file once the ring is empty and parks until new records arrive.
+     */
+    private void drainLoop() {
+        while (true) {
+            boolean progress = false;
+            Record record;
+            while ((record = take()) != null) {
+                write(record);
+                progress = true;
+            }
+            if (progress) {
+                flushFile();
+            }
+            written = head;
+            if (closed) {
+                closeFile();
+                return;
+            }
+            if (!progress) {
+                LockSupport.parkNanos(this, IDLE_PARK);
+            }
+        }
+    }
+
+    /**
+     * Removes the next published record from the ring, or returns null if
+     * the next slot is empty or claimed but not yet filled.
+     */
+    private Record take() {
+        long h = head;
+        if (h == tail.get()) {
+            return null;
+        }
+        int index = (int) h & mask;
+        Record record = ring.get(index);
+        if (record == null) {
+            return null;
+        }
+        ring.lazySet(index, null);
+        head = h + 1;
+        return record;
+    }
+
+    private void write(Record record) {
+        StringBuilder sb = new StringBuilder(96);
+        sb.append(Instant.ofEpochMilli(record.time)).append(' ')
+                .append(record.level).append(" [").append(record.thread).append("] ")
+                .append(record.message);
+        Object[] fields = record.fields;
+        if (fields != null) {
+            for (int i = 0; i + 1 < fields.length; i += 2) {
+                sb.append(' ').append(fields[i]).append('=');
+                appendValue(sb, fields[i + 1]);
+            }
+        }
+        sb.append(System.lineSeparator());
+        String line = sb.toString();
+        try {
+            if (out == null || bytes >= maxBytes) {
+                roll();
+            }
+            out.write(line);
+            bytes += line.length();
+        } catch (IOException e) {
+            dropped.increment();
+        }
+    }
+
+    /**
+     * Appends a value, quoting it if it contains spaces, quotes or '='.
+     */
+    private static void appendValue(StringBuilder sb, Object value) {
+        String text = String.valueOf(value);
+        boolean quote = text.isEmpty();
+        for (int i = 0; i < text.length() && !quote; i++) {
+            char c = text.charAt(i);
+            quote = c == ' ' || c == '"' || c == '=';
+        }
+        if (quote) {
+            sb.append('"').append(text.replace("\"", "\\\"")).append('"');
+        } else {
+            sb.append(text);
+        }
+    }
+
+    /**
+     * Opens the log file, first rolling the current file over if it is full.
+     */
+    private void roll() throws IOException {
+        closeFile();
+        if (Files.exists(path) && Files.size(path) >= maxBytes) {
+            for (int i = maxFiles - 1; i >= 1; i--) {
+                Path from = rolled(i);
+                if (Files.exists(from)) {
+                    Files.move(from, rolled(i + 1), StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+            if (maxFiles > 0) {
+                Files.move(path, rolled(1), StandardCopyOption.REPLACE_EXISTING);
+            } else {
+                Files.delete(path);
+            }
+        }
+        out = Files.newBufferedWriter(path, StandardCharsets.UTF_8,
+                                      StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        bytes = Files.size(path);
+    }
+
+    private Path rolled(int index) {
+        return path.resolveSibling(path.getFileName() + "." + index);
+    }
+
+    private void flushFile() {
+        if (out != null) {
+            try {
+                out.flush();
+            } catch (IOException e) {
+                e.getMessage();
+            }
+        }
+    }
+
+    private void closeFile() {
+        if (out != null) {
+            try {
+                out.close();
+            } catch (IOException e) {
+                e.getMessage();
+            }
+            out = null;
+        }
+    }
+}
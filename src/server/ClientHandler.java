@@ -4,6 +4,8 @@ import networking.SocketConnection;
 import protocol.Protocol;
 import java.io.IOException;
 import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.LongAdder;
 import org.apache.commons.lang3.StringUtils;
 
 /**
@@ -21,6 +23,29 @@ public class ClientHandler extends SocketConnection {
     private ClientHandler opponent;
     private int playerID;
     private long queueJoinTime = 0;
+    private final PacketParser parser = new PacketParser();
+
+    /** Set when the client announced the CLOCK extension in its HELLO. */
+    private volatile boolean clockExtension = false;
+
+    /** Game this connection is following as a spectator, or null. */
+    private volatile GameSession spectating;
+
+    /** Pending idle check of this connection, cancelled on disconnect. */
+    private volatile TimerWheel.Timeout idleCheck;
+
+    /** Time spent handling one received line, in nanoseconds. */
+    private static final Histogram PACKET_LATENCY = MetricsRegistry.getDefault().histogram("packets.handle");
+    private static final LongAdder PACKETS_RECEIVED = MetricsRegistry.getDefault().counter("packets.received");
+
+    /** Number of chat messages a client may send in a burst. */
+    private static final int CHAT_BURST = 5;
+
+    /** Sustained number of chat messages per second a client may send. */
+    private static final double CHAT_RATE = 1.0;
+
+    /** Shared by CHAT and WHISPER; messages over the limit are dropped silently. */
+    private final TokenBucket chatLimiter = new TokenBucket(CHAT_BURST, CHAT_RATE, System.nanoTime());
 
     /*@
       private invariant server != null;
@@ -79,6 +104,16 @@ public class ClientHandler extends SocketConnection {
         return username;
     }
 
+    /**
+     * Checks whether this client understands the CLOCK extension, i.e. the
+     * time fields appended to NEWGAME and MOVE messages.
+     *
+     * @return true if the client announced CLOCK in its HELLO
+     */
+    public boolean supportsClock() {
+        return clockExtension;
+    }
+
     /**
      * Sets the opponent of this client.
      *
@@ -121,8 +156,8 @@ public class ClientHandler extends SocketConnection {
 
     /**
      * Handles a single incoming protocol message from the client.
-     * The message is parsed and delegated to the appropriate
-     * server-side logic.
+     * The message is tokenized in place by the connection's {@link PacketParser}
+     * and delegated to the appropriate server-side logic.
      *
      * @param message the received protocol message
      */
@@ -130,33 +165,41 @@ public class ClientHandler extends SocketConnection {
       requires message != null;
     @*/
     @Override
-    protected void handlePackets(String message) throws NumberFormatException {
+    protected void handlePackets(String message) {
+        PacketEvent event = new PacketEvent();
+        event.begin();
+        long received = System.nanoTime();
 
-        if (StringUtils.isAllBlank(message)) {
+        if (!parser.parse(message)) {
             return;
         }
 
-        String[] parts = StringUtils.split(message, Protocol.SEPARATOR);
-        String command = parts[0];
-
+        long parsed = System.nanoTime();
+        PACKETS_RECEIVED.increment();
         try {
-            switch (command) {
+            switch (parser.command()) {
 
-                case Protocol.HELLO:
-                    sendPacket(Protocol.HELLO + Protocol.SEPARATOR + "Server is ready");
+                case HELLO:
+                    for (int i = 2; i < parser.fieldCount(); i++) {
+                        if (parser.fieldEquals(i, Protocol.CLOCK)) {
+                            clockExtension = true;
+                        }
+                    }
+                    sendPacket(Protocol.HELLO + Protocol.SEPARATOR + "Server is ready"
+                                       + Protocol.SEPARATOR + Protocol.CLOCK);
                     break;
 
-                case Protocol.LOGIN:
-                    if (parts.length > 1) {
-                        String name = StringUtils.stripToNull(parts[1]);
+                case LOGIN:
+                    if (parser.fieldCount() > 1) {
+                        String name = StringUtils.stripToNull(parser.stringField(1));
                         if (name != null) {
-                            if (server.isLoggedIn(name)) {
+                            if (!server.login(this, name)) {
                                 sendPacket(Protocol.ERROR + Protocol.SEPARATOR
                                                    + name + " is " + Protocol.ALREADYLOGGEDIN);
                             } else {
                                 this.username = name;
                                 sendPacket(Protocol.LOGIN + Protocol.SEPARATOR + "SUCCESS");
-                                System.out.println(username + " is logged in");
+                                Log.info("login", "user", username);
                             }
                         } else {
                             sendPacket(Protocol.ERROR + Protocol.SEPARATOR + "ERROR: EMPTY USERNAME");
@@ -164,52 +207,203 @@ public class ClientHandler extends SocketConnection {
                     }
                     break;
 
-                case Protocol.QUEUE:
+                case QUEUE:
                     if (this.username == null) {
                         sendPacket(Protocol.ERROR + Protocol.SEPARATOR + "YOU HAVE TO LOGIN");
                         return;
                     }
-                    System.out.println(this.username + " added to queue");
                     server.addToQueue(this);
                     break;
 
-                case Protocol.MOVE:
-                    if (parts.length == 2) {
-                        int piece = Integer.parseInt(parts[1]);
-                        server.handleMove(this, piece, -1);
-                    } else if (parts.length == 3) {
-                        int location = Integer.parseInt(parts[1]);
-                        int piece = Integer.parseInt(parts[2]);
-                        server.handleMove(this, piece, location);
-                    } else {
-                        sendPacket(Protocol.ERROR + Protocol.SEPARATOR + "Invalid Move Format");
-                    }
+                case MOVE:
+                    handleMoveCommand();
                     break;
 
-                case Protocol.LIST:
+                case LIST:
                     String users = server.getUserList();
                     sendPacket(Protocol.LIST + Protocol.SEPARATOR + users);
                     break;
 
-                case Protocol.CHAT:
-                    if (parts.length > 1) {
-                        String text = parts[1];
+                case CHAT:
+                    if (parser.fieldCount() > 1 && username != null && chatLimiter.tryAcquire(System.nanoTime())) {
+                        String text = parser.stringField(1);
                         server.broadcast(
                                 Protocol.CHAT + Protocol.SEPARATOR
-                                        + this.username + Protocol.SEPARATOR + text
+                                        + this.username + Protocol.SEPARATOR + text, this
                         );
                     }
                     break;
 
-                case Protocol.RANK:
-                    String payload = server.getProtocolRankings();
-                    sendPacket(Protocol.RANK + payload);
+                case WHISPER:
+                    handleWhisperCommand();
+                    break;
+
+                case RANK:
+                    handleRankCommand();
+                    break;
+
+                case STATS:
+                    handleStatsCommand();
+                    break;
+
+                case SPECTATE:
+                    if (parser.fieldCount() > 1) {
+                        String target = parser.stringField(1);
+                        if (!server.spectate(this, target)) {
+                            sendPacket(Protocol.CANNOTSPECTATE + Protocol.SEPARATOR + target);
+                        }
+                    }
+                    break;
+
+                case HISTORY:
+                    handleHistoryCommand();
+                    break;
+
+                case REPLAY:
+                    if (parser.fieldCount() > 1) {
+                        int gameId = parser.intField(1);
+                        String replay = gameId > 0 ? server.getProtocolReplay(gameId) : null;
+                        if (replay != null) {
+                            sendPacket(Protocol.REPLAY + replay);
+                        } else {
+                            sendPacket(Protocol.CANNOTREPLAY + Protocol.SEPARATOR + parser.stringField(1));
+                        }
+                    }
+                    break;
+
+                case PING:
+                    sendPacket(Protocol.PONG);
+                    break;
+
+                case PONG:
+                    // receiving the line already refreshed the idle time
+                    break;
+
+                default:
                     break;
             }
 
         } catch (Exception e) {
             e.getMessage();
+        } finally {
+            PACKET_LATENCY.record(System.nanoTime() - received);
+            event.end();
+            if (event.shouldCommit()) {
+                event.command = parser.command().name();
+                event.player = username;
+                event.bytes = message.getBytes(StandardCharsets.UTF_8).length;
+                event.parseTime = parsed - received;
+                event.commit();
+            }
+        }
+    }
+
+    /**
+     * Answers a STATS request with a snapshot of the server metrics,
+     * one {@code name=value} field per metric. STATS is an admin command and
+     * is only answered on connections from the local machine; for everyone
+     * else it is ignored like any unknown command.
+     */
+    private void handleStatsCommand() {
+        if (!isLocal()) {
+            return;
+        }
+        StringBuilder sb = new StringBuilder(Protocol.STATS);
+        MetricsRegistry.getDefault().snapshot().forEach((name, value) ->
+                sb.append(Protocol.SEPARATOR).append(name).append('=').append(value));
+        sendPacket(sb.toString());
+    }
+
+    /**
+     * Routes a private message to a single recipient.
+     * The sender receives CANNOTWHISPER if the recipient is not logged in.
+     */
+    private void handleWhisperCommand() {
+        if (parser.fieldCount() < 3 || username == null) {
+            return;
+        }
+        String recipient = parser.stringField(1);
+        if (!chatLimiter.tryAcquire(System.nanoTime())) {
+            return;
+        }
+        String message = Protocol.WHISPER + Protocol.SEPARATOR + username
+                + Protocol.SEPARATOR + parser.stringField(2);
+        if (!server.whisper(recipient, message)) {
+            sendPacket(Protocol.CANNOTWHISPER + Protocol.SEPARATOR + recipient);
+        }
+    }
+
+    /**
+     * Parses the numeric fields of a MOVE command and forwards the move to the server.
+     * A move consists either of a single piece (first move) or of a location and a piece.
+     */
+    private void handleMoveCommand() {
+        int location = -1;
+        int piece;
+
+        if (parser.fieldCount() == 2) {
+            piece = parser.intField(1);
+        } else if (parser.fieldCount() == 3) {
+            location = parser.intField(1);
+            piece = parser.intField(2);
+            if (location == PacketParser.INVALID_NUMBER) {
+                piece = PacketParser.INVALID_NUMBER;
+            }
+        } else {
+            piece = PacketParser.INVALID_NUMBER;
+        }
+
+        if (piece == PacketParser.INVALID_NUMBER) {
+            sendPacket(Protocol.ERROR + Protocol.SEPARATOR + "Invalid Move Format");
+            return;
+        }
+        server.handleMove(this, piece, location);
+    }
+
+    /**
+     * Answers a RANK request. Supported forms are {@code RANK} (top of the
+     * leaderboard), {@code RANK~count}, {@code RANK~offset~count} and
+     * {@code RANK~ME} (own position and MMR).
+     */
+    private void handleRankCommand() {
+        String payload;
+        if (parser.fieldCount() == 1) {
+            payload = server.getProtocolRankings();
+        } else if (parser.fieldEquals(1, Protocol.ME)) {
+            if (this.username == null) {
+                sendPacket(Protocol.ERROR + Protocol.SEPARATOR + "YOU HAVE TO LOGIN");
+                return;
+            }
+            payload = server.getProtocolRank(this.username);
+        } else {
+            int offset = parser.fieldCount() == 3 ? parser.intField(1) : 0;
+            int count = parser.intField(parser.fieldCount() == 3 ? 2 : 1);
+            if (offset < 0 || count < 0) {
+                sendPacket(Protocol.ERROR + Protocol.SEPARATOR + "Invalid Rank Format");
+                return;
+            }
+            payload = server.getProtocolRankings(offset, count);
         }
+        sendPacket(Protocol.RANK + payload);
+    }
+
+    /**
+     * Answers a HISTORY request with the most recent games of a player.
+     * Supported forms are {@code HISTORY} (own games), {@code HISTORY~username}
+     * and {@code HISTORY~username~count}. The reply starts with the username.
+     */
+    private void handleHistoryCommand() {
+        String player = parser.fieldCount() > 1 ? parser.stringField(1) : this.username;
+        if (player == null) {
+            sendPacket(Protocol.ERROR + Protocol.SEPARATOR + "YOU HAVE TO LOGIN");
+            return;
+        }
+        int count = parser.fieldCount() > 2 ? parser.intField(2) : GameLog.DEFAULT_HISTORY;
+        if (count < 0) {
+            sendPacket(Protocol.ERROR + Protocol.SEPARATOR + "Invalid History Format");
+            return;
+        }
+        sendPacket(Protocol.HISTORY + Protocol.SEPARATOR + player + server.getProtocolHistory(player, count));
     }
 
     /**
@@ -221,13 +415,44 @@ public class ClientHandler extends SocketConnection {
         return this.server;
     }
 
+    /**
+     * Returns the game this connection is following as a spectator.
+     *
+     * @return the watched session, or null
+     */
+    public GameSession getSpectating() {
+        return spectating;
+    }
+
+    /**
+     * Records the game this connection is following as a spectator.
+     *
+     * @param session the watched session, or null when it stops watching
+     */
+    void setSpectating(GameSession session) {
+        this.spectating = session;
+    }
+
+    /**
+     * Remembers the pending idle check of this connection.
+     *
+     * @param idleCheck the scheduled check
+     */
+    void setIdleCheck(TimerWheel.Timeout idleCheck) {
+        this.idleCheck = idleCheck;
+    }
+
     /**
      * Handles client disconnection.
-     * Notifies the server so that cleanup can be performed.
+     * Cancels the idle check and notifies the server so that cleanup can be performed.
      */
     @Override
     public void handleDisconnect() {
-        System.out.println(Protocol.DISCONNECT + Protocol.SEPARATOR + this.username);
+        Log.info("disconnect", "user", this.username);
+        TimerWheel.Timeout check = idleCheck;
+        if (check != null) {
+            check.cancel();
+        }
         if (server != null) {
             server.handleDisconnect(this);
         }
@@ -1,11 +1,27 @@
 package server;
 
 import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * FileStorage is responsible for persistent storage of player ratings (MMR).
+ * <p>
+ * Ratings live in a snapshot file ({@code ratings.txt}) plus an append-only
+ * change log ({@code ratings.log}). A rating change only updates the
+ * in-memory map and queues a log record; a background flusher appends
+ * queued records in batches with one fsync per batch (group commit), and
+ * periodically compacts the log into a fresh snapshot. The cost of a rating
+ * change is therefore independent of the number of stored players.
  */
 public class FileStorage {
 
@@ -17,18 +33,93 @@ public class FileStorage {
     /** Name of the file used to store ratings */
     private String FILE_NAME = "ratings.txt";
 
+    /** Default name of the file used to log rating changes */
+    private static final String LOG_NAME = "ratings.log";
+
+    /** Maximum time in milliseconds a rating change waits before it is flushed */
+    private static final long FLUSH_INTERVAL = 50;
+
+    /** Number of logged changes after which the log is compacted into the snapshot */
+    private static final int COMPACTION_THRESHOLD = 10000;
+
+    /** Number of players returned by a RANK request without an explicit page size */
+    public static final int DEFAULT_PAGE_SIZE = 50;
+
+    /** Largest page of the leaderboard returned by a single RANK request */
+    public static final int MAX_PAGE_SIZE = 100;
+
+    /** Time of one batched log append including its fsync, in nanoseconds */
+    private static final Histogram APPEND_LATENCY = MetricsRegistry.getDefault().histogram("storage.append");
+
+    /** Time of writing one ratings snapshot, in nanoseconds */
+    private static final Histogram SNAPSHOT_LATENCY = MetricsRegistry.getDefault().histogram("storage.snapshot");
+
+    private static final LongAdder RECORDS_WRITTEN = MetricsRegistry.getDefault().counter("storage.records");
+
     /** Map storing usernames and their corresponding MMR values */
     private Map<String, Integer> ratings = new HashMap<>();
 
+    /** Leaderboard ordered by MMR, kept in sync with {@link #ratings} */
+    private volatile RankingIndex rankings = new RankingIndex();
+
+    /** Log of rating changes that are not yet part of the snapshot */
+    private final RatingLog log;
+
+    /** Rating changes waiting to be appended to the log */
+    private final LinkedBlockingQueue<Change> pending = new LinkedBlockingQueue<>();
+
+    /** Monitor used by callers waiting for their changes to become durable */
+    private final Object durability = new Object();
+
+    private long lastQueued = 0;
+    private long lastDurable = 0;
+    private int changesSinceCompaction = 0;
+    private volatile boolean closed = false;
+
+    /** Background thread appending queued changes to the log */
+    private final Thread flusher;
+
+    /**
+     * A single queued rating change.
+     */
+    private static final class Change {
+        private final String record;
+        private final long sequence;
+
+        private Change(String record, long sequence) {
+            this.record = record;
+            this.sequence = sequence;
+        }
+    }
+
     /**
      * Initializes the file storage and loads existing ratings from file.
      */
     public FileStorage(){
+        this("ratings.txt", LOG_NAME);
+    }
+
+    /**
+     * Initializes the file storage with custom file names and loads existing ratings.
+     *
+     * @param fileName name of the snapshot file
+     * @param logName  name of the change log file
+     */
+    /*@
+      @ requires fileName != null && logName != null;
+      @*/
+    public FileStorage(String fileName, String logName){
+        this.FILE_NAME = fileName;
+        this.log = new RatingLog(Paths.get(logName));
         load();
+
+        this.flusher = new Thread(this::flushLoop, "Ratings-Flusher");
+        flusher.setDaemon(true);
+        flusher.start();
     }
 
     /**
-     * Loads player ratings from the file.
+     * Loads player ratings from the snapshot file and replays the change log on top of it.
      * <p>
      * If the file does not exist, it is created automatically.
      * Each line is expected to follow the format: username:mmr
@@ -36,7 +127,7 @@ public class FileStorage {
     /*@
       @ assignable ratings;
       @*/
-    public void load(){
+    public synchronized void load(){
         File file = new File(FILE_NAME);
 
         // Create file if it does not exist
@@ -46,6 +137,8 @@ public class FileStorage {
             } catch (IOException e) {
                 e.getMessage();
             }
+            log.replay(ratings);
+            rebuildRankings();
             return;
         }
 
@@ -60,30 +153,98 @@ public class FileStorage {
                     ratings.put(username, mmr);
                 }
             }
-            System.out.println("Ratings loaded from file!");
+            log.replay(ratings);
+            rebuildRankings();
+            Log.info("ratings loaded", "players", ratings.size());
         } catch (IOException e) {
-            System.out.println("Error loading ratings: " + e.getMessage());
+            Log.error("loading ratings failed", "error", e.getMessage());
         }
     }
 
+    /**
+     * Rebuilds the leaderboard index from the ratings map.
+     */
+    private void rebuildRankings(){
+        RankingIndex index = new RankingIndex();
+        index.addAll(ratings);
+        rankings = index;
+    }
+
     /**
      * Saves all current ratings to the file.
      * Each rating is written in the format: username:mmr
+     * <p>
+     * The snapshot is written to a temporary file first and then moved
+     * over the old snapshot, so a crash never leaves a half-written file.
      */
     /*@
       @ assignable \nothing;
       @*/
     public void save(){
-        try (BufferedWriter bufferedWriter = new BufferedWriter(new FileWriter(FILE_NAME))){
-            for (String name : ratings.keySet()){
-                int mmr = ratings.get(name);
-                bufferedWriter.write(name + ":" + mmr);
+        Map<String, Integer> snapshot;
+        synchronized (this) {
+            snapshot = new HashMap<>(ratings);
+        }
+        writeSnapshot(snapshot);
+    }
+
+    /**
+     * Writes the given ratings to the snapshot file atomically.
+     *
+     * @param snapshot ratings to write
+     * @return true if the snapshot was written
+     */
+    private boolean writeSnapshot(Map<String, Integer> snapshot){
+        StorageSaveEvent event = new StorageSaveEvent();
+        event.begin();
+        long start = System.nanoTime();
+        try {
+            event.success = writeSnapshotFile(snapshot);
+            return event.success;
+        } finally {
+            SNAPSHOT_LATENCY.record(System.nanoTime() - start);
+            commit(event, "SNAPSHOT", snapshot.size());
+        }
+    }
+
+    /**
+     * Ends a storage event and commits it if a recording asks for it.
+     */
+    private static void commit(StorageSaveEvent event, String operation, int records){
+        event.end();
+        if (event.shouldCommit()) {
+            event.operation = operation;
+            event.records = records;
+            event.commit();
+        }
+    }
+
+    /**
+     * Writes the snapshot to a temporary file and moves it over the ratings file.
+     */
+    private boolean writeSnapshotFile(Map<String, Integer> snapshot){
+        Path target = Paths.get(FILE_NAME);
+        Path temp = Paths.get(FILE_NAME + ".tmp");
+        try (BufferedWriter bufferedWriter = Files.newBufferedWriter(temp)){
+            for (Map.Entry<String, Integer> entry : snapshot.entrySet()){
+                bufferedWriter.write(entry.getKey() + ":" + entry.getValue());
                 bufferedWriter.newLine();
             }
-
         } catch (IOException e) {
             e.getMessage();
+            return false;
+        }
+        try {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            try {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            } catch (IOException ex) {
+                ex.getMessage();
+                return false;
+            }
         }
+        return true;
     }
 
     /**
@@ -95,14 +256,15 @@ public class FileStorage {
     /*@
       @ ensures \result >= 0;
       @*/
-    public int getMmr(String username){
+    public synchronized int getMmr(String username){
         return ratings.getOrDefault(username, 1000);
     }
 
     /**
      * Updates the MMR of a user by adding the given number of points.
      * The resulting MMR value cannot be negative.
-     * After updating, the ratings are saved to file.
+     * The change is queued for the background flusher and becomes durable
+     * within {@value #FLUSH_INTERVAL} ms; use {@link #flush()} to wait for it.
      *
      * @param username player username
      * @param point MMR change (positive or negative)
@@ -111,19 +273,186 @@ public class FileStorage {
       @ requires username != null;
       @ assignable ratings;
       @*/
-    public void updateMmr(String username, int point){
+    public synchronized void updateMmr(String username, int point){
         int currentMmr = getMmr(username);
         int newMmr = currentMmr + point;
 
         // Prevent negative MMR values
         if (newMmr < 0) newMmr = 0;
 
-        ratings.put(username, newMmr);
-        save();
+        Integer previousMmr = ratings.put(username, newMmr);
+        rankings.update(username, previousMmr, newMmr);
+        pending.add(new Change(username + ":" + newMmr, ++lastQueued));
     }
 
     /**
-     * Returns player rankings formatted for protocol transmission.
+     * Applies the rating changes of several users at once.
+     * Equivalent to calling {@link #updateMmr(String, int)} for every entry,
+     * but takes the storage lock only once.
+     *
+     * @param changes MMR change per username
+     */
+    /*@
+      @ requires changes != null;
+      @ assignable ratings;
+      @*/
+    public synchronized void updateMmr(Map<String, Integer> changes){
+        for (Map.Entry<String, Integer> change : changes.entrySet()) {
+            updateMmr(change.getKey(), change.getValue());
+        }
+    }
+
+    /**
+     * Blocks until every rating change made so far has been written to disk.
+     */
+    public void flush(){
+        long target;
+        synchronized (this) {
+            target = lastQueued;
+        }
+        synchronized (durability) {
+            while (lastDurable < target && !closed) {
+                try {
+                    durability.wait(FLUSH_INTERVAL);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Flushes outstanding changes, compacts the log into the snapshot and
+     * stops the background flusher.
+     */
+    public void close(){
+        flush();
+        synchronized (log) {
+            // the flusher only writes while holding the log lock, so it cannot be
+            // interrupted in the middle of a write, which would close the channel
+            closed = true;
+            flusher.interrupt();
+        }
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // only now no batch taken before closing can land after the compaction
+        compact();
+        log.close();
+    }
+
+    /**
+     * Main loop of the background flusher.
+     * Waits for queued changes, then drains everything that arrived in the
+     * meantime and writes it as one batch with a single fsync.
+     */
+    private void flushLoop(){
+        List<Change> batch = new ArrayList<>();
+        while (!closed) {
+            try {
+                Change first = pending.poll(FLUSH_INTERVAL, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                pending.drainTo(batch);
+            } catch (InterruptedException e) {
+                return;
+            }
+
+            synchronized (log) {
+                if (closed) {
+                    // close() compacts next; its snapshot already holds these changes
+                    return;
+                }
+                try {
+                    appendBatch(batch);
+                } catch (IOException e) {
+                    Log.error("writing rating log failed", "error", e.getMessage());
+                }
+                if (changesSinceCompaction >= COMPACTION_THRESHOLD) {
+                    compact();
+                }
+            }
+            batch.clear();
+        }
+    }
+
+    /**
+     * Writes the current ratings as a new snapshot and truncates the log.
+     * Changes that are still queued are appended first, so the log never
+     * holds a value older than the snapshot if the process dies before
+     * the log is truncated.
+     */
+    private void compact(){
+        synchronized (log) {
+            Map<String, Integer> snapshot;
+            List<Change> queued = new ArrayList<>();
+            synchronized (this) {
+                snapshot = new HashMap<>(ratings);
+                pending.drainTo(queued);
+            }
+            try {
+                appendBatch(queued);
+            } catch (IOException e) {
+                Log.error("writing rating log failed", "error", e.getMessage());
+                return;
+            }
+            if (!writeSnapshot(snapshot)) {
+                return;
+            }
+            try {
+                log.truncate();
+                changesSinceCompaction = 0;
+            } catch (IOException e) {
+                Log.error("truncating rating log failed", "error", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Appends a batch of changes to the log with one fsync and marks them durable.
+     */
+    private void appendBatch(List<Change> batch) throws IOException {
+        if (batch.isEmpty()) {
+            return;
+        }
+        List<String> records = new ArrayList<>(batch.size());
+        for (Change change : batch) {
+            records.add(change.record);
+        }
+        StorageSaveEvent event = new StorageSaveEvent();
+        event.begin();
+        long start = System.nanoTime();
+        try {
+            log.append(records);
+            event.success = true;
+        } finally {
+            APPEND_LATENCY.record(System.nanoTime() - start);
+            commit(event, "APPEND", records.size());
+        }
+        RECORDS_WRITTEN.add(records.size());
+        changesSinceCompaction += records.size();
+        markDurable(batch.get(batch.size() - 1).sequence);
+    }
+
+    /**
+     * Records that all changes up to the given sequence number are on disk.
+     */
+    private void markDurable(long sequence){
+        synchronized (durability) {
+            if (sequence > lastDurable) {
+                lastDurable = sequence;
+            }
+            durability.notifyAll();
+        }
+    }
+
+    /**
+     * Returns the top of the leaderboard formatted for protocol transmission.
      * Rankings are sorted in descending order of MMR.
      *
      * @return protocol-formatted rankings string
@@ -132,22 +461,51 @@ public class FileStorage {
       @ ensures \result != null;
       @*/
     public String getRankingsForProtocol() {
+        return getRankingsForProtocol(0, DEFAULT_PAGE_SIZE);
+    }
 
-        java.util.List<java.util.Map.Entry<String, Integer>> list =
-                new java.util.ArrayList<>(ratings.entrySet());
-
-        // Sort players by MMR in descending order
-        list.sort((o1, o2) -> o2.getValue().compareTo(o1.getValue()));
-
+    /**
+     * Returns one page of the leaderboard formatted for protocol transmission.
+     * Only the requested entries are visited, so the cost does not depend
+     * on the total number of players.
+     *
+     * @param offset number of players to skip from the top
+     * @param count  number of players to return, capped at {@value #MAX_PAGE_SIZE}
+     * @return protocol-formatted rankings string
+     */
+    /*@
+      @ requires offset >= 0 && count >= 0;
+      @ ensures \result != null;
+      @*/
+    public String getRankingsForProtocol(int offset, int count) {
         StringBuilder sb = new StringBuilder();
 
-        for (java.util.Map.Entry<String, Integer> entry : list) {
+        for (RankingIndex.Entry entry : rankings.page(offset, Math.min(count, MAX_PAGE_SIZE))) {
             sb.append(protocol.Protocol.SEPARATOR)
-                    .append(entry.getKey())
+                    .append(entry.getName())
                     .append(protocol.Protocol.SEPARATOR)
-                    .append(entry.getValue());
+                    .append(entry.getMmr());
         }
 
         return sb.toString();
     }
+
+    /**
+     * Returns the leaderboard position of a player formatted for protocol
+     * transmission as {@code ~ME~position~mmr}.
+     * Players without a stored rating are placed where the default MMR would put them.
+     *
+     * @param username player username
+     * @return protocol-formatted position string
+     */
+    /*@
+      @ requires username != null;
+      @ ensures \result != null;
+      @*/
+    public String getRankForProtocol(String username) {
+        int mmr = getMmr(username);
+        return protocol.Protocol.SEPARATOR + protocol.Protocol.ME
+                + protocol.Protocol.SEPARATOR + rankings.position(username, mmr)
+                + protocol.Protocol.SEPARATOR + mmr;
+    }
 }
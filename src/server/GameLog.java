@@ -0,0 +1,555 @@
+package server;
+
+import protocol.Protocol;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Append-only, segmented binary log of finished games.
+ * <p>
+ * Records (see {@link GameRecord}) are appended to segment files
+ * {@code games-00000001.bin}, {@code games-00000002.bin}, ... in a
+ * directory; a new segment is started once the current one reaches its
+ * size limit, so no single file grows without bound and old segments can
+ * be archived as a whole. Finished games are queued without blocking and
+ * written by one background thread in batches with one fsync per batch.
+ * <p>
+ * An in-memory index maps every game id to the segment and offset of its
+ * record and every player to the ids of their games, so HISTORY and REPLAY
+ * queries read only the records they return. The index is rebuilt by
+ * scanning the segments on startup; a record torn by a crash at the end
+ * of the last segment is cut off.
+ */
+public class GameLog {
+
+    /** Default size in bytes after which a new segment is started. */
+    public static final long DEFAULT_SEGMENT_SIZE = 64L * 1024 * 1024;
+
+    /** Number of games returned by a HISTORY request without an explicit count. */
+    public static final int DEFAULT_HISTORY = 20;
+
+    /** Largest number of games returned by a single HISTORY request. */
+    public static final int MAX_HISTORY = 100;
+
+    /** Maximum time in milliseconds a finished game waits before it is written. */
+    private static final long FLUSH_INTERVAL = 50;
+
+    private static final String SEGMENT_PREFIX = "games-";
+    private static final String SEGMENT_SUFFIX = ".bin";
+
+    /** Time of one batched append including its fsync, in nanoseconds. */
+    private static final Histogram APPEND_LATENCY = MetricsRegistry.getDefault().histogram("games.log.append");
+    private static final LongAdder GAMES_RECORDED = MetricsRegistry.getDefault().counter("games.recorded");
+
+    /**
+     * Growable list of game ids of one player, in the order they were written.
+     */
+    private static final class GameIds {
+        private int[] ids = new int[4];
+        private int size = 0;
+
+        private void add(int id) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size++] = id;
+        }
+    }
+
+    /**
+     * A queued record with its sequence number for {@link #flush()}.
+     */
+    private static final class Pending {
+        private final GameRecord record;
+        private final long sequence;
+
+        private Pending(GameRecord record, long sequence) {
+            this.record = record;
+            this.sequence = sequence;
+        }
+    }
+
+    private final Path directory;
+    private final long segmentSize;
+
+    /** Location of every record by game id: segment number in the high, offset in the low 32 bits; 0 if absent. */
+    private long[] positions = new long[1024];
+    private final Map<String, GameIds> byPlayer = new HashMap<>();
+    private int lastGameId = 0;
+    private int recordCount = 0;
+
+    /** Read channels of the segments, shared by all queries. */
+    private final Map<Integer, FileChannel> readers = new ConcurrentHashMap<>();
+
+    private final LinkedBlockingQueue<Pending> pending = new LinkedBlockingQueue<>();
+    private final Object durability = new Object();
+    private long lastQueued = 0;
+    private long lastDurable = 0;
+    private volatile boolean closed = false;
+
+    /** Current segment; only used by the writer thread after startup. */
+    private int segment = 1;
+    private long segmentLength = 0;
+    private FileChannel out;
+
+    /*@
+      private invariant directory != null;
+      private invariant segmentSize > 0 && segmentSize <= Integer.MAX_VALUE;
+      private invariant lastGameId >= 0 && recordCount >= 0;
+    @*/
+
+    /**
+     * Opens the game log in the given directory, creating it if needed,
+     * rebuilds the index and starts the writer thread.
+     *
+     * @param directory   directory holding the segment files
+     * @param segmentSize size in bytes after which a new segment is started
+     * @throws IOException if the directory cannot be created or read
+     */
+    /*@
+      requires directory != null;
+      requires segmentSize > 0 && segmentSize <= Integer.MAX_VALUE;
+    @*/
+    public GameLog(Path directory, long segmentSize) throws IOException {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        Files.createDirectories(directory);
+        load();
+
+        Thread writer = new Thread(this::writeLoop, "GameLog-Writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Queues a finished game for writing. Never blocks.
+     *
+     * @param record the game to store
+     */
+    /*@
+      requires record != null;
+    @*/
+    public void append(GameRecord record) {
+        if (closed) {
+            return;
+        }
+        synchronized (this) {
+            pending.add(new Pending(record, ++lastQueued));
+        }
+    }
+
+    /**
+     * Returns the highest game id stored in the log, so a restarted server
+     * can continue numbering after it.
+     *
+     * @return the last game id, or 0 if the log is empty
+     */
+    public synchronized int getLastGameId() {
+        return lastGameId;
+    }
+
+    /**
+     * Returns the number of games stored in the log.
+     *
+     * @return record count
+     */
+    public synchronized int size() {
+        return recordCount;
+    }
+
+    /**
+     * Reads a single game.
+     *
+     * @param gameId the game id
+     * @return the game, or null if it is not (yet) stored
+     */
+    public GameRecord read(int gameId) {
+        long position;
+        synchronized (this) {
+            if (gameId <= 0 || gameId >= positions.length) {
+                return null;
+            }
+            position = positions[gameId];
+        }
+        return position == 0 ? null : readAt(position);
+    }
+
+    /**
+     * Returns the most recent games of a player, newest first.
+     *
+     * @param player the username
+     * @param count  maximum number of games
+     * @return the games, possibly empty
+     */
+    /*@
+      requires player != null && count >= 0;
+      ensures \result.size() <= count;
+    @*/
+    public List<GameRecord> history(String player, int count) {
+        long[] wanted;
+        synchronized (this) {
+            GameIds ids = byPlayer.get(player);
+            if (ids == null) {
+                return List.of();
+            }
+            int n = Math.min(count, ids.size);
+            wanted = new long[n];
+            for (int i = 0; i < n; i++) {
+                wanted[i] = positions[ids.ids[ids.size - 1 - i]];
+            }
+        }
+        List<GameRecord> games = new ArrayList<>(wanted.length);
+        for (long position : wanted) {
+            GameRecord record = readAt(position);
+            if (record != null) {
+                games.add(record);
+            }
+        }
+        return games;
+    }
+
+    /**
+     * Returns the most recent games of a player formatted for protocol
+     * transmission: for every game {@code ~gameId~player1~player2~outcome},
+     * where the outcome is the name of the winner or DRAW.
+     *
+     * @param player the username
+     * @param count  maximum number of games, capped at {@value #MAX_HISTORY}
+     * @return protocol-formatted history string
+     */
+    /*@
+      requires player != null && count >= 0;
+      ensures \result != null;
+    @*/
+    public String getHistoryForProtocol(String player, int count) {
+        StringBuilder sb = new StringBuilder();
+        for (GameRecord game : history(player, Math.min(count, MAX_HISTORY))) {
+            sb.append(Protocol.SEPARATOR).append(game.getGameId())
+                    .append(Protocol.SEPARATOR).append(game.getPlayer1())
+                    .append(Protocol.SEPARATOR).append(game.getPlayer2())
+                    .append(Protocol.SEPARATOR).append(outcome(game));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Returns a game formatted for protocol transmission:
+     * {@code ~gameId~player1~player2~outcome~ending~startMillis~durationMillis}
+     * followed by one field per move, the piece for the opening move and
+     * {@code location,piece} for every later move.
+     *
+     * @param gameId the game id
+     * @return protocol-formatted game, or null if the game is not stored
+     */
+    public String getReplayForProtocol(int gameId) {
+        GameRecord game = read(gameId);
+        if (game == null) {
+            return null;
+        }
+        StringBuilder sb = new StringBuilder(64);
+        sb.append(Protocol.SEPARATOR).append(game.getGameId())
+                .append(Protocol.SEPARATOR).append(game.getPlayer1())
+                .append(Protocol.SEPARATOR).append(game.getPlayer2())
+                .append(Protocol.SEPARATOR).append(outcome(game))
+                .append(Protocol.SEPARATOR).append(game.getEnding())
+                .append(Protocol.SEPARATOR).append(game.getStartMillis())
+                .append(Protocol.SEPARATOR).append(game.getDurationMillis());
+        for (int i = 0; i < game.getMoveCount(); i++) {
+            sb.append(Protocol.SEPARATOR);
+            if (i > 0) {
+                sb.append(game.getLocation(i)).append(',');
+            }
+            sb.append(game.getPiece(i));
+        }
+        return sb.toString();
+    }
+
+    private static String outcome(GameRecord game) {
+        String winner = game.getWinnerName();
+        return winner != null ? winner : Protocol.DRAW;
+    }
+
+    /**
+     * Blocks until every game queued so far has been written to disk and indexed.
+     */
+    public void flush() {
+        long target;
+        synchronized (this) {
+            target = lastQueued;
+        }
+        synchronized (durability) {
+            while (lastDurable < target && !closed) {
+                try {
+                    durability.wait(FLUSH_INTERVAL);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes outstanding games and stops the writer thread.
+     */
+    public void close() {
+        flush();
+        closed = true;
+        synchronized (pending) {
+            closeQuietly(out);
+            out = null;
+        }
+        for (FileChannel reader : readers.values()) {
+            closeQuietly(reader);
+        }
+        readers.clear();
+    }
+
+    /**
+     * Main loop of the writer thread.
+     * Waits for finished games, then drains everything that arrived in the
+     * meantime and writes it as one batch with a single fsync.
+     */
+    private void writeLoop() {
+        List<Pending> batch = new ArrayList<>();
+        while (!closed) {
+            try {
+                Pending first = pending.poll(FLUSH_INTERVAL, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                pending.drainTo(batch);
+            } catch (InterruptedException e) {
+                return;
+            }
+            synchronized (pending) {
+                try {
+                    writeBatch(batch);
+                } catch (IOException e) {
+                    Log.error("writing game log failed", "error", e.getMessage());
+                }
+            }
+            markDurable(batch.get(batch.size() - 1).sequence);
+            batch.clear();
+        }
+    }
+
+    /**
+     * Appends a batch of games, rolling over to a new segment where needed,
+     * forces the data to disk once and then adds the games to the index.
+     */
+    private void writeBatch(List<Pending> batch) throws IOException {
+        if (out == null) {
+            return;
+        }
+        long start = System.nanoTime();
+        ByteArrayOutputStream chunk = new ByteArrayOutputStream(batch.size() * 48);
+        int[] ids = new int[batch.size()];
+        long[] locations = new long[batch.size()];
+        for (int i = 0; i < batch.size(); i++) {
+            byte[] bytes = batch.get(i).record.encode();
+            if (segmentLength + chunk.size() > 0 && segmentLength + chunk.size() + bytes.length > segmentSize) {
+                writeFully(chunk.toByteArray());
+                chunk.reset();
+                out.force(false);
+                closeQuietly(out);
+                segment++;
+                segmentLength = 0;
+                out = openSegment(segment);
+            }
+            ids[i] = batch.get(i).record.getGameId();
+            locations[i] = ((long) segment << 32) | (segmentLength + chunk.size());
+            chunk.write(bytes, 0, bytes.length);
+        }
+        writeFully(chunk.toByteArray());
+        out.force(false);
+        APPEND_LATENCY.record(System.nanoTime() - start);
+        GAMES_RECORDED.add(batch.size());
+
+        synchronized (this) {
+            for (int i = 0; i < batch.size(); i++) {
+                index(batch.get(i).record, locations[i]);
+            }
+        }
+    }
+
+    private void writeFully(byte[] bytes) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+        segmentLength += bytes.length;
+    }
+
+    /**
+     * Records that all games up to the given sequence number are on disk.
+     */
+    private void markDurable(long sequence) {
+        synchronized (durability) {
+            if (sequence > lastDurable) {
+                lastDurable = sequence;
+            }
+            durability.notifyAll();
+        }
+    }
+
+    /**
+     * Adds a stored record to the index. Must hold this object's monitor.
+     */
+    private void index(GameRecord record, long location) {
+        int id = record.getGameId();
+        if (id >= positions.length) {
+            positions = Arrays.copyOf(positions, Math.max(id + 1, positions.length * 2));
+        }
+        if (positions[id] == 0) {
+            recordCount++;
+            byPlayer.computeIfAbsent(record.getPlayer1(), name -> new GameIds()).add(id);
+            byPlayer.computeIfAbsent(record.getPlayer2(), name -> new GameIds()).add(id);
+        }
+        positions[id] = location;
+        lastGameId = Math.max(lastGameId, id);
+    }
+
+    /**
+     * Scans all segments, rebuilds the index and opens the last segment for appending.
+     */
+    private synchronized void load() throws IOException {
+        TreeMap<Integer, Path> segments = new TreeMap<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory,
+                SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                try {
+                    segments.put(Integer.parseInt(name.substring(SEGMENT_PREFIX.length(),
+                            name.length() - SEGMENT_SUFFIX.length())), file);
+                } catch (NumberFormatException ignored) {
+                    // not a segment of this log
+                }
+            }
+        }
+        for (Map.Entry<Integer, Path> entry : segments.entrySet()) {
+            long valid = scan(entry.getKey(), entry.getValue());
+            long size = Files.size(entry.getValue());
+            if (valid < size) {
+                if (entry.getKey().equals(segments.lastKey())) {
+                    try (FileChannel channel = FileChannel.open(entry.getValue(), StandardOpenOption.WRITE)) {
+                        channel.truncate(valid);
+                    }
+                }
+                Log.warn("game log segment damaged", "file", entry.getValue() + "@" + valid);
+            }
+        }
+        if (!segments.isEmpty()) {
+            segment = segments.lastKey();
+            segmentLength = Files.size(segments.lastEntry().getValue());
+        }
+        out = openSegment(segment);
+        if (recordCount > 0) {
+            Log.info("games loaded", "games", recordCount, "segments", segments.size());
+        }
+    }
+
+    /**
+     * Indexes all intact records of a segment.
+     *
+     * @return the length of the intact prefix of the segment
+     */
+    private long scan(int number, Path file) throws IOException {
+        byte[] data = Files.readAllBytes(file);
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        while (buffer.remaining() >= GameRecord.FRAME_OVERHEAD) {
+            int offset = buffer.position();
+            int length = buffer.getInt();
+            if (length <= 0 || length > GameRecord.MAX_BODY || buffer.remaining() < length + 4) {
+                return offset;
+            }
+            byte[] body = new byte[length];
+            buffer.get(body);
+            GameRecord record = GameRecord.decode(body, buffer.getInt());
+            if (record == null) {
+                return offset;
+            }
+            index(record, ((long) number << 32) | offset);
+        }
+        return buffer.position();
+    }
+
+    /**
+     * Reads the record at a packed location.
+     *
+     * @return the record, or null if it cannot be read
+     */
+    private GameRecord readAt(long location) {
+        int number = (int) (location >>> 32);
+        long offset = location & 0xFFFFFFFFL;
+        try {
+            FileChannel channel = readers.get(number);
+            if (channel == null) {
+                channel = FileChannel.open(segmentPath(number), StandardOpenOption.READ);
+                FileChannel raced = readers.putIfAbsent(number, channel);
+                if (raced != null) {
+                    channel.close();
+                    channel = raced;
+                }
+            }
+            ByteBuffer header = ByteBuffer.allocate(4);
+            readFully(channel, header, offset);
+            int length = header.getInt(0);
+            if (length <= 0 || length > GameRecord.MAX_BODY) {
+                return null;
+            }
+            ByteBuffer frame = ByteBuffer.allocate(length + 4);
+            readFully(channel, frame, offset + 4);
+            byte[] body = Arrays.copyOf(frame.array(), length);
+            return GameRecord.decode(body, frame.getInt(length));
+        } catch (IOException e) {
+            Log.error("reading game log failed", "error", e.getMessage());
+            return null;
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                throw new IOException("Unexpected end of game log segment");
+            }
+        }
+    }
+
+    private FileChannel openSegment(int number) throws IOException {
+        return FileChannel.open(segmentPath(number), StandardOpenOption.CREATE,
+                                StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private Path segmentPath(int number) {
+        return directory.resolve(String.format("%s%08d%s", SEGMENT_PREFIX, number, SEGMENT_SUFFIX));
+    }
+
+    private static void closeQuietly(FileChannel channel) {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+}
@@ -0,0 +1,305 @@
+package server;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * Immutable record of a finished game: players, result and the move list.
+ * <p>
+ * Every accepted move is stored as one byte, the board location in the
+ * high nibble and the piece handed over in the low nibble. The opening
+ * move only hands over a piece, so its location nibble is 0. A complete
+ * game therefore takes at most 17 bytes of moves.
+ * <p>
+ * The binary form used by {@link GameLog} is a length-prefixed body
+ * followed by its CRC32:
+ * <pre>
+ * int   body length
+ * int   game id
+ * long  start time (ms since epoch)
+ * int   duration (ms)
+ * byte  winner (0 draw, 1 player 1, 2 player 2)
+ * byte  ending ordinal
+ * short + UTF-8  player 1
+ * short + UTF-8  player 2
+ * byte  number of moves, then one byte per move
+ * int   CRC32 of the body
+ * </pre>
+ */
+public final class GameRecord {
+
+    /**
+     * How a game ended.
+     */
+    public enum Ending {
+        /** Won on the board or drawn. */
+        NORMAL,
+        /** A player disconnected. */
+        DISCONNECT,
+        /** A player ran out of time. */
+        TIMEOUT
+    }
+
+    /** Size of the length prefix and the checksum around the body. */
+    static final int FRAME_OVERHEAD = 8;
+
+    /** Longest stored username in bytes; longer names are cut off. */
+    static final int MAX_NAME_BYTES = 255;
+
+    /** Largest body accepted when reading; anything larger is treated as corruption. */
+    static final int MAX_BODY = 4 + 8 + 4 + 1 + 1 + 2 * (2 + MAX_NAME_BYTES) + 1 + 17;
+
+    private final int gameId;
+    private final String player1;
+    private final String player2;
+    private final long startMillis;
+    private final int durationMillis;
+    private final int winner;
+    private final Ending ending;
+    private final byte[] moves;
+
+    /*@
+      private invariant gameId > 0;
+      private invariant player1 != null && player2 != null;
+      private invariant winner >= 0 && winner <= 2;
+      private invariant moves != null && moves.length <= 17;
+    @*/
+
+    /**
+     * Creates a game record.
+     *
+     * @param gameId         identifier of the game
+     * @param player1        name of the player who moved first
+     * @param player2        name of the second player
+     * @param startMillis    start of the game in milliseconds since epoch
+     * @param durationMillis length of the game in milliseconds
+     * @param winner         0 for a draw, otherwise 1 or 2
+     * @param ending         how the game ended
+     * @param moves          encoded moves, see {@link #encodeMove(int, int)}
+     */
+    /*@
+      requires gameId > 0 && player1 != null && player2 != null && ending != null;
+      requires winner >= 0 && winner <= 2;
+      requires moves != null && moves.length <= 17;
+    @*/
+    public GameRecord(int gameId, String player1, String player2, long startMillis,
+                      int durationMillis, int winner, Ending ending, byte[] moves) {
+        this.gameId = gameId;
+        this.player1 = player1;
+        this.player2 = player2;
+        this.startMillis = startMillis;
+        this.durationMillis = durationMillis;
+        this.winner = winner;
+        this.ending = ending;
+        this.moves = moves.clone();
+    }
+
+    /**
+     * Encodes one move into a byte.
+     *
+     * @param location board location, or -1 for the opening move
+     * @param piece    piece handed to the opponent
+     * @return the encoded move
+     */
+    /*@
+      requires location >= -1 && location < 16;
+      requires piece >= 0 && piece < 16;
+    @*/
+    public static byte encodeMove(int location, int piece) {
+        return (byte) ((Math.max(location, 0) << 4) | piece);
+    }
+
+    /**
+     * Returns the identifier of the game.
+     *
+     * @return the game id
+     */
+    public int getGameId() {
+        return gameId;
+    }
+
+    /**
+     * Returns the player who moved first.
+     *
+     * @return username of player 1
+     */
+    public String getPlayer1() {
+        return player1;
+    }
+
+    /**
+     * Returns the second player.
+     *
+     * @return username of player 2
+     */
+    public String getPlayer2() {
+        return player2;
+    }
+
+    /**
+     * Returns when the game started.
+     *
+     * @return milliseconds since epoch
+     */
+    public long getStartMillis() {
+        return startMillis;
+    }
+
+    /**
+     * Returns how long the game lasted.
+     *
+     * @return duration in milliseconds
+     */
+    public int getDurationMillis() {
+        return durationMillis;
+    }
+
+    /**
+     * Returns the winner.
+     *
+     * @return 0 for a draw, otherwise 1 or 2
+     */
+    public int getWinner() {
+        return winner;
+    }
+
+    /**
+     * Returns how the game ended.
+     *
+     * @return the ending
+     */
+    public Ending getEnding() {
+        return ending;
+    }
+
+    /**
+     * Returns the number of moves played.
+     *
+     * @return move count
+     */
+    public int getMoveCount() {
+        return moves.length;
+    }
+
+    /**
+     * Returns the board location of a move.
+     *
+     * @param index move number, 0 for the opening move
+     * @return the location, or -1 for the opening move
+     */
+    public int getLocation(int index) {
+        return index == 0 ? -1 : (moves[index] >> 4) & 0xF;
+    }
+
+    /**
+     * Returns the piece handed over with a move.
+     *
+     * @param index move number, 0 for the opening move
+     * @return the piece id
+     */
+    public int getPiece(int index) {
+        return moves[index] & 0xF;
+    }
+
+    /**
+     * Returns the name of the winner.
+     *
+     * @return the winner's name, or null for a draw
+     */
+    public String getWinnerName() {
+        return winner == 1 ? player1 : (winner == 2 ? player2 : null);
+    }
+
+    /**
+     * Serializes this record including length prefix and checksum.
+     *
+     * @return the framed record
+     */
+    public byte[] encode() {
+        byte[] name1 = nameBytes(player1);
+        byte[] name2 = nameBytes(player2);
+        int body = 4 + 8 + 4 + 1 + 1 + 2 + name1.length + 2 + name2.length + 1 + moves.length;
+        ByteBuffer buffer = ByteBuffer.allocate(body + FRAME_OVERHEAD);
+        buffer.putInt(body)
+                .putInt(gameId)
+                .putLong(startMillis)
+                .putInt(durationMillis)
+                .put((byte) winner)
+                .put((byte) ending.ordinal())
+                .putShort((short) name1.length).put(name1)
+                .putShort((short) name2.length).put(name2)
+                .put((byte) moves.length).put(moves);
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), 4, body);
+        buffer.putInt((int) crc.getValue());
+        return buffer.array();
+    }
+
+    /**
+     * Parses a record body and verifies it against its checksum.
+     *
+     * @param body     the body bytes, without length prefix and checksum
+     * @param checksum the stored CRC32
+     * @return the record, or null if the body is corrupted
+     */
+    /*@
+      requires body != null;
+    @*/
+    public static GameRecord decode(byte[] body, int checksum) {
+        CRC32 crc = new CRC32();
+        crc.update(body);
+        if ((int) crc.getValue() != checksum) {
+            return null;
+        }
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(body);
+            int gameId = buffer.getInt();
+            long start = buffer.getLong();
+            int duration = buffer.getInt();
+            int winner = buffer.get();
+            int ending = buffer.get();
+            String player1 = readName(buffer);
+            String player2 = readName(buffer);
+            byte[] moves = new byte[buffer.get()];
+            buffer.get(moves);
+            if (gameId <= 0 || winner < 0 || winner > 2 || ending < 0
+                    || ending >= Ending.values().length || moves.length > 17) {
+                return null;
+            }
+            return new GameRecord(gameId, player1, player2, start, duration, winner,
+                                  Ending.values()[ending], moves);
+        } catch (BufferUnderflowException | NegativeArraySizeException e) {
+            return null;
+        }
+    }
+
+    private static byte[] nameBytes(String name) {
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        return bytes.length <= MAX_NAME_BYTES ? bytes : Arrays.copyOf(bytes, MAX_NAME_BYTES);
+    }
+
+    private static String readName(ByteBuffer buffer) {
+        byte[] name = new byte[buffer.getShort() & 0xFFFF];
+        buffer.get(name);
+        return new String(name, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof GameRecord other)) {
+            return false;
+        }
+        return gameId == other.gameId && startMillis == other.startMillis
+                && durationMillis == other.durationMillis && winner == other.winner
+                && ending == other.ending && player1.equals(other.player1)
+                && player2.equals(other.player2) && Arrays.equals(moves, other.moves);
+    }
+
+    @Override
+    public int hashCode() {
+        return gameId;
+    }
+}
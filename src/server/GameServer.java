@@ -1,14 +1,26 @@
 package server;
 
+import networking.EncodedPacket;
+import networking.OutboundQueue;
 import networking.SocketServer;
 import protocol.Protocol;
 
+import org.apache.commons.lang3.StringUtils;
+
 import java.io.IOException;
+import java.io.PrintStream;
 import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Scanner;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * GameServer is responsible for managing client connections,
@@ -17,22 +29,87 @@ import java.util.Scanner;
  * It maintains:
  * <ul>
  * <li>a list of connected clients</li>
- * <li>a matchmaking queue</li>
+ * <li>an MMR-indexed matchmaking queue, swept periodically</li>
  * <li>active game sessions</li>
  * </ul>
  */
 public class GameServer extends SocketServer {
 
     private final ArrayList<ClientHandler> clients = new ArrayList<>();
-    private final ArrayList<ClientHandler> waitingPlayers = new ArrayList<>();
+    private final Matchmaker waitingPlayers = new Matchmaker();
+
+    /** Logged-in users; replaced copy-on-write under {@link #directoryLock}. */
+    private volatile UserDirectory directory = UserDirectory.EMPTY;
+    private final Object directoryLock = new Object();
 
     private final Map<ClientHandler, GameSession> activeSessions = new HashMap<>();
+    private final Map<Integer, GameSession> sessionsById = new HashMap<>();
     private Map<ClientHandler, Integer> playersMmr = new HashMap<>();
 
     private FileStorage storage;
 
+    /** Applies the results of finished games to {@link #storage}. */
+    private final RatingWorker ratings;
+
+    /** Finished games; one log directory belongs to one server. */
+    private final GameLog gameLog;
+
     private int nextGameId = 1;
 
+    /** Interval in milliseconds between two sweeps of the matchmaking queue. */
+    private static final long MATCHMAKING_INTERVAL = 1000;
+
+    /**
+     * Default interval in milliseconds between two metrics dumps on standard
+     * output when started from the command line.
+     */
+    private static final long METRICS_DUMP_INTERVAL = 60000;
+
+    /** Time the server monitor is held per call, in nanoseconds. */
+    private static final Histogram LOCK_HELD = MetricsRegistry.getDefault().histogram("server.lock.held");
+
+    /** Duration of one matchmaking sweep, in nanoseconds. */
+    private static final Histogram MATCHMAKING_SWEEP = MetricsRegistry.getDefault().histogram("matchmaking.sweep");
+
+    private static final LongAdder GAMES_STARTED = MetricsRegistry.getDefault().counter("games.started");
+
+    /** Default idle time in milliseconds after which a connection is sent a PING. */
+    private static final long DEFAULT_HEARTBEAT_INTERVAL = 30000;
+
+    /** Default idle time in milliseconds after which a connection is closed. */
+    private static final long DEFAULT_IDLE_TIMEOUT = 90000;
+
+    /** Duration in milliseconds of one tick of the timer wheel. */
+    private static final long TIMER_TICK = 100;
+
+    /** Number of buckets of the timer wheel; one rotation covers 51.2 s. */
+    private static final int TIMER_WHEEL_SIZE = 512;
+
+    private static final EncodedPacket PING = EncodedPacket.of(Protocol.PING);
+
+    private static final LongAdder PINGS_SENT = MetricsRegistry.getDefault().counter("heartbeat.pings");
+    private static final LongAdder IDLE_CLOSED = MetricsRegistry.getDefault().counter("connections.reaped");
+
+    private final long heartbeatInterval;
+    private final long idleTimeout;
+
+    /** Time control of new games; see {@link TimeControl#fromSystemProperties()}. */
+    private final TimeControl timeControl = TimeControl.fromSystemProperties();
+
+    /** Drives the heartbeat and idle checks of all connections. */
+    private final TimerWheel timers = new TimerWheel("Timer-Wheel", TIMER_TICK, TimeUnit.MILLISECONDS,
+                                                     TIMER_WHEEL_SIZE);
+
+    /** Prints the metrics periodically; null unless started with {@link #startMetricsDump}. */
+    private ScheduledExecutorService metricsDump;
+
+    private final ScheduledExecutorService matchmakingScheduler =
+            Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "Matchmaking");
+                thread.setDaemon(true);
+                return thread;
+            });
+
     /*
      * @
      * 
@@ -49,13 +126,89 @@ public class GameServer extends SocketServer {
 
     /**
      * Creates a new GameServer instance on the given port.
+     * The heartbeat interval and idle timeout are read from the system
+     * properties {@code quarto.heartbeat.interval} and
+     * {@code quarto.idle.timeout} (milliseconds, defaults 30 s and 90 s).
      *
      * @param port port number (0 for random available port)
      * @throws IOException if the server socket cannot be opened
      */
     protected GameServer(int port) throws IOException {
+        this(port, Long.getLong("quarto.heartbeat.interval", DEFAULT_HEARTBEAT_INTERVAL),
+             Long.getLong("quarto.idle.timeout", DEFAULT_IDLE_TIMEOUT));
+    }
+
+    /**
+     * Creates a new GameServer instance with explicit idle settings.
+     * A connection that has sent nothing for {@code heartbeatInterval}
+     * milliseconds receives a PING; one that stays silent for
+     * {@code idleTimeout} milliseconds is closed and cleaned up like any
+     * other disconnect.
+     * Finished games are stored in the directory named by the system
+     * property {@code quarto.games.dir} (default {@code games}), ratings in
+     * {@code ratings.txt} and {@code ratings.log} in the directory named by
+     * {@code quarto.ratings.dir} (default the working directory).
+     *
+     * @param port              port number (0 for random available port)
+     * @param heartbeatInterval idle time before a PING is sent
+     * @param idleTimeout       idle time before the connection is closed
+     * @throws IOException if the server socket cannot be opened
+     */
+    /*@
+      requires heartbeatInterval > 0 && idleTimeout >= heartbeatInterval;
+    @*/
+    protected GameServer(int port, long heartbeatInterval, long idleTimeout) throws IOException {
         super(port);
-        this.storage = new FileStorage();
+        this.heartbeatInterval = heartbeatInterval;
+        this.idleTimeout = idleTimeout;
+        Path ratingsDir = Files.createDirectories(Paths.get(System.getProperty("quarto.ratings.dir", ".")));
+        this.storage = new FileStorage(ratingsDir.resolve("ratings.txt").toString(),
+                                       ratingsDir.resolve("ratings.log").toString());
+        this.ratings = new RatingWorker(storage, RatingWorker.DEFAULT_CAPACITY);
+        this.gameLog = new GameLog(Paths.get(System.getProperty("quarto.games.dir", "games")),
+                                   Long.getLong("quarto.games.segmentSize", GameLog.DEFAULT_SEGMENT_SIZE));
+        // continue numbering after the stored games, so game ids stay unique across restarts
+        this.nextGameId = gameLog.getLastGameId() + 1;
+    }
+
+    /**
+     * Starts printing the metrics at a fixed interval. Servers do not print
+     * them on their own; the command-line launcher starts the dump.
+     *
+     * @param interval time between two dumps in milliseconds
+     * @param out      stream to print to
+     */
+    /*@
+      requires interval > 0 && out != null;
+    @*/
+    public synchronized void startMetricsDump(long interval, PrintStream out) {
+        if (metricsDump == null) {
+            metricsDump = MetricsRegistry.getDefault().startDump(interval, out);
+        }
+    }
+
+    /**
+     * Starts the periodic matchmaking sweep and registers the server gauges,
+     * then accepts connections until the server is closed. Both are done here
+     * rather than in the constructor, so neither sees a partly constructed server.
+     *
+     * @throws IOException if an I/O error occurs when waiting for a connection
+     */
+    @Override
+    protected void acceptConnections() throws IOException {
+        matchmakingScheduler.scheduleWithFixedDelay(this::checkQueue,
+                MATCHMAKING_INTERVAL, MATCHMAKING_INTERVAL, TimeUnit.MILLISECONDS);
+
+        // gauges read the collections without the server lock; sizes may be momentarily stale
+        MetricsRegistry metrics = MetricsRegistry.getDefault();
+        metrics.gauge("queue.length", waitingPlayers::size);
+        metrics.gauge("sessions.active", () -> activeSessions.size() / 2);
+        metrics.gauge("users.online", () -> directory.size());
+        metrics.gauge("connections", this::getConnectionCount);
+        metrics.gauge("timers.pending", timers::pending);
+        metrics.gauge("chat.dropped", OutboundQueue::getDropped);
+
+        super.acceptConnections();
     }
 
     /**
@@ -71,9 +224,57 @@ public class GameServer extends SocketServer {
         synchronized (clients) {
             clients.add(clientHandler);
         }
+        clientHandler.setIdleCheck(timers.schedule(() -> checkIdle(clientHandler),
+                                                   heartbeatInterval, TimeUnit.MILLISECONDS));
         clientHandler.start();
     }
 
+    /**
+     * Idle check of one connection, run on the timer wheel.
+     * A connection that has been silent for the heartbeat interval is sent a
+     * PING, which any live client answers with PONG. A connection that stays
+     * silent until the idle timeout is closed; its receiving thread then
+     * runs the regular disconnect handling. Otherwise the check is
+     * rescheduled for the next moment the connection could become idle.
+     *
+     * @param client the connection to check
+     */
+    /*@
+      requires client != null;
+    @*/
+    void checkIdle(ClientHandler client) {
+        if (client.isClosed()) {
+            return;
+        }
+        long idle = TimeUnit.NANOSECONDS.toMillis(client.getIdleNanos());
+        if (idle >= idleTimeout) {
+            IDLE_CLOSED.increment();
+            Log.info("idle timeout", "user", client.getUsername(), "idleMillis", idle);
+            client.close();
+            return;
+        }
+        long next;
+        if (idle >= heartbeatInterval) {
+            PINGS_SENT.increment();
+            client.enqueuePacket(PING);
+            next = Math.min(heartbeatInterval, idleTimeout - idle);
+        } else {
+            next = heartbeatInterval - idle;
+        }
+        client.setIdleCheck(timers.schedule(() -> checkIdle(client), next, TimeUnit.MILLISECONDS));
+    }
+
+    /**
+     * Returns the number of open client connections.
+     *
+     * @return connection count
+     */
+    public int getConnectionCount() {
+        synchronized (clients) {
+            return clients.size();
+        }
+    }
+
     /**
      * Handles a move sent by a player.
      * If the player is not in an active session, an error is sent.
@@ -90,33 +291,104 @@ public class GameServer extends SocketServer {
      * @
      */
     public synchronized void handleMove(ClientHandler player, int nextPiece, int location) {
-        if (!activeSessions.containsKey(player)) {
-            player.sendPacket(Protocol.ERROR + Protocol.SEPARATOR + "Not in game");
-            return;
+        long start = System.nanoTime();
+        try {
+            if (!activeSessions.containsKey(player)) {
+                player.sendPacket(Protocol.ERROR + Protocol.SEPARATOR + "Not in game");
+                return;
+            }
+
+            GameSession session = activeSessions.get(player);
+            session.handleMove(player, nextPiece, location);
+        } finally {
+            LOCK_HELD.record(System.nanoTime() - start);
         }
+    }
 
-        GameSession session = activeSessions.get(player);
-        session.handleMove(player, nextPiece, location);
+    /**
+     * Expires the clock of a session. Called from the timer wheel, so the
+     * forfeit is decided under the server lock like moves and disconnects.
+     *
+     * @param session     the session whose clock ran out
+     * @param expectedPly the ply the expiry was scheduled for
+     */
+    /*@
+      requires session != null;
+    @*/
+    public synchronized void expireClock(GameSession session, int expectedPly) {
+        long start = System.nanoTime();
+        try {
+            session.expire(expectedPly);
+        } finally {
+            LOCK_HELD.record(System.nanoTime() - start);
+        }
     }
 
     /**
      * Checks whether a user with the given username is logged in.
+     * Reads the current user snapshot without locking.
      *
      * @param player username to check
      * @return true if the user is logged in, false otherwise
      */
-    public synchronized boolean isLoggedIn(String player) {
-        for (ClientHandler client : clients) {
-            if (player.equals(client.getUsername())) {
-                return true;
+    public boolean isLoggedIn(String player) {
+        return directory.contains(player);
+    }
+
+    /**
+     * Logs a client in under the given username.
+     * The check and the registration happen atomically, so two clients
+     * cannot claim the same name. A client that logs in again releases its
+     * previous name.
+     *
+     * @param player   the client logging in
+     * @param username the requested username
+     * @return true if the name was free and is now taken by the client
+     */
+    /*
+     * @
+     * 
+     * @ requires player != null && username != null;
+     * 
+     * @
+     */
+    public boolean login(ClientHandler player, String username) {
+        synchronized (directoryLock) {
+            UserDirectory current = directory;
+            if (current.contains(username)) {
+                return false;
+            }
+            String previous = player.getUsername();
+            if (previous != null && current.get(previous) == player) {
+                current = current.without(previous);
+            }
+            directory = current.with(username, player);
+            return true;
+        }
+    }
+
+    /**
+     * Removes a client's username from the user snapshot.
+     *
+     * @param player the client logging out
+     */
+    private void logout(ClientHandler player) {
+        String username = player.getUsername();
+        if (username == null) {
+            return;
+        }
+        synchronized (directoryLock) {
+            if (directory.get(username) == player) {
+                directory = directory.without(username);
             }
         }
-        return false;
     }
 
     /**
      * Adds a player to the matchmaking queue.
      * The player cannot already be in a game or in the queue.
+     * An opponent within the player's initial MMR window is matched right away;
+     * otherwise the player waits for a later sweep of {@link #checkQueue()}.
      *
      * @param player the player to add
      */
@@ -128,106 +400,189 @@ public class GameServer extends SocketServer {
      * @
      */
     public synchronized void addToQueue(ClientHandler player) {
-        if (activeSessions.containsKey(player) || waitingPlayers.contains(player)) {
-            player.sendPacket(Protocol.ERROR + Protocol.SEPARATOR + "Already in game or queue");
-            return;
-        }
+        long start = System.nanoTime();
+        try {
+            if (activeSessions.containsKey(player) || waitingPlayers.contains(player)) {
+                player.sendPacket(Protocol.ERROR + Protocol.SEPARATOR + "Already in game or queue");
+                return;
+            }
 
-        player.setQueueJoinTime(System.currentTimeMillis());
+            long now = System.currentTimeMillis();
+            player.setQueueJoinTime(now);
 
-        System.out.println(player.getUsername() + " added to queue");
-        waitingPlayers.add(player);
+            int mmr = storage.getMmr(player.getUsername());
+            Log.info("queued", "user", player.getUsername(), "mmr", mmr);
+            waitingPlayers.add(player, mmr, now);
 
-        checkQueue();
+            ClientHandler[] pair = waitingPlayers.match(player, now);
+            if (pair != null) {
+                startSession(pair[0], pair[1]);
+            }
+        } finally {
+            LOCK_HELD.record(System.nanoTime() - start);
+        }
     }
 
     /**
      * Checks the matchmaking queue and starts new game sessions
-     * if suitable players are available.
+     * for all players whose MMR windows overlap.
+     * Runs periodically on the matchmaking scheduler, so windows keep
+     * widening for players who are still waiting.
      */
     public synchronized void checkQueue() {
+        long start = System.nanoTime();
+        try {
+            for (ClientHandler[] pair : waitingPlayers.matchAll(System.currentTimeMillis())) {
+                startSession(pair[0], pair[1]);
+            }
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            MATCHMAKING_SWEEP.record(elapsed);
+            LOCK_HELD.record(elapsed);
+        }
+    }
 
-        if (waitingPlayers.size() >= 2) {
-            ClientHandler p1 = waitingPlayers.removeFirst();
-            ClientHandler p2 = waitingPlayers.removeFirst();
-
-            GameSession session = new GameSession(p1, p2, nextGameId++);
-            activeSessions.put(p1, session);
-            activeSessions.put(p2, session);
+    /**
+     * Starts a new game session between two matched players.
+     *
+     * @param p1 the player who moves first
+     * @param p2 the second player
+     */
+    private void startSession(ClientHandler p1, ClientHandler p2) {
+        int gameId = nextGameId++;
+        GameSession session = new GameSession(p1, p2, gameId, timeControl, timers);
+        GAMES_STARTED.increment();
+        Log.info("session started", "player1", p1.getUsername(), "player2", p2.getUsername());
+
+        MatchEvent event = new MatchEvent();
+        if (event.shouldCommit()) {
+            long now = System.currentTimeMillis();
+            event.gameId = gameId;
+            event.player1 = p1.getUsername();
+            event.player2 = p2.getUsername();
+            event.mmr1 = storage.getMmr(p1.getUsername());
+            event.mmr2 = storage.getMmr(p2.getUsername());
+            event.waitTime1 = now - p1.getQueueJoinTime();
+            event.waitTime2 = now - p2.getQueueJoinTime();
+            event.commit();
+        }
+        stopSpectating(p1);
+        stopSpectating(p2);
+        activeSessions.put(p1, session);
+        activeSessions.put(p2, session);
+        sessionsById.put(gameId, session);
 
-            session.startGame();
+        session.startGame();
+    }
 
-            checkQueue();
+    /**
+     * Attaches a connection as a read-only spectator to a running game.
+     * The target is the name of a player in the game or the game id.
+     * A connection follows at most one game; spectating another game
+     * detaches it from the previous one.
+     *
+     * @param viewer the connection that wants to watch
+     * @param target a username or a game id
+     * @return false if no such game is running, the viewer plays in a game
+     *         or the game has no room for more spectators
+     */
+    /*@
+      requires viewer != null && target != null;
+    @*/
+    public synchronized boolean spectate(ClientHandler viewer, String target) {
+        long start = System.nanoTime();
+        try {
+            if (activeSessions.containsKey(viewer)) {
+                return false;
+            }
+            GameSession session = null;
+            ClientHandler player = directory.get(target);
+            if (player != null) {
+                session = activeSessions.get(player);
+            } else if (StringUtils.isNumeric(target) && target.length() < 10) {
+                session = sessionsById.get(Integer.parseInt(target));
+            }
+            if (session == null) {
+                return false;
+            }
+            GameSession previous = viewer.getSpectating();
+            if (previous != null && previous != session) {
+                previous.removeSpectator(viewer);
+            }
+            if (!session.addSpectator(viewer)) {
+                viewer.setSpectating(null);
+                return false;
+            }
+            viewer.setSpectating(session);
+            return true;
+        } finally {
+            LOCK_HELD.record(System.nanoTime() - start);
         }
+    }
 
-        // MMR GAME SEARCH
-        // ClientHandler player1 = null;
-        // ClientHandler player2 = null;
-        // long currentTime = System.currentTimeMillis();
-        //
-        // for (int i = 0; i < waitingPlayers.size(); i++) {
-        // ClientHandler p1Candidate = waitingPlayers.get(i);
-        // long waitTime = currentTime - p1Candidate.getQueueJoinTime();
-        // int currentDiff = 500 + (int) ((waitTime / 20000) * 500);
-        //
-        // for (int j = i + 1; j < waitingPlayers.size(); j++) {
-        // ClientHandler p2Candidate = waitingPlayers.get(j);
-        //
-        //
-        // if (Math.abs(storage.getMmr(p1Candidate.getUsername()) -
-        // storage.getMmr(p2Candidate.getUsername())) <= currentDiff) {
-        // player1 = p1Candidate;
-        // player2 = p2Candidate;
-        // break;
-        // }
-        // }
-        // if (player1 != null && player2 != null) {
-        // waitingPlayers.remove(player1);
-        // waitingPlayers.remove(player2);
-        //
-        // GameSession session = new GameSession(player1, player2, nextGameId++);
-        // activeSessions.put(player1, session);
-        // activeSessions.put(player2, session);
-        // session.startGame();
-        //
-        // checkQueue();
-        // return;
-        // }
-        // }
+    /**
+     * Detaches a connection from the game it is watching, if any.
+     *
+     * @param viewer the spectating connection
+     */
+    private void stopSpectating(ClientHandler viewer) {
+        GameSession watched = viewer.getSpectating();
+        if (watched != null) {
+            watched.removeSpectator(viewer);
+            viewer.setSpectating(null);
+        }
     }
 
     /**
      * Returns a protocol-formatted list of all logged-in users.
+     * The list is serialized once per login or disconnect and read here without locking.
      *
      * @return list of usernames separated by protocol separator
      */
-    public synchronized String getUserList() {
-        StringBuilder sb = new StringBuilder();
-        for (ClientHandler client : clients) {
-            if (client.getUsername() != null) {
-                sb.append(client.getUsername()).append(Protocol.SEPARATOR);
+    public String getUserList() {
+        return directory.serialized();
+    }
+
+    /**
+     * Sends a message to all logged-in clients except the sender.
+     * The message is encoded once and queued on every recipient's connection,
+     * so the calling thread neither takes the server lock nor waits for slow clients.
+     *
+     * @param message the message to broadcast
+     * @param sender  the client that sent the message, or null to reach everyone
+     */
+    public void broadcast(String message, ClientHandler sender) {
+        EncodedPacket packet = EncodedPacket.of(message);
+        for (ClientHandler client : directory.handlers()) {
+            if (client != sender) {
+                client.enqueuePacket(packet);
             }
         }
-        if (sb.length() > 0) {
-            sb.setLength(sb.length() - 1);
-        }
-        return sb.toString();
     }
 
     /**
-     * Sends a message to all connected clients.
+     * Delivers a private message to a single logged-in user.
      *
-     * @param message the message to broadcast
+     * @param recipient the username of the recipient
+     * @param message   the message to deliver
+     * @return false if the recipient is not logged in
      */
-    public synchronized void broadcast(String message) {
-        for (ClientHandler client : clients) {
-            client.sendPacket(message);
+    /*@
+      requires recipient != null && message != null;
+    @*/
+    public boolean whisper(String recipient, String message) {
+        ClientHandler target = directory.get(recipient);
+        if (target == null) {
+            return false;
         }
+        target.enqueuePacket(EncodedPacket.of(message));
+        return true;
     }
 
     /**
      * Handles client disconnection.
-     * Removes the client from the queue or active session if needed.
+     * Logs the client out, removes it from the queue or its active session
+     * and forgets the connection.
      *
      * @param player the disconnected client
      */
@@ -239,20 +594,28 @@ public class GameServer extends SocketServer {
      * @
      */
     public synchronized void handleDisconnect(ClientHandler player) {
-        if (waitingPlayers.remove(player)) {
-            System.out.println(player.getUsername() + " removed from queue");
-            return;
-        }
-        if (activeSessions.containsKey(player)) {
-            GameSession session = activeSessions.get(player);
-            session.disconnect(player);
-            ClientHandler opponent = player.getOpponent();
-            if (opponent != null) {
-                activeSessions.remove(opponent);
+        long start = System.nanoTime();
+        try {
+            logout(player);
+            stopSpectating(player);
+            if (waitingPlayers.remove(player)) {
+                Log.info("left queue", "user", player.getUsername());
+            } else if (activeSessions.containsKey(player)) {
+                GameSession session = activeSessions.get(player);
+                session.disconnect(player);
+                sessionsById.remove(session.getGameId());
+                ClientHandler opponent = player.getOpponent();
+                if (opponent != null) {
+                    activeSessions.remove(opponent);
+                }
+                activeSessions.remove(player);
+            }
+            synchronized (clients) {
+                clients.remove(player);
             }
-            activeSessions.remove(player);
+        } finally {
+            LOCK_HELD.record(System.nanoTime() - start);
         }
-        clients.remove(player);
     }
 
     /**
@@ -273,25 +636,83 @@ public class GameServer extends SocketServer {
      * @
      */
     public synchronized void endSession(ClientHandler player1, ClientHandler player2) {
+        GameSession session = activeSessions.get(player1);
+        if (session != null) {
+            sessionsById.remove(session.getGameId());
+        }
         if (activeSessions.containsKey(player1)) {
             activeSessions.remove(player1);
         }
         if (activeSessions.containsKey(player2)) {
             activeSessions.remove(player2);
         }
-        System.out.println(
-                "Session ended. Players " + player1.getUsername() + " and " + player2.getUsername() + " are free.");
+        Log.info("session ended", "player1", player1.getUsername(), "player2", player2.getUsername());
     }
 
     /**
-     * Returns the rankings formatted for protocol communication.
+     * Returns the top of the rankings formatted for protocol communication.
+     * The leaderboard is read from its own index, so the server lock is not held.
      *
      * @return rankings string
      */
-    public synchronized String getProtocolRankings() {
+    public String getProtocolRankings() {
         return storage.getRankingsForProtocol();
     }
 
+    /**
+     * Returns one page of the rankings formatted for protocol communication.
+     *
+     * @param offset number of players to skip from the top
+     * @param count  number of players to return
+     * @return rankings string
+     */
+    public String getProtocolRankings(int offset, int count) {
+        return storage.getRankingsForProtocol(offset, count);
+    }
+
+    /**
+     * Returns the leaderboard position of a player formatted for protocol communication.
+     *
+     * @param username player username
+     * @return position string
+     */
+    public String getProtocolRank(String username) {
+        return storage.getRankForProtocol(username);
+    }
+
+    /**
+     * Queues a finished game for the game log and the rating worker.
+     * Neither writes nor rates on the calling thread.
+     *
+     * @param record the finished game
+     */
+    public void recordGame(GameRecord record) {
+        gameLog.append(record);
+        ratings.submit(record);
+    }
+
+    /**
+     * Returns the most recent games of a player formatted for protocol communication.
+     * Games are read from the game log without holding the server lock.
+     *
+     * @param username player username
+     * @param count    maximum number of games
+     * @return history string
+     */
+    public String getProtocolHistory(String username, int count) {
+        return gameLog.getHistoryForProtocol(username, count);
+    }
+
+    /**
+     * Returns a stored game formatted for protocol communication.
+     *
+     * @param gameId the game id
+     * @return replay string, or null if the game is not stored
+     */
+    public String getProtocolReplay(int gameId) {
+        return gameLog.getReplayForProtocol(gameId);
+    }
+
     /**
      * Updates the MMR of a player.
      *
@@ -328,6 +749,12 @@ public class GameServer extends SocketServer {
         System.out.println("Server started!");
         System.out.println("=== SERVER LOGIC UPDATED: Win Detection Fix Applied ==="); // Verification Log
         System.out.println("Listening on port: " + server.getPort());
+        System.out.println("Logging to: " + System.getProperty("quarto.log.file", "server.log"));
+        // 0 disables the periodic metrics dump
+        long metricsInterval = Long.getLong("quarto.metrics.interval", METRICS_DUMP_INTERVAL);
+        if (metricsInterval > 0) {
+            server.startMetricsDump(metricsInterval, System.out);
+        }
         try {
             System.out.println("Your Local IP: " + java.net.InetAddress.getLocalHost().getHostAddress());
         } catch (Exception ignored) {
@@ -335,4 +762,22 @@ public class GameServer extends SocketServer {
 
         server.acceptConnections();
     }
+
+    /**
+     * Stops accepting connections, shuts down the matchmaking scheduler
+     * and the timer wheel, applies queued game results and flushes pending
+     * rating changes and games.
+     */
+    @Override
+    protected synchronized void close() {
+        matchmakingScheduler.shutdownNow();
+        if (metricsDump != null) {
+            metricsDump.shutdownNow();
+        }
+        timers.close();
+        super.close();
+        ratings.close();
+        storage.close();
+        gameLog.close();
+    }
 }
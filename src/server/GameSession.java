@@ -2,24 +2,133 @@ package server;
 
 import gameLogic.Game;
 import gameLogic.Move;
+import networking.EncodedPacket;
 import protocol.Protocol;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
 public class GameSession {
 
+    /** Time spent processing one MOVE, in nanoseconds. */
+    private static final Histogram MOVE_LATENCY = MetricsRegistry.getDefault().histogram("session.move");
+    private static final LongAdder MOVES_ACCEPTED = MetricsRegistry.getDefault().counter("moves.accepted");
+    private static final LongAdder MOVES_REJECTED = MetricsRegistry.getDefault().counter("moves.rejected");
+    private static final LongAdder GAMES_FINISHED = MetricsRegistry.getDefault().counter("games.finished");
+    private static final LongAdder GAMES_FORFEITED = MetricsRegistry.getDefault().counter("games.forfeited");
+    private static final LongAdder GAMES_TIMED_OUT = MetricsRegistry.getDefault().counter("games.timeout");
+    private static final LongAdder SPECTATOR_RESYNCS = MetricsRegistry.getDefault().counter("spectators.resync");
+
+    /** Maximum number of spectators of a single game. */
+    static final int MAX_SPECTATORS = 256;
+
+    /** Digits of the compact board in a snapshot; '.' marks an empty square. */
+    private static final char[] PIECE_DIGITS = "0123456789abcdef".toCharArray();
+
+    /**
+     * A read-only connection following this game.
+     * A spectator whose outbound queue overflowed has missed a message and is
+     * marked stale; it is sent a fresh snapshot instead of the next message.
+     */
+    private static final class Spectator {
+        private final ClientHandler connection;
+        private boolean stale = false;
+
+        private Spectator(ClientHandler connection) {
+            this.connection = connection;
+        }
+    }
+
     private final ClientHandler player1;
     private final ClientHandler player2;
     private final Game gameLogic;
     private final int gameId;
     private boolean gameEnded = false;
 
+    private final TimeControl timeControl;
+    private final TimerWheel timers;
+
+    /** Remaining game budget in milliseconds, indexed by player ID. */
+    private final long[] remaining = new long[3];
+
+    /** {@link System#nanoTime()} at which the current player's clock started. */
+    private long turnStarted;
+
+    /** Number of accepted moves; identifies the turn an expiry was scheduled for. */
+    private int ply = 0;
+
+    private TimerWheel.Timeout clockExpiry;
+
+    /** Piece ID on every square, -1 if empty; kept for spectator snapshots. */
+    private final int[] placed = new int[16];
+
+    private final List<Spectator> spectators = new ArrayList<>();
+
+    /** Accepted moves, one byte each, for the game record. */
+    private final byte[] moves = new byte[17];
+
+    private long startMillis;
+
+    /*@
+      private invariant timeControl != null;
+      private invariant timeControl.isLimited() ==> timers != null;
+      private invariant ply >= 0;
+    @*/
+
+    /**
+     * Creates a session without time control.
+     *
+     * @param player1 the player who moves first
+     * @param player2 the second player
+     * @param gameId  identifier of the game
+     */
     public GameSession(ClientHandler player1, ClientHandler player2, int gameId) {
+        this(player1, player2, gameId, TimeControl.UNLIMITED, null);
+    }
+
+    /**
+     * Creates a session whose clocks are enforced on the given timer wheel.
+     * When a clock runs out, the wheel asks the server to
+     * {@linkplain GameServer#expireClock(GameSession, int) expire} it, so the
+     * forfeit is handled under the same lock as moves and disconnects.
+     *
+     * @param player1     the player who moves first
+     * @param player2     the second player
+     * @param gameId      identifier of the game
+     * @param timeControl limits per move and per game
+     * @param timers      timer wheel scheduling the expiries, may be null if unlimited
+     */
+    /*@
+      requires player1 != null && player2 != null && timeControl != null;
+      requires timeControl.isLimited() ==> timers != null;
+    @*/
+    public GameSession(ClientHandler player1, ClientHandler player2, int gameId,
+                       TimeControl timeControl, TimerWheel timers) {
         this.player1 = player1;
         this.player2 = player2;
         this.gameId = gameId;
         this.gameLogic = new Game(1);
+        this.timeControl = timeControl;
+        this.timers = timers;
+        this.remaining[1] = timeControl.getGameMillis();
+        this.remaining[2] = timeControl.getGameMillis();
+        Arrays.fill(placed, -1);
+    }
+
+    /**
+     * Returns the identifier of this game.
+     *
+     * @return the game id
+     */
+    public int getGameId() {
+        return gameId;
     }
 
     public synchronized void startGame() {
+        startMillis = System.currentTimeMillis();
         try {
             // Player 1 starts
             player1.setPlayerID(1);
@@ -29,10 +138,16 @@ public class GameSession {
             player2.setOpponent(player1);
 
             String msg = Protocol.NEWGAME + Protocol.SEPARATOR + player1.getUsername() + Protocol.SEPARATOR + player2.getUsername();
-            player1.sendPacket(msg);
-            player2.sendPacket(msg);
+            String timed = msg;
+            if (timeControl.isLimited()) {
+                timed = msg + Protocol.SEPARATOR + timeControl.getMoveMillis()
+                        + Protocol.SEPARATOR + timeControl.getGameMillis();
+            }
+            player1.sendPacket(player1.supportsClock() ? timed : msg);
+            player2.sendPacket(player2.supportsClock() ? timed : msg);
+            startClock();
         } catch (Exception e) {
-            e.printStackTrace();
+            Log.error("starting game failed", "error", e);
         }
     }
 
@@ -41,60 +156,325 @@ public class GameSession {
      * Больше не ждем код 16.
      */
     public synchronized void handleMove(ClientHandler player, int nextPiece, int location) {
-        if (gameEnded) return;
+        MoveEvent event = new MoveEvent();
+        event.begin();
+        long start = System.nanoTime();
+        long validated = 0;
+        String outcome = "IGNORED";
+        try {
+            if (gameEnded) return;
+
+            if (player.getPlayerID() != gameLogic.getCurrentPlayer()) {
+                validated = System.nanoTime();
+                outcome = "REJECTED";
+                player.sendPacket(Protocol.ERROR + Protocol.SEPARATOR + "Not your turn");
+                MOVES_REJECTED.increment();
+                return;
+            }
+
+            long used = TimeUnit.NANOSECONDS.toMillis(start - turnStarted);
+            if (timeControl.isLimited() && used >= timeControl.budgetForMove(remaining[player.getPlayerID()])) {
+                // the move arrived before the expiry task got to run
+                validated = System.nanoTime();
+                outcome = "TIMEOUT";
+                loseOnTime(player);
+                return;
+            }
+
+            if (location != -1 && (location < 0 || location > 15)) {
+                validated = System.nanoTime();
+                outcome = "REJECTED";
+                player.sendPacket(Protocol.ERROR + Protocol.SEPARATOR + "Illegal location");
+                MOVES_REJECTED.increment();
+                return;
+            }
+
+            ClientHandler opponent = player.getOpponent();
+            String msg = "";
+
+            // Обрабатываем ход (обычный, победный 16 или ничья 17 теперь не важны, логика едина)
+            Move move = (location == -1) ? new Move(nextPiece) : new Move(nextPiece, location);
+
+            if (!gameLogic.isValidMove(move)) {
+                validated = System.nanoTime();
+                outcome = "REJECTED";
+                player.sendPacket(Protocol.ERROR + Protocol.SEPARATOR + "Invalid move");
+                MOVES_REJECTED.increment();
+                return;
+            }
+
+            if (location != -1) {
+                placed[location] = gameLogic.getCurrentPieceID();
+            }
+            gameLogic.doMove(move);
+            MOVES_ACCEPTED.increment();
+            remaining[player.getPlayerID()] -= used;
+            if (ply < moves.length) {
+                moves[ply] = GameRecord.encodeMove(location, nextPiece);
+            }
+            ply++;
+
+            // --- АВТОМАТИЧЕСКАЯ ПРОВЕРКА ПОСЛЕ КАЖДОГО ХОДА ---
+            int winnerId = gameLogic.getWinner();
+            if (winnerId != 0) {
+                // Если есть победитель, определяем его имя
+                String winnerName = (winnerId == 1) ? player1.getUsername() : player2.getUsername();
+                msg = Protocol.GAMEOVER + Protocol.SEPARATOR + Protocol.VICTORY + Protocol.SEPARATOR + winnerName;
+                gameEnded = true;
+            } else if (gameLogic.isDraw()) {
+                msg = Protocol.GAMEOVER + Protocol.SEPARATOR + Protocol.DRAW;
+                gameEnded = true;
+            } else {
+                // Игра продолжается, пересылаем ход
+                if (location == -1) {
+                    msg = Protocol.MOVE + Protocol.SEPARATOR + nextPiece;
+                } else {
+                    msg = Protocol.MOVE + Protocol.SEPARATOR + location + Protocol.SEPARATOR + nextPiece;
+                }
+            }
 
-        if (location != -1 && (location < 0 || location > 15)) {
-            player.sendPacket(Protocol.ERROR + Protocol.SEPARATOR + "Illegal location");
+            validated = System.nanoTime();
+            outcome = gameEnded ? "GAMEOVER" : "ACCEPTED";
+
+            if (!msg.isEmpty()) {
+                // release the players before announcing the result, so a QUEUE
+                // sent right after GAMEOVER is not rejected as "already in game"
+                if (gameEnded) {
+                    GAMES_FINISHED.increment();
+                    stopClock();
+                    player.getServer().endSession(player1, player2);
+                    record(winnerId, GameRecord.Ending.NORMAL);
+                    player.sendPacket(msg);
+                    if (opponent != null) opponent.sendPacket(msg);
+                    releaseSpectators(msg);
+                } else {
+                    startClock();
+                    String timed = withClock(msg);
+                    player.sendPacket(player.supportsClock() ? timed : msg);
+                    if (opponent != null) opponent.sendPacket(opponent.supportsClock() ? timed : msg);
+                    fanOut(msg);
+                }
+            }
+        } finally {
+            long end = System.nanoTime();
+            MOVE_LATENCY.record(end - start);
+            event.end();
+            if (event.shouldCommit()) {
+                event.gameId = gameId;
+                event.player = player.getUsername();
+                event.location = location;
+                event.piece = nextPiece;
+                event.outcome = outcome;
+                event.validationTime = (validated != 0 ? validated : end) - start;
+                event.broadcastTime = validated != 0 ? end - validated : 0;
+                event.commit();
+            }
+        }
+    }
+
+    /**
+     * Called by the server when a clock expiry scheduled for the given ply fires.
+     * The player to move loses on time unless a move was made in the meantime.
+     *
+     * @param expectedPly the ply the expiry was scheduled for
+     */
+    public synchronized void expire(int expectedPly) {
+        if (gameEnded || expectedPly != ply) {
             return;
         }
+        loseOnTime(gameLogic.getCurrentPlayer() == 1 ? player1 : player2);
+    }
 
-        ClientHandler opponent = player.getOpponent();
-        String msg = "";
+    /**
+     * Ends the game because the given player ran out of time.
+     * The opponent wins through the regular GAMEOVER path.
+     */
+    private void loseOnTime(ClientHandler loser) {
+        ClientHandler winner = loser == player1 ? player2 : player1;
+        gameEnded = true;
+        stopClock();
+        GAMES_TIMED_OUT.increment();
+        Log.info("lost on time", "user", loser.getUsername(), "gameId", gameId);
+
+        String msg = Protocol.GAMEOVER + Protocol.SEPARATOR + Protocol.VICTORY
+                + Protocol.SEPARATOR + winner.getUsername();
+        loser.getServer().endSession(player1, player2);
+        record(winner == player1 ? 1 : 2, GameRecord.Ending.TIMEOUT);
+        player1.sendPacket(msg);
+        player2.sendPacket(msg);
+        releaseSpectators(msg);
+    }
 
-        // Обрабатываем ход (обычный, победный 16 или ничья 17 теперь не важны, логика едина)
-        Move move = (location == -1) ? new Move(nextPiece) : new Move(nextPiece, location);
+    /**
+     * Hands the finished game to the server's game log.
+     *
+     * @param winner 0 for a draw, otherwise the winning player's ID
+     * @param ending how the game ended
+     */
+    private void record(int winner, GameRecord.Ending ending) {
+        int duration = (int) Math.min(Integer.MAX_VALUE, System.currentTimeMillis() - startMillis);
+        player1.getServer().recordGame(new GameRecord(gameId, player1.getUsername(), player2.getUsername(),
+                startMillis, duration, winner, ending, Arrays.copyOf(moves, Math.min(ply, moves.length))));
+    }
 
-        if (!gameLogic.isValidMove(move)) {
-            player.sendPacket(Protocol.ERROR + Protocol.SEPARATOR + "Invalid move");
-            return;
+    /**
+     * Attaches a read-only connection to this game.
+     * The spectator is sent a snapshot of the current position and then
+     * every MOVE and the final GAMEOVER, as the players see them.
+     *
+     * @param viewer the connection to attach
+     * @return false if the game has ended or has too many spectators
+     */
+    /*@
+      requires viewer != null;
+    @*/
+    public synchronized boolean addSpectator(ClientHandler viewer) {
+        if (gameEnded || spectators.size() >= MAX_SPECTATORS) {
+            return false;
         }
+        for (Spectator spectator : spectators) {
+            if (spectator.connection == viewer) {
+                return true;
+            }
+        }
+        Spectator spectator = new Spectator(viewer);
+        spectator.stale = !viewer.enqueuePacket(EncodedPacket.of(snapshot()));
+        spectators.add(spectator);
+        return true;
+    }
+
+    /**
+     * Detaches a spectator, for example because its connection closed.
+     *
+     * @param viewer the connection to detach
+     */
+    public synchronized void removeSpectator(ClientHandler viewer) {
+        spectators.removeIf(spectator -> spectator.connection == viewer);
+    }
 
-        gameLogic.doMove(move);
-
-        // --- АВТОМАТИЧЕСКАЯ ПРОВЕРКА ПОСЛЕ КАЖДОГО ХОДА ---
-        int winnerId = gameLogic.getWinner();
-        if (winnerId != 0) {
-            // Если есть победитель, определяем его имя
-            String winnerName = (winnerId == 1) ? player1.getUsername() : player2.getUsername();
-            msg = Protocol.GAMEOVER + Protocol.SEPARATOR + Protocol.VICTORY + Protocol.SEPARATOR + winnerName;
-            gameEnded = true;
-        } else if (gameLogic.isDraw()) {
-            msg = Protocol.GAMEOVER + Protocol.SEPARATOR + Protocol.DRAW;
-            gameEnded = true;
-        } else {
-            // Игра продолжается, пересылаем ход
-            if (location == -1) {
-                msg = Protocol.MOVE + Protocol.SEPARATOR + nextPiece;
+    /**
+     * Returns the number of attached spectators.
+     *
+     * @return spectator count
+     */
+    public synchronized int getSpectatorCount() {
+        return spectators.size();
+    }
+
+    /**
+     * Describes the current position in one line:
+     * {@code SPECTATE~gameId~player1~player2~toMove~piece~board}, where
+     * {@code toMove} is the name of the player to move, {@code piece} the
+     * piece that player has to place (-1 before the first move) and
+     * {@code board} 16 characters, one hex digit per occupied square and
+     * '.' per empty square, in index order.
+     *
+     * @return the snapshot message
+     */
+    synchronized String snapshot() {
+        char[] board = new char[placed.length];
+        for (int i = 0; i < placed.length; i++) {
+            board[i] = placed[i] == -1 ? '.' : PIECE_DIGITS[placed[i]];
+        }
+        ClientHandler toMove = gameLogic.getCurrentPlayer() == 1 ? player1 : player2;
+        return Protocol.SPECTATE + Protocol.SEPARATOR + gameId
+                + Protocol.SEPARATOR + player1.getUsername()
+                + Protocol.SEPARATOR + player2.getUsername()
+                + Protocol.SEPARATOR + toMove.getUsername()
+                + Protocol.SEPARATOR + gameLogic.getCurrentPieceID()
+                + Protocol.SEPARATOR + new String(board);
+    }
+
+    /**
+     * Sends a message to all spectators. The message is encoded once and the
+     * same buffer is queued on every spectator's bounded outbound queue, so
+     * slow spectators never delay the players. A spectator that already
+     * missed a message is resynchronised with a snapshot instead.
+     */
+    private void fanOut(String msg) {
+        if (spectators.isEmpty()) {
+            return;
+        }
+        EncodedPacket packet = EncodedPacket.of(msg);
+        EncodedPacket resync = null;
+        for (Spectator spectator : spectators) {
+            if (spectator.stale) {
+                if (resync == null) {
+                    resync = EncodedPacket.of(snapshot());
+                }
+                spectator.stale = !spectator.connection.enqueuePacket(resync);
+                if (!spectator.stale) {
+                    SPECTATOR_RESYNCS.increment();
+                }
             } else {
-                msg = Protocol.MOVE + Protocol.SEPARATOR + location + Protocol.SEPARATOR + nextPiece;
+                spectator.stale = !spectator.connection.enqueuePacket(packet);
             }
         }
+    }
 
-        if (!msg.isEmpty()) {
-            player.sendPacket(msg);
-            if (opponent != null) opponent.sendPacket(msg);
-            if (gameEnded) {
-                player.getServer().endSession(player1, player2);
-            }
+    /**
+     * Sends the final message to all spectators and detaches them.
+     */
+    private void releaseSpectators(String msg) {
+        if (spectators.isEmpty()) {
+            return;
         }
+        EncodedPacket packet = EncodedPacket.of(msg);
+        for (Spectator spectator : spectators) {
+            spectator.connection.enqueuePacket(packet);
+            spectator.connection.setSpectating(null);
+        }
+        spectators.clear();
     }
-    public void disconnect(ClientHandler player) {
+
+    /**
+     * Starts the clock of the player to move and schedules its expiry.
+     */
+    private void startClock() {
+        turnStarted = System.nanoTime();
+        if (!timeControl.isLimited()) {
+            return;
+        }
+        stopClock();
+        long budget = timeControl.budgetForMove(remaining[gameLogic.getCurrentPlayer()]);
+        GameServer server = player1.getServer();
+        int expectedPly = ply;
+        clockExpiry = timers.schedule(() -> server.expireClock(this, expectedPly), budget, TimeUnit.MILLISECONDS);
+    }
+
+    private void stopClock() {
+        if (clockExpiry != null) {
+            clockExpiry.cancel();
+            clockExpiry = null;
+        }
+    }
+
+    /**
+     * Appends the clock of the player to move to a MOVE message:
+     * the time available for this move and the remaining game budget
+     * (0 if the game is not limited), both in milliseconds.
+     */
+    private String withClock(String msg) {
+        if (!timeControl.isLimited()) {
+            return msg;
+        }
+        long left = remaining[gameLogic.getCurrentPlayer()];
+        return msg + Protocol.SEPARATOR + timeControl.budgetForMove(left)
+                + Protocol.SEPARATOR + (timeControl.getGameMillis() > 0 ? left : 0);
+    }
+
+    public synchronized void disconnect(ClientHandler player) {
         if (gameEnded) return;
+        stopClock();
         ClientHandler opponent = player.getOpponent();
 
         if (opponent != null) {
-            opponent.sendPacket(Protocol.GAMEOVER + Protocol.SEPARATOR + Protocol.VICTORY + Protocol.SEPARATOR + opponent.getUsername());
+            GAMES_FORFEITED.increment();
+            String msg = Protocol.GAMEOVER + Protocol.SEPARATOR + Protocol.VICTORY + Protocol.SEPARATOR + opponent.getUsername();
+            opponent.sendPacket(msg);
             player.getServer().endSession(player1, player2);
+            record(opponent == player1 ? 1 : 2, GameRecord.Ending.DISCONNECT);
+            releaseSpectators(msg);
         }
         gameEnded = true;
     }
@@ -0,0 +1,184 @@
+package server;
+
+import java.nio.file.Paths;
+
+/**
+ * Static logging facade used by the server.
+ * <p>
+ * Records are handed to a shared {@link AsyncLogger}, so connection
+ * threads never wait for console or disk I/O. The level is checked before
+ * anything is allocated and the common cases of zero, one or two
+ * key-value fields have their own overloads, so a disabled call costs a
+ * single comparison.
+ * <p>
+ * Configured with system properties:
+ * <ul>
+ * <li>{@code quarto.log.level} - DEBUG, INFO, WARN, ERROR or OFF (default INFO)</li>
+ * <li>{@code quarto.log.file} - log file (default {@code server.log})</li>
+ * <li>{@code quarto.log.maxBytes} - size after which the file is rolled (default 10 MB)</li>
+ * <li>{@code quarto.log.maxFiles} - number of rolled files kept (default 5)</li>
+ * </ul>
+ */
+public final class Log {
+
+    /** Number of records the ring buffer can hold before records are dropped. */
+    private static final int CAPACITY = 16384;
+
+    private static final AsyncLogger LOGGER = new AsyncLogger(
+            Paths.get(System.getProperty("quarto.log.file", "server.log")),
+            CAPACITY,
+            Long.getLong("quarto.log.maxBytes", 10L * 1024 * 1024),
+            Integer.getInteger("quarto.log.maxFiles", 5),
+            parseLevel(System.getProperty("quarto.log.level", "INFO")));
+
+    static {
+        MetricsRegistry.getDefault().gauge("log.dropped", LOGGER::getDropped);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> LOGGER.flush(1000), "Log-Shutdown"));
+    }
+
+    private Log() {
+        // Private constructor to prevent instantiation
+    }
+
+    /**
+     * Parses a configured level. An unknown level must not keep the class
+     * from loading, since the server could not log anything then.
+     *
+     * @param name level name, case-insensitive
+     * @return the level, or INFO with a warning on standard error if the name is unknown
+     */
+    static AsyncLogger.Level parseLevel(String name) {
+        try {
+            return AsyncLogger.Level.valueOf(name.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            System.err.println("Unknown log level '" + name + "', using INFO");
+            return AsyncLogger.Level.INFO;
+        }
+    }
+
+    /**
+     * Returns the logger behind this facade.
+     *
+     * @return the shared logger
+     */
+    public static AsyncLogger getLogger() {
+        return LOGGER;
+    }
+
+    /**
+     * Checks whether debug records are recorded.
+     * Use it to guard debug calls whose arguments are expensive to compute.
+     *
+     * @return true if DEBUG is enabled
+     */
+    public static boolean isDebugEnabled() {
+        return LOGGER.isEnabled(AsyncLogger.Level.DEBUG);
+    }
+
+    /**
+     * Records a DEBUG message without fields.
+     *
+     * @param message event description
+     */
+    public static void debug(String message) {
+        log(AsyncLogger.Level.DEBUG, message);
+    }
+
+    /**
+     * Records a DEBUG message with one field.
+     *
+     * @param message event description
+     * @param key     field name
+     * @param value   field value
+     */
+    public static void debug(String message, String key, Object value) {
+        log(AsyncLogger.Level.DEBUG, message, key, value);
+    }
+
+    /**
+     * Records a DEBUG message with two fields.
+     *
+     * @param message event description
+     * @param key1    first field name
+     * @param value1  first field value
+     * @param key2    second field name
+     * @param value2  second field value
+     */
+    public static void debug(String message, String key1, Object value1, String key2, Object value2) {
+        log(AsyncLogger.Level.DEBUG, message, key1, value1, key2, value2);
+    }
+
+    /**
+     * Records an INFO message without fields.
+     *
+     * @param message event description
+     */
+    public static void info(String message) {
+        log(AsyncLogger.Level.INFO, message);
+    }
+
+    /**
+     * Records an INFO message with one field.
+     *
+     * @param message event description
+     * @param key     field name
+     * @param value   field value
+     */
+    public static void info(String message, String key, Object value) {
+        log(AsyncLogger.Level.INFO, message, key, value);
+    }
+
+    /**
+     * Records an INFO message with two fields.
+     *
+     * @param message event description
+     * @param key1    first field name
+     * @param value1  first field value
+     * @param key2    second field name
+     * @param value2  second field value
+     */
+    public static void info(String message, String key1, Object value1, String key2, Object value2) {
+        log(AsyncLogger.Level.INFO, message, key1, value1, key2, value2);
+    }
+
+    /**
+     * Records a WARN message with one field.
+     *
+     * @param message event description
+     * @param key     field name
+     * @param value   field value
+     */
+    public static void warn(String message, String key, Object value) {
+        log(AsyncLogger.Level.WARN, message, key, value);
+    }
+
+    /**
+     * Records an ERROR message with one field.
+     *
+     * @param message event description
+     * @param key     field name
+     * @param value   field value
+     */
+    public static void error(String message, String key, Object value) {
+        log(AsyncLogger.Level.ERROR, message, key, value);
+    }
+
+    private static void log(AsyncLogger.Level level, String message) {
+        if (LOGGER.isEnabled(level)) {
+            LOGGER.log(level, message, (Object[]) null);
+        }
+    }
+
+    private static void log(AsyncLogger.Level level, String message, String key, Object value) {
+        if (LOGGER.isEnabled(level)) {
+            LOGGER.log(level, message, key, value);
+        }
+    }
+
+    private static void log(AsyncLogger.Level level, String message,
+                            String key1, Object value1, String key2, Object value2) {
+        if (LOGGER.isEnabled(level)) {
+            LOGGER.log(level, message, key1, value1, key2, value2);
+        }
+    }
+}
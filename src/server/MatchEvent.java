@@ -0,0 +1,47 @@
+package server;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Flight Recorder event for a pairing made by the matchmaker.
+ * <p>
+ * Disabled by default; enable it with {@code +quarto.Match#enabled=true}.
+ */
+@Name("quarto.Match")
+@Label("Matchmaking Pairing")
+@Category({"Quarto", "Matchmaking"})
+@Description("Two queued players paired into a new game")
+@Enabled(false)
+@StackTrace(false)
+public final class MatchEvent extends Event {
+
+    @Label("Game Id")
+    int gameId;
+
+    @Label("Player 1")
+    String player1;
+
+    @Label("Player 2")
+    String player2;
+
+    @Label("MMR 1")
+    int mmr1;
+
+    @Label("MMR 2")
+    int mmr2;
+
+    @Label("Wait Time 1")
+    @Timespan(Timespan.MILLISECONDS)
+    long waitTime1;
+
+    @Label("Wait Time 2")
+    @Timespan(Timespan.MILLISECONDS)
+    long waitTime2;
+}
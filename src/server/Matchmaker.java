@@ -0,0 +1,207 @@
+package server;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+
+/**
+ * MMR-indexed matchmaking queue.
+ * <p>
+ * Waiting players are kept sorted by MMR in a navigable set, so the closest
+ * opponent for a player is found with a single floor/ceiling lookup
+ * instead of scanning the whole queue. The accepted MMR difference for a
+ * player widens the longer they wait.
+ * <p>
+ * The MMR of each player is looked up once when they join the queue.
+ * This class is not thread-safe; the {@link GameServer} guards it with its own monitor.
+ */
+public class Matchmaker {
+
+    /** MMR difference accepted as soon as a player joins the queue. */
+    public static final int BASE_WINDOW = 500;
+
+    /** Additional MMR difference accepted after every widening interval. */
+    public static final int WINDOW_STEP = 500;
+
+    /** Waiting time in milliseconds after which the window widens by one step. */
+    public static final long WIDEN_INTERVAL = 20000;
+
+    /**
+     * A queued player together with the data used for matching.
+     */
+    private static final class Entry {
+        private final ClientHandler player;
+        private final int mmr;
+        private final long joinTime;
+        private final long sequence;
+
+        private Entry(ClientHandler player, int mmr, long joinTime, long sequence) {
+            this.player = player;
+            this.mmr = mmr;
+            this.joinTime = joinTime;
+            this.sequence = sequence;
+        }
+    }
+
+    private static final Comparator<Entry> BY_MMR =
+            Comparator.<Entry>comparingInt(e -> e.mmr).thenComparingLong(e -> e.sequence);
+
+    /** Waiting players ordered by MMR, ties broken by arrival. */
+    private final NavigableSet<Entry> byMmr = new TreeSet<>(BY_MMR);
+
+    /** Waiting players in the order in which they joined the queue. */
+    private final Map<ClientHandler, Entry> byJoinTime = new LinkedHashMap<>();
+
+    private long nextSequence = 0;
+
+    /*@
+      private invariant byMmr.size() == byJoinTime.size();
+    @*/
+
+    /**
+     * Returns the MMR difference a player accepts after waiting for the given time.
+     *
+     * @param waited waiting time in milliseconds
+     * @return the accepted MMR difference
+     */
+    /*@
+      ensures \result >= BASE_WINDOW;
+    @*/
+    public static int window(long waited) {
+        long steps = Math.max(0, waited) / WIDEN_INTERVAL;
+        return (int) Math.min(Integer.MAX_VALUE, BASE_WINDOW + steps * WINDOW_STEP);
+    }
+
+    /**
+     * Adds a player to the queue.
+     *
+     * @param player   the player to add
+     * @param mmr      the player's current MMR
+     * @param joinTime time at which the player joined, in milliseconds
+     * @return false if the player is already queued
+     */
+    /*@
+      requires player != null;
+      ensures contains(player);
+    @*/
+    public boolean add(ClientHandler player, int mmr, long joinTime) {
+        if (byJoinTime.containsKey(player)) {
+            return false;
+        }
+        Entry entry = new Entry(player, mmr, joinTime, nextSequence++);
+        byJoinTime.put(player, entry);
+        byMmr.add(entry);
+        return true;
+    }
+
+    /**
+     * Removes a player from the queue.
+     *
+     * @param player the player to remove
+     * @return true if the player was queued
+     */
+    /*@
+      ensures !contains(player);
+    @*/
+    public boolean remove(ClientHandler player) {
+        Entry entry = byJoinTime.remove(player);
+        if (entry == null) {
+            return false;
+        }
+        byMmr.remove(entry);
+        return true;
+    }
+
+    /**
+     * Checks whether a player is waiting in the queue.
+     *
+     * @param player the player to check
+     * @return true if the player is queued
+     */
+    public boolean contains(ClientHandler player) {
+        return byJoinTime.containsKey(player);
+    }
+
+    /**
+     * Returns the number of waiting players.
+     *
+     * @return the queue length
+     */
+    public int size() {
+        return byJoinTime.size();
+    }
+
+    /**
+     * Tries to find an opponent for one queued player.
+     * Both players are removed from the queue when a match is found.
+     *
+     * @param player the player looking for an opponent
+     * @param now    the current time in milliseconds
+     * @return the matched pair, the given player first, or null if no opponent is in range
+     */
+    public ClientHandler[] match(ClientHandler player, long now) {
+        Entry entry = byJoinTime.get(player);
+        if (entry == null) {
+            return null;
+        }
+        Entry opponent = closest(entry, now);
+        if (opponent == null) {
+            return null;
+        }
+        remove(entry.player);
+        remove(opponent.player);
+        return new ClientHandler[] {entry.player, opponent.player};
+    }
+
+    /**
+     * Matches as many queued players as possible.
+     * Players are considered in the order in which they joined, so the
+     * longest-waiting player, who has the widest window, is paired first.
+     *
+     * @param now the current time in milliseconds
+     * @return the matched pairs, longest-waiting player first
+     */
+    /*@
+      ensures \result != null;
+    @*/
+    public List<ClientHandler[]> matchAll(long now) {
+        List<ClientHandler[]> pairs = new ArrayList<>();
+        if (byJoinTime.size() < 2) {
+            return pairs;
+        }
+        for (ClientHandler player : new ArrayList<>(byJoinTime.keySet())) {
+            ClientHandler[] pair = match(player, now);
+            if (pair != null) {
+                pairs.add(pair);
+            }
+        }
+        return pairs;
+    }
+
+    /**
+     * Returns the queued neighbour with the nearest MMR if it lies inside
+     * the entry's current window.
+     */
+    private Entry closest(Entry entry, long now) {
+        Entry lower = byMmr.lower(entry);
+        Entry higher = byMmr.higher(entry);
+
+        Entry best;
+        if (lower == null) {
+            best = higher;
+        } else if (higher == null) {
+            best = lower;
+        } else {
+            best = (entry.mmr - lower.mmr <= higher.mmr - entry.mmr) ? lower : higher;
+        }
+
+        if (best == null || Math.abs(best.mmr - entry.mmr) > window(now - entry.joinTime)) {
+            return null;
+        }
+        return best;
+    }
+}
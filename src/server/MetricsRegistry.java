@@ -0,0 +1,161 @@
+package server;
+
+import java.io.PrintStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * In-process registry of server metrics.
+ * <p>
+ * Three kinds of metrics are supported:
+ * <ul>
+ * <li>counters, backed by a {@link LongAdder} so hot paths never contend</li>
+ * <li>gauges, read from a supplier only when a snapshot is taken</li>
+ * <li>latency histograms, see {@link Histogram}</li>
+ * </ul>
+ * Metrics are created on first use and looked up by name, so instrumented
+ * classes keep a reference in a static field and pay no lookup cost per event.
+ * All methods are thread-safe.
+ */
+public class MetricsRegistry {
+
+    private static final MetricsRegistry DEFAULT = new MetricsRegistry();
+
+    private final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+    private final Map<String, LongSupplier> gauges = new ConcurrentHashMap<>();
+    private final Map<String, Histogram> histograms = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the registry shared by the whole server.
+     *
+     * @return the default registry
+     */
+    public static MetricsRegistry getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Returns the counter with the given name, creating it if needed.
+     *
+     * @param name metric name
+     * @return the counter
+     */
+    /*@
+      requires name != null;
+      ensures \result != null;
+    @*/
+    public LongAdder counter(String name) {
+        return counters.computeIfAbsent(name, n -> new LongAdder());
+    }
+
+    /**
+     * Registers a gauge. A gauge registered under an existing name replaces it.
+     *
+     * @param name  metric name
+     * @param value supplier of the current value; must be cheap and non-blocking
+     */
+    /*@
+      requires name != null && value != null;
+    @*/
+    public void gauge(String name, LongSupplier value) {
+        gauges.put(name, value);
+    }
+
+    /**
+     * Returns the histogram with the given name, creating it if needed.
+     *
+     * @param name metric name
+     * @return the histogram
+     */
+    /*@
+      requires name != null;
+      ensures \result != null;
+    @*/
+    public Histogram histogram(String name) {
+        return histograms.computeIfAbsent(name, n -> new Histogram());
+    }
+
+    /**
+     * Returns the current value of every metric, sorted by name.
+     * Counters and gauges map to a number; histograms map to a summary
+     * of count, mean, percentiles and maximum in microseconds.
+     *
+     * @return metric names and their formatted values
+     */
+    /*@
+      ensures \result != null;
+    @*/
+    public Map<String, String> snapshot() {
+        Map<String, String> values = new ConcurrentSkipListMap<>();
+        counters.forEach((name, counter) -> values.put(name, Long.toString(counter.sum())));
+        gauges.forEach((name, gauge) -> values.put(name, Long.toString(gauge.getAsLong())));
+        histograms.forEach((name, histogram) -> values.put(name, format(histogram.snapshot())));
+        return values;
+    }
+
+    /**
+     * Starts printing a snapshot at a fixed interval on a daemon thread.
+     *
+     * @param interval time between two dumps in milliseconds
+     * @param out      stream to print to
+     * @return the scheduler, to be shut down by the caller
+     */
+    /*@
+      requires interval > 0 && out != null;
+    @*/
+    public ScheduledExecutorService startDump(long interval, PrintStream out) {
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "Metrics-Dump");
+            thread.setDaemon(true);
+            return thread;
+        });
+        Map<String, Long> previous = new HashMap<>();
+        scheduler.scheduleAtFixedRate(() -> dump(out, previous, interval),
+                                      interval, interval, TimeUnit.MILLISECONDS);
+        return scheduler;
+    }
+
+    /**
+     * Prints one line per metric. Counters also show their rate per second
+     * since the previous dump.
+     *
+     * @param out      stream to print to
+     * @param previous counter values of the previous dump, updated in place
+     * @param interval time since the previous dump in milliseconds
+     */
+    private void dump(PrintStream out, Map<String, Long> previous, long interval) {
+        Map<String, String> values = snapshot();
+        StringBuilder sb = new StringBuilder("--- METRICS ---");
+        for (Map.Entry<String, String> entry : values.entrySet()) {
+            String name = entry.getKey();
+            sb.append('\n').append(name).append(" = ").append(entry.getValue());
+            LongAdder counter = counters.get(name);
+            if (counter != null) {
+                long current = Long.parseLong(entry.getValue());
+                long delta = current - previous.getOrDefault(name, 0L);
+                sb.append(String.format(" (%.1f/s)", delta * 1000.0 / interval));
+                previous.put(name, current);
+            }
+        }
+        out.println(sb);
+    }
+
+    /**
+     * Formats a nanosecond histogram as {@code n:..,mean:..,p50:..,p90:..,p99:..,max:..} in microseconds.
+     */
+    private static String format(Histogram.Snapshot s) {
+        return "n:" + s.getCount()
+                + ",mean:" + Math.round(s.getMean() / 1000)
+                + ",p50:" + s.getPercentile(50) / 1000
+                + ",p90:" + s.getPercentile(90) / 1000
+                + ",p99:" + s.getPercentile(99) / 1000
+                + ",max:" + s.getMax() / 1000;
+    }
+}
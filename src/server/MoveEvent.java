@@ -0,0 +1,50 @@
+package server;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Flight Recorder event for one MOVE processed by a {@link GameSession}.
+ * The duration is split into validating and applying the move and
+ * sending the result to the players.
+ * <p>
+ * Disabled by default; enable it with {@code +quarto.Move#enabled=true}.
+ */
+@Name("quarto.Move")
+@Label("Game Move")
+@Category({"Quarto", "Game"})
+@Description("A move validated, applied and broadcast by a game session")
+@Enabled(false)
+@StackTrace(false)
+public final class MoveEvent extends Event {
+
+    @Label("Game Id")
+    int gameId;
+
+    @Label("Player")
+    String player;
+
+    @Label("Location")
+    int location;
+
+    @Label("Piece")
+    int piece;
+
+    @Label("Outcome")
+    @Description("ACCEPTED, GAMEOVER, REJECTED, TIMEOUT or IGNORED")
+    String outcome;
+
+    @Label("Validation Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long validationTime;
+
+    @Label("Broadcast Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long broadcastTime;
+}
@@ -0,0 +1,41 @@
+package server;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Flight Recorder event for one protocol line handled by a {@link ClientHandler}.
+ * The event duration covers parsing and handling the line.
+ * <p>
+ * Disabled by default; enable it for a recording with
+ * {@code -XX:StartFlightRecording:+quarto.Packet#enabled=true} or in a custom .jfc file.
+ */
+@Name("quarto.Packet")
+@Label("Protocol Packet")
+@Category({"Quarto", "Protocol"})
+@Description("A protocol line received and handled by the server")
+@Enabled(false)
+@StackTrace(false)
+public final class PacketEvent extends Event {
+
+    @Label("Command")
+    String command;
+
+    @Label("Player")
+    String player;
+
+    @Label("Size")
+    @DataAmount(DataAmount.BYTES)
+    int bytes;
+
+    @Label("Parse Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long parseTime;
+}
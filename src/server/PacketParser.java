@@ -0,0 +1,238 @@
+package server;
+
+import protocol.Protocol;
+
+/**
+ * Allocation-free tokenizer for single-line protocol messages.
+ * <p>
+ * A parser instance is reused for every line received on one connection.
+ * {@link #parse(String)} only records the start and end offsets of each
+ * field inside the original line, so the command lookup and all numeric
+ * fields are resolved without creating substrings, arrays or exceptions.
+ * Strings are only materialised on request via {@link #stringField(int)}.
+ * <p>
+ * Tokenization follows the same rules as
+ * {@code StringUtils.split(line, Protocol.SEPARATOR)}: empty fields
+ * between adjacent separators are skipped.
+ * This class is not thread-safe.
+ */
+public final class PacketParser {
+
+    /**
+     * Protocol commands understood by the server, each bound to its
+     * precomputed protocol token.
+     */
+    public enum Command {
+        HELLO(Protocol.HELLO),
+        LOGIN(Protocol.LOGIN),
+        QUEUE(Protocol.QUEUE),
+        MOVE(Protocol.MOVE),
+        LIST(Protocol.LIST),
+        CHAT(Protocol.CHAT),
+        WHISPER(Protocol.WHISPER),
+        RANK(Protocol.RANK),
+        STATS(Protocol.STATS),
+        PING(Protocol.PING),
+        PONG(Protocol.PONG),
+        SPECTATE(Protocol.SPECTATE),
+        HISTORY(Protocol.HISTORY),
+        REPLAY(Protocol.REPLAY),
+        UNKNOWN(null);
+
+        private final String token;
+
+        Command(String token) {
+            this.token = token;
+        }
+
+        /**
+         * Returns the protocol token of this command.
+         *
+         * @return the token, or null for {@link #UNKNOWN}
+         */
+        public String getToken() {
+            return token;
+        }
+    }
+
+    /** Value returned by {@link #intField(int)} when a field is not a valid number. */
+    public static final int INVALID_NUMBER = Integer.MIN_VALUE;
+
+    /** Maximum number of field offsets remembered per line. */
+    private static final int MAX_FIELDS = 8;
+
+    /** Longest digit sequence accepted without risking int overflow. */
+    private static final int MAX_DIGITS = 9;
+
+    private static final char SEPARATOR = Protocol.SEPARATOR.charAt(0);
+
+    private static final Command[] COMMANDS;
+
+    static {
+        Command[] all = Command.values();
+        COMMANDS = new Command[all.length - 1];
+        System.arraycopy(all, 0, COMMANDS, 0, COMMANDS.length);
+    }
+
+    private final int[] starts = new int[MAX_FIELDS];
+    private final int[] ends = new int[MAX_FIELDS];
+    private String line;
+    private int fieldCount;
+    private Command command = Command.UNKNOWN;
+
+    /*@
+      private invariant fieldCount >= 0;
+      private invariant command != null;
+    @*/
+
+    /**
+     * Tokenizes the given line in place.
+     *
+     * @param line the received protocol line
+     * @return false if the line is blank and should be ignored, true otherwise
+     */
+    /*@
+      requires line != null;
+      ensures \result ==> fieldCount() > 0;
+    @*/
+    public boolean parse(String line) {
+        this.line = line;
+        this.fieldCount = 0;
+        this.command = Command.UNKNOWN;
+
+        if (isBlank(line)) {
+            return false;
+        }
+
+        int length = line.length();
+        int i = 0;
+        while (i < length) {
+            while (i < length && line.charAt(i) == SEPARATOR) {
+                i++;
+            }
+            if (i == length) {
+                break;
+            }
+            int start = i;
+            while (i < length && line.charAt(i) != SEPARATOR) {
+                i++;
+            }
+            if (fieldCount < MAX_FIELDS) {
+                starts[fieldCount] = start;
+                ends[fieldCount] = i;
+            }
+            fieldCount++;
+        }
+
+        if (fieldCount == 0) {
+            return false;
+        }
+        command = lookup(starts[0], ends[0]);
+        return true;
+    }
+
+    /**
+     * Returns the command of the last parsed line.
+     *
+     * @return the command, or {@link Command#UNKNOWN} if it is not recognised
+     */
+    public Command command() {
+        return command;
+    }
+
+    /**
+     * Returns the number of fields in the last parsed line, including the command.
+     *
+     * @return the field count
+     */
+    public int fieldCount() {
+        return fieldCount;
+    }
+
+    /**
+     * Parses a field as a decimal integer without allocating.
+     *
+     * @param index the field index (0 is the command)
+     * @return the parsed value, or {@link #INVALID_NUMBER} if the field is
+     *         missing or not a valid number
+     */
+    public int intField(int index) {
+        if (index < 0 || index >= Math.min(fieldCount, MAX_FIELDS)) {
+            return INVALID_NUMBER;
+        }
+        int pos = starts[index];
+        int end = ends[index];
+        boolean negative = false;
+        if (line.charAt(pos) == '-') {
+            negative = true;
+            pos++;
+        }
+        if (pos == end || end - pos > MAX_DIGITS) {
+            return INVALID_NUMBER;
+        }
+        int value = 0;
+        for (; pos < end; pos++) {
+            int digit = line.charAt(pos) - '0';
+            if (digit < 0 || digit > 9) {
+                return INVALID_NUMBER;
+            }
+            value = value * 10 + digit;
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * Checks whether a field equals the given token without allocating.
+     *
+     * @param index the field index (0 is the command)
+     * @param token the expected content
+     * @return true if the field exists and matches the token exactly
+     */
+    public boolean fieldEquals(int index, String token) {
+        if (index < 0 || index >= Math.min(fieldCount, MAX_FIELDS)) {
+            return false;
+        }
+        int length = ends[index] - starts[index];
+        return token.length() == length && line.regionMatches(starts[index], token, 0, length);
+    }
+
+    /**
+     * Returns a field as a new string.
+     * Only used for fields that must outlive the line, such as names or chat text.
+     *
+     * @param index the field index (0 is the command)
+     * @return the field content, or null if the field does not exist
+     */
+    public String stringField(int index) {
+        if (index < 0 || index >= Math.min(fieldCount, MAX_FIELDS)) {
+            return null;
+        }
+        return line.substring(starts[index], ends[index]);
+    }
+
+    /**
+     * Finds the command whose token equals the given region of the line.
+     */
+    private Command lookup(int start, int end) {
+        int length = end - start;
+        for (Command candidate : COMMANDS) {
+            String token = candidate.token;
+            if (token.length() == length && line.regionMatches(start, token, 0, length)) {
+                return candidate;
+            }
+        }
+        return Command.UNKNOWN;
+    }
+
+    /**
+     * Checks whether the line is empty or consists only of whitespace.
+     */
+    private static boolean isBlank(String line) {
+        for (int i = 0; i < line.length(); i++) {
+            if (!Character.isWhitespace(line.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,295 @@
+package server;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Continuously maintained leaderboard.
+ * <p>
+ * Players are kept in an indexable skip list ordered by MMR (descending)
+ * and name (ascending). Every forward link stores how many entries it
+ * skips, so the position of a player and the entry at a given position
+ * are both found in O(log n). Reading a page of the leaderboard costs
+ * O(log n + page size), independent of the total number of players.
+ * <p>
+ * Readers share a read lock, so concurrent RANK requests do not block each other.
+ */
+public class RankingIndex {
+
+    /**
+     * A single leaderboard entry.
+     */
+    public static final class Entry {
+        private final String name;
+        private final int mmr;
+
+        private Entry(String name, int mmr) {
+            this.name = name;
+            this.mmr = mmr;
+        }
+
+        /**
+         * @return the player's username
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return the player's MMR
+         */
+        public int getMmr() {
+            return mmr;
+        }
+    }
+
+    private static final int MAX_LEVEL = 32;
+
+    /**
+     * Skip list node. {@code span[i]} is the number of positions the link
+     * {@code next[i]} advances; for the last node on a level it counts the
+     * remaining entries.
+     */
+    private static final class Node {
+        private final String name;
+        private final int mmr;
+        private final Node[] next;
+        private final int[] span;
+
+        private Node(String name, int mmr, int level) {
+            this.name = name;
+            this.mmr = mmr;
+            this.next = new Node[level];
+            this.span = new int[level];
+        }
+    }
+
+    private final Node head = new Node(null, 0, MAX_LEVEL);
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private int level = 1;
+    private int size = 0;
+
+    /*@
+      private invariant size >= 0;
+      private invariant 1 <= level && level <= MAX_LEVEL;
+    @*/
+
+    /**
+     * Builds the index from an existing ratings map.
+     *
+     * @param ratings usernames and their MMR
+     */
+    /*@
+      requires ratings != null;
+    @*/
+    public void addAll(Map<String, Integer> ratings) {
+        lock.writeLock().lock();
+        try {
+            for (Map.Entry<String, Integer> entry : ratings.entrySet()) {
+                insert(entry.getKey(), entry.getValue());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Inserts a player or moves them to their new position.
+     *
+     * @param name        the username
+     * @param previousMmr the MMR currently stored in the index, or null if the player is new
+     * @param mmr         the new MMR
+     */
+    /*@
+      requires name != null;
+    @*/
+    public void update(String name, Integer previousMmr, int mmr) {
+        lock.writeLock().lock();
+        try {
+            if (previousMmr != null) {
+                delete(name, previousMmr);
+            }
+            insert(name, mmr);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the number of indexed players.
+     *
+     * @return the leaderboard size
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the 1-based position a player with the given name and MMR holds,
+     * or would hold, on the leaderboard.
+     *
+     * @param name the username
+     * @param mmr  the player's MMR
+     * @return the leaderboard position
+     */
+    /*@
+      requires name != null;
+      ensures \result >= 1;
+    @*/
+    public int position(String name, int mmr) {
+        lock.readLock().lock();
+        try {
+            int before = 0;
+            Node x = head;
+            for (int i = level - 1; i >= 0; i--) {
+                while (x.next[i] != null && precedes(x.next[i], name, mmr)) {
+                    before += x.span[i];
+                    x = x.next[i];
+                }
+            }
+            return before + 1;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns a page of the leaderboard.
+     *
+     * @param offset number of entries to skip from the top
+     * @param count  maximum number of entries to return
+     * @return the entries, best first
+     */
+    /*@
+      requires offset >= 0 && count >= 0;
+      ensures \result != null && \result.size() <= count;
+    @*/
+    public List<Entry> page(int offset, int count) {
+        List<Entry> result = new ArrayList<>(Math.min(count, 64));
+        lock.readLock().lock();
+        try {
+            Node x = nodeAt(offset + 1);
+            while (x != null && result.size() < count) {
+                result.add(new Entry(x.name, x.mmr));
+                x = x.next[0];
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return result;
+    }
+
+    /**
+     * Returns the node at the given 1-based position, or null if it does not exist.
+     */
+    private Node nodeAt(int position) {
+        if (position < 1 || position > size) {
+            return null;
+        }
+        int traversed = 0;
+        Node x = head;
+        for (int i = level - 1; i >= 0; i--) {
+            while (x.next[i] != null && traversed + x.span[i] <= position) {
+                traversed += x.span[i];
+                x = x.next[i];
+            }
+            if (traversed == position) {
+                return x;
+            }
+        }
+        return null;
+    }
+
+    private void insert(String name, int mmr) {
+        Node[] update = new Node[MAX_LEVEL];
+        int[] rank = new int[MAX_LEVEL];
+        Node x = head;
+        for (int i = level - 1; i >= 0; i--) {
+            rank[i] = (i == level - 1) ? 0 : rank[i + 1];
+            while (x.next[i] != null && precedes(x.next[i], name, mmr)) {
+                rank[i] += x.span[i];
+                x = x.next[i];
+            }
+            update[i] = x;
+        }
+
+        int nodeLevel = randomLevel();
+        if (nodeLevel > level) {
+            for (int i = level; i < nodeLevel; i++) {
+                rank[i] = 0;
+                update[i] = head;
+                head.span[i] = size;
+            }
+            level = nodeLevel;
+        }
+
+        Node node = new Node(name, mmr, nodeLevel);
+        for (int i = 0; i < nodeLevel; i++) {
+            node.next[i] = update[i].next[i];
+            update[i].next[i] = node;
+            node.span[i] = update[i].span[i] - (rank[0] - rank[i]);
+            update[i].span[i] = (rank[0] - rank[i]) + 1;
+        }
+        for (int i = nodeLevel; i < level; i++) {
+            update[i].span[i]++;
+        }
+        size++;
+    }
+
+    private void delete(String name, int mmr) {
+        Node[] update = new Node[MAX_LEVEL];
+        Node x = head;
+        for (int i = level - 1; i >= 0; i--) {
+            while (x.next[i] != null && precedes(x.next[i], name, mmr)) {
+                x = x.next[i];
+            }
+            update[i] = x;
+        }
+
+        Node target = x.next[0];
+        if (target == null || target.mmr != mmr || !target.name.equals(name)) {
+            return;
+        }
+        for (int i = 0; i < level; i++) {
+            if (update[i].next[i] == target) {
+                update[i].span[i] += target.span[i] - 1;
+                update[i].next[i] = target.next[i];
+            } else {
+                update[i].span[i]--;
+            }
+        }
+        while (level > 1 && head.next[level - 1] == null) {
+            level--;
+        }
+        size--;
+    }
+
+    /**
+     * Checks whether the node is ordered before the given key:
+     * higher MMR first, then alphabetical by name.
+     */
+    private static boolean precedes(Node node, String name, int mmr) {
+        if (node.mmr != mmr) {
+            return node.mmr > mmr;
+        }
+        return node.name.compareTo(name) < 0;
+    }
+
+    private static int randomLevel() {
+        int nodeLevel = 1;
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (nodeLevel < MAX_LEVEL && random.nextInt(4) == 0) {
+            nodeLevel++;
+        }
+        return nodeLevel;
+    }
+}
@@ -0,0 +1,139 @@
+package server;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Append-only log of rating changes.
+ * <p>
+ * Every record stores the new absolute MMR of one player in the same
+ * {@code username:mmr} format as the ratings snapshot, so replaying the
+ * log on top of an older snapshot is idempotent. Records are written in
+ * batches and each batch is made durable with a single fsync.
+ * This class is not thread-safe; {@link FileStorage} only uses it from its flusher thread.
+ */
+public class RatingLog {
+
+    private final Path path;
+    private FileChannel channel;
+
+    /*@
+      private invariant path != null;
+    @*/
+
+    /**
+     * Creates a rating log backed by the given file.
+     * The file is opened lazily on the first append.
+     *
+     * @param path location of the log file
+     */
+    /*@
+      requires path != null;
+    @*/
+    public RatingLog(Path path) {
+        this.path = path;
+    }
+
+    /**
+     * Replays all complete records of the log into the given map.
+     * Malformed lines, such as a record torn by a crash, are skipped.
+     *
+     * @param ratings the map to update
+     * @return the number of records applied
+     */
+    /*@
+      requires ratings != null;
+      ensures \result >= 0;
+    @*/
+    public int replay(Map<String, Integer> ratings) {
+        if (!Files.exists(path)) {
+            return 0;
+        }
+        int applied = 0;
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int colon = line.lastIndexOf(':');
+                if (colon <= 0) {
+                    continue;
+                }
+                try {
+                    ratings.put(line.substring(0, colon), Integer.parseInt(line.substring(colon + 1)));
+                    applied++;
+                } catch (NumberFormatException ignored) {
+                    // torn or corrupted record
+                }
+            }
+        } catch (IOException e) {
+            Log.error("replaying rating log failed", "error", e.getMessage());
+        }
+        return applied;
+    }
+
+    /**
+     * Appends a batch of records and forces them to disk with one fsync.
+     *
+     * @param records lines in the format {@code username:mmr}
+     * @throws IOException if the log cannot be written
+     */
+    /*@
+      requires records != null;
+    @*/
+    public void append(List<String> records) throws IOException {
+        if (records.isEmpty()) {
+            return;
+        }
+        StringBuilder sb = new StringBuilder(records.size() * 16);
+        for (String record : records) {
+            sb.append(record).append('\n');
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(sb.toString().getBytes(StandardCharsets.UTF_8));
+        FileChannel out = channel();
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+        out.force(false);
+    }
+
+    /**
+     * Discards all records, after their effect has been saved in a snapshot.
+     *
+     * @throws IOException if the log cannot be truncated
+     */
+    public void truncate() throws IOException {
+        close();
+        try (FileChannel out = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            out.force(true);
+        }
+    }
+
+    /**
+     * Closes the underlying file.
+     */
+    public void close() {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+            }
+            channel = null;
+        }
+    }
+
+    private FileChannel channel() throws IOException {
+        if (channel == null) {
+            channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        }
+        return channel;
+    }
+}
@@ -0,0 +1,228 @@
+package server;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Applies the results of finished games to the players' ratings.
+ * <p>
+ * Game sessions hand their results to {@link #submit(GameRecord)}, which
+ * only offers them to a bounded queue, so ending a game never waits for
+ * rating math, the storage lock or the disk. A single worker thread drains
+ * the queue in batches, computes Elo updates for the whole batch and then
+ * applies the net change per player to {@link FileStorage} with one call.
+ * Games of the same player within a batch are rated one after the other,
+ * exactly as if they had been applied one by one.
+ * <p>
+ * If the queue is full the result is dropped and counted; the game itself
+ * is still stored in the game log.
+ */
+public class RatingWorker {
+
+    /** Default number of results that may wait for the worker. */
+    public static final int DEFAULT_CAPACITY = 4096;
+
+    /** Elo K-factor: the largest possible change of a rating from one game. */
+    static final int K_FACTOR = 32;
+
+    /** Maximum time in milliseconds the worker waits for more results. */
+    private static final long POLL_INTERVAL = 50;
+
+    /** Time of rating and applying one batch, in nanoseconds. */
+    private static final Histogram BATCH_LATENCY = MetricsRegistry.getDefault().histogram("ratings.batch");
+
+    private static final LongAdder GAMES_RATED = MetricsRegistry.getDefault().counter("ratings.games");
+    private static final LongAdder RESULTS_DROPPED = MetricsRegistry.getDefault().counter("ratings.dropped");
+
+    private final FileStorage storage;
+    private final BlockingQueue<GameRecord> queue;
+    private final Thread worker;
+
+    /** Monitor used by callers waiting for their results to be applied */
+    private final Object progress = new Object();
+
+    private long submitted = 0;
+    private long applied = 0;
+    private volatile boolean closed = false;
+
+    /*@
+      private invariant storage != null && queue != null;
+      private invariant applied <= submitted;
+    @*/
+
+    /**
+     * Creates a rating worker and starts its thread.
+     *
+     * @param storage  storage the rating changes are applied to
+     * @param capacity number of results that may wait for the worker
+     */
+    /*@
+      requires storage != null && capacity > 0;
+    @*/
+    public RatingWorker(FileStorage storage, int capacity) {
+        this.storage = storage;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        MetricsRegistry.getDefault().gauge("ratings.queue", queue::size);
+
+        worker = new Thread(this::run, "Rating-Worker");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Queues the result of a finished game without blocking.
+     *
+     * @param record the finished game
+     * @return true if the result was queued, false if the queue was full or the worker is closed
+     */
+    /*@
+      requires record != null;
+    @*/
+    public boolean submit(GameRecord record) {
+        synchronized (progress) {
+            if (closed || !queue.offer(record)) {
+                RESULTS_DROPPED.increment();
+                Log.warn("rating dropped", "game", record.getGameId());
+                return false;
+            }
+            submitted++;
+            return true;
+        }
+    }
+
+    /**
+     * Blocks until every result submitted so far has been applied to the storage.
+     */
+    public void flush() {
+        synchronized (progress) {
+            long target = submitted;
+            while (applied < target && worker.isAlive()) {
+                try {
+                    progress.wait(POLL_INTERVAL);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Applies all queued results and stops the worker.
+     */
+    public void close() {
+        synchronized (progress) {
+            closed = true;
+        }
+        try {
+            worker.join(POLL_INTERVAL * 20);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Computes the Elo change of a player from one game.
+     *
+     * @param rating         rating of the player
+     * @param opponentRating rating of the opponent
+     * @param score          1 for a win, 0.5 for a draw, 0 for a loss
+     * @return points to add to the player's rating
+     */
+    /*@
+      requires score == 0 || score == 0.5 || score == 1;
+      ensures \result >= -K_FACTOR && \result <= K_FACTOR;
+    @*/
+    static int eloChange(int rating, int opponentRating, double score) {
+        double expected = 1 / (1 + Math.pow(10, (opponentRating - rating) / 400.0));
+        return (int) Math.round(K_FACTOR * (score - expected));
+    }
+
+    /**
+     * Main loop of the worker thread.
+     * Waits for a result, then drains everything that arrived in the
+     * meantime and rates it as one batch. After {@link #close()} the queue
+     * is emptied before the thread ends.
+     */
+    private void run() {
+        List<GameRecord> batch = new ArrayList<>();
+        while (!closed || !queue.isEmpty()) {
+            try {
+                GameRecord first = queue.poll(POLL_INTERVAL, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch);
+            } catch (InterruptedException e) {
+                return;
+            }
+
+            long start = System.nanoTime();
+            try {
+                storage.updateMmr(rate(batch));
+                GAMES_RATED.add(batch.size());
+            } catch (RuntimeException e) {
+                Log.error("rating batch failed", "error", e);
+            } finally {
+                BATCH_LATENCY.record(System.nanoTime() - start);
+            }
+            synchronized (progress) {
+                applied += batch.size();
+                progress.notifyAll();
+            }
+            batch.clear();
+        }
+    }
+
+    /**
+     * Rates a batch of games in order.
+     *
+     * @param batch finished games, oldest first
+     * @return net rating change per player
+     */
+    private Map<String, Integer> rate(List<GameRecord> batch) {
+        Map<String, Integer> before = new HashMap<>();
+        Map<String, Integer> after = new HashMap<>();
+        for (GameRecord game : batch) {
+            String player1 = game.getPlayer1();
+            String player2 = game.getPlayer2();
+            if (player1.equals(player2)) {
+                continue;
+            }
+            int rating1 = current(player1, before, after);
+            int rating2 = current(player2, before, after);
+            double score1 = game.getWinner() == 0 ? 0.5 : (game.getWinner() == 1 ? 1 : 0);
+            // storage keeps ratings non-negative, so mirror that for later games in the batch
+            after.put(player1, Math.max(0, rating1 + eloChange(rating1, rating2, score1)));
+            after.put(player2, Math.max(0, rating2 + eloChange(rating2, rating1, 1 - score1)));
+        }
+
+        Map<String, Integer> changes = new HashMap<>();
+        for (Map.Entry<String, Integer> entry : after.entrySet()) {
+            int change = entry.getValue() - before.get(entry.getKey());
+            if (change != 0) {
+                changes.put(entry.getKey(), change);
+            }
+        }
+        return changes;
+    }
+
+    /**
+     * Returns a player's rating as of the games already rated in this batch.
+     */
+    private int current(String username, Map<String, Integer> before, Map<String, Integer> after) {
+        Integer rating = after.get(username);
+        if (rating == null) {
+            rating = storage.getMmr(username);
+            before.put(username, rating);
+        }
+        return rating;
+    }
+}
@@ -0,0 +1,34 @@
+package server;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight Recorder event for a write of the rating store: either a batch
+ * appended to the change log (including its fsync) or a full snapshot.
+ * <p>
+ * Disabled by default; enable it with {@code +quarto.StorageSave#enabled=true}.
+ */
+@Name("quarto.StorageSave")
+@Label("Rating Storage Write")
+@Category({"Quarto", "Storage"})
+@Description("A batch of rating changes or a ratings snapshot written to disk")
+@Enabled(false)
+@StackTrace(false)
+public final class StorageSaveEvent extends Event {
+
+    @Label("Operation")
+    @Description("APPEND or SNAPSHOT")
+    String operation;
+
+    @Label("Records")
+    int records;
+
+    @Label("Success")
+    boolean success;
+}
@@ -0,0 +1,110 @@
+package server;
+
+/**
+ * Time control of a game: a limit per move and a budget per player for the whole game.
+ * <p>
+ * The clock of a player runs while it is their turn. A player loses on time
+ * when a single move takes longer than {@link #getMoveMillis()} or when the
+ * time used over all their moves exceeds {@link #getGameMillis()}. A value
+ * of 0 disables the respective limit. Instances are immutable.
+ */
+public final class TimeControl {
+
+    /** Time control without any limit. */
+    public static final TimeControl UNLIMITED = new TimeControl(0, 0);
+
+    /** Default limit per move in milliseconds. */
+    private static final long DEFAULT_MOVE_MILLIS = 60000;
+
+    /** Default budget per player for the whole game in milliseconds. */
+    private static final long DEFAULT_GAME_MILLIS = 300000;
+
+    private final long moveMillis;
+    private final long gameMillis;
+
+    /*@
+      private invariant moveMillis >= 0 && gameMillis >= 0;
+    @*/
+
+    /**
+     * Creates a time control.
+     *
+     * @param moveMillis limit per move in milliseconds, 0 for none
+     * @param gameMillis budget per player for the whole game in milliseconds, 0 for none
+     * @throws IllegalArgumentException if a limit is negative
+     */
+    /*@
+      requires moveMillis >= 0 && gameMillis >= 0;
+    @*/
+    public TimeControl(long moveMillis, long gameMillis) {
+        if (moveMillis < 0 || gameMillis < 0) {
+            throw new IllegalArgumentException("Time limits must not be negative");
+        }
+        this.moveMillis = moveMillis;
+        this.gameMillis = gameMillis;
+    }
+
+    /**
+     * Reads the server's time control from the system properties
+     * {@code quarto.time.move} and {@code quarto.time.game} (milliseconds,
+     * defaults 60 s per move and 5 min per game).
+     *
+     * @return the configured time control
+     */
+    public static TimeControl fromSystemProperties() {
+        return new TimeControl(Long.getLong("quarto.time.move", DEFAULT_MOVE_MILLIS),
+                               Long.getLong("quarto.time.game", DEFAULT_GAME_MILLIS));
+    }
+
+    /**
+     * Returns the limit per move.
+     *
+     * @return milliseconds, 0 if unlimited
+     */
+    public long getMoveMillis() {
+        return moveMillis;
+    }
+
+    /**
+     * Returns the budget per player for the whole game.
+     *
+     * @return milliseconds, 0 if unlimited
+     */
+    public long getGameMillis() {
+        return gameMillis;
+    }
+
+    /**
+     * Checks whether any limit is enforced.
+     *
+     * @return true if moves or games are limited
+     */
+    public boolean isLimited() {
+        return moveMillis > 0 || gameMillis > 0;
+    }
+
+    /**
+     * Returns how long a player with the given game budget left may think about the next move.
+     *
+     * @param remaining the player's remaining game budget in milliseconds
+     * @return milliseconds available for the move, or {@code Long.MAX_VALUE} if unlimited
+     */
+    /*@
+      ensures \result >= 0;
+    @*/
+    public long budgetForMove(long remaining) {
+        long budget = Long.MAX_VALUE;
+        if (moveMillis > 0) {
+            budget = moveMillis;
+        }
+        if (gameMillis > 0) {
+            budget = Math.min(budget, Math.max(0, remaining));
+        }
+        return budget;
+    }
+
+    @Override
+    public String toString() {
+        return moveMillis + "/" + gameMillis;
+    }
+}
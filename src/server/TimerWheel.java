@@ -0,0 +1,244 @@
+package server;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Hashed-wheel timer for large numbers of coarse timeouts.
+ * <p>
+ * The wheel is a ring of buckets, each covering one tick. A timeout is
+ * placed in the bucket of its deadline together with the number of full
+ * rotations still to wait, so scheduling and cancelling cost O(1)
+ * regardless of how many timeouts are pending. A single thread advances
+ * the wheel once per tick and runs the expired tasks; tasks therefore fire
+ * up to one tick late and must be short and non-blocking.
+ * <p>
+ * New timeouts are handed to the wheel thread through a lock-free queue,
+ * so {@link #schedule(Runnable, long, TimeUnit)} may be called from any
+ * thread. Cancelled timeouts are removed lazily when their bucket is visited.
+ */
+public final class TimerWheel {
+
+    /**
+     * Handle of a scheduled task.
+     */
+    public static final class Timeout {
+
+        private static final int WAITING = 0;
+        private static final int CANCELLED = 1;
+        private static final int EXPIRED = 2;
+
+        private static final AtomicIntegerFieldUpdater<Timeout> STATE =
+                AtomicIntegerFieldUpdater.newUpdater(Timeout.class, "state");
+
+        private final Runnable task;
+        private final long deadline;
+        private long remainingRounds;
+        private Timeout next;
+        private volatile int state = WAITING;
+
+        private Timeout(Runnable task, long deadline) {
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        /**
+         * Cancels the task if it has not run yet.
+         *
+         * @return true if the task was cancelled by this call
+         */
+        public boolean cancel() {
+            return STATE.compareAndSet(this, WAITING, CANCELLED);
+        }
+
+        /**
+         * Checks whether the task was cancelled.
+         *
+         * @return true if {@link #cancel()} succeeded
+         */
+        public boolean isCancelled() {
+            return state == CANCELLED;
+        }
+
+        /**
+         * Checks whether the task has run or is running.
+         *
+         * @return true once the timeout has expired
+         */
+        public boolean isExpired() {
+            return state == EXPIRED;
+        }
+
+        private boolean expire() {
+            return STATE.compareAndSet(this, WAITING, EXPIRED);
+        }
+    }
+
+    private final long tickNanos;
+    private final Timeout[] buckets;
+    private final int mask;
+    private final Queue<Timeout> incoming = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pending = new AtomicInteger();
+    private final long startTime;
+    private final Thread worker;
+    private volatile boolean closed = false;
+
+    /** Number of ticks processed so far; only used by the wheel thread. */
+    private long tick = 0;
+
+    /*@
+      private invariant tickNanos > 0;
+      private invariant buckets != null && buckets.length == mask + 1;
+    @*/
+
+    /**
+     * Creates a timer wheel and starts its thread.
+     *
+     * @param name      name of the wheel thread
+     * @param tick      duration of one tick
+     * @param unit      unit of {@code tick}
+     * @param wheelSize number of buckets, rounded up to a power of two
+     */
+    /*@
+      requires name != null && unit != null;
+      requires tick > 0 && wheelSize > 0;
+    @*/
+    public TimerWheel(String name, long tick, TimeUnit unit, int wheelSize) {
+        int size = Integer.highestOneBit(Math.max(2, wheelSize - 1)) << 1;
+        this.tickNanos = unit.toNanos(tick);
+        this.buckets = new Timeout[size];
+        this.mask = size - 1;
+        this.startTime = System.nanoTime();
+
+        worker = new Thread(this::run, name);
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Schedules a task to run once after the given delay.
+     *
+     * @param task  the task to run on the wheel thread
+     * @param delay delay before the task runs
+     * @param unit  unit of {@code delay}
+     * @return handle that can cancel the task
+     * @throws IllegalStateException if the wheel has been closed
+     */
+    /*@
+      requires task != null && unit != null;
+      ensures \result != null;
+    @*/
+    public Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+        if (closed) {
+            throw new IllegalStateException("TimerWheel is closed");
+        }
+        long deadline = System.nanoTime() - startTime + unit.toNanos(Math.max(0, delay));
+        Timeout timeout = new Timeout(task, deadline);
+        pending.incrementAndGet();
+        incoming.add(timeout);
+        return timeout;
+    }
+
+    /**
+     * Returns the number of tasks that are scheduled and have neither run nor been removed.
+     *
+     * @return pending task count
+     */
+    public int pending() {
+        return pending.get();
+    }
+
+    /**
+     * Stops the wheel thread. Pending tasks are discarded.
+     */
+    public void close() {
+        closed = true;
+        LockSupport.unpark(worker);
+    }
+
+    /**
+     * Main loop of the wheel thread.
+     */
+    private void run() {
+        while (!closed) {
+            long tickEnd = (tick + 1) * tickNanos;
+            long sleep;
+            while ((sleep = tickEnd - (System.nanoTime() - startTime)) > 0 && !closed) {
+                LockSupport.parkNanos(this, sleep);
+            }
+            if (closed) {
+                break;
+            }
+            transferIncoming();
+            expireBucket((int) tick & mask);
+            tick++;
+        }
+    }
+
+    /**
+     * Moves newly scheduled timeouts into the bucket of their deadline.
+     * Timeouts whose deadline already passed go into the current bucket.
+     */
+    private void transferIncoming() {
+        Timeout timeout;
+        while ((timeout = incoming.poll()) != null) {
+            if (timeout.isCancelled()) {
+                pending.decrementAndGet();
+                continue;
+            }
+            long ticks = Math.max(timeout.deadline / tickNanos, tick);
+            timeout.remainingRounds = (ticks - tick) / buckets.length;
+            int index = (int) ticks & mask;
+            timeout.next = buckets[index];
+            buckets[index] = timeout;
+        }
+    }
+
+    /**
+     * Runs every task in the bucket whose rounds have elapsed and counts down the others.
+     */
+    private void expireBucket(int index) {
+        Timeout previous = null;
+        Timeout timeout = buckets[index];
+        while (timeout != null) {
+            Timeout next = timeout.next;
+            boolean remove;
+            if (timeout.isCancelled()) {
+                remove = true;
+            } else if (timeout.remainingRounds <= 0) {
+                remove = true;
+                if (timeout.expire()) {
+                    runTask(timeout);
+                }
+            } else {
+                timeout.remainingRounds--;
+                remove = false;
+            }
+
+            if (remove) {
+                pending.decrementAndGet();
+                timeout.next = null;
+                if (previous == null) {
+                    buckets[index] = next;
+                } else {
+                    previous.next = next;
+                }
+            } else {
+                previous = timeout;
+            }
+            timeout = next;
+        }
+    }
+
+    private void runTask(Timeout timeout) {
+        try {
+            timeout.task.run();
+        } catch (RuntimeException e) {
+            Log.error("timer task failed", "error", e);
+        }
+    }
+}
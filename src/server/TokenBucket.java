@@ -0,0 +1,60 @@
+package server;
+
+/**
+ * Token-bucket rate limiter.
+ * <p>
+ * The bucket holds up to {@code capacity} tokens and is refilled at a fixed
+ * rate. Every permitted action takes one token, so short bursts up to the
+ * capacity are allowed while the long-term rate is bounded by the refill rate.
+ * Tokens are refilled lazily from the elapsed time on each call; no timer is needed.
+ * This class is not thread-safe; each {@link ClientHandler} owns its own bucket.
+ */
+public class TokenBucket {
+
+    private final int capacity;
+    private final long nanosPerToken;
+    private double tokens;
+    private long lastRefill;
+
+    /*@
+      private invariant capacity > 0;
+      private invariant nanosPerToken > 0;
+      private invariant 0 <= tokens && tokens <= capacity;
+    @*/
+
+    /**
+     * Creates a full bucket.
+     *
+     * @param capacity       the maximum number of tokens (burst size)
+     * @param tokensPerSecond the refill rate
+     * @param now            the current time in nanoseconds
+     */
+    /*@
+      requires capacity > 0 && tokensPerSecond > 0;
+    @*/
+    public TokenBucket(int capacity, double tokensPerSecond, long now) {
+        this.capacity = capacity;
+        this.nanosPerToken = Math.max(1, (long) (1_000_000_000L / tokensPerSecond));
+        this.tokens = capacity;
+        this.lastRefill = now;
+    }
+
+    /**
+     * Takes one token if available.
+     *
+     * @param now the current time in nanoseconds
+     * @return true if the action is permitted, false if the rate limit is exceeded
+     */
+    public boolean tryAcquire(long now) {
+        long elapsed = now - lastRefill;
+        if (elapsed > 0) {
+            tokens = Math.min(capacity, tokens + (double) elapsed / nanosPerToken);
+            lastRefill = now;
+        }
+        if (tokens >= 1) {
+            tokens -= 1;
+            return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,117 @@
+package server;
+
+import protocol.Protocol;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Immutable snapshot of the logged-in users.
+ * <p>
+ * The snapshot maps every username to its connection and carries the
+ * pre-serialized payload of the LIST command. It is never modified;
+ * logins and disconnects produce a new snapshot (copy-on-write), so
+ * readers can use the current snapshot without any locking.
+ */
+public final class UserDirectory {
+
+    /** Snapshot without any logged-in users. */
+    public static final UserDirectory EMPTY = new UserDirectory(new LinkedHashMap<>());
+
+    private final Map<String, ClientHandler> users;
+    private final String serialized;
+
+    /*@
+      private invariant users != null;
+      private invariant serialized != null;
+    @*/
+
+    private UserDirectory(LinkedHashMap<String, ClientHandler> users) {
+        this.users = Collections.unmodifiableMap(users);
+        this.serialized = String.join(Protocol.SEPARATOR, users.keySet());
+    }
+
+    /**
+     * Returns a new snapshot that additionally contains the given user.
+     *
+     * @param username the username
+     * @param handler  the user's connection
+     * @return the new snapshot
+     */
+    /*@
+      requires username != null && handler != null;
+      ensures \result.contains(username);
+    @*/
+    public UserDirectory with(String username, ClientHandler handler) {
+        LinkedHashMap<String, ClientHandler> copy = new LinkedHashMap<>(users);
+        copy.put(username, handler);
+        return new UserDirectory(copy);
+    }
+
+    /**
+     * Returns a new snapshot without the given user.
+     *
+     * @param username the username
+     * @return the new snapshot, or this snapshot if the user is not present
+     */
+    /*@
+      ensures !\result.contains(username);
+    @*/
+    public UserDirectory without(String username) {
+        if (!users.containsKey(username)) {
+            return this;
+        }
+        LinkedHashMap<String, ClientHandler> copy = new LinkedHashMap<>(users);
+        copy.remove(username);
+        return new UserDirectory(copy);
+    }
+
+    /**
+     * Checks whether a user is logged in.
+     *
+     * @param username the username
+     * @return true if the user is present in this snapshot
+     */
+    public boolean contains(String username) {
+        return users.containsKey(username);
+    }
+
+    /**
+     * Returns the connection of a logged-in user.
+     *
+     * @param username the username
+     * @return the connection, or null if the user is not logged in
+     */
+    public ClientHandler get(String username) {
+        return users.get(username);
+    }
+
+    /**
+     * Returns the connections of all logged-in users.
+     *
+     * @return an unmodifiable view of the connections
+     */
+    public Collection<ClientHandler> handlers() {
+        return users.values();
+    }
+
+    /**
+     * Returns the number of logged-in users.
+     *
+     * @return the number of users
+     */
+    public int size() {
+        return users.size();
+    }
+
+    /**
+     * Returns the usernames in login order, separated by the protocol separator.
+     *
+     * @return the LIST payload
+     */
+    public String serialized() {
+        return serialized;
+    }
+}
@@ -0,0 +1,63 @@
+package client;
+
+import gameLogic.Game;
+import gameLogic.Move;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link AIClient}.
+ */
+public class AIClientTest {
+
+    /**
+     * Strategy that remembers the limits of its last move.
+     */
+    private static final class RecordingStrategy implements BotStrategy {
+        private SearchLimits limits;
+
+        @Override
+        public String getName() {
+            return "Recording";
+        }
+
+        @Override
+        public Move determineMove(Game game) {
+            return new Move(0);
+        }
+
+        @Override
+        public Move determineMove(Game game, SearchLimits limits) {
+            this.limits = limits;
+            return determineMove(game);
+        }
+    }
+
+    /**
+     * With a server clock, thinking time and search share half of the move time.
+     */
+    @Test
+    void clockLimitsThinkingAndSearch() {
+        RecordingStrategy strategy = new RecordingStrategy();
+        AIClient client = new AIClient("bot", strategy, 100);
+
+        client.determineMove(new Game(1), 1000);
+
+        assertEquals(400, strategy.limits.getMillis());
+        assertEquals(0, strategy.limits.getNodes());
+    }
+
+    /**
+     * Without a server clock, the strategy runs unlimited.
+     */
+    @Test
+    void noClockMeansNoLimits() {
+        RecordingStrategy strategy = new RecordingStrategy();
+        AIClient client = new AIClient("bot", strategy);
+
+        client.determineMove(new Game(1), 0);
+
+        assertFalse(strategy.limits.isBounded());
+    }
+}
@@ -0,0 +1,95 @@
+package client;
+
+import gameLogic.Game;
+import gameLogic.Move;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link Arena}.
+ *
+ * Tests cover how strategy moves are judged, the reproducibility
+ * of a seeded run and the confidence intervals of the report.
+ */
+public class ArenaTest {
+
+    /**
+     * A Quarto claim keeps its location but hands over a real piece.
+     */
+    @Test
+    void claimIsReplacedByAvailablePiece() {
+        Game game = new Game(1);
+        game.doMove(new Move(0));
+
+        Move move = Arena.judge(game, new Move(16, 5));
+
+        assertEquals(5, move.getLocation());
+        assertTrue(game.isValidMove(move));
+    }
+
+    /**
+     * Missing moves, occupied squares and unavailable pieces forfeit the game.
+     */
+    @Test
+    void illegalMovesAreRejected() {
+        Game game = new Game(1);
+        game.doMove(new Move(0));
+        game.doMove(new Move(1, 5));
+
+        assertNull(Arena.judge(game, null));
+        assertNull(Arena.judge(game, new Move(2, 5)));
+        assertNull(Arena.judge(game, new Move(0, 6)));
+        assertNull(Arena.judge(game, new Move(2)));
+    }
+
+    /**
+     * The final placement is accepted although no piece is left to hand over.
+     */
+    @Test
+    void lastPlacementIsAccepted() {
+        Game game = new Game(1);
+        game.doMove(new Move(0));
+        for (int i = 0; i < 15; i++) {
+            game.doMove(new Move(i + 1, i));
+        }
+        assertTrue(game.getAvailablePieces().isEmpty());
+
+        Move move = Arena.judge(game, new Move(17, 15));
+        game.doMove(move);
+
+        assertTrue(game.getBoard().isFull());
+    }
+
+    /**
+     * The same seed gives the same results, whatever the number of threads.
+     */
+    @Test
+    void seededRunIsReproducible() throws InterruptedException {
+        Arena single = new Arena(NaiveStrategy::new, NaiveStrategy::new, 1, 42);
+        Arena parallel = new Arena(NaiveStrategy::new, NaiveStrategy::new, 4, 42);
+
+        Arena.Result first = single.run(200);
+        Arena.Result second = parallel.run(200);
+
+        assertEquals(200, first.getGames());
+        assertEquals(first.getWins(), second.getWins());
+        assertEquals(first.getDraws(), second.getDraws());
+        assertEquals(first.getLosses(), second.getLosses());
+        assertEquals(0, first.getForfeitsA() + first.getForfeitsB());
+    }
+
+    /**
+     * The Wilson interval contains the observed proportion and stays within [0, 1].
+     */
+    @Test
+    void wilsonIntervalIsBounded() {
+        double[] half = Arena.wilson(50, 100);
+        double[] none = Arena.wilson(0, 100);
+
+        assertTrue(half[0] < 0.5 && half[1] > 0.5);
+        assertEquals(0.5, (half[0] + half[1]) / 2, 1e-9);
+        assertEquals(0.0, none[0], 1e-9);
+        assertTrue(none[1] > 0 && none[1] < 0.05);
+    }
+}
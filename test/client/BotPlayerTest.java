@@ -0,0 +1,86 @@
+package client;
+
+import gameLogic.Game;
+import gameLogic.Move;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link BotPlayer}.
+ *
+ * Tests cover the conversion of strategy results into moves
+ * the server accepts; no network connection is opened.
+ */
+public class BotPlayerTest {
+
+    /**
+     * A missing first move is replaced by giving an available piece.
+     */
+    @Test
+    void nullFirstMoveGivesAvailablePiece() {
+        Game game = new Game(1);
+
+        Move move = BotPlayer.toProtocolMove(game, null);
+
+        assertTrue(move.isFirstMove());
+        assertTrue(game.isValidMove(move));
+    }
+
+    /**
+     * A Quarto claim keeps its location but gives a real piece,
+     * because the server detects wins by itself.
+     */
+    @Test
+    void claimIsReplacedByAvailablePiece() {
+        Game game = new Game(1);
+        game.doMove(new Move(0));
+
+        Move move = BotPlayer.toProtocolMove(game, new Move(16, 5));
+
+        assertEquals(5, move.getLocation());
+        assertTrue(game.isValidMove(move));
+    }
+
+    /**
+     * A valid move is passed through unchanged.
+     */
+    @Test
+    void validMoveIsKept() {
+        Game game = new Game(1);
+        game.doMove(new Move(0));
+
+        Move move = BotPlayer.toProtocolMove(game, new Move(3, 7));
+
+        assertEquals(7, move.getLocation());
+        assertEquals(3, move.getNextPiece());
+    }
+
+    /**
+     * The server's clock limits the bot's search to half the move time.
+     */
+    @Test
+    void clockLimitsSearchTime() {
+        BotPlayer.Observer observer = new BotPlayer.Observer() {
+            @Override
+            public void onMoveAcknowledged(long nanos) {
+            }
+
+            @Override
+            public void onGameFinished(String result) {
+            }
+
+            @Override
+            public void onFailure(String reason) {
+            }
+        };
+        BotPlayer bot = new BotPlayer("bot", new NaiveStrategy(), Runnable::run, Thread::new, observer);
+
+        assertFalse(bot.clockLimits().isBounded());
+
+        bot.onClock(2000, 60_000);
+
+        assertEquals(1000, bot.clockLimits().getMillis());
+        assertEquals(0, bot.clockLimits().getNodes());
+    }
+}
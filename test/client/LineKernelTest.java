@@ -0,0 +1,112 @@
+package client;
+
+import gameLogic.Game;
+import gameLogic.Move;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link LineKernel}.
+ *
+ * The kernel's answers are compared with trying the moves on {@link Game}.
+ */
+public class LineKernelTest {
+
+    /**
+     * A piece is reported as winning on a square exactly if placing it there wins.
+     */
+    @Test
+    void winningPiecesMatchPlacingOnTheBoard() {
+        Random random = new Random(3);
+        for (int n = 0; n < 200; n++) {
+            Game game = Arena.randomPosition(random, 1 + random.nextInt(12));
+            if (game.isGameOver()) {
+                continue;
+            }
+            LineKernel kernel = LineKernel.of(game);
+            for (int square = 0; square < 16; square++) {
+                if (!game.getBoard().isEmptyField(square)) {
+                    continue;
+                }
+                for (int piece = 0; piece < 16; piece++) {
+                    Game copy = game.deepCopy();
+                    copy.getBoard().setField(square, copy.getAllPieces().get(piece));
+                    boolean wins = copy.getBoard().hasWinner();
+                    assertEquals(wins, (kernel.winningPieces(square) & 1 << piece) != 0);
+                }
+            }
+        }
+    }
+
+    /**
+     * The kernel derived with after() equals the kernel built from the game after the move.
+     */
+    @Test
+    void afterMatchesRebuiltKernel() {
+        Random random = new Random(5);
+        Game game = new Game(1);
+        NaiveStrategy naive = new NaiveStrategy(random);
+        LineKernel kernel = LineKernel.of(game);
+        while (!game.isGameOver() && !game.getAvailablePieces().isEmpty()) {
+            Move move = Arena.judge(game, naive.determineMove(game.deepCopy()));
+            game.doMove(move);
+            kernel = kernel.after(move);
+            LineKernel rebuilt = LineKernel.of(game);
+
+            assertEquals(rebuilt.getAvailable(), kernel.getAvailable());
+            assertEquals(rebuilt.getToPlace(), kernel.getToPlace());
+            assertEquals(game.getBoard().hasWinner(), kernel.hasWinner());
+            assertEquals(Zobrist.hash(game), kernel.key());
+            for (int line = 0; line < LineKernel.LINES.length; line++) {
+                assertEquals(rebuilt.completers(line), kernel.completers(line));
+            }
+        }
+    }
+
+    /**
+     * The threats after a placement equal the threats of the kernel after it.
+     */
+    @Test
+    void threatsAfterMatchesNextKernel() {
+        Random random = new Random(9);
+        for (int n = 0; n < 200; n++) {
+            Game game = Arena.randomPosition(random, 1 + random.nextInt(12));
+            LineKernel kernel = LineKernel.of(game);
+            if (game.isGameOver() || kernel.getToPlace() < 0) {
+                continue;
+            }
+            for (int square = 0; square < 16; square++) {
+                if (kernel.isEmpty(square)) {
+                    assertEquals(kernel.after(new Move(17, square)).threats(), kernel.threatsAfter(square));
+                }
+            }
+        }
+    }
+
+    /**
+     * Two extendable lines through a square with no common extender make a fork.
+     */
+    @Test
+    void forkNeedsTwoLinesWithoutCommonExtender() {
+        Game game = new Game(1);
+        // row 0: pieces 0 and 7 on squares 1 and 2 only share a small size,
+        // column 0: pieces 8 and 15 on squares 4 and 8 only share a large size
+        game.getBoard().setField(1, game.getAllPieces().get(0));
+        game.getBoard().setField(2, game.getAllPieces().get(7));
+        game.getBoard().setField(4, game.getAllPieces().get(8));
+        game.getBoard().setField(8, game.getAllPieces().get(15));
+        for (int piece : new int[] {0, 7, 8, 15}) {
+            game.getAvailablePieces().remove(piece);
+        }
+
+        LineKernel kernel = LineKernel.of(game);
+
+        // every available piece extends one of the lines, none extends both
+        assertTrue(kernel.isFork(0));
+        assertFalse(kernel.isFork(3));
+        assertEquals(2, kernel.dangerousLines(2));
+    }
+}
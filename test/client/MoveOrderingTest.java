@@ -0,0 +1,124 @@
+package client;
+
+import gameLogic.Game;
+import gameLogic.Move;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link MoveOrdering}.
+ *
+ * Tests cover the order of the tiers and learning
+ * from cutoffs through killers and history.
+ */
+public class MoveOrderingTest {
+
+    /**
+     * Returns every placement of the held piece combined with every available piece.
+     */
+    private static int[] allMoves(LineKernel kernel) {
+        List<Integer> moves = new ArrayList<>();
+        for (int square = 0; square < 16; square++) {
+            if (!kernel.isEmpty(square)) {
+                continue;
+            }
+            for (int piece = 0; piece < 16; piece++) {
+                if ((kernel.getAvailable() & 1 << piece) != 0) {
+                    moves.add(TranspositionTable.encodeMove(square, piece));
+                }
+            }
+        }
+        return moves.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * Returns a position in which some pieces must not be handed over.
+     */
+    private static LineKernel positionWithThreats() {
+        Game game = new Game(1);
+        game.doMove(new Move(0));
+        game.doMove(new Move(8, 0));
+        game.doMove(new Move(1, 15));
+        game.doMove(new Move(9, 1));
+        game.doMove(new Move(12, 10));
+        return LineKernel.of(game);
+    }
+
+    /**
+     * The table move comes first and moves handing over a winning piece come last.
+     */
+    @Test
+    void tableMoveFirstAndLosingMovesLast() {
+        LineKernel kernel = positionWithThreats();
+        int[] moves = allMoves(kernel);
+        int ttMove = moves[moves.length - 1];
+
+        new MoveOrdering(16).order(kernel, moves, ttMove, 0);
+
+        assertEquals(ttMove, moves[0]);
+        boolean seenUnsafe = false;
+        for (int i = 1; i < moves.length; i++) {
+            int square = TranspositionTable.location(moves[i]);
+            int piece = TranspositionTable.piece(moves[i]);
+            boolean unsafe = (kernel.threatsAfter(square) & 1 << piece) != 0;
+            assertFalse(seenUnsafe && !unsafe, "safe move after an unsafe one");
+            seenUnsafe |= unsafe;
+        }
+        assertTrue(seenUnsafe);
+    }
+
+    /**
+     * A move that caused a cutoff is tried first among the safe moves of its ply only.
+     */
+    @Test
+    void killerMoveLeadsItsPly() {
+        LineKernel kernel = positionWithThreats();
+        MoveOrdering ordering = new MoveOrdering(16);
+        int killer = TranspositionTable.encodeMove(5, 3);
+        ordering.cutoff(killer, 2, 1);
+
+        int[] atPly = allMoves(kernel);
+        ordering.order(kernel, atPly, TranspositionTable.NO_MOVE, 2);
+        assertEquals(killer, atPly[0]);
+
+        ordering.clear();
+        int[] afterClear = allMoves(kernel);
+        ordering.order(kernel, afterClear, TranspositionTable.NO_MOVE, 2);
+        assertNotEquals(killer, afterClear[0]);
+    }
+
+    /**
+     * History grows with the depth of the cutoffs and orders moves outside the killer slots.
+     */
+    @Test
+    void historyOrdersRemainingMoves() {
+        LineKernel kernel = positionWithThreats();
+        MoveOrdering ordering = new MoveOrdering(16);
+        // the two last safe moves, which come last among the safe moves without history
+        List<Integer> safe = new ArrayList<>();
+        for (int move : allMoves(kernel)) {
+            int square = TranspositionTable.location(move);
+            if ((kernel.threatsAfter(square) & 1 << TranspositionTable.piece(move)) == 0) {
+                safe.add(move);
+            }
+        }
+        int deep = safe.get(safe.size() - 1);
+        int shallow = safe.get(safe.size() - 2);
+        ordering.cutoff(deep, 0, 4);
+        ordering.cutoff(shallow, 0, 1);
+        assertEquals(16, ordering.getHistory(TranspositionTable.location(deep), TranspositionTable.piece(deep)));
+        assertEquals(1, ordering.getHistory(TranspositionTable.location(shallow),
+                                            TranspositionTable.piece(shallow)));
+
+        int[] moves = allMoves(kernel);
+        // killers live per ply, so at ply 1 only the history counts
+        ordering.orderFrom(kernel, moves, 0, 1);
+
+        assertEquals(deep, moves[0]);
+        assertEquals(shallow, moves[1]);
+    }
+}
@@ -0,0 +1,116 @@
+package client;
+
+import gameLogic.Game;
+import gameLogic.Move;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link ProofNumberSolver}.
+ *
+ * Proofs are checked against an exhaustive solve of late positions.
+ */
+public class ProofNumberSolverTest {
+
+    /**
+     * Solves a position exhaustively.
+     *
+     * @return 1 if the player to move wins, 0 for a draw, -1 for a loss
+     */
+    private static int value(LineKernel kernel, long key, Map<Long, Integer> memo) {
+        int toPlace = kernel.getToPlace();
+        if (toPlace >= 0 && kernel.hasWinningSquare(toPlace)) {
+            return 1;
+        }
+        if (toPlace >= 0 && kernel.getAvailable() == 0) {
+            return 0;
+        }
+        Integer known = memo.get(key);
+        if (known != null) {
+            return known;
+        }
+        int best = -1;
+        for (int move : SearchStrategy.generate(kernel)) {
+            int location = TranspositionTable.location(move);
+            int piece = TranspositionTable.piece(move);
+            LineKernel child = kernel.after(new Move(piece, location));
+            long childKey = key ^ Zobrist.toPlace(toPlace) ^ Zobrist.placed(location, toPlace)
+                    ^ Zobrist.toPlace(piece);
+            best = Math.max(best, -value(child, childKey, memo));
+            if (best == 1) {
+                break;
+            }
+        }
+        memo.put(key, best);
+        return best;
+    }
+
+    private static int value(Game game) {
+        return value(LineKernel.of(game), Zobrist.hash(game), new HashMap<>());
+    }
+
+    /**
+     * A piece that completes a line is reported as a win by claiming it.
+     */
+    @Test
+    void immediateWinIsClaimed() {
+        Game game = new Game(1);
+        game.doMove(new Move(0));
+        game.doMove(new Move(8, 0));
+        game.doMove(new Move(1, 15));
+        game.doMove(new Move(9, 1));
+        game.doMove(new Move(2, 10));
+        game.doMove(new Move(10, 2));
+        game.doMove(new Move(3, 4));
+
+        ProofNumberSolver.Result result = new ProofNumberSolver(1 << 10).solve(game, 1000, 1000);
+
+        assertEquals(ProofNumberSolver.Outcome.WIN, result.getOutcome());
+        assertEquals(16, result.getMove().getNextPiece());
+        assertEquals(3, result.getMove().getLocation());
+    }
+
+    /**
+     * Settled positions agree with the exhaustive solve, and a proven move keeps the win.
+     */
+    @Test
+    void outcomesMatchExhaustiveSolve() {
+        Random random = new Random(3);
+        ProofNumberSolver solver = new ProofNumberSolver(1 << 16);
+        int proven = 0;
+        for (int n = 0; n < 30; n++) {
+            Game game = Arena.randomPosition(random, 9 + random.nextInt(3));
+            if (game.isGameOver() || game.getCurrentPieceID() < 0) {
+                continue;
+            }
+            ProofNumberSolver.Result result = solver.solve(game, 1_000_000, 10_000);
+            assertNotEquals(ProofNumberSolver.Outcome.UNKNOWN, result.getOutcome());
+            int value = value(game);
+            assertEquals(value == 1, result.getOutcome() == ProofNumberSolver.Outcome.WIN);
+
+            if (result.getOutcome() == ProofNumberSolver.Outcome.WIN && result.getMove().getNextPiece() < 16) {
+                game.doMove(result.getMove());
+                assertEquals(-1, value(game), "the opponent must lose after the proven move");
+                proven++;
+            }
+        }
+        assertTrue(proven > 0);
+    }
+
+    /**
+     * A position too large for the node budget is left open.
+     */
+    @Test
+    void exhaustedBudgetGivesUnknown() {
+        ProofNumberSolver.Result result = new ProofNumberSolver(1 << 10).solve(new Game(1), 100, 10_000);
+
+        assertEquals(ProofNumberSolver.Outcome.UNKNOWN, result.getOutcome());
+        assertNull(result.getMove());
+        assertTrue(result.getNodes() <= 100);
+    }
+}
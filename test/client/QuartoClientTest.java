@@ -119,6 +119,38 @@ class QuartoClientTest {
         assertEquals(12, piece.get());
     }
 
+    // Checks MOVE with the clock fields of the CLOCK extension
+    @Test
+    void moveMessageWithClockIsParsedCorrectly() throws Exception {
+        QuartoClient client = new QuartoClient();
+        AtomicReference<Integer> loc = new AtomicReference<>();
+        AtomicReference<Long> moveMillis = new AtomicReference<>();
+        AtomicReference<Long> gameMillis = new AtomicReference<>();
+
+        // Server sends MOVE~location~piece~moveMillis~gameMillis
+        serverThread = new Thread(() ->
+                                          fakeServerSend(Protocol.MOVE + "~5~12~3000~60000")
+        );
+        serverThread.start();
+
+        client.connect("localhost", port, new QuartoClient.GameListener() {
+            @Override public void onConnected() {}
+            @Override public void onNewGame(String p1, String p2) {}
+            @Override public void onOpponentMove(int l, int p) { loc.set(l); }
+            @Override public void onGameOver(String result, String winner) {}
+            @Override public void onError(String msg) {}
+            @Override public void onChat(String sender, String text) {}
+            @Override public void onClock(long move, long game) {
+                moveMillis.set(move); gameMillis.set(game);
+            }
+        });
+
+        Thread.sleep(200);
+        assertEquals(5, loc.get());
+        assertEquals(3000L, moveMillis.get());
+        assertEquals(60000L, gameMillis.get());
+    }
+
     // Checks correct GAMEOVER handling
     @Test
     void gameOverMessageIsParsedCorrectly() throws Exception {
@@ -0,0 +1,75 @@
+package client;
+
+import gameLogic.Game;
+
+import java.util.Random;
+
+/**
+ * Measures how much {@link MoveOrdering} shrinks the search tree.
+ * <p>
+ * Random positions are searched to a fixed depth once with ordered and once
+ * with unordered moves, each time with a cleared transposition table. The
+ * node counts depend only on the seed, so runs on different machines can be
+ * compared directly.
+ * <p>
+ * Usage: {@code SearchBenchmark [positions] [depth] [plies] [seed]}, where
+ * {@code plies} is the number of random moves played before each search.
+ */
+public class SearchBenchmark {
+
+    /** Positions searched before measuring. */
+    private static final int WARMUP_POSITIONS = 10;
+
+    private SearchBenchmark() {
+        // Private constructor to prevent instantiation
+    }
+
+    public static void main(String[] args) {
+        int positions = args.length > 0 ? Integer.parseInt(args[0]) : 50;
+        int depth = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        int plies = args.length > 2 ? Integer.parseInt(args[2]) : 7;
+        long seed = args.length > 3 ? Long.parseLong(args[3]) : 1;
+
+        try (TranspositionTable table = new TranspositionTable(16L * 1024 * 1024)) {
+            // counting nodes ignores the limits
+            SearchLimits limits = SearchLimits.ofNodes(1);
+            SearchStrategy ordered = new SearchStrategy(1, limits, table, true);
+            SearchStrategy unordered = new SearchStrategy(1, limits, table, false);
+            // warm up the JIT on other positions, so neither variant pays for compilation
+            Random warmup = new Random(~seed);
+            for (int i = 0; i < WARMUP_POSITIONS; i++) {
+                Game game = Arena.randomPosition(warmup, plies);
+                if (!game.isGameOver() && !game.getAvailablePieces().isEmpty()) {
+                    ordered.countNodes(game, depth);
+                    unordered.countNodes(game, depth);
+                }
+            }
+
+            Random random = new Random(seed);
+            long orderedNodes = 0;
+            long unorderedNodes = 0;
+            long orderedNanos = 0;
+            long unorderedNanos = 0;
+            int searched = 0;
+            while (searched < positions) {
+                Game game = Arena.randomPosition(random, plies);
+                if (game.isGameOver() || game.getAvailablePieces().isEmpty()) {
+                    continue;
+                }
+                long start = System.nanoTime();
+                orderedNodes += ordered.countNodes(game, depth);
+                long middle = System.nanoTime();
+                unorderedNodes += unordered.countNodes(game, depth);
+                unorderedNanos += System.nanoTime() - middle;
+                orderedNanos += middle - start;
+                searched++;
+            }
+
+            System.out.println("Searched " + positions + " positions after " + plies
+                                       + " random plies to depth " + depth + ", seed " + seed);
+            System.out.printf("  Unordered: %,d nodes, %.1f ms%n", unorderedNodes, unorderedNanos / 1e6);
+            System.out.printf("  Ordered:   %,d nodes, %.1f ms%n", orderedNodes, orderedNanos / 1e6);
+            System.out.printf("  Tree size: %.1f%% of unordered%n", 100.0 * orderedNodes / unorderedNodes);
+        }
+    }
+}
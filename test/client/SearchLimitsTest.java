@@ -0,0 +1,35 @@
+package client;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link SearchLimits}.
+ */
+public class SearchLimitsTest {
+
+    /**
+     * Combined limits keep the tighter value of each kind; 0 means unlimited.
+     */
+    @Test
+    void combinedLimitsAreTighter() {
+        SearchLimits limits = new SearchLimits(500, 0).and(new SearchLimits(200, 10_000));
+
+        assertEquals(200, limits.getMillis());
+        assertEquals(10_000, limits.getNodes());
+        assertEquals(SearchLimits.ofNodes(7).getNodes(), SearchLimits.NONE.and(SearchLimits.ofNodes(7)).getNodes());
+        assertFalse(SearchLimits.NONE.and(SearchLimits.NONE).isBounded());
+    }
+
+    /**
+     * Only a pure node limit is independent of the machine.
+     */
+    @Test
+    void onlyNodeLimitsAreDeterministic() {
+        assertTrue(SearchLimits.ofNodes(1000).isDeterministic());
+        assertFalse(SearchLimits.ofTime(1000).isDeterministic());
+        assertFalse(new SearchLimits(1000, 1000).isDeterministic());
+        assertFalse(SearchLimits.NONE.isDeterministic());
+    }
+}
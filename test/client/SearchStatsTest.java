@@ -0,0 +1,84 @@
+package client;
+
+import gameLogic.Game;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link SearchStats}.
+ */
+public class SearchStatsTest {
+
+    /**
+     * Rates are derived from the recorded counts, and merging adds them up.
+     */
+    @Test
+    void ratesAreDerivedAndMerged() {
+        SearchStats stats = new SearchStats();
+        stats.recordMove(2_000_000);
+        stats.recordSearch(1000, 4);
+        stats.recordTable(200, 50);
+        stats.recordCutoffs(30, 100);
+        stats.recordIteration(1, 1_000_000);
+
+        SearchStats other = new SearchStats();
+        other.recordMove(2_000_000);
+        other.recordSearch(3000, 6);
+        other.recordIteration(1, 3_000_000);
+        stats.merge(other);
+
+        assertEquals(2, stats.getMoves());
+        assertEquals(4000, stats.getNodes());
+        assertEquals(1_000_000, stats.getNodesPerSecond(), 1e-6);
+        assertEquals(5.0, stats.getAverageDepth(), 1e-9);
+        assertEquals(6, stats.getMaxDepth());
+        assertEquals(0.25, stats.getTableHitRate(), 1e-9);
+        assertEquals(0.3, stats.getCutoffRate(), 1e-9);
+        assertEquals(2.0, stats.getIterationMillis(1), 1e-9);
+        assertEquals(0.0, stats.getIterationMillis(2), 1e-9);
+    }
+
+    /**
+     * Strategies that do not search record their time through the default method.
+     */
+    @Test
+    void defaultMethodRecordsTime() {
+        SearchStats stats = new SearchStats();
+
+        new NaiveStrategy().determineMove(new Game(1), SearchLimits.NONE, stats);
+
+        assertEquals(1, stats.getMoves());
+        assertEquals(0, stats.getNodes());
+    }
+
+    /**
+     * A new CSV file starts with the header, and every line has one value per column.
+     */
+    @Test
+    void csvLinesMatchHeader() throws IOException {
+        Path file = Files.createTempFile("stats", ".csv");
+        Files.delete(file);
+        try {
+            SearchStats stats = new SearchStats();
+            stats.recordMove(1_000_000);
+            stats.recordSearch(500, 3);
+            stats.appendCsv(file, "a");
+            stats.appendCsv(file, "b");
+
+            List<String> lines = Files.readAllLines(file);
+            assertEquals(3, lines.size());
+            assertEquals(SearchStats.CSV_HEADER, lines.get(0));
+            int columns = SearchStats.CSV_HEADER.split(",").length;
+            assertEquals(columns, lines.get(1).split(",").length);
+            assertTrue(lines.get(2).startsWith("b,1,"));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package client;
+
+import gameLogic.Game;
+import gameLogic.Move;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link SearchStrategy}.
+ *
+ * Tests cover finding wins, avoiding immediate losses and
+ * the legality of moves with one and with several threads.
+ */
+public class SearchStrategyTest {
+
+    private TranspositionTable table;
+
+    @BeforeEach
+    void setUp() {
+        table = new TranspositionTable(1 << 20);
+    }
+
+    @AfterEach
+    void tearDown() {
+        table.close();
+    }
+
+    /**
+     * A piece that completes a line is placed there and claimed as a win.
+     */
+    @Test
+    void winningPlacementIsClaimed() {
+        Game game = new Game(1);
+        game.doMove(new Move(0));
+        game.doMove(new Move(8, 0));
+        game.doMove(new Move(1, 15));
+        game.doMove(new Move(9, 1));
+        game.doMove(new Move(2, 10));
+        game.doMove(new Move(10, 2));
+        game.doMove(new Move(3, 4));
+        // pieces 0, 1 and 2 on row 0 are small and round, like piece 3
+
+        Move move = new SearchStrategy(1, 100, table).determineMove(game.deepCopy());
+
+        assertEquals(16, move.getNextPiece());
+        assertEquals(3, move.getLocation());
+    }
+
+    /**
+     * A piece that lets the opponent win is never handed over while a safe one exists.
+     */
+    @Test
+    void winningPieceIsNotHandedOver() {
+        Random random = new Random(11);
+        SearchStrategy search = new SearchStrategy(1, 20, table);
+        for (int n = 0; n < 30; n++) {
+            Game game = Arena.randomPosition(random, 4 + random.nextInt(6));
+            if (game.isGameOver() || game.getCurrentPieceID() < 0 || game.getAvailablePieces().isEmpty()) {
+                continue;
+            }
+            Move claimed = search.determineMove(game.deepCopy());
+            Move move = Arena.judge(game, claimed);
+            assertNotNull(move);
+            if (claimed.getNextPiece() >= 16) {
+                // a win or the last placement hands nothing over
+                continue;
+            }
+            boolean safeExists = false;
+            for (int square = 0; square < 16 && !safeExists; square++) {
+                if (!game.getBoard().isEmptyField(square)) {
+                    continue;
+                }
+                for (int piece : game.getAvailablePieces().keySet()) {
+                    if (!LineKernel.of(game).after(new Move(piece, square)).hasWinningSquare(piece)) {
+                        safeExists = true;
+                        break;
+                    }
+                }
+            }
+            if (safeExists) {
+                assertFalse(LineKernel.of(game).after(move).hasWinningSquare(move.getNextPiece()));
+            }
+        }
+    }
+
+    /**
+     * A single-threaded search limited by nodes returns the same move,
+     * whatever the table held before.
+     */
+    @Test
+    void nodeLimitedSearchIsReproducible() {
+        Random random = new Random(13);
+        SearchStrategy search = new SearchStrategy(1, SearchLimits.ofNodes(5000), table);
+        SearchStrategy other = new SearchStrategy(1, 20, table);
+        for (int n = 0; n < 10; n++) {
+            Game game = Arena.randomPosition(random, 3 + random.nextInt(6));
+            if (game.isGameOver()) {
+                continue;
+            }
+            Move first = search.determineMove(game.deepCopy());
+            // another search fills the shared table in between
+            other.determineMove(new Game(1));
+            Move second = search.determineMove(game.deepCopy());
+
+            assertEquals(first.getLocation(), second.getLocation());
+            assertEquals(first.getNextPiece(), second.getNextPiece());
+        }
+    }
+
+    /**
+     * Every move is legal, whether the search runs on one or on several threads.
+     */
+    /**
+     * A search records its nodes, depth, table lookups and iterations;
+     * a forced move records only its time.
+     */
+    @Test
+    void searchRecordsStatistics() {
+        SearchStrategy search = new SearchStrategy(1, SearchLimits.ofNodes(5000), table);
+        SearchStats stats = new SearchStats();
+        Game game = Arena.randomPosition(new Random(17), 4);
+
+        search.determineMove(game.deepCopy(), SearchLimits.NONE, stats);
+
+        assertEquals(1, stats.getMoves());
+        assertTrue(stats.getNodes() > 0 && stats.getNodes() < 5000 + 1024, "nodes: " + stats.getNodes());
+        assertTrue(stats.getMaxDepth() >= 1);
+        assertTrue(stats.getIterationMillis(1) > 0);
+        assertTrue(stats.getTableHitRate() >= 0 && stats.getTableHitRate() <= 1);
+        assertTrue(stats.getCutoffRate() > 0 && stats.getCutoffRate() <= 1);
+
+        Game last = new Game(1);
+        last.doMove(new Move(0));
+        last.doMove(new Move(8, 0));
+        last.doMove(new Move(1, 15));
+        last.doMove(new Move(9, 1));
+        last.doMove(new Move(2, 10));
+        last.doMove(new Move(10, 2));
+        last.doMove(new Move(3, 4));
+        long nodes = stats.getNodes();
+        search.determineMove(last, SearchLimits.NONE, stats);
+
+        assertEquals(2, stats.getMoves());
+        assertEquals(nodes, stats.getNodes());
+    }
+
+    @Test
+    void movesAreLegalWithOneAndSeveralThreads() {
+        Random random = new Random(7);
+        SearchStrategy single = new SearchStrategy(1, 10, table);
+        SearchStrategy parallel = new SearchStrategy(3, 10, table);
+        assertEquals("Search-3", parallel.getName());
+        for (int n = 0; n < 20; n++) {
+            Game game = Arena.randomPosition(random, random.nextInt(14));
+            if (game.isGameOver()) {
+                continue;
+            }
+            assertNotNull(Arena.judge(game, single.determineMove(game.deepCopy())));
+            assertNotNull(Arena.judge(game, parallel.determineMove(game.deepCopy())));
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package client;
+
+import gameLogic.Game;
+import gameLogic.Move;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link SmartStrategy}.
+ */
+public class SmartStrategyTest {
+
+    /**
+     * A position seen before is evaluated from the cache and gets the same move.
+     */
+    @Test
+    void repeatedPositionIsEvaluatedFromCache() {
+        Game game = new Game(1);
+        NaiveStrategy naive = new NaiveStrategy(new Random(21));
+        for (int i = 0; i < 3; i++) {
+            game.doMove(Arena.judge(game, naive.determineMove(game.deepCopy())));
+        }
+        SmartStrategy smart = new SmartStrategy();
+
+        Move first = smart.determineMove(game.deepCopy());
+        long misses = smart.getCacheMisses();
+        long hits = smart.getCacheHits();
+        Move second = smart.determineMove(game.deepCopy());
+
+        assertTrue(misses + hits > 0);
+        assertEquals(misses, smart.getCacheMisses());
+        assertTrue(smart.getCacheHits() > hits);
+        assertEquals(first.getLocation(), second.getLocation());
+        assertEquals(first.getNextPiece(), second.getNextPiece());
+    }
+}
@@ -0,0 +1,123 @@
+package client;
+
+import gameLogic.Move;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link TranspositionTable}.
+ *
+ * Tests cover packing of entries, the replacement policy,
+ * file-backed tables and lockless sharing between threads.
+ */
+public class TranspositionTableTest {
+
+    /**
+     * A stored entry is found again with all of its fields.
+     */
+    @Test
+    void storedEntryIsFound() {
+        try (TranspositionTable table = new TranspositionTable(1 << 16)) {
+            int move = TranspositionTable.encodeMove(new Move(7, 12));
+            table.store(42, move, -1234, 9, TranspositionTable.LOWER);
+
+            long data = table.probe(42);
+
+            assertNotEquals(TranspositionTable.MISS, data);
+            assertEquals(-1234, TranspositionTable.score(data));
+            assertEquals(9, TranspositionTable.depth(data));
+            assertEquals(TranspositionTable.LOWER, TranspositionTable.bound(data));
+            Move decoded = TranspositionTable.decodeMove(TranspositionTable.move(data));
+            assertEquals(12, decoded.getLocation());
+            assertEquals(7, decoded.getNextPiece());
+            assertEquals(TranspositionTable.MISS, table.probe(43));
+        }
+    }
+
+    /**
+     * Opening moves and missing moves survive the move encoding.
+     */
+    @Test
+    void moveEncodingHandlesOpeningAndNoMove() {
+        Move opening = TranspositionTable.decodeMove(TranspositionTable.encodeMove(new Move(15)));
+
+        assertTrue(opening.isFirstMove());
+        assertEquals(15, opening.getNextPiece());
+        assertNull(TranspositionTable.decodeMove(TranspositionTable.encodeMove(null)));
+    }
+
+    /**
+     * When a bucket is full the shallowest entry makes room.
+     */
+    @Test
+    void shallowestEntryIsReplaced() {
+        // a table of one bucket, so every key competes for the same four entries
+        try (TranspositionTable table = new TranspositionTable(64)) {
+            assertEquals(4, table.capacity());
+            for (int key = 1; key <= 4; key++) {
+                table.store(key, TranspositionTable.NO_MOVE, 0, 10 + key, TranspositionTable.EXACT);
+            }
+            table.store(5, TranspositionTable.NO_MOVE, 0, 20, TranspositionTable.EXACT);
+
+            assertEquals(TranspositionTable.MISS, table.probe(1));
+            for (int key = 2; key <= 5; key++) {
+                assertNotEquals(TranspositionTable.MISS, table.probe(key));
+            }
+        }
+    }
+
+    /**
+     * A file-backed table keeps its entries after it is closed and reopened.
+     */
+    @Test
+    void mappedTableSurvivesReopen() throws Exception {
+        Path file = Files.createTempDirectory("tt").resolve("table.bin");
+        try (TranspositionTable table = new TranspositionTable(file, 1 << 16)) {
+            table.store(0xCAFEL, TranspositionTable.NO_MOVE, 77, 3, TranspositionTable.EXACT);
+        }
+        try (TranspositionTable table = new TranspositionTable(file, 1 << 16)) {
+            assertEquals(77, TranspositionTable.score(table.probe(0xCAFEL)));
+        }
+    }
+
+    /**
+     * Threads hammering the same small table never read a torn entry.
+     * Each entry's score is derived from its key, so any hit can be checked.
+     */
+    @Test
+    void concurrentAccessNeverReturnsTornEntries() throws InterruptedException {
+        try (TranspositionTable table = new TranspositionTable(1 << 12)) {
+            AtomicInteger corrupt = new AtomicInteger();
+            List<Thread> threads = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                SplittableRandom random = new SplittableRandom(t);
+                Thread thread = new Thread(() -> {
+                    for (int i = 0; i < 200_000; i++) {
+                        long key = random.nextLong(512) * 0x9E3779B97F4A7C15L;
+                        long data = table.probe(key);
+                        if (data != TranspositionTable.MISS
+                                && TranspositionTable.score(data) != (short) (key >>> 40)) {
+                            corrupt.incrementAndGet();
+                        }
+                        table.store(key, TranspositionTable.NO_MOVE, (short) (key >>> 40),
+                                    (int) (key & 0xFF), TranspositionTable.EXACT);
+                    }
+                });
+                threads.add(thread);
+                thread.start();
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            assertEquals(0, corrupt.get());
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package client;
+
+import gameLogic.Game;
+import gameLogic.Move;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link Zobrist}.
+ */
+public class ZobristTest {
+
+    /**
+     * Updating a key move by move gives the same key as hashing the position.
+     */
+    @Test
+    void incrementalKeyMatchesFullHash() {
+        Game game = new Game(1);
+        long key = Zobrist.hash(game);
+
+        game.doMove(new Move(5));
+        key ^= Zobrist.toPlace(5);
+        assertEquals(Zobrist.hash(game), key);
+
+        game.doMove(new Move(9, 10));
+        key ^= Zobrist.toPlace(5) ^ Zobrist.placed(10, 5) ^ Zobrist.toPlace(9);
+        assertEquals(Zobrist.hash(game), key);
+    }
+
+    /**
+     * The same pieces placed in a different order give the same key.
+     */
+    @Test
+    void transposedMoveOrdersGiveSameKey() {
+        Game first = new Game(1);
+        first.doMove(new Move(1));
+        first.doMove(new Move(2, 0));
+        first.doMove(new Move(3, 1));
+
+        Game second = new Game(1);
+        second.doMove(new Move(2));
+        second.doMove(new Move(1, 1));
+        second.doMove(new Move(3, 0));
+
+        assertEquals(Zobrist.hash(first), Zobrist.hash(second));
+    }
+
+    /**
+     * Piece ids agree with the ids the game assigns.
+     */
+    @Test
+    void pieceIdsMatchGame() {
+        Game game = new Game(1);
+        for (int id = 0; id < 16; id++) {
+            assertEquals(id, Zobrist.pieceId(game.getAllPieces().get(id)));
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package server;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for AsyncLogger.
+ * Every test writes to its own temporary directory.
+ */
+public class AsyncLoggerTest {
+
+    private Path dir;
+    private Path file;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        dir = Files.createTempDirectory("logs");
+        file = dir.resolve("server.log");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        try (var files = Files.list(dir)) {
+            for (Path path : files.toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+        Files.deleteIfExists(dir);
+    }
+
+    /**
+     * Records are written with their level, message and key-value fields.
+     */
+    @Test
+    void testRecordsAreFormattedWithFields() throws IOException {
+        AsyncLogger logger = new AsyncLogger(file, 64, 1 << 20, 2, AsyncLogger.Level.INFO);
+
+        logger.log(AsyncLogger.Level.INFO, "login", "user", "alice", "mmr", 1200);
+        logger.log(AsyncLogger.Level.WARN, "odd", "text", "two words");
+        assertTrue(logger.flush(2000));
+        logger.close();
+
+        List<String> lines = Files.readAllLines(file);
+        assertEquals(2, lines.size());
+        assertTrue(lines.get(0).endsWith("INFO [" + Thread.currentThread().getName() + "] login user=alice mmr=1200"));
+        assertTrue(lines.get(1).endsWith("odd text=\"two words\""));
+    }
+
+    /**
+     * Records below the threshold are not written.
+     */
+    @Test
+    void testLevelFiltersRecords() throws IOException {
+        AsyncLogger logger = new AsyncLogger(file, 64, 1 << 20, 2, AsyncLogger.Level.WARN);
+
+        assertFalse(logger.isEnabled(AsyncLogger.Level.INFO));
+        logger.log(AsyncLogger.Level.INFO, "hidden");
+        logger.log(AsyncLogger.Level.ERROR, "shown");
+        assertTrue(logger.flush(2000));
+        logger.close();
+
+        List<String> lines = Files.readAllLines(file);
+        assertEquals(1, lines.size());
+        assertTrue(lines.get(0).endsWith("shown"));
+    }
+
+    /**
+     * A full file is rolled over and only the configured number of old files is kept.
+     */
+    @Test
+    void testFileIsRolledOver() throws IOException {
+        AsyncLogger logger = new AsyncLogger(file, 1024, 200, 2, AsyncLogger.Level.INFO);
+
+        for (int i = 0; i < 50; i++) {
+            logger.log(AsyncLogger.Level.INFO, "record", "index", i);
+        }
+        assertTrue(logger.flush(2000));
+        logger.close();
+
+        assertTrue(Files.exists(file));
+        assertTrue(Files.exists(dir.resolve("server.log.1")));
+        assertTrue(Files.exists(dir.resolve("server.log.2")));
+        assertFalse(Files.exists(dir.resolve("server.log.3")));
+        assertTrue(Files.readString(file).contains("index=49"));
+    }
+
+    /**
+     * A misspelt configured level falls back to INFO instead of failing.
+     */
+    @Test
+    void unknownConfiguredLevelFallsBackToInfo() {
+        assertEquals(AsyncLogger.Level.DEBUG, Log.parseLevel("debug"));
+        assertEquals(AsyncLogger.Level.INFO, Log.parseLevel("verbose"));
+    }
+}
@@ -4,10 +4,12 @@ import networking.SocketConnection;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import protocol.Protocol;
 
 import java.io.*;
 import java.net.Socket;
+import java.nio.file.Path;
 import java.util.function.BooleanSupplier;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -23,6 +25,9 @@ import static org.junit.jupiter.api.Assertions.*;
  */
 class ClientHandlerTest {
 
+    @TempDir
+    Path dataDir;
+
     private FakeGameServer server;
     private ClientHandler handler;
 
@@ -35,6 +40,7 @@ class ClientHandlerTest {
      */
     @BeforeEach
     void setUp() throws Exception {
+        ServerDataDir.use(dataDir);
         server = new FakeGameServer();
 
         PipedInputStream serverInput = new PipedInputStream();
@@ -53,11 +59,13 @@ class ClientHandlerTest {
     }
 
     /**
-     * Closes the handler after each test to release resources.
+     * Closes the handler and the server after each test to release resources.
      */
     @AfterEach
     void tearDown() {
         handler.close();
+        server.close();
+        ServerDataDir.clear();
     }
 
     /**
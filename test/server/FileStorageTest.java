@@ -2,6 +2,11 @@ package server;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -11,12 +16,16 @@ import static org.junit.jupiter.api.Assertions.*;
  */
 public class FileStorageTest {
 
+    @TempDir
+    Path dir;
+
     private FileStorage storage;
 
     @BeforeEach
     void setUp() {
-        // Create fresh FileStorage instance before each test
-        storage = new FileStorage();
+        // Create fresh FileStorage instance before each test, isolated from the
+        // real ratings.txt
+        storage = new FileStorage(dir.resolve("ratings.txt").toString(), dir.resolve("ratings.log").toString());
     }
 
     @Test
@@ -57,5 +66,60 @@ public class FileStorageTest {
         assertDoesNotThrow(() -> storage.load());
     }
 
-}
+    @Test
+    void testChangesSurviveRestartThroughLog() throws IOException {
+        // A flushed change must be replayed from the log without a snapshot rewrite
+        String snapshot = dir.resolve("restart.txt").toString();
+        String log = dir.resolve("restart.log").toString();
+
+        FileStorage first = new FileStorage(snapshot, log);
+        first.updateMmr("Carol", 30);
+        first.flush();
+
+        assertEquals(0, Files.size(dir.resolve("restart.txt")));
+        FileStorage second = new FileStorage(snapshot, log);
+        assertEquals(1030, second.getMmr("Carol"));
+    }
+
+    @Test
+    void testCloseCompactsLogIntoSnapshot() throws IOException {
+        // Closing writes a snapshot and empties the log
+        String snapshot = dir.resolve("closed.txt").toString();
+        String log = dir.resolve("closed.log").toString();
 
+        FileStorage first = new FileStorage(snapshot, log);
+        first.updateMmr("Dave", 10);
+        first.updateMmr("Dave", 5);
+        first.close();
+
+        assertEquals(0, Files.size(dir.resolve("closed.log")));
+        assertTrue(Files.readString(dir.resolve("closed.txt")).contains("Dave:1015"));
+        assertEquals(1015, new FileStorage(snapshot, log).getMmr("Dave"));
+    }
+
+    @Test
+    void testNothingIsLoggedAfterClose() throws IOException, InterruptedException {
+        // A batch the flusher took while closing must not reach the log after the compaction,
+        // where it would override the newer snapshot on the next start
+        for (int round = 0; round < 20; round++) {
+            Path roundDir = Files.createDirectory(dir.resolve("round" + round));
+            String snapshot = roundDir.resolve("ratings.txt").toString();
+            String log = roundDir.resolve("ratings.log").toString();
+
+            FileStorage first = new FileStorage(snapshot, log);
+            Thread updater = new Thread(() -> {
+                while (!Thread.currentThread().isInterrupted()) {
+                    first.updateMmr("Erin", 1);
+                }
+            });
+            updater.start();
+            Thread.sleep(20);
+            first.close();
+            Thread.sleep(60);
+            updater.interrupt();
+            updater.join();
+
+            assertEquals(0, Files.size(roundDir.resolve("ratings.log")));
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package server;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for GameLog and the binary format of GameRecord.
+ * Every test uses its own temporary directory.
+ */
+public class GameLogTest {
+
+    private Path directory;
+    private GameLog log;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        directory = Files.createTempDirectory("games");
+        log = new GameLog(directory, GameLog.DEFAULT_SEGMENT_SIZE);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        log.close();
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    private static GameRecord game(int id, String p1, String p2, int winner) {
+        byte[] moves = {
+            GameRecord.encodeMove(-1, 3),
+            GameRecord.encodeMove(5, 7),
+            GameRecord.encodeMove(15, 0)
+        };
+        return new GameRecord(id, p1, p2, 1700000000000L + id, 1234, winner, GameRecord.Ending.NORMAL, moves);
+    }
+
+    /**
+     * A record takes one byte per move and decodes to the same game.
+     */
+    @Test
+    void testRecordRoundTrip() {
+        GameRecord record = game(42, "alice", "bob", 2);
+        byte[] bytes = record.encode();
+        assertEquals(3, record.getMoveCount());
+        assertEquals(-1, record.getLocation(0));
+        assertEquals(15, record.getLocation(2));
+        assertEquals(7, record.getPiece(1));
+
+        byte[] body = new byte[bytes.length - GameRecord.FRAME_OVERHEAD];
+        System.arraycopy(bytes, 4, body, 0, body.length);
+        int crc = java.nio.ByteBuffer.wrap(bytes).getInt(bytes.length - 4);
+        assertEquals(record, GameRecord.decode(body, crc));
+
+        body[5] ^= 1;
+        assertNull(GameRecord.decode(body, crc));
+    }
+
+    /**
+     * Stored games can be read by id and by player, newest first.
+     */
+    @Test
+    void testHistoryAndReplay() {
+        log.append(game(1, "alice", "bob", 1));
+        log.append(game(2, "carol", "alice", 0));
+        log.append(game(3, "bob", "carol", 2));
+        log.flush();
+
+        assertEquals(3, log.size());
+        assertEquals(3, log.getLastGameId());
+        assertEquals(game(2, "carol", "alice", 0), log.read(2));
+        assertNull(log.read(4));
+
+        List<GameRecord> history = log.history("alice", 10);
+        assertEquals(2, history.size());
+        assertEquals(2, history.get(0).getGameId());
+        assertEquals(1, history.get(1).getGameId());
+        assertEquals("~3~bob~carol~carol", log.getHistoryForProtocol("carol", 1));
+        assertEquals("~1~alice~bob~alice~NORMAL~1700000000001~1234~3~5,7~15,0",
+                     log.getReplayForProtocol(1));
+    }
+
+    /**
+     * Segments roll over at their size limit and the index survives a restart.
+     */
+    @Test
+    void testSegmentsAndReopen() throws IOException {
+        log.close();
+        log = new GameLog(directory, 100);
+        for (int id = 1; id <= 10; id++) {
+            log.append(game(id, "alice", "bob", 1));
+        }
+        log.flush();
+        log.close();
+
+        try (Stream<Path> files = Files.list(directory)) {
+            assertTrue(files.count() > 1);
+        }
+        log = new GameLog(directory, 100);
+        assertEquals(10, log.size());
+        assertEquals(10, log.getLastGameId());
+        assertEquals(game(7, "alice", "bob", 1), log.read(7));
+        assertEquals(10, log.history("bob", 100).size());
+    }
+
+    /**
+     * A record torn by a crash is cut off and later appends stay readable.
+     */
+    @Test
+    void testTornRecordIsTruncated() throws IOException {
+        log.append(game(1, "alice", "bob", 1));
+        log.append(game(2, "alice", "bob", 2));
+        log.flush();
+        log.close();
+
+        Path segment;
+        try (Stream<Path> files = Files.list(directory)) {
+            segment = files.findFirst().orElseThrow();
+        }
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.truncate(Files.size(segment) - 3);
+        }
+
+        log = new GameLog(directory, GameLog.DEFAULT_SEGMENT_SIZE);
+        assertEquals(1, log.size());
+        assertNull(log.read(2));
+        log.append(game(2, "alice", "bob", 2));
+        log.flush();
+        assertEquals(game(2, "alice", "bob", 2), log.read(2));
+    }
+}
@@ -1,11 +1,20 @@
 package server;
 
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
+import protocol.Protocol;
+
+import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.nio.file.Path;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -16,6 +25,9 @@ import static org.junit.jupiter.api.Assertions.*;
 public class GameServerTest {
 
     /** Instance of the server used in each test */
+    @TempDir
+    Path dataDir;
+
     private GameServer server;
 
     /**
@@ -89,9 +101,19 @@ public class GameServerTest {
      */
     @BeforeEach
     void setUp() throws IOException {
+        ServerDataDir.use(dataDir);
         server = new GameServer(0); // use random available port
     }
 
+    /**
+     * Closes the server, so it has written its data before the directory is removed.
+     */
+    @AfterEach
+    void tearDown() {
+        server.close();
+        ServerDataDir.clear();
+    }
+
     /**
      * Verifies that a newly created server has no logged-in users.
      */
@@ -161,4 +183,137 @@ public class GameServerTest {
         assertEquals("", server.getUserList());
     }
 
+    /**
+     * Verifies that a login is visible in the user list and
+     * that a second login with the same name is rejected.
+     */
+    @Test
+    void testLoginUpdatesUserList() throws IOException {
+        ClientHandler p1 = new TestClientHandler("player1");
+        ClientHandler p2 = new TestClientHandler("player2");
+
+        assertTrue(server.login(p1, "player1"));
+        assertTrue(server.login(p2, "player2"));
+        assertFalse(server.login(p2, "player1"));
+
+        assertTrue(server.isLoggedIn("player1"));
+        assertEquals("player1~player2", server.getUserList());
+    }
+
+    /**
+     * Verifies that a disconnected user disappears from the user list.
+     */
+    @Test
+    void testDisconnectRemovesUserFromList() throws IOException {
+        ClientHandler p1 = new TestClientHandler("player1");
+        server.login(p1, "player1");
+
+        server.handleDisconnect(p1);
+
+        assertFalse(server.isLoggedIn("player1"));
+        assertEquals("", server.getUserList());
+    }
+
+    /**
+     * Verifies that whispers are only delivered to logged-in users.
+     */
+    @Test
+    void testWhisperRequiresLoggedInRecipient() throws IOException {
+        ClientHandler p1 = new TestClientHandler("player1");
+        server.login(p1, "player1");
+
+        assertTrue(server.whisper("player1", "WHISPER~player2~hi"));
+        assertFalse(server.whisper("nobody", "WHISPER~player1~hi"));
+    }
+
+    /**
+     * Verifies that a silent connection is pinged, then closed after the
+     * idle timeout and removed from the user list, the queue and the
+     * connection list.
+     */
+    @Test
+    void testIdleConnectionIsPingedAndReaped() throws Exception {
+        GameServer idleServer = new GameServer(0, 100, 400);
+        try (ServerSocket listener = new ServerSocket(0);
+             Socket client = new Socket("localhost", listener.getLocalPort())) {
+            idleServer.handleConnection(listener.accept());
+            PrintWriter out = new PrintWriter(new OutputStreamWriter(client.getOutputStream()), true);
+            BufferedReader in = new BufferedReader(new InputStreamReader(client.getInputStream()));
+
+            out.println(Protocol.LOGIN + Protocol.SEPARATOR + "sleepy");
+            String reply = in.readLine();
+            while (Protocol.PING.equals(reply)) {
+                reply = in.readLine();
+            }
+            assertEquals(Protocol.LOGIN + Protocol.SEPARATOR + "SUCCESS", reply);
+            out.println(Protocol.QUEUE);
+            assertTrue(idleServer.isLoggedIn("sleepy"));
+            assertEquals(1, idleServer.getConnectionCount());
+
+            assertEquals(Protocol.PING, in.readLine());
+            String line;
+            while ((line = in.readLine()) != null) {
+                assertEquals(Protocol.PING, line);
+            }
+
+            long deadline = System.currentTimeMillis() + 2000;
+            while (idleServer.getConnectionCount() > 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(0, idleServer.getConnectionCount());
+            assertFalse(idleServer.isLoggedIn("sleepy"));
+        } finally {
+            idleServer.close();
+        }
+    }
+
+    /**
+     * Verifies that answering PINGs keeps a connection open.
+     */
+    @Test
+    void testPongKeepsConnectionAlive() throws Exception {
+        GameServer idleServer = new GameServer(0, 100, 400);
+        try (ServerSocket listener = new ServerSocket(0);
+             Socket client = new Socket("localhost", listener.getLocalPort())) {
+            idleServer.handleConnection(listener.accept());
+            PrintWriter out = new PrintWriter(new OutputStreamWriter(client.getOutputStream()), true);
+            BufferedReader in = new BufferedReader(new InputStreamReader(client.getInputStream()));
+
+            for (int i = 0; i < 6; i++) {
+                assertEquals(Protocol.PING, in.readLine());
+                out.println(Protocol.PONG);
+            }
+            assertEquals(1, idleServer.getConnectionCount());
+        } finally {
+            idleServer.close();
+        }
+    }
+
+    /**
+     * Verifies that spectators can attach by player name or game id,
+     * and that players and unknown targets are refused.
+     */
+    @Test
+    void testSpectateResolvesPlayerOrGameId() throws IOException {
+        ClientHandler p1 = new TestClientHandler("watched1");
+        ClientHandler p2 = new TestClientHandler("watched2");
+        ClientHandler viewer = new TestClientHandler("viewer");
+        server.login(p1, "watched1");
+        server.login(p2, "watched2");
+        server.addToQueue(p1);
+        server.addToQueue(p2);
+
+        assertTrue(server.spectate(viewer, "watched2"));
+        GameSession watched = viewer.getSpectating();
+        assertNotNull(watched);
+        assertTrue(server.spectate(viewer, String.valueOf(watched.getGameId())));
+        assertEquals(1, watched.getSpectatorCount());
+
+        assertFalse(server.spectate(viewer, "nobody"));
+        assertFalse(server.spectate(viewer, "999"));
+        assertFalse(server.spectate(p1, "watched2"));
+
+        server.handleDisconnect(viewer);
+        assertEquals(0, watched.getSpectatorCount());
+    }
 }
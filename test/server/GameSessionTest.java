@@ -1,11 +1,24 @@
 package server;
 
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import networking.EncodedPacket;
+import protocol.Protocol;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -15,6 +28,10 @@ import static org.junit.jupiter.api.Assertions.*;
  */
 public class GameSessionTest {
 
+    @TempDir
+    Path dataDir;
+
+    private GameServer server;
     private GameSession session;
     private ClientHandler player1;
     private ClientHandler player2;
@@ -27,6 +44,10 @@ public class GameSessionTest {
         private final String username;
         private ClientHandler opponent;
         private int playerId;
+        private boolean clock = false;
+        private boolean queueFull = false;
+        final List<String> sent = new CopyOnWriteArrayList<>();
+        final List<EncodedPacket> queued = new CopyOnWriteArrayList<>();
 
         TestClientHandler(String username, GameServer server) throws IOException {
             super(createSocket(), server);
@@ -48,10 +69,31 @@ public class GameSessionTest {
 
         @Override
         public boolean sendPacket(String message) {
-            // ignore network output in tests
+            // record instead of sending over the network
+            sent.add(message);
             return false;
         }
 
+        @Override
+        public boolean supportsClock() {
+            return clock;
+        }
+
+        @Override
+        public boolean enqueuePacket(EncodedPacket packet) {
+            if (queueFull) {
+                return false;
+            }
+            queued.add(packet);
+            return true;
+        }
+
+        String queuedMessage(int index) throws IOException {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            queued.get(index).writeTo(out);
+            return out.toString().strip();
+        }
+
         @Override
         public void setOpponent(ClientHandler opponent) {
             this.opponent = opponent;
@@ -75,7 +117,8 @@ public class GameSessionTest {
 
     @BeforeEach
     void setUp() throws IOException {
-        GameServer server = new GameServer(0);
+        ServerDataDir.use(dataDir);
+        server = new GameServer(0);
 
         player1 = new TestClientHandler("player1", server);
         player2 = new TestClientHandler("player2", server);
@@ -83,6 +126,12 @@ public class GameSessionTest {
         session = new GameSession(player1, player2, 1);
     }
 
+    @AfterEach
+    void tearDown() {
+        server.close();
+        ServerDataDir.clear();
+    }
+
     @Test
     void testStartGameDoesNotThrow() {
         // Starting a session should not cause errors
@@ -140,5 +189,119 @@ public class GameSessionTest {
                                    session.handleMove(player1, 0, 99)
         );
     }
-}
 
+    /**
+     * Verifies that a move produces a Flight Recorder event when the event is enabled.
+     */
+    @Test
+    void testMoveEmitsFlightRecorderEvent() throws IOException {
+        assertFalse(new MoveEvent().isEnabled());
+
+        Path file = Files.createTempFile("moves", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("quarto.Move");
+            recording.start();
+            session.startGame();
+            session.handleMove(player1, 3, -1);
+            recording.stop();
+            recording.dump(file);
+        }
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+        Files.deleteIfExists(file);
+        assertEquals(1, events.size());
+        assertEquals("ACCEPTED", events.get(0).getString("outcome"));
+        assertEquals(3, events.get(0).getInt("piece"));
+    }
+
+    /**
+     * Verifies that a move out of turn is rejected.
+     */
+    @Test
+    void testMoveOutOfTurnIsRejected() {
+        session.startGame();
+        session.handleMove(player2, 3, -1);
+
+        assertEquals(Protocol.ERROR + Protocol.SEPARATOR + "Not your turn",
+                     ((TestClientHandler) player2).sent.get(1));
+    }
+
+    /**
+     * Verifies that a player who does not move within the move limit loses on time
+     * and that clock-aware clients receive the remaining time with every move.
+     */
+    @Test
+    void testStalledPlayerLosesOnTime() throws Exception {
+        TimerWheel timers = new TimerWheel("Test-Wheel", 5, TimeUnit.MILLISECONDS, 64);
+        TestClientHandler p1 = (TestClientHandler) player1;
+        TestClientHandler p2 = (TestClientHandler) player2;
+        p1.clock = true;
+        try {
+            session = new GameSession(player1, player2, 2, new TimeControl(300, 10000), timers);
+            session.startGame();
+            assertEquals(Protocol.NEWGAME + "~player1~player2~300~10000", p1.sent.get(0));
+            assertEquals(Protocol.NEWGAME + "~player1~player2", p2.sent.get(0));
+
+            session.handleMove(player1, 3, -1);
+            assertTrue(p1.sent.get(1).startsWith(Protocol.MOVE + "~3~300~"));
+            assertEquals(Protocol.MOVE + "~3", p2.sent.get(1));
+
+            String gameOver = Protocol.GAMEOVER + "~" + Protocol.VICTORY + "~player1";
+            long deadline = System.currentTimeMillis() + 2000;
+            while (p1.sent.size() < 3 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(gameOver, p1.sent.get(2));
+            assertEquals(gameOver, p2.sent.get(2));
+        } finally {
+            timers.close();
+        }
+    }
+
+    /**
+     * Verifies that a spectator receives a snapshot on join and then the
+     * same pre-encoded packet for every move, and is detached at game over.
+     */
+    @Test
+    void testSpectatorsShareEncodedMoves() throws IOException {
+        TestClientHandler first = new TestClientHandler("viewer1", player1.getServer());
+        TestClientHandler second = new TestClientHandler("viewer2", player1.getServer());
+        session.startGame();
+        session.handleMove(player1, 3, -1);
+
+        assertTrue(session.addSpectator(first));
+        assertTrue(session.addSpectator(second));
+        assertEquals(2, session.getSpectatorCount());
+        assertEquals(Protocol.SPECTATE + "~1~player1~player2~player2~3~................",
+                     first.queuedMessage(0));
+
+        session.handleMove(player2, 7, 5);
+        assertEquals(Protocol.MOVE + "~5~7", first.queuedMessage(1));
+        assertSame(first.queued.get(1), second.queued.get(1));
+
+        session.disconnect(player1);
+        assertEquals(Protocol.GAMEOVER + "~" + Protocol.VICTORY + "~player2", first.queuedMessage(2));
+        assertEquals(0, session.getSpectatorCount());
+        assertFalse(session.addSpectator(first));
+    }
+
+    /**
+     * Verifies that a spectator whose queue overflowed is resynchronised
+     * with a fresh snapshot instead of receiving the moves it missed.
+     */
+    @Test
+    void testSlowSpectatorIsResynchronised() throws IOException {
+        TestClientHandler viewer = new TestClientHandler("viewer", player1.getServer());
+        session.startGame();
+        assertTrue(session.addSpectator(viewer));
+
+        viewer.queueFull = true;
+        session.handleMove(player1, 3, -1);
+        viewer.queueFull = false;
+        session.handleMove(player2, 7, 5);
+
+        assertEquals(2, viewer.queued.size());
+        assertEquals(Protocol.SPECTATE + "~1~player1~player2~player1~7~.....3..........",
+                     viewer.queuedMessage(1));
+    }
+}
@@ -0,0 +1,70 @@
+package server;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for Histogram.
+ * Verifies bucket boundaries and percentile accuracy.
+ */
+public class HistogramTest {
+
+    /**
+     * Every value falls into a bucket whose upper bound is at least the
+     * value and at most about 3% above it.
+     */
+    @Test
+    void testBucketsBoundValuesTightly() {
+        long[] values = {0, 1, 31, 32, 33, 63, 64, 1000, 123456, 1L << 40, Long.MAX_VALUE};
+        for (long value : values) {
+            long bound = Histogram.upperBound(Histogram.bucketOf(value));
+            assertTrue(bound >= value, "bound below value " + value);
+            assertTrue(bound - value <= value / Histogram.SUB_BUCKETS, "bound too loose for " + value);
+        }
+    }
+
+    /**
+     * Bucket indexes grow with the value, so percentiles can be read in order.
+     */
+    @Test
+    void testBucketsAreMonotonic() {
+        int previous = -1;
+        for (long value = 0; value < 100000; value += 7) {
+            int bucket = Histogram.bucketOf(value);
+            assertTrue(bucket >= previous);
+            previous = bucket;
+        }
+    }
+
+    /**
+     * Percentiles of a uniform distribution are reported within the bucket precision.
+     */
+    @Test
+    void testPercentiles() {
+        Histogram histogram = new Histogram();
+        for (int i = 1; i <= 10000; i++) {
+            histogram.record(i);
+        }
+
+        Histogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(10000, snapshot.getCount());
+        assertEquals(10000, snapshot.getMax());
+        assertEquals(5000.5, snapshot.getMean(), 0.001);
+        assertEquals(5000, snapshot.getPercentile(50), 5000 / Histogram.SUB_BUCKETS);
+        assertEquals(9900, snapshot.getPercentile(99), 9900 / Histogram.SUB_BUCKETS);
+        assertEquals(10000, snapshot.getPercentile(100));
+    }
+
+    /**
+     * An empty histogram reports zeros.
+     */
+    @Test
+    void testEmptySnapshot() {
+        Histogram.Snapshot snapshot = new Histogram().snapshot();
+
+        assertEquals(0, snapshot.getCount());
+        assertEquals(0, snapshot.getPercentile(99));
+        assertEquals(0.0, snapshot.getMean(), 0.0);
+    }
+}
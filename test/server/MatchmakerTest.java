@@ -0,0 +1,108 @@
+package server;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for Matchmaker.
+ * Verifies MMR-window matching and window widening over time.
+ */
+public class MatchmakerTest {
+
+    private Matchmaker matchmaker;
+
+    /**
+     * Minimal ClientHandler used as a queue entry.
+     */
+    private static class TestClientHandler extends ClientHandler {
+
+        TestClientHandler() throws IOException {
+            super(createSocket(), null);
+        }
+
+        private static Socket createSocket() throws IOException {
+            ServerSocket serverSocket = new ServerSocket(0);
+            Socket client = new Socket("localhost", serverSocket.getLocalPort());
+            Socket serverSide = serverSocket.accept();
+            serverSocket.close();
+            return serverSide;
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        matchmaker = new Matchmaker();
+    }
+
+    @Test
+    void playersWithinWindowAreMatched() throws IOException {
+        ClientHandler p1 = new TestClientHandler();
+        ClientHandler p2 = new TestClientHandler();
+
+        matchmaker.add(p1, 1000, 0);
+        matchmaker.add(p2, 1200, 0);
+
+        ClientHandler[] pair = matchmaker.match(p2, 0);
+        assertNotNull(pair);
+        assertSame(p2, pair[0]);
+        assertSame(p1, pair[1]);
+        assertEquals(0, matchmaker.size());
+    }
+
+    @Test
+    void playersOutsideWindowWaitUntilItWidens() throws IOException {
+        ClientHandler p1 = new TestClientHandler();
+        ClientHandler p2 = new TestClientHandler();
+
+        matchmaker.add(p1, 1000, 0);
+        matchmaker.add(p2, 1900, 0);
+
+        assertTrue(matchmaker.matchAll(0).isEmpty());
+        assertEquals(2, matchmaker.size());
+
+        List<ClientHandler[]> pairs = matchmaker.matchAll(Matchmaker.WIDEN_INTERVAL);
+        assertEquals(1, pairs.size());
+        assertEquals(0, matchmaker.size());
+    }
+
+    @Test
+    void closestOpponentIsChosen() throws IOException {
+        ClientHandler low = new TestClientHandler();
+        ClientHandler mid = new TestClientHandler();
+        ClientHandler high = new TestClientHandler();
+
+        matchmaker.add(low, 800, 0);
+        matchmaker.add(high, 1300, 0);
+        matchmaker.add(mid, 1250, 0);
+
+        ClientHandler[] pair = matchmaker.match(mid, 0);
+        assertSame(high, pair[1]);
+        assertTrue(matchmaker.contains(low));
+    }
+
+    @Test
+    void duplicateAndRemovedPlayersAreHandled() throws IOException {
+        ClientHandler p1 = new TestClientHandler();
+
+        assertTrue(matchmaker.add(p1, 1000, 0));
+        assertFalse(matchmaker.add(p1, 1000, 0));
+        assertTrue(matchmaker.remove(p1));
+        assertFalse(matchmaker.remove(p1));
+        assertNull(matchmaker.match(p1, 0));
+    }
+
+    @Test
+    void windowWidensInSteps() {
+        assertEquals(Matchmaker.BASE_WINDOW, Matchmaker.window(0));
+        assertEquals(Matchmaker.BASE_WINDOW, Matchmaker.window(Matchmaker.WIDEN_INTERVAL - 1));
+        assertEquals(Matchmaker.BASE_WINDOW + Matchmaker.WINDOW_STEP,
+                Matchmaker.window(Matchmaker.WIDEN_INTERVAL));
+    }
+}
@@ -0,0 +1,116 @@
+package server;
+
+import org.apache.commons.lang3.StringUtils;
+import protocol.Protocol;
+
+/**
+ * Throughput benchmark comparing the previous {@code StringUtils.split}
+ * based message handling with {@link PacketParser}.
+ * <p>
+ * Run the main method directly; results are printed as messages per second.
+ */
+public class PacketParserBenchmark {
+
+    private static final String[] MESSAGES = {
+            Protocol.MOVE + "~5~12",
+            Protocol.MOVE + "~3",
+            Protocol.MOVE + "~15~0",
+            Protocol.LIST,
+            Protocol.QUEUE,
+            Protocol.HELLO + "~client",
+            Protocol.MOVE + "~x~1",
+            Protocol.RANK,
+    };
+
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int MEASURED_ROUNDS = 5;
+    private static final int MESSAGES_PER_ROUND = 5_000_000;
+
+    public static void main(String[] args) {
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            runSplit();
+            runParser();
+        }
+
+        double split = 0;
+        double parsed = 0;
+        for (int i = 0; i < MEASURED_ROUNDS; i++) {
+            split += runSplit();
+            parsed += runParser();
+        }
+
+        System.out.printf("StringUtils.split : %,.0f msg/s%n", split / MEASURED_ROUNDS);
+        System.out.printf("PacketParser      : %,.0f msg/s%n", parsed / MEASURED_ROUNDS);
+    }
+
+    /**
+     * Handles messages the way ClientHandler did before PacketParser.
+     */
+    private static double runSplit() {
+        long checksum = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < MESSAGES_PER_ROUND; i++) {
+            String message = MESSAGES[i & 7];
+            if (StringUtils.isAllBlank(message)) {
+                continue;
+            }
+            String[] parts = StringUtils.split(message, Protocol.SEPARATOR);
+            switch (parts[0]) {
+                case Protocol.MOVE:
+                    try {
+                        if (parts.length == 2) {
+                            checksum += Integer.parseInt(parts[1]);
+                        } else if (parts.length == 3) {
+                            checksum += Integer.parseInt(parts[1]) + Integer.parseInt(parts[2]);
+                        }
+                    } catch (NumberFormatException e) {
+                        checksum--;
+                    }
+                    break;
+                default:
+                    checksum += parts.length;
+            }
+        }
+        return report(start, checksum);
+    }
+
+    /**
+     * Handles messages the way ClientHandler does with PacketParser.
+     */
+    private static double runParser() {
+        PacketParser parser = new PacketParser();
+        long checksum = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < MESSAGES_PER_ROUND; i++) {
+            if (!parser.parse(MESSAGES[i & 7])) {
+                continue;
+            }
+            switch (parser.command()) {
+                case MOVE:
+                    if (parser.fieldCount() == 2) {
+                        checksum += parser.intField(1);
+                    } else if (parser.fieldCount() == 3) {
+                        int location = parser.intField(1);
+                        int piece = parser.intField(2);
+                        if (location == PacketParser.INVALID_NUMBER || piece == PacketParser.INVALID_NUMBER) {
+                            checksum--;
+                        } else {
+                            checksum += location + piece;
+                        }
+                    }
+                    break;
+                default:
+                    checksum += parser.fieldCount();
+            }
+        }
+        return report(start, checksum);
+    }
+
+    private static double report(long start, long checksum) {
+        long elapsed = System.nanoTime() - start;
+        if (checksum == Long.MIN_VALUE) {
+            System.out.println(checksum);
+        }
+        return MESSAGES_PER_ROUND / (elapsed / 1_000_000_000.0);
+    }
+}
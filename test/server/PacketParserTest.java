@@ -0,0 +1,78 @@
+package server;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import protocol.Protocol;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link PacketParser}.
+ * Verifies tokenization, command lookup and allocation-free number parsing.
+ */
+public class PacketParserTest {
+
+    private PacketParser parser;
+
+    @BeforeEach
+    void setUp() {
+        parser = new PacketParser();
+    }
+
+    @Test
+    void blankLinesAreIgnored() {
+        assertFalse(parser.parse(""));
+        assertFalse(parser.parse("   \t"));
+        assertFalse(parser.parse("~~~"));
+    }
+
+    @Test
+    void commandIsRecognised() {
+        assertTrue(parser.parse(Protocol.QUEUE));
+        assertEquals(PacketParser.Command.QUEUE, parser.command());
+        assertEquals(1, parser.fieldCount());
+    }
+
+    @Test
+    void unknownCommandIsReported() {
+        assertTrue(parser.parse("QUEUED~x"));
+        assertEquals(PacketParser.Command.UNKNOWN, parser.command());
+    }
+
+    @Test
+    void moveFieldsAreParsedAsNumbers() {
+        assertTrue(parser.parse(Protocol.MOVE + "~4~9"));
+        assertEquals(PacketParser.Command.MOVE, parser.command());
+        assertEquals(3, parser.fieldCount());
+        assertEquals(4, parser.intField(1));
+        assertEquals(9, parser.intField(2));
+    }
+
+    @Test
+    void malformedNumbersAreInvalid() {
+        parser.parse(Protocol.MOVE + "~4a~");
+        assertEquals(2, parser.fieldCount());
+        assertEquals(PacketParser.INVALID_NUMBER, parser.intField(1));
+        assertEquals(PacketParser.INVALID_NUMBER, parser.intField(2));
+
+        parser.parse(Protocol.MOVE + "~99999999999");
+        assertEquals(PacketParser.INVALID_NUMBER, parser.intField(1));
+    }
+
+    @Test
+    void emptyFieldsAreSkippedLikeStringUtilsSplit() {
+        parser.parse("~" + Protocol.MOVE + "~~-1~~7~");
+        assertEquals(PacketParser.Command.MOVE, parser.command());
+        assertEquals(3, parser.fieldCount());
+        assertEquals(-1, parser.intField(1));
+        assertEquals(7, parser.intField(2));
+    }
+
+    @Test
+    void stringFieldsAreExtracted() {
+        parser.parse(Protocol.LOGIN + "~Alice");
+        assertEquals(PacketParser.Command.LOGIN, parser.command());
+        assertEquals("Alice", parser.stringField(1));
+        assertNull(parser.stringField(2));
+    }
+}
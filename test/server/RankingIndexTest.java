@@ -0,0 +1,91 @@
+package server;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for RankingIndex.
+ * Compares the skip list against a fully sorted reference list.
+ */
+public class RankingIndexTest {
+
+    private RankingIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new RankingIndex();
+    }
+
+    @Test
+    void pagesAreOrderedByMmrThenName() {
+        index.update("Bob", null, 1100);
+        index.update("Alice", null, 1100);
+        index.update("Carl", null, 1300);
+        index.update("Dora", null, 900);
+
+        List<RankingIndex.Entry> top = index.page(0, 10);
+        assertEquals(4, top.size());
+        assertEquals("Carl", top.get(0).getName());
+        assertEquals("Alice", top.get(1).getName());
+        assertEquals("Bob", top.get(2).getName());
+        assertEquals("Dora", top.get(3).getName());
+
+        List<RankingIndex.Entry> second = index.page(1, 2);
+        assertEquals("Alice", second.get(0).getName());
+        assertEquals("Bob", second.get(1).getName());
+        assertTrue(index.page(10, 5).isEmpty());
+    }
+
+    @Test
+    void updateMovesPlayer() {
+        index.update("Alice", null, 1000);
+        index.update("Bob", null, 1100);
+        assertEquals(2, index.position("Alice", 1000));
+
+        index.update("Alice", 1000, 1200);
+        assertEquals(2, index.size());
+        assertEquals(1, index.position("Alice", 1200));
+        assertEquals(2, index.position("Bob", 1100));
+    }
+
+    @Test
+    void positionOfUnrankedPlayer() {
+        index.update("Alice", null, 1200);
+        index.update("Bob", null, 800);
+        assertEquals(2, index.position("Zed", 1000));
+    }
+
+    @Test
+    void randomUpdatesMatchSortedReference() {
+        Random random = new Random(42);
+        Map<String, Integer> reference = new HashMap<>();
+
+        for (int i = 0; i < 5000; i++) {
+            String name = "p" + random.nextInt(500);
+            int mmr = random.nextInt(2000);
+            index.update(name, reference.get(name), mmr);
+            reference.put(name, mmr);
+        }
+
+        List<Map.Entry<String, Integer>> sorted = new ArrayList<>(reference.entrySet());
+        sorted.sort((a, b) -> a.getValue().equals(b.getValue())
+                ? a.getKey().compareTo(b.getKey())
+                : b.getValue() - a.getValue());
+
+        assertEquals(sorted.size(), index.size());
+        List<RankingIndex.Entry> all = index.page(0, sorted.size());
+        for (int i = 0; i < sorted.size(); i++) {
+            assertEquals(sorted.get(i).getKey(), all.get(i).getName());
+            assertEquals(i + 1, index.position(sorted.get(i).getKey(), sorted.get(i).getValue()));
+        }
+        assertEquals(sorted.get(123).getKey(), index.page(123, 1).get(0).getName());
+    }
+}
@@ -0,0 +1,79 @@
+package server;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for RatingWorker.
+ * Verifies the Elo formula and that submitted results reach the storage.
+ */
+public class RatingWorkerTest {
+
+    @TempDir
+    Path dir;
+
+    private FileStorage storage;
+    private RatingWorker worker;
+
+    @BeforeEach
+    void setUp() {
+        storage = new FileStorage(dir.resolve("ratings.txt").toString(), dir.resolve("ratings.log").toString());
+        worker = new RatingWorker(storage, 16);
+    }
+
+    private static GameRecord game(int id, String player1, String player2, int winner) {
+        return new GameRecord(id, player1, player2, 0, 0, winner, GameRecord.Ending.NORMAL, new byte[0]);
+    }
+
+    @Test
+    void testEloChangeBetweenEqualPlayers() {
+        // Equal ratings: a win gains half the K-factor, a draw changes nothing
+        assertEquals(16, RatingWorker.eloChange(1000, 1000, 1));
+        assertEquals(-16, RatingWorker.eloChange(1000, 1000, 0));
+        assertEquals(0, RatingWorker.eloChange(1000, 1000, 0.5));
+    }
+
+    @Test
+    void testUpsetGainsMorePoints() {
+        // Beating a stronger player is worth more than beating a weaker one
+        assertTrue(RatingWorker.eloChange(1000, 1200, 1) > RatingWorker.eloChange(1200, 1000, 1));
+    }
+
+    @Test
+    void testSubmittedGameUpdatesBothPlayers() {
+        // The winner gains exactly what the loser gives up
+        assertTrue(worker.submit(game(1, "Erin", "Frank", 1)));
+        worker.flush();
+
+        assertEquals(1016, storage.getMmr("Erin"));
+        assertEquals(984, storage.getMmr("Frank"));
+    }
+
+    @Test
+    void testGamesAreRatedInOrder() {
+        // The second game starts from the ratings after the first
+        worker.submit(game(1, "Gina", "Hank", 2));
+        worker.submit(game(2, "Gina", "Hank", 2));
+        worker.flush();
+
+        int expected = 1016 + RatingWorker.eloChange(1016, 984, 1);
+        assertEquals(expected, storage.getMmr("Hank"));
+        assertEquals(2000 - expected, storage.getMmr("Gina"));
+    }
+
+    @Test
+    void testCloseAppliesQueuedResults() {
+        // Results queued before close are still applied, later ones are refused
+        worker.submit(game(1, "Ivy", "Jack", 0));
+        worker.submit(game(2, "Ivy", "Jack", 1));
+        worker.close();
+
+        assertEquals(1016, storage.getMmr("Ivy"));
+        assertFalse(worker.submit(game(3, "Ivy", "Jack", 1)));
+    }
+}
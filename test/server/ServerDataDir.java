@@ -0,0 +1,32 @@
+package server;
+
+import java.nio.file.Path;
+
+/**
+ * Points the ratings and game records of servers started by tests at a
+ * temporary directory, so finished games never touch the real ones.
+ */
+final class ServerDataDir {
+
+    private ServerDataDir() {
+        // Private constructor to prevent instantiation
+    }
+
+    /**
+     * Makes servers created from now on store their data under the given directory.
+     *
+     * @param dir a directory owned by the test, typically a {@code @TempDir}
+     */
+    static void use(Path dir) {
+        System.setProperty("quarto.ratings.dir", dir.toString());
+        System.setProperty("quarto.games.dir", dir.resolve("games").toString());
+    }
+
+    /**
+     * Restores the default locations.
+     */
+    static void clear() {
+        System.clearProperty("quarto.ratings.dir");
+        System.clearProperty("quarto.games.dir");
+    }
+}
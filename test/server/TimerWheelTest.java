@@ -0,0 +1,84 @@
+package server;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for TimerWheel.
+ * A small wheel with short ticks is used, so delays span several rotations.
+ */
+public class TimerWheelTest {
+
+    private final TimerWheel wheel = new TimerWheel("Test-Wheel", 5, TimeUnit.MILLISECONDS, 4);
+
+    @AfterEach
+    void tearDown() {
+        wheel.close();
+    }
+
+    /**
+     * A task runs once, and not before its delay has passed.
+     */
+    @Test
+    void testTaskRunsAfterDelay() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+        long start = System.nanoTime();
+        TimerWheel.Timeout timeout = wheel.schedule(latch::countDown, 50, TimeUnit.MILLISECONDS);
+
+        assertTrue(latch.await(2, TimeUnit.SECONDS));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+        assertTrue(timeout.isExpired());
+        assertFalse(timeout.cancel());
+    }
+
+    /**
+     * Tasks whose delays exceed one rotation fire in deadline order.
+     */
+    @Test
+    void testTasksFireInDeadlineOrder() throws InterruptedException {
+        List<Integer> fired = new CopyOnWriteArrayList<>();
+        CountDownLatch latch = new CountDownLatch(3);
+        wheel.schedule(() -> { fired.add(3); latch.countDown(); }, 90, TimeUnit.MILLISECONDS);
+        wheel.schedule(() -> { fired.add(1); latch.countDown(); }, 10, TimeUnit.MILLISECONDS);
+        wheel.schedule(() -> { fired.add(2); latch.countDown(); }, 45, TimeUnit.MILLISECONDS);
+
+        assertTrue(latch.await(2, TimeUnit.SECONDS));
+        assertEquals(List.of(1, 2, 3), fired);
+    }
+
+    /**
+     * A cancelled task never runs and is removed from the pending count.
+     */
+    @Test
+    void testCancelledTaskDoesNotRun() throws InterruptedException {
+        CountDownLatch cancelled = new CountDownLatch(1);
+        CountDownLatch other = new CountDownLatch(1);
+        TimerWheel.Timeout timeout = wheel.schedule(cancelled::countDown, 20, TimeUnit.MILLISECONDS);
+        wheel.schedule(other::countDown, 60, TimeUnit.MILLISECONDS);
+
+        assertTrue(timeout.cancel());
+        assertTrue(timeout.isCancelled());
+        assertTrue(other.await(2, TimeUnit.SECONDS));
+        assertEquals(1, cancelled.getCount());
+        assertEquals(0, wheel.pending());
+    }
+
+    /**
+     * A failing task does not stop the wheel.
+     */
+    @Test
+    void testFailingTaskDoesNotStopWheel() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+        wheel.schedule(() -> { throw new IllegalStateException("boom"); }, 5, TimeUnit.MILLISECONDS);
+        wheel.schedule(latch::countDown, 20, TimeUnit.MILLISECONDS);
+
+        assertTrue(latch.await(2, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,54 @@
+package server;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for TokenBucket.
+ * Time is passed in explicitly, so the tests do not depend on the clock.
+ */
+public class TokenBucketTest {
+
+    private static final long SECOND = 1_000_000_000L;
+
+    /**
+     * A full bucket allows a burst up to its capacity and then rejects.
+     */
+    @Test
+    void testBurstUpToCapacity() {
+        TokenBucket bucket = new TokenBucket(3, 1.0, 0);
+
+        assertTrue(bucket.tryAcquire(0));
+        assertTrue(bucket.tryAcquire(0));
+        assertTrue(bucket.tryAcquire(0));
+        assertFalse(bucket.tryAcquire(0));
+    }
+
+    /**
+     * Tokens are refilled at the configured rate.
+     */
+    @Test
+    void testRefillOverTime() {
+        TokenBucket bucket = new TokenBucket(1, 2.0, 0);
+
+        assertTrue(bucket.tryAcquire(0));
+        assertFalse(bucket.tryAcquire(SECOND / 4));
+        assertTrue(bucket.tryAcquire(SECOND / 2));
+    }
+
+    /**
+     * A long pause never refills more than the capacity.
+     */
+    @Test
+    void testRefillIsCappedAtCapacity() {
+        TokenBucket bucket = new TokenBucket(2, 1.0, 0);
+        bucket.tryAcquire(0);
+        bucket.tryAcquire(0);
+
+        long later = 100 * SECOND;
+        assertTrue(bucket.tryAcquire(later));
+        assertTrue(bucket.tryAcquire(later));
+        assertFalse(bucket.tryAcquire(later));
+    }
+}